@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.benchmarks
+
+import org.openjdk.jmh.profile.GCProfiler
+import org.openjdk.jmh.runner.Runner
+import org.openjdk.jmh.runner.options.OptionsBuilder
+
+/**
+ * Runs the benchmarks with the GC profiler, so that allocation per operation (gc.alloc.rate.norm) is reported along
+ * with the time taken, e.g. to compare a change against the commit before it:
+ * {{{
+ *   sbt "benchmarks/jmh:runMain org.scassandra.benchmarks.Benchmarks"
+ *   sbt "benchmarks/jmh:runMain org.scassandra.benchmarks.Benchmarks RowEncodingBenchmark rowCount=100000"
+ * }}}
+ *
+ * The first argument, if any, is a pattern for the benchmarks to run.  Every following argument fixes a parameter
+ * to the given values, comma separated, rather than running every combination.
+ */
+object Benchmarks {
+  def main(args: Array[String]): Unit = {
+    val options = new OptionsBuilder()
+      .include(args.headOption.getOrElse(".*Benchmark"))
+      .addProfiler(classOf[GCProfiler])
+    args.drop(1).map(_.split("=", 2)).foreach {
+      case Array(name, values) => options.param(name, values.split(","): _*)
+      case other => throw new IllegalArgumentException(s"Expected name=values but got ${other.mkString}")
+    }
+    new Runner(options.build()).run()
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.benchmarks
+
+import java.util.concurrent.{ CountDownLatch, TimeUnit }
+
+import akka.actor.{ Actor, ActorRef, ActorRefFactory, ActorSystem, Props }
+import akka.io.Tcp.{ Received, Write }
+import akka.util.ByteString
+import org.openjdk.jmh.annotations._
+import org.scassandra.codec._
+import org.scassandra.codec.datatype.CqlInt
+import org.scassandra.codec.messages.QueryParameters
+import org.scassandra.server.actors.AkkaScodecInterop._
+import org.scassandra.server.actors.ConnectionHandler
+import scodec.bits.ByteVector
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+/**
+ * Measures [[ConnectionHandler]] parsing the frames of a read from the connection and handing each of them on,
+ * here to an execute handler that only counts them.  Each read holds `framesPerRead` executes, which arrive either
+ * in one piece or split into chunks of `chunkSize` bytes, as reads from a busy connection often are.
+ *
+ * {{{
+ *   sbt "benchmarks/jmh:run -prof gc ConnectionHandlerBenchmark"
+ * }}}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+class ConnectionHandlerBenchmark {
+
+  @Param(Array("1", "10", "100"))
+  var framesPerRead: Int = _
+
+  @Param(Array("0", "1000"))
+  var chunkSize: Int = _
+
+  @Param(Array("1", "2", "3", "4"))
+  var version: Int = _
+
+  var system: ActorSystem = _
+  var connectionHandler: ActorRef = _
+  var reads: List[ByteString] = _
+
+  @volatile var received: CountDownLatch = _
+
+  @Setup
+  def setup(): Unit = {
+    implicit val protocolVersion: ProtocolVersion = ProtocolVersion.versions.find(_.version == version).get
+    system = ActorSystem("ConnectionHandlerBenchmark")
+
+    val ready = new CountDownLatch(1)
+    val tcpConnection = system.actorOf(Props(new Actor {
+      def receive: Receive = {
+        case _: Write => ready.countDown()
+        case _ =>
+      }
+    }))
+    val executeHandler = system.actorOf(Props(new Actor {
+      def receive: Receive = {
+        case _ => received.countDown()
+      }
+    }))
+    val ignore = (factory: ActorRefFactory) => factory.actorOf(Props(new Actor {
+      def receive: Receive = { case _ => }
+    }))
+    connectionHandler = system.actorOf(Props(new ConnectionHandler(tcpConnection, ignore, (f, _) => ignore(f), ignore,
+      ignore, executeHandler, _ => executeHandler)))
+
+    connectionHandler ! Received(Startup(Map("CQL_VERSION" -> "3.0.0")).toBytes(0, Request).get.toByteString)
+    require(ready.await(1, TimeUnit.MINUTES), "connection handler didn't respond to startup")
+
+    val execute = Execute(ByteVector.fill(16)(7), QueryParameters(values = Some(List(QueryValue(42, CqlInt)))))
+    val data = (0 until framesPerRead).map(i => execute.toBytes(i % 128, Request).get.toByteString).reduce(_ ++ _)
+    reads = if (chunkSize > 0) data.grouped(chunkSize).toList else List(data)
+  }
+
+  @TearDown
+  def tearDown(): Unit = Await.result(system.terminate(), 1.minute)
+
+  @Benchmark
+  def parse(): Unit = {
+    received = new CountDownLatch(framesPerRead)
+    reads.foreach(connectionHandler ! Received(_))
+    received.await()
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.benchmarks
+
+import java.util.UUID
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import org.scassandra.codec._
+import org.scassandra.codec.datatype._
+import scodec.Codec
+import scodec.bits.BitVector
+
+/**
+ * Measures encoding and decoding a single value of each kind of [[DataType]].
+ *
+ * {{{
+ *   sbt "benchmarks/jmh:run -prof gc DataTypeCodecBenchmark"
+ * }}}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+class DataTypeCodecBenchmark {
+
+  @Param(Array("int", "bigint", "double", "varchar", "uuid", "timestamp", "decimal", "list<int>", "map<varchar,int>"))
+  var dataType: String = _
+
+  @Param(Array("1", "2", "3", "4"))
+  var version: Int = _
+
+  var codec: Codec[Any] = _
+  var value: Any = _
+  var encoded: BitVector = _
+
+  @Setup
+  def setup(): Unit = {
+    implicit val protocolVersion: ProtocolVersion = ProtocolVersion.versions.find(_.version == version).get
+    val (cqlType, v) = dataType match {
+      case "int" => (CqlInt, 42)
+      case "bigint" => (Bigint, 1234567890123L)
+      case "double" => (CqlDouble, 3.14159)
+      case "varchar" => (Varchar, "the quick brown fox jumps over the lazy dog")
+      case "uuid" => (Uuid, UUID.fromString("3b4c3fe0-8c0e-11e7-bb31-be2e44b06b34"))
+      case "timestamp" => (Timestamp, 1504000000000L)
+      case "decimal" => (CqlDecimal, BigDecimal("12345.6789"))
+      case "list<int>" => (CqlList(CqlInt), (1 to 10).toList)
+      case "map<varchar,int>" => (CqlMap(Varchar, CqlInt), (1 to 10).map(i => s"key-$i" -> i).toMap)
+    }
+    codec = cqlType.codec
+    value = v
+    encoded = codec.encode(value).require
+  }
+
+  @Benchmark
+  def encode(): BitVector = codec.encode(value).require
+
+  @Benchmark
+  def decode(): Any = codec.decodeValue(encoded).require
+}
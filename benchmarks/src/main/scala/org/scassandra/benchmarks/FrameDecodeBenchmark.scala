@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.benchmarks
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import org.scassandra.codec._
+import org.scassandra.codec.datatype.{ CqlInt, Varchar }
+import org.scassandra.codec.messages._
+import scodec.Codec
+import scodec.bits.{ BitVector, ByteVector }
+
+/**
+ * Measures decoding the requests received for every statement: a whole frame, its body through the codec the
+ * server uses, and its body through the scodec codec that defines the format (`reference`).
+ *
+ * {{{
+ *   sbt "benchmarks/jmh:run -prof gc FrameDecodeBenchmark"
+ * }}}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+class FrameDecodeBenchmark {
+
+  @Param(Array("1", "2", "3", "4"))
+  var version: Int = _
+
+  @Param(Array("query", "execute", "batch"))
+  var request: String = _
+
+  implicit var protocolVersion: ProtocolVersion = _
+
+  var frameBits: BitVector = _
+  var body: BitVector = _
+  var opcode: Int = _
+  var referenceCodec: Codec[Message] = _
+
+  @Setup
+  def setup(): Unit = {
+    protocolVersion = ProtocolVersion.versions.find(_.version == version).get
+    val parameters = QueryParameters(
+      consistency = Consistency.LOCAL_QUORUM,
+      values = Some(List(QueryValue(42, CqlInt), QueryValue("Chris", Varchar))),
+      pageSize = Some(5000))
+    val (message, codec) = request match {
+      case "query" =>
+        (Query("select * from people where id = ? and name = ?", parameters), Codec[Query].upcast[Message])
+      case "execute" =>
+        (Execute(ByteVector.fill(16)(7), parameters), Codec[Execute].upcast[Message])
+      case "batch" =>
+        val queries = (0 until 10).toList.map { i =>
+          if (i % 2 == 0) SimpleBatchQuery(s"insert into people (id, name) values ($i, ?)", List(Bytes(ByteVector(i))))
+          else PreparedBatchQuery(ByteVector.fill(16)(i), List(Bytes(ByteVector(i)), Null))
+        }
+        (Batch(BatchType.LOGGED, queries), Codec[Batch].upcast[Message])
+    }
+    opcode = message.opcode
+    frameBits = message.toBytes(1, Request).get.bits
+    body = frameBits.drop(protocolVersion.headerLength * 8)
+    referenceCodec = codec
+  }
+
+  @Benchmark
+  def frame(): Frame = Codec[Frame].decodeValue(frameBits).require
+
+  @Benchmark
+  def message(): Message = Message.codec(opcode).decodeValue(body).require
+
+  @Benchmark
+  def reference(): Message = referenceCodec.decodeValue(body).require
+}
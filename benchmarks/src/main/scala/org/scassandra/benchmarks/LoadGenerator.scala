@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.benchmarks
+
+import java.io.{ BufferedInputStream, BufferedOutputStream, DataInputStream, EOFException }
+import java.net.Socket
+import java.util.concurrent.atomic.{ AtomicBoolean, AtomicLong, AtomicLongArray }
+import java.util.concurrent.locks.LockSupport
+import java.util.concurrent.{ ArrayBlockingQueue, ThreadLocalRandom, TimeUnit }
+
+import org.scassandra.codec._
+import org.scassandra.codec.messages.{ BatchType, PreparedBatchQuery, SimpleBatchQuery }
+import org.scassandra.server.ServerStubRunner
+import org.scassandra.server.metrics.LatencyHistogram
+import scodec.bits.BitVector
+
+import scala.concurrent.duration._
+
+/**
+ * Drives a stub over the native protocol, end to end, and reports the throughput and latency it sustained.  Each
+ * connection pipelines up to `inFlight` requests, picking each request from `mix` and, if `rate` is set, sending
+ * them on a fixed schedule between them.  Latency is measured from when a request was due to be sent rather than
+ * from when it was, so a stalled server isn't hidden by the generator waiting on it to send less.
+ *
+ * {{{
+ *   sbt "benchmarks/runMain org.scassandra.benchmarks.LoadGenerator"
+ *   sbt "benchmarks/runMain org.scassandra.benchmarks.LoadGenerator connections=8 rate=50000 mix=query:1,execute:1"
+ * }}}
+ *
+ * Every argument is a `name=value` setting, see [[LoadGenerator.Settings]].  Without a `host` a stub is started
+ * in process on `port`, otherwise the stub at `host` is used as is, so it can be primed beforehand.  Only
+ * responses sent after `warmup` are counted, and the report is printed as plain text so runs can be compared.
+ */
+object LoadGenerator {
+
+  /**
+   * @param host The stub to connect to, a stub is started in process if not given.
+   * @param port The binary port of the stub.
+   * @param connections The number of connections to open.
+   * @param inFlight The most requests to have outstanding on each connection.
+   * @param rate The requests per second to send across every connection, or 0 to send as fast as possible.
+   * @param warmup How long to send for before counting responses.
+   * @param duration How long to count responses for.
+   * @param mix The weight of each kind of request, i.e. query, prepare, execute and batch.
+   * @param version The protocol version to use.
+   * @param query The query sent, prepared and batched.
+   */
+  case class Settings(
+    host: Option[String] = None,
+    port: Int = 8042,
+    connections: Int = 4,
+    inFlight: Int = 128,
+    rate: Int = 0,
+    warmup: FiniteDuration = 5.seconds,
+    duration: FiniteDuration = 30.seconds,
+    mix: Map[String, Int] = Map("query" -> 70, "prepare" -> 5, "execute" -> 20, "batch" -> 5),
+    version: Int = 4,
+    query: String = "select * from people") {
+
+    implicit val protocolVersion: ProtocolVersion = ProtocolVersion.versions.find(_.version == version)
+      .getOrElse(throw new IllegalArgumentException(s"Unsupported protocol version $version"))
+
+    require(connections > 0, "connections must be positive")
+    require(inFlight > 0 && inFlight <= (if (version > 2) 32768 else 128), s"inFlight must be from 1 to the streams v$version allows")
+    require(rate >= 0, "rate must not be negative")
+    require(mix.keySet.subsetOf(Kinds.toSet), s"mix may only weight ${Kinds.mkString(", ")}")
+    require(mix.values.forall(_ >= 0) && mix.values.sum > 0, "mix must have a positive weight")
+    require(version > 1 || mix.getOrElse("batch", 0) == 0, "batches need protocol version 2 or above")
+  }
+
+  private val Kinds = List("query", "prepare", "execute", "batch")
+
+  def main(args: Array[String]): Unit = {
+    val settings = args.map(_.split("=", 2)).foldLeft(Settings()) {
+      case (s, Array("host", value)) => s.copy(host = Some(value))
+      case (s, Array("port", value)) => s.copy(port = value.toInt)
+      case (s, Array("connections", value)) => s.copy(connections = value.toInt)
+      case (s, Array("inFlight", value)) => s.copy(inFlight = value.toInt)
+      case (s, Array("rate", value)) => s.copy(rate = value.toInt)
+      case (s, Array("warmup", value)) => s.copy(warmup = value.toInt.seconds)
+      case (s, Array("duration", value)) => s.copy(duration = value.toInt.seconds)
+      case (s, Array("version", value)) => s.copy(version = value.toInt)
+      case (s, Array("query", value)) => s.copy(query = value)
+      case (s, Array("mix", value)) => s.copy(mix = value.split(",").map(_.split(":", 2)).map {
+        case Array(kind, weight) => kind -> weight.toInt
+        case other => throw new IllegalArgumentException(s"Expected kind:weight but got ${other.mkString}")
+      }.toMap)
+      case (_, other) => throw new IllegalArgumentException(s"Unexpected setting ${other.mkString("=")}")
+    }
+
+    val stub = settings.host match {
+      case None =>
+        val runner = new ServerStubRunner(binaryPortNumber = settings.port, adminPortNumber = settings.port + 1)
+        runner.start()
+        runner.awaitStartup()
+        Some(runner)
+      case Some(_) => None
+    }
+
+    try {
+      println(run(settings).report)
+    } finally {
+      stub.foreach(_.shutdown())
+      ServerStubRunner.actorSystem.terminate()
+    }
+  }
+
+  /**
+   * What was measured by a run.
+   *
+   * @param elapsed How long responses were counted for.
+   * @param latencies The latency, in nanoseconds, of each kind of request.
+   * @param errors The number of error responses of each kind of request.
+   */
+  case class Result(elapsed: FiniteDuration, latencies: Map[String, LatencyHistogram.Snapshot], errors: Map[String, Long]) {
+
+    lazy val all: LatencyHistogram.Snapshot = latencies.values.reduce(_ merge _)
+
+    def throughput: Double = all.count / (elapsed.toNanos / 1e9)
+
+    def report: String = {
+      def line(name: String, snapshot: LatencyHistogram.Snapshot, errors: Long) = {
+        def millis(nanos: Long) = f"${nanos / 1e6}%.3f"
+        f"$name%-8s ${snapshot.count}%10d ${errors}%8d ${millis(snapshot.valueAtPercentile(50))}%10s " +
+          f"${millis(snapshot.valueAtPercentile(99))}%10s ${millis(snapshot.valueAtPercentile(99.9))}%10s ${millis(snapshot.max)}%10s"
+      }
+      val header = f"${"request"}%-8s ${"responses"}%10s ${"errors"}%8s ${"p50 ms"}%10s ${"p99 ms"}%10s ${"p999 ms"}%10s ${"max ms"}%10s"
+      val lines = Kinds.filter(latencies.contains).map(kind => line(kind, latencies(kind), errors(kind)))
+      (f"throughput: $throughput%.0f requests/s over ${elapsed.toSeconds} s" :: header :: lines :::
+        List(line("all", all, errors.values.sum))).mkString("\n")
+    }
+  }
+
+  /**
+   * Sends requests to the stub for the warm up and duration of the settings.
+   *
+   * @return What was measured once every connection has had all of its responses.
+   */
+  def run(settings: Settings): Result = {
+    val kinds = Kinds.filter(settings.mix.getOrElse(_, 0) > 0)
+    val latencies = kinds.map(_ -> new LatencyHistogram).toMap
+    val errors = kinds.map(_ -> new AtomicLong).toMap
+
+    val connections = (0 until settings.connections).map(_ => new Connection(settings, kinds, latencies, errors))
+    val start = System.nanoTime()
+    val counting = start + settings.warmup.toNanos
+    val end = counting + settings.duration.toNanos
+    connections.foreach(_.start(start, counting, end))
+    connections.foreach(_.await(end - System.nanoTime() + 1.minute.toNanos))
+
+    Result(settings.duration, latencies.map { case (kind, l) => kind -> l.snapshot() },
+      errors.map { case (kind, e) => kind -> e.get() })
+  }
+
+  /**
+   * A connection to the stub, with one thread writing requests and another reading their responses.
+   */
+  private class Connection(settings: Settings, kinds: List[String], latencies: Map[String, LatencyHistogram],
+    errors: Map[String, AtomicLong]) {
+    import settings.protocolVersion
+
+    private[this] val socket = new Socket(settings.host.getOrElse("localhost"), settings.port)
+    socket.setTcpNoDelay(true)
+    private[this] val in = new DataInputStream(new BufferedInputStream(socket.getInputStream, 65536))
+    private[this] val out = new BufferedOutputStream(socket.getOutputStream, 65536)
+
+    // The header up to, but not including, the length of the body.
+    private[this] val headerLength = protocolVersion.headerLength.toInt - 4
+    private[this] val streams = new ArrayBlockingQueue[Integer](settings.inFlight)
+    (0 until settings.inFlight).foreach(streams.add(_))
+    private[this] val sentKind = new Array[Int](settings.inFlight)
+    private[this] val counted = new Array[Boolean](settings.inFlight)
+    // Set after the kind of request and whether it is counted, so the reader sees both once it has read it.
+    private[this] val dueAt = new AtomicLongArray(settings.inFlight)
+    private[this] val done = new AtomicBoolean()
+
+    require(request(Startup(Map("CQL_VERSION" -> "3.0.0"))) == Ready, "Expected the stub to be ready")
+
+    private[this] val prepared = request(Prepare(settings.query)) match {
+      case Prepared(id, _, _) => id
+      case other => throw new IllegalStateException(s"Expected prepared but got $other")
+    }
+
+    /**
+     * Each kind of request encoded once, as stream 0, along with the cumulative weights to pick them by.
+     */
+    private[this] val frames: Array[Array[Byte]] = kinds.map {
+      case "query" => Query(settings.query)
+      case "prepare" => Prepare(settings.query)
+      case "execute" => Execute(prepared)
+      case "batch" => Batch(BatchType.LOGGED, List(SimpleBatchQuery(settings.query), PreparedBatchQuery(prepared)))
+    }.map(_.toArray(0, Request).get).toArray
+    private[this] val weights: Array[Int] = kinds.map(settings.mix).scanLeft(0)(_ + _).tail.toArray
+
+    private[this] val writer = new Thread(() => write(), "load-generator-writer")
+    private[this] val reader = new Thread(() => read(), "load-generator-reader")
+
+    writer.setDaemon(true)
+    reader.setDaemon(true)
+
+    def start(start: Long, counting: Long, end: Long): Unit = {
+      this.start = start
+      this.counting = counting
+      this.end = end
+      reader.start()
+      writer.start()
+    }
+
+    def await(timeoutNanos: Long): Unit = {
+      writer.join(TimeUnit.NANOSECONDS.toMillis(timeoutNanos) max 1)
+      reader.join(TimeUnit.NANOSECONDS.toMillis(timeoutNanos) max 1)
+      socket.close()
+    }
+
+    @volatile private[this] var start, counting, end = 0L
+
+    private[this] def write(): Unit = {
+      val interval = if (settings.rate == 0) 0L else settings.connections * 1000000000L / settings.rate
+      val random = ThreadLocalRandom.current()
+      var due = start
+      while (due < end) {
+        if (interval > 0) {
+          var now = System.nanoTime()
+          while (now < due) {
+            LockSupport.parkNanos(due - now)
+            now = System.nanoTime()
+          }
+        }
+        var stream = streams.poll()
+        if (stream == null) {
+          out.flush()
+          stream = streams.take()
+        }
+        val sent = if (interval > 0) due else System.nanoTime()
+        val pick = random.nextInt(weights.last)
+        val kind = weights.indexWhere(pick < _)
+        sentKind(stream) = kind
+        counted(stream) = sent >= counting && sent < end
+        dueAt.set(stream, sent)
+        val frame = frames(kind)
+        writeStream(frame, stream)
+        out.write(frame)
+        if (interval > 0) out.flush()
+        due = if (interval > 0) due + interval else System.nanoTime()
+      }
+      out.flush()
+      // Once every stream is back there is nothing more to read.
+      (0 until settings.inFlight).foreach(_ => streams.take())
+      done.set(true)
+      socket.shutdownInput()
+    }
+
+    private[this] def writeStream(frame: Array[Byte], stream: Int): Unit =
+      if (headerLength == 4) {
+        frame(2) = stream.toByte
+      } else {
+        frame(2) = (stream >> 8).toByte
+        frame(3) = stream.toByte
+      }
+
+    private[this] def read(): Unit = {
+      val header = new Array[Byte](headerLength)
+      // Bodies are read in full rather than skipped, as skipBytes may skip fewer bytes than asked.
+      var body = new Array[Byte](1024)
+      try {
+        while (true) {
+          in.readFully(header)
+          val stream = if (headerLength == 4) header(2) & 0xFF else (header(2) & 0xFF) << 8 | header(3) & 0xFF
+          val opcode = header(headerLength - 1)
+          val length = in.readInt()
+          if (length > body.length) body = new Array[Byte](length)
+          in.readFully(body, 0, length)
+          val received = System.nanoTime()
+          val due = dueAt.get(stream)
+          if (counted(stream)) {
+            val kind = kinds(sentKind(stream))
+            latencies(kind).record(received - due)
+            if (opcode == ErrorMessage.opcode) errors(kind).incrementAndGet()
+          }
+          streams.add(stream)
+        }
+      } catch {
+        case _: EOFException if done.get() =>
+      }
+    }
+
+    /**
+     * Sends a single request and waits for its response, before the writer and reader are started.
+     */
+    private[this] def request(message: Message): Message = {
+      out.write(message.toArray(0, Request).get)
+      out.flush()
+      val header = new Array[Byte](headerLength)
+      in.readFully(header)
+      val body = new Array[Byte](in.readInt())
+      in.readFully(body)
+      Frame.codec.decodeValue(BitVector(header) ++ BitVector.fromInt(body.length) ++ BitVector(body)).require.message
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.benchmarks
+
+import java.util.concurrent.TimeUnit
+
+import akka.actor.{ ActorRef, ActorSystem, Props }
+import akka.pattern.ask
+import akka.util.Timeout
+import org.openjdk.jmh.annotations._
+import org.scassandra.codec.Consistency.ONE
+import org.scassandra.codec.Query
+import org.scassandra.codec.messages.QueryParameters
+import org.scassandra.server.actors.priming.PrimeQueryStoreActor
+import org.scassandra.server.actors.priming.PrimeQueryStoreActor._
+import org.scassandra.server.priming.PrimeRegistry
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+/**
+ * Measures matching a query against the primes recorded through [[PrimeQueryStoreActor]], both straight from the
+ * [[PrimeRegistry]], as the query handler does, and by asking the actor.  The query matches the last prime recorded,
+ * or none of them (`miss`).
+ *
+ * {{{
+ *   sbt "benchmarks/jmh:run -prof gc PrimeMatchingBenchmark"
+ * }}}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+class PrimeMatchingBenchmark {
+
+  @Param(Array("1", "100", "1000", "10000"))
+  var primeCount: Int = _
+
+  @Param(Array("exact", "pattern"))
+  var kind: String = _
+
+  implicit val timeout: Timeout = Timeout(1.minute)
+
+  var system: ActorSystem = _
+  var registry: PrimeRegistry = _
+  var store: ActorRef = _
+
+  var hit: Query = _
+  var miss: Query = _
+
+  @Setup
+  def setup(): Unit = {
+    system = ActorSystem("PrimeMatchingBenchmark")
+    registry = new PrimeRegistry
+    store = system.actorOf(Props(classOf[PrimeQueryStoreActor], registry))
+    (0 until primeCount).foreach { i =>
+      val when = kind match {
+        case "exact" => When(query = Some(s"select * from table$i where id = ?"))
+        case "pattern" => When(queryPattern = Some(s"select .* from table$i where .*"))
+      }
+      val prime = PrimeQuerySingle(when, Then(rows = Some(List(Map("id" -> i)))))
+      Await.result(store ? RecordQueryPrime(prime), timeout.duration)
+    }
+    hit = Query(s"select * from table${primeCount - 1} where id = ?", QueryParameters(consistency = ONE))
+    miss = Query("select * from unprimed where id = ?", QueryParameters(consistency = ONE))
+    require(registry(hit).isDefined && registry(miss).isEmpty)
+  }
+
+  @TearDown
+  def tearDown(): Unit = Await.result(system.terminate(), 1.minute)
+
+  @Benchmark
+  def lookup(): Option[Prime] = registry(hit)
+
+  @Benchmark
+  def lookupMiss(): Option[Prime] = registry(miss)
+
+  @Benchmark
+  def matchPrime(): Any = Await.result(store ? MatchPrime(hit), timeout.duration)
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.benchmarks
+
+import java.util.concurrent.TimeUnit
+
+import akka.util.ByteString
+import org.openjdk.jmh.annotations._
+import org.scassandra.codec._
+import org.scassandra.codec.datatype.{ CqlInt, Varchar }
+import org.scassandra.codec.messages.{ ColumnSpec, Row, RowMetadata }
+import org.scassandra.server.actors.AkkaScodecInterop._
+import scodec.Codec
+
+/**
+ * Measures encoding a response into the [[ByteString]] written to the connection.
+ *
+ * `legacy` encodes the way responses were encoded before they were written straight into a single array, i.e. the
+ * header goes through its codec, is concatenated to the body and the result is copied into a [[ByteString]].
+ *
+ * Run with the GC profiler to compare allocation per response (gc.alloc.rate.norm):
+ * {{{
+ *   sbt "benchmarks/jmh:run -prof gc ResponseEncodingBenchmark"
+ * }}}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+class ResponseEncodingBenchmark {
+
+  @Param(Array("1", "100", "10000"))
+  var rowCount: Int = _
+
+  @Param(Array("1", "2", "3", "4"))
+  var version: Int = _
+
+  implicit var protocolVersion: ProtocolVersion = _
+
+  var response: Message = _
+
+  @Setup
+  def setup(): Unit = {
+    protocolVersion = ProtocolVersion.versions.find(_.version == version).get
+    val columns = List(ColumnSpec.column("id", CqlInt), ColumnSpec.column("name", Varchar))
+    val rows = (0 until rowCount).map(i => Row("id" -> i, "name" -> s"name-$i")).toList
+    response = Rows(RowMetadata(keyspace = Some("ks"), table = Some("people"), columnSpec = Some(columns)), rows)
+  }
+
+  @Benchmark
+  def legacy(): ByteString = {
+    val body = Message.codec(response.opcode).encode(response).require.bytes
+    val header = FrameHeader(ProtocolFlags(Response, protocolVersion), EmptyHeaderFlags, 1, response.opcode, body.size)
+    (Codec[FrameHeader].encode(header).require.bytes ++ body).toByteString
+  }
+
+  @Benchmark
+  def direct(): ByteString = response.toArray(1).get.toByteString
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.benchmarks
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import org.scassandra.codec._
+import org.scassandra.codec.datatype.{ CqlDouble, CqlInt, Varchar }
+import org.scassandra.codec.messages.{ ColumnSpec, Row, RowCodec, RowMetadata }
+import scodec.Codec
+import scodec.bits.BitVector
+
+/**
+ * Measures encoding rows, held by row ([[Rows]]) and by column ([[ColumnarRows]]), as well as a single [[Row]]
+ * through [[RowCodec]].
+ *
+ * {{{
+ *   sbt "benchmarks/jmh:run -prof gc RowEncodingBenchmark"
+ * }}}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+class RowEncodingBenchmark {
+
+  @Param(Array("1", "100", "10000", "100000"))
+  var rowCount: Int = _
+
+  @Param(Array("1", "2", "3", "4"))
+  var version: Int = _
+
+  implicit var protocolVersion: ProtocolVersion = _
+
+  var byRow: Rows = _
+  var byColumn: ColumnarRows = _
+  var rowCodec: RowCodec = _
+
+  @Setup
+  def setup(): Unit = {
+    protocolVersion = ProtocolVersion.versions.find(_.version == version).get
+    val columns = List(ColumnSpec.column("id", CqlInt), ColumnSpec.column("name", Varchar), ColumnSpec.column("score", CqlDouble))
+    val metadata = RowMetadata(keyspace = Some("ks"), table = Some("people"), columnSpec = Some(columns))
+    byRow = Rows(metadata, (0 until rowCount).map(i => Row("id" -> i, "name" -> s"name-$i", "score" -> i * 1.5)).toList)
+    byColumn = ColumnarRows.fromRows(byRow)
+    rowCodec = RowCodec(columns)
+  }
+
+  @Benchmark
+  def rows(): BitVector = Codec[Rows].encode(byRow).require
+
+  @Benchmark
+  def columnar(): BitVector = Codec[ColumnarRows].encode(byColumn).require
+
+  @Benchmark
+  def row(): BitVector = rowCodec.encode(byRow.rows.head).require
+}
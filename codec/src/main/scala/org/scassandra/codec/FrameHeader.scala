@@ -126,6 +126,36 @@ object FrameHeader {
       ("length" | uint32)
   }
 
+  /**
+   * Writes the given header to the start of an array without going through [[codec]], as is done for every
+   * response.  The array must be at least [[ProtocolVersion.headerLength]] bytes long.
+   *
+   * @param header The header to write.
+   * @param bytes The array to write the header to.
+   */
+  private[codec] def write(header: FrameHeader, bytes: Array[Byte]): Unit = {
+    val version = header.version.version
+    val direction = header.version.direction match {
+      case Request => 0x00
+      case Response => 0x80
+    }
+    val flags = header.flags
+    bytes(0) = (direction | (version.version & 0x7F)).toByte
+    bytes(1) = ((if (flags.warning) 0x08 else 0) | (if (flags.customPayload) 0x04 else 0) |
+      (if (flags.tracing) 0x02 else 0) | (if (flags.compression) 0x01 else 0)).toByte
+    var i = 2
+    if (version.headerLength > 8) {
+      bytes(i) = (header.stream >> 8).toByte
+      i += 1
+    }
+    bytes(i) = header.stream.toByte
+    bytes(i + 1) = header.opcode.toByte
+    bytes(i + 2) = (header.length >> 24).toByte
+    bytes(i + 3) = (header.length >> 16).toByte
+    bytes(i + 4) = (header.length >> 8).toByte
+    bytes(i + 5) = header.length.toByte
+  }
+
   /**
    * [[Codec]] that parses [[FrameHeader]] by first inspecting the [[ProtocolFlags]] and then uses the
    * [[ProtocolVersion]] to determine how to parse the rest of the [[FrameHeader]].
@@ -16,12 +16,13 @@
 package org.scassandra.codec
 
 import org.scassandra.codec.Consistency.Consistency
+import org.scassandra.codec.compression.Compression
 import org.scassandra.codec.Notations.{ int => cint, long => clong, short => cshort, string => cstring, _ }
 import org.scassandra.codec.messages.BatchType.BatchType
 import org.scassandra.codec.messages._
 import scodec.Attempt.{ Failure, Successful }
-import scodec.Codec
-import scodec.bits.ByteVector
+import scodec.{ Codec, Err }
+import scodec.bits.{ BitVector, ByteVector }
 import scodec.codecs._
 
 import scala.util.{ Try, Failure => TFailure }
@@ -43,21 +44,80 @@ sealed trait Message {
    * @param protocolVersion protocol version to use to encode/decode.
    * @return encoded bytes of the message with the frame header.
    */
-  def toBytes(stream: Int, direction: MessageDirection = Response)(implicit protocolVersion: ProtocolVersion): Try[ByteVector] = {
-    Message.codec(opcode).encode(this).flatMap(bits => {
-      val bytes = bits.bytes
-      val header = FrameHeader(
-        ProtocolFlags(direction, protocolVersion),
-        EmptyHeaderFlags,
-        stream,
-        opcode,
-        bits.bytes.size)
-      Codec[FrameHeader].encode(header).map(_.bytes ++ bytes)
-    }) match {
+  def toBytes(stream: Int, direction: MessageDirection = Response)(implicit protocolVersion: ProtocolVersion): Try[ByteVector] =
+    toArray(stream, direction).map(ByteVector.view)
+
+  /**
+   * Encodes a [[Message]] wrapped into a frame into a single array sized to fit the frame exactly.  The header is
+   * written directly into the array and the body is copied into it once, so the array can be handed off without
+   * any further copying.
+   *
+   * @param stream          stream id
+   * @param direction       direction of the message
+   * @param protocolVersion protocol version to use to encode/decode.
+   * @return encoded bytes of the message with the frame header.
+   */
+  def toArray(stream: Int, direction: MessageDirection = Response)(implicit protocolVersion: ProtocolVersion): Try[Array[Byte]] = {
+    Message.codec(opcode).encode(this).map { bits =>
+      val body = bits.bytes
+      val bytes = new Array[Byte](protocolVersion.headerLength.toInt + body.size.toInt)
+      writeHeader(bytes, stream, body.size, direction)
+      body.copyToArray(bytes, protocolVersion.headerLength.toInt)
+      bytes
+    } match {
+      case Successful(result) => Try(result)
+      case Failure(x) => TFailure(new Exception(x.toString))
+    }
+  }
+
+  /**
+   * Encodes only the frame header for this [[Message]], for when the body has already been encoded.
+   *
+   * @param stream          stream id
+   * @param length          length of the encoded body
+   * @param direction       direction of the message
+   * @param compressed      whether the body is compressed.
+   * @param protocolVersion protocol version to use to encode/decode.
+   * @return encoded bytes of the frame header.
+   */
+  def headerToArray(stream: Int, length: Long, direction: MessageDirection = Response, compressed: Boolean = false)(implicit protocolVersion: ProtocolVersion): Array[Byte] = {
+    val bytes = new Array[Byte](protocolVersion.headerLength.toInt)
+    writeHeader(bytes, stream, length, direction, compressed)
+    bytes
+  }
+
+  /**
+   * Encodes a [[Message]] wrapped into a frame with its body compressed.
+   *
+   * @param stream          stream id
+   * @param compression     algorithm to compress the body with.
+   * @param direction       direction of the message
+   * @param protocolVersion protocol version to use to encode/decode.
+   * @return encoded bytes of the message with the frame header.
+   */
+  def toCompressedArray(stream: Int, compression: Compression, direction: MessageDirection = Response)(implicit protocolVersion: ProtocolVersion): Try[Array[Byte]] = {
+    Message.codec(opcode).encode(this).map { bits =>
+      val body = compression.compress(bits.toByteArray)
+      val bytes = new Array[Byte](protocolVersion.headerLength.toInt + body.length)
+      writeHeader(bytes, stream, body.length, direction, compressed = true)
+      System.arraycopy(body, 0, bytes, protocolVersion.headerLength.toInt, body.length)
+      bytes
+    } match {
       case Successful(result) => Try(result)
       case Failure(x) => TFailure(new Exception(x.toString))
     }
   }
+
+  private[this] def writeHeader(bytes: Array[Byte], stream: Int, length: Long, direction: MessageDirection,
+    compressed: Boolean = false)(implicit protocolVersion: ProtocolVersion): Unit = {
+    val header = FrameHeader(
+      ProtocolFlags(direction, protocolVersion),
+      if (compressed) HeaderFlags(compression = true) else EmptyHeaderFlags,
+      stream,
+      opcode,
+      length)
+    FrameHeader.write(header, bytes)
+  }
 }
 
 object Message {
@@ -69,13 +129,13 @@ object Message {
     case Options.opcode => Codec[Options.type].upcast[Message]
     //     TODO: Authenticate
     case Supported.opcode => Codec[Supported].upcast[Message]
-    case Query.opcode => Codec[Query].upcast[Message]
+    case Query.opcode => RequestDecoder.query.upcast[Message]
     case Result.opcode => Codec[Result].upcast[Message]
     case Prepare.opcode => Codec[Prepare].upcast[Message]
-    case Execute.opcode => Codec[Execute].upcast[Message]
+    case Execute.opcode => RequestDecoder.execute.upcast[Message]
     case Register.opcode => Codec[Register].upcast[Message]
     // TODO: Event
-    case Batch.opcode => Codec[Batch].upcast[Message]
+    case Batch.opcode => RequestDecoder.batch.upcast[Message]
     // TODO: AuthChallenge
     // TODO: AuthResponse
     // TODO: AuthSuccess
@@ -402,9 +462,21 @@ object Result {
 
   private[codec] def codecForVersion(implicit protocolVersion: ProtocolVersion): DiscriminatorCodec[Result, Int] = discriminated[Result].by(cint)
     .typecase(0x1, Codec[VoidResult.type])
-    .typecase(0x2, Codec[Rows])
+    .subcaseP(0x2)({ case rows @ (_: Rows | _: ColumnarRows) => rows })(rowsCodec)
     .typecase(0x3, Codec[SetKeyspace])
     .typecase(0x4, Codec[Prepared])
+
+  /**
+   * Codec for both [[Rows]] and [[ColumnarRows]], which are the same kind of result, encoding each as it is and
+   * always decoding as [[Rows]].
+   */
+  private def rowsCodec(implicit protocolVersion: ProtocolVersion): Codec[Result] = Codec[Result](
+    (result: Result) => result match {
+      case rows: ColumnarRows => Codec[ColumnarRows].encode(rows)
+      case rows: Rows => Codec[Rows].encode(rows)
+      case other => Failure(Err(s"$other is not a rows result"))
+    },
+    (bits: BitVector) => Codec[Rows].decode(bits))
 }
 
 /**
@@ -436,11 +508,60 @@ object Rows {
     // read RowMetadata, and use flat prepend to use that metadata to
     // pass the column specification into a Row codec parser.
     Codec[RowMetadata].flatPrepend { metadata =>
-      listOfN(cint, protocolVersion.rowCodec(metadata.columnSpec.getOrElse(Nil))).hlist
+      protocolVersion.rowCodec(metadata.columnSpec.getOrElse(Nil)).list.hlist
     }
   }.as[Rows]
 }
 
+/**
+ * A result from a select query, as [[Rows]], but with the row data held by column rather than by row.  This is
+ * encoded exactly as [[Rows]] are, but without looking up each column of each row by name, so suits large results.
+ * It is always decoded as [[Rows]].
+ *
+ * @param metadata Metadata for the rows.  Columns are encoded in the order of its column spec.
+ * @param count    The number of rows.
+ * @param columns  Values of each column by column name, each with a value for every row.  Columns that are not
+ *                 present, and values that are [[Unset]], are encoded as unset.
+ */
+case class ColumnarRows(metadata: RowMetadata = NoRowMetadata, count: Int = 0,
+  columns: Map[String, IndexedSeq[Any]] = Map()) extends Result {
+  require(columns.values.forall(_.size >= count), "every column must have a value for each row")
+
+  /**
+   * @return The same rows as [[Rows]], with a [[Row]] for each row.
+   */
+  def toRows: Rows = Rows(metadata, List.tabulate(count) { row =>
+    Row(columns.collect { case (name, values) if values(row) != Unset => (name, values(row)) })
+  })
+}
+
+object ColumnarRows {
+
+  /**
+   * @param protocolVersion protocol version to use to encode/decode.
+   * @return Codec for [[ColumnarRows]] which encodes as [[Rows]].
+   */
+  implicit def codec(implicit protocolVersion: ProtocolVersion): Codec[ColumnarRows] =
+    protocolVersion.columnarRowsCodec
+
+  private[codec] def codecForVersion(implicit protocolVersion: ProtocolVersion): Codec[ColumnarRows] = Codec[ColumnarRows](
+    (rows: ColumnarRows) => for {
+      metadata <- Codec[RowMetadata].encode(rows.metadata)
+      data <- protocolVersion.rowCodec(rows.metadata.columnSpec.getOrElse(Nil)).encodeColumns(rows.count, rows.columns)
+    } yield metadata ++ data,
+    (bits: BitVector) => Codec[Rows].decode(bits).map(_.map(fromRows)))
+
+  /**
+   * @param rows Rows held by row.
+   * @return The same rows held by column, where columns missing from some rows are [[Unset]] for those rows.
+   */
+  def fromRows(rows: Rows): ColumnarRows = {
+    val names = rows.rows.flatMap(_.columns.keys).distinct
+    val columns = names.map(name => (name, rows.rows.map(_.columns.getOrElse(name, Unset)).toVector)).toMap
+    ColumnarRows(rows.metadata, rows.rows.size, columns)
+  }
+}
+
 /**
  * A result to a 'use' query.  See section 4.2.5.3 of the spec.
  *
@@ -61,8 +61,8 @@ sealed trait ProtocolVersion {
    */
   private[this] lazy val rowCodecCache = CacheBuilder.newBuilder
     .maximumSize(1000)
-    .build(new CacheLoader[List[ColumnSpec], Codec[Row]]() {
-      override def load(key: List[ColumnSpec]): Codec[Row] = Row.withColumnSpec(key)(ProtocolVersion.this)
+    .build(new CacheLoader[List[ColumnSpec], RowCodec]() {
+      override def load(key: List[ColumnSpec]): RowCodec = RowCodec(key)(ProtocolVersion.this)
     })
 
   // codecs that have protocol version specific behavior.
@@ -79,10 +79,11 @@ sealed trait ProtocolVersion {
   private[codec] lazy val resultCodec: Codec[Result] = Result.codecForVersion(this)
   private[codec] lazy val rowMetadataCodec: Codec[RowMetadata] = RowMetadata.codecForVersion(this)
   private[codec] lazy val rowsCodec: Codec[Rows] = Rows.codecForVersion(this)
+  private[codec] lazy val columnarRowsCodec: Codec[ColumnarRows] = ColumnarRows.codecForVersion(this)
   private[codec] lazy val columnSpecWithTableCodec: Codec[ColumnSpec] = ColumnSpec.codecForVersion(withTable = true)(this)
   private[codec] lazy val columnSpecWithoutTableCodec: Codec[ColumnSpec] = ColumnSpec.codecForVersion(withTable = false)(this)
   private[codec] def dataTypeCodec(dataType: DataType): Codec[Any] = dataTypeCodecCache.get(dataType).codec
-  private[codec] def rowCodec(columnSpec: List[ColumnSpec]): Codec[Row] = rowCodecCache.get(columnSpec)
+  private[codec] def rowCodec(columnSpec: List[ColumnSpec]): RowCodec = rowCodecCache.get(columnSpec)
 
   private[this] def createHeaderCodec(protocolFlags: ProtocolFlags) =
     provide(protocolFlags).flatPrepend(FrameHeader.withProtocol).as[FrameHeader]
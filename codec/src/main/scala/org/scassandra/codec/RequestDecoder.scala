@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.codec
+
+import java.nio.charset.{ CharacterCodingException, Charset, StandardCharsets }
+import java.nio.{ BufferUnderflowException, ByteBuffer }
+
+import org.scassandra.codec.Consistency.Consistency
+import org.scassandra.codec.messages._
+import scodec.Attempt.{ Failure, Successful }
+import scodec.bits.{ BitVector, ByteVector }
+import scodec.{ Attempt, Codec, DecodeResult, Err, SizeBound }
+
+import scala.util.control.NoStackTrace
+
+/**
+ * Decodes the requests that are received for every statement, [[Query]], [[Execute]] and [[Batch]], straight from
+ * a [[ByteBuffer]] rather than through the scodec codecs, which build each field from bits through shapeless
+ * [[shapeless.HList]]s.  The scodec codecs remain the definition of the format; they are still used to encode, and
+ * the decoders here are tested to agree with them.
+ *
+ * These are the codecs [[ProtocolVersion.messageCodec]] gives for those opcodes.
+ */
+private[codec] object RequestDecoder {
+
+  def query(implicit protocolVersion: ProtocolVersion): Codec[Query] =
+    new ByteBufferCodec(Codec[Query], buffer => Query(longString(buffer), queryParameters(buffer)))
+
+  def execute(implicit protocolVersion: ProtocolVersion): Codec[Execute] =
+    new ByteBufferCodec(Codec[Execute], buffer => Execute(shortBytes(buffer), queryParameters(buffer)))
+
+  def batch(implicit protocolVersion: ProtocolVersion): Codec[Batch] =
+    new ByteBufferCodec(Codec[Batch], buffer => {
+      val batchType = enumerated(BatchType)(buffer.get & 0xFF)
+      val queries = list(buffer) {
+        enumerated(BatchQueryKind)(buffer.get & 0xFF) match {
+          case BatchQueryKind.Simple => SimpleBatchQuery(longString(buffer), list(buffer)(value(buffer)))
+          case BatchQueryKind.Prepared => PreparedBatchQuery(shortBytes(buffer), list(buffer)(value(buffer)))
+        }
+      }
+      val consistency = this.consistency(buffer)
+      // flags were added in protocol version 3.
+      val flags = if (protocolVersion.version > 2) buffer.get else 0
+      val serialConsistency = if ((flags & 0x10) != 0) Some(this.consistency(buffer)) else None
+      val timestamp = if ((flags & 0x20) != 0) Some(buffer.getLong) else None
+      Batch(batchType, queries, consistency, serialConsistency, timestamp)
+    })
+
+  private def queryParameters(buffer: ByteBuffer)(implicit protocolVersion: ProtocolVersion): QueryParameters = {
+    val consistency = this.consistency(buffer)
+    // flags were introduced in protocol version 2.
+    val flags = if (protocolVersion.version >= 2) buffer.get else 0
+    val namesForValues = (flags & 0x40) != 0
+    val values = if ((flags & 0x01) != 0) Some(list(buffer)(queryValue(buffer, namesForValues))) else None
+    val skipMetadata = (flags & 0x02) != 0
+    val pageSize = if ((flags & 0x04) != 0) Some(buffer.getInt) else None
+    val pagingState = if ((flags & 0x08) != 0) Some(bytes(buffer)) else None
+    val serialConsistency = if ((flags & 0x10) != 0) Some(this.consistency(buffer)) else None
+    val timestamp = if ((flags & 0x20) != 0) Some(buffer.getLong) else None
+    QueryParameters(consistency, values, skipMetadata, pageSize, pagingState, serialConsistency, timestamp)
+  }
+
+  // names are read as the reference codec reads them, as NUL terminated strings.
+  private def queryValue(buffer: ByteBuffer, named: Boolean): QueryValue =
+    QueryValue(if (named) Some(cstring(buffer)) else None, value(buffer))
+
+  private def value(buffer: ByteBuffer): Value = buffer.getInt match {
+    case -1 => Null
+    case -2 => Unset
+    case length if length >= 0 => Bytes(take(buffer, length))
+    case length => fail(s"Invalid [value] identifier $length")
+  }
+
+  private def consistency(buffer: ByteBuffer): Consistency = enumerated(Consistency)(buffer.getShort & 0xFFFF)
+
+  private def enumerated(enumeration: Enumeration)(id: Int): enumeration.Value =
+    if (id < enumeration.maxId) enumeration(id) else fail(s"$id is not a recognized value of ${enumeration.getClass.getSimpleName}")
+
+  private def list[T](buffer: ByteBuffer)(element: => T): List[T] = {
+    val count = buffer.getShort & 0xFFFF
+    val elements = List.newBuilder[T]
+    var i = 0
+    while (i < count) {
+      elements += element
+      i += 1
+    }
+    elements.result()
+  }
+
+  private def cstring(buffer: ByteBuffer): String = {
+    var end = buffer.position
+    while (end < buffer.limit && buffer.get(end) != 0) end += 1
+    if (end == buffer.limit) fail("Does not contain a 'NUL' termination byte.")
+    val string = decode(StandardCharsets.US_ASCII, slice(buffer, end - buffer.position))
+    buffer.get() // the NUL.
+    string
+  }
+
+  private def longString(buffer: ByteBuffer): String = utf8(buffer, length(buffer.getInt))
+
+  private def bytes(buffer: ByteBuffer): ByteVector = take(buffer, length(buffer.getInt))
+
+  private def shortBytes(buffer: ByteBuffer): ByteVector = take(buffer, buffer.getShort & 0xFFFF)
+
+  private def length(length: Int): Int = if (length >= 0) length else fail(s"Negative length $length")
+
+  private def utf8(buffer: ByteBuffer, length: Int): String = decode(StandardCharsets.UTF_8, slice(buffer, length))
+
+  private def decode(charset: Charset, bytes: ByteBuffer): String = {
+    try {
+      charset.newDecoder.decode(bytes).toString
+    } catch {
+      case e: CharacterCodingException => fail(s"Invalid ${charset.displayName} string: ${e.getMessage}")
+    }
+  }
+
+  // copies the bytes, so that what is decoded doesn't hold on to the buffer received from the connection.  The
+  // length is checked first, so a length read off the wire can't make us allocate more than was received.
+  private def take(buffer: ByteBuffer, length: Int): ByteVector = {
+    if (buffer.remaining < length) throw new BufferUnderflowException
+    val bytes = new Array[Byte](length)
+    buffer.get(bytes)
+    ByteVector.view(bytes)
+  }
+
+  private def slice(buffer: ByteBuffer, length: Int): ByteBuffer = {
+    if (buffer.remaining < length) throw new BufferUnderflowException
+    val slice = buffer.slice()
+    slice.limit(length)
+    buffer.position(buffer.position + length)
+    slice
+  }
+
+  private def fail(message: String): Nothing = throw DecodeError(Err(message))
+
+  private case class DecodeError(err: Err) extends RuntimeException with NoStackTrace
+
+  /**
+   * Decodes with the given function and encodes with the reference codec.
+   *
+   * @param reference The scodec codec defining the format.
+   * @param read Reads a value from the buffer, leaving its position after the value.  Throws
+   *             [[BufferUnderflowException]] if there aren't enough bytes.
+   */
+  private class ByteBufferCodec[T](reference: Codec[T], read: ByteBuffer => T) extends Codec[T] {
+
+    override def decode(bits: BitVector): Attempt[DecodeResult[T]] = {
+      if (bits.size % 8 != 0) {
+        reference.decode(bits)
+      } else {
+        val bytes = bits.bytes
+        val buffer = bytes.toByteBuffer
+        val start = buffer.position
+        try {
+          val value = read(buffer)
+          Successful(DecodeResult(value, bytes.drop((buffer.position - start).toLong).bits))
+        } catch {
+          case _: BufferUnderflowException => Failure(Err.insufficientBits(bits.size + 8, bits.size))
+          case DecodeError(err) => Failure(err)
+        }
+      }
+    }
+
+    override def encode(value: T): Attempt[BitVector] = reference.encode(value)
+
+    override def sizeBound: SizeBound = reference.sizeBound
+  }
+}
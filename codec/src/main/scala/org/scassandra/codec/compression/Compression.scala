@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.codec.compression
+
+import java.nio.ByteBuffer
+
+import net.jpountz.lz4.LZ4Factory
+import org.iq80.snappy.{ Snappy => SnappyCodec }
+
+import scala.util.Try
+
+/**
+ * An algorithm for compressing frame bodies, chosen by the client with the COMPRESSION option of its STARTUP message.
+ *
+ * @param name The name of the algorithm in STARTUP and SUPPORTED messages.
+ */
+sealed abstract class Compression(val name: String) {
+
+  /**
+   * @return The compressed body.
+   */
+  def compress(body: Array[Byte]): Array[Byte]
+
+  /**
+   * @return The decompressed body, or a failure if the body is malformed.
+   */
+  def decompress(body: Array[Byte]): Try[Array[Byte]]
+}
+
+/**
+ * LZ4 compressed bodies start with the length of the decompressed body as a 4 byte big endian integer, followed by
+ * a block in the LZ4 block format.  Uses lz4-java, as Cassandra and the drivers do.
+ */
+case object Lz4 extends Compression("lz4") {
+  private val factory = LZ4Factory.fastestInstance()
+  private val compressor = factory.fastCompressor()
+  // The safe decompressor checks the block against its compressed length, as the client could have sent anything.
+  private val decompressor = factory.safeDecompressor()
+
+  def compress(body: Array[Byte]): Array[Byte] = {
+    val compressed = new Array[Byte](4 + compressor.maxCompressedLength(body.length))
+    ByteBuffer.wrap(compressed).putInt(body.length)
+    val length = compressor.compress(body, 0, body.length, compressed, 4, compressed.length - 4)
+    java.util.Arrays.copyOf(compressed, 4 + length)
+  }
+
+  def decompress(body: Array[Byte]): Try[Array[Byte]] = Try {
+    require(body.length >= 4, "LZ4 compressed body is missing its length")
+    val length = ByteBuffer.wrap(body).getInt
+    // Each byte of a block decompresses to at most 255 bytes, so check the length before allocating for it.
+    Compression.checkLength(length, (body.length - 4).toLong * 255 + 16)
+    val decompressed = new Array[Byte](length)
+    val decompressedLength = decompressor.decompress(body, 4, body.length - 4, decompressed, 0, length)
+    require(decompressedLength == length, s"LZ4 block decompressed to $decompressedLength bytes rather than $length")
+    decompressed
+  }
+}
+
+/**
+ * Snappy compressed bodies are in the raw Snappy format, which records the decompressed length itself.
+ */
+case object Snappy extends Compression("snappy") {
+
+  def compress(body: Array[Byte]): Array[Byte] = SnappyCodec.compress(body)
+
+  def decompress(body: Array[Byte]): Try[Array[Byte]] = Try {
+    // A copy of up to 64 bytes takes at least 3 bytes, so check the length before allocating for it.
+    Compression.checkLength(SnappyCodec.getUncompressedLength(body, 0), body.length.toLong * 22 + 16)
+    SnappyCodec.uncompress(body, 0, body.length)
+  }
+}
+
+object Compression {
+  /**
+   * The largest frame body the native protocol allows, 256MB.
+   */
+  val MaxDecompressedLength: Int = 256 * 1024 * 1024
+
+  /**
+   * Checks a decompressed length read from a compressed body, which the client could have set to anything.
+   *
+   * @param length The decompressed length the body claims.
+   * @param maxLength The most the body could decompress to.
+   * @throws IllegalArgumentException if the length is negative or more than the body could decompress to.
+   */
+  private[compression] def checkLength(length: Int, maxLength: Long): Unit = {
+    require(length >= 0, s"Invalid decompressed length $length")
+    require(length <= maxLength && length <= MaxDecompressedLength,
+      s"Decompressed length $length is more than the body could decompress to")
+  }
+
+  /**
+   * Every supported algorithm, as advertised in SUPPORTED messages.
+   */
+  val supported: List[Compression] = List(Lz4, Snappy)
+
+  /**
+   * @return The algorithm with the given name, ignoring case.
+   */
+  def named(name: String): Option[Compression] = supported.find(_.name.equalsIgnoreCase(name))
+}
@@ -179,8 +179,9 @@ object Row {
  * a value.
  *
  * To encode it processes the [[ColumnSpec]] of a [[Row]] in order and uses the [[DataType]] of the spec to
- * figure out how to encode bits from the value.  It then joins all of those bits into one [[BitVector]] and
- * returns it.
+ * figure out how to encode bits from the value.  Each value is written into a single array, sized from the
+ * [[sizeBound]] of the row, rather than joining a [[BitVector]] for each value.  The same is done for a whole list
+ * of rows, and for [[ColumnarRows]], so that encoding many rows takes a single pass.
  *
  * @param columnSpecs [[ColumnSpec]] for a row definition.
  * @param protocolVersion protocol version to use to encode/decode.
@@ -195,6 +196,15 @@ case class RowCodec(columnSpecs: List[ColumnSpec])(implicit protocolVersion: Pro
     (spec.name, variableSizeBytes(cint, spec.dataType.codec))
   }
 
+  private[this] lazy val names: Array[String] = columnSpecs.map(_.name).toArray
+
+  private[this] lazy val codecs: Array[Codec[Any]] = columnSpecs.map(_.dataType.codec).toArray
+
+  /**
+   * [[Codec]] for a list of rows preceded by its size, as included in [[Rows]].
+   */
+  lazy val list: Codec[List[Row]] = Codec[List[Row]](encodeAll _, listOfN(cint, this).decode _)
+
   override def decode(bits: BitVector): Attempt[DecodeResult[Row]] = {
     var remaining = bits
     val data = immutable.List.newBuilder[(String, _ <: Any)]
@@ -206,7 +216,7 @@ case class RowCodec(columnSpecs: List[ColumnSpec])(implicit protocolVersion: Pro
       for (spec <- columnSpecs) {
         val codec = spec.dataType.codec
         // first parse using value codec to detect any possible Null/Unset values.
-        value.decode(bits) match {
+        value.decode(remaining) match {
           case Successful(DecodeResult(v, r)) =>
             remaining = r
             val value: Option[Any] = v match {
@@ -244,21 +254,65 @@ case class RowCodec(columnSpecs: List[ColumnSpec])(implicit protocolVersion: Pro
   }
 
   override def encode(row: Row): Attempt[BitVector] = {
-    // Encode each column as it appears in the column spec.
-    val attempts: List[Attempt[BitVector]] = columnsWithCodecs.map { (column) =>
-      val codec = column._2
-      val columnName = column._1
-      row.columns.get(columnName) match {
-        case Some(null) => value.encode(Null)
-        case Some(data) => codec.encode(data)
-        case None => value.encode(Unset)
+    val writer = new RowWriter(sizeHint(1))
+    write(row, writer).map(_ => writer.result)
+  }
+
+  private[this] def encodeAll(rows: List[Row]): Attempt[BitVector] = {
+    val writer = new RowWriter(4 + sizeHint(rows.size))
+    writer.int(rows.size)
+    var remaining = rows
+    var result: Attempt[Unit] = RowWriter.written
+    while (remaining.nonEmpty && result.isSuccessful) {
+      result = write(remaining.head, writer)
+      remaining = remaining.tail
+    }
+    result.map(_ => writer.result)
+  }
+
+  /**
+   * Encodes rows held by column, each column's values in the order of the rows.
+   *
+   * @param count The number of rows.
+   * @param columns Values of each column by name.  Columns not present, and values that are [[Unset]], are encoded
+   *                as unset.
+   */
+  private[codec] def encodeColumns(count: Int, columns: Map[String, IndexedSeq[Any]]): Attempt[BitVector] = {
+    // look each column up once, rather than once per row.
+    val values = names.map(columns.getOrElse(_, null))
+    val writer = new RowWriter(4 + sizeHint(count))
+    writer.int(count)
+    var result: Attempt[Unit] = RowWriter.written
+    var row = 0
+    while (row < count && result.isSuccessful) {
+      var column = 0
+      while (column < values.length && result.isSuccessful) {
+        val columnValues = values(column)
+        result = if (columnValues == null) writer.unset() else writer.value(codecs(column), columnValues(row))
+        column += 1
       }
+      row += 1
     }
+    result.map(_ => writer.result)
+  }
 
-    // fold all spec encodings into one.
-    foldAttempts(attempts)
+  private[this] def write(row: Row, writer: RowWriter): Attempt[Unit] = {
+    // Encode each column as it appears in the column spec.
+    var result: Attempt[Unit] = RowWriter.written
+    var column = 0
+    while (column < names.length && result.isSuccessful) {
+      result = row.columns.get(names(column)) match {
+        case Some(data) => writer.value(codecs(column), data)
+        case None => writer.unset()
+      }
+      column += 1
+    }
+    result
   }
 
+  // The exact size of the rows where the column types have a fixed size, otherwise the least they could take.
+  private[this] def sizeHint(rows: Int): Long = sizes.exact.getOrElse(sizes.lowerBound) / 8 * rows
+
   private[this] lazy val sizes = {
     // Iterate over each spec codec to determine the size bound of it and then sum it up.
     columnsWithCodecs.map(_._2.sizeBound).fold(SizeBound.exact(0)) { (acc: SizeBound, s: SizeBound) =>
@@ -268,3 +322,68 @@ case class RowCodec(columnSpecs: List[ColumnSpec])(implicit protocolVersion: Pro
 
   override def sizeBound: SizeBound = sizes
 }
+
+/**
+ * Writes encoded rows into a single array, growing it only if the rows turn out to need more room than it was
+ * created with.
+ *
+ * @param sizeHint The number of bytes the rows are expected to take.
+ */
+private[codec] final class RowWriter(sizeHint: Long) {
+  private[this] var bytes = new Array[Byte](math.max(math.min(sizeHint, RowWriter.maxHint), 16L).toInt)
+  private[this] var size = 0
+
+  def int(i: Int): Unit = {
+    ensure(4)
+    bytes(size) = (i >>> 24).toByte
+    bytes(size + 1) = (i >>> 16).toByte
+    bytes(size + 2) = (i >>> 8).toByte
+    bytes(size + 3) = i.toByte
+    size += 4
+  }
+
+  /**
+   * Writes a value as a [value], using the codec unless it is null or [[Unset]].
+   */
+  def value(codec: Codec[Any], data: Any): Attempt[Unit] = data match {
+    case null =>
+      int(-1)
+      RowWriter.written
+    case Unset => unset()
+    case _ => codec.encode(data) match {
+      case Successful(bits) =>
+        val b = bits.bytes
+        int(b.size.toInt)
+        ensure(b.size.toInt)
+        b.copyToArray(bytes, size)
+        size += b.size.toInt
+        RowWriter.written
+      case f: Failure => f
+    }
+  }
+
+  def unset(): Attempt[Unit] = {
+    int(-2)
+    RowWriter.written
+  }
+
+  /**
+   * @return The bits written so far, which share the writer's array, so nothing is to be written after.
+   */
+  def result: BitVector = BitVector.view(bytes, size.toLong * 8)
+
+  private[this] def ensure(length: Int): Unit = {
+    if (bytes.length - size < length) {
+      val grown = new Array[Byte](math.max(bytes.length * 2, size + length))
+      System.arraycopy(bytes, 0, grown, 0, size)
+      bytes = grown
+    }
+  }
+}
+
+private[codec] object RowWriter {
+  val written: Attempt[Unit] = Successful(())
+
+  // don't trust a size hint so large that allocating it up front could be a problem.
+  private val maxHint = 64L * 1024 * 1024
+}
@@ -179,6 +179,26 @@ class FrameHeaderSpec extends FlatSpec with Checkers with Matchers {
     }
   }
 
+  it must "be written the same as it is encoded." in {
+    val headerGen = for {
+      direction <- Gen.oneOf(Request, Response)
+      version <- Gen.oneOf(ProtocolVersionV1, ProtocolVersionV2, ProtocolVersionV3, ProtocolVersionV4)
+      flags <- Gen.choose(0, 15).map(f => HeaderFlags(f / 8 % 2 == 1, f / 4 % 2 == 1, f / 2 % 2 == 1, f % 2 == 1))
+      stream <- if (version.headerLength > 8) Gen.choose(-32768, 32767) else Gen.choose(-128, 127)
+      opcode <- Gen.choose(0, 0x10)
+      length <- Gen.choose(0L, 0xFFFFFFFFL)
+    } yield FrameHeader(ProtocolFlags(direction, version), flags, stream, opcode, length)
+
+    check {
+      forAll(headerGen) { header =>
+        val bytes = new Array[Byte](header.version.version.headerLength.toInt)
+        FrameHeader.write(header, bytes)
+        val expected = FrameHeader.codec.encode(header).require.toByteVector
+        s"$header" |: ByteVector(bytes) == expected
+      }
+    }
+  }
+
   it must "properly choose the Message codec based on opcode." in {
     val codec = Frame.codec
     val frame = codec.decode((ByteVector(4, 0) ++
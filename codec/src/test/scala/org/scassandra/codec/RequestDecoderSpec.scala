@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.codec
+
+import org.scalacheck.Prop.{ BooleanOperators, forAll }
+import org.scalacheck.{ Arbitrary, Gen }
+import org.scalatest.prop.Checkers
+import org.scalatest.{ FlatSpec, Matchers }
+import org.scassandra.codec.messages._
+import scodec.Codec
+import scodec.bits.ByteVector
+
+class RequestDecoderSpec extends FlatSpec with Checkers with Matchers {
+
+  val versionGen: Gen[ProtocolVersion] = Gen.oneOf(ProtocolVersion.versions)
+
+  val textGen: Gen[String] = Gen.oneOf(Gen.alphaNumStr, Gen.const("select * from événements where id = ?"))
+
+  val bytesGen: Gen[ByteVector] = Gen.choose(0, 64).flatMap(Gen.containerOfN[Array, Byte](_, Arbitrary.arbitrary[Byte]))
+    .map(ByteVector(_))
+
+  val valueGen: Gen[Value] = Gen.frequency(1 -> Gen.const(Null), 1 -> Gen.const(Unset), 8 -> bytesGen.map(Bytes))
+
+  val consistencyGen: Gen[Consistency.Consistency] = Gen.oneOf(Consistency.all)
+
+  val valuesGen: Gen[Option[List[QueryValue]]] = for {
+    named <- Arbitrary.arbitrary[Boolean]
+    values <- Gen.listOf(for {
+      name <- Gen.alphaStr
+      value <- valueGen
+    } yield QueryValue(if (named) Some(name) else None, value))
+  } yield if (values.isEmpty) None else Some(values)
+
+  val parametersGen: Gen[QueryParameters] = for {
+    consistency <- consistencyGen
+    values <- valuesGen
+    skipMetadata <- Arbitrary.arbitrary[Boolean]
+    pageSize <- Gen.option(Gen.choose(1, 5000))
+    pagingState <- Gen.option(bytesGen)
+    serialConsistency <- Gen.option(consistencyGen)
+    timestamp <- Gen.option(Arbitrary.arbitrary[Long])
+  } yield QueryParameters(consistency, values, skipMetadata, pageSize, pagingState, serialConsistency, timestamp)
+
+  val queryGen: Gen[Message] = for {
+    text <- textGen
+    parameters <- parametersGen
+  } yield Query(text, parameters)
+
+  val executeGen: Gen[Message] = for {
+    id <- bytesGen
+    parameters <- parametersGen
+  } yield Execute(id, parameters)
+
+  val batchGen: Gen[Message] = for {
+    batchType <- Gen.oneOf(BatchType.values.toList)
+    queries <- Gen.listOf(Gen.oneOf(
+      for { text <- textGen; values <- Gen.listOf(valueGen) } yield SimpleBatchQuery(text, values),
+      for { id <- bytesGen; values <- Gen.listOf(valueGen) } yield PreparedBatchQuery(id, values)))
+    consistency <- consistencyGen
+    serialConsistency <- Gen.option(consistencyGen)
+    timestamp <- Gen.option(Arbitrary.arbitrary[Long])
+  } yield Batch(batchType, queries, consistency, serialConsistency, timestamp)
+
+  def reference(opcode: Int)(implicit protocolVersion: ProtocolVersion): Codec[Message] = opcode match {
+    case Query.opcode => Codec[Query].upcast[Message]
+    case Execute.opcode => Codec[Execute].upcast[Message]
+    case Batch.opcode => Codec[Batch].upcast[Message]
+  }
+
+  def agreesWithReference(messageGen: Gen[Message]) = forAll(versionGen, messageGen) { (version, message) =>
+    implicit val protocolVersion: ProtocolVersion = version
+    val bits = reference(message.opcode).encode(message).require
+    s"$version: $message" |: Message.codec(message.opcode).decode(bits) == reference(message.opcode).decode(bits)
+  }
+
+  def agreesOnTruncated(messageGen: Gen[Message]) = forAll(versionGen, messageGen, Gen.choose(0.0, 1.0)) {
+    (version, message, fraction) =>
+      implicit val protocolVersion: ProtocolVersion = version
+      val bytes = reference(message.opcode).encode(message).require.bytes
+      val truncated = bytes.take((bytes.size * fraction).toLong).bits
+      val decoded = Message.codec(message.opcode).decode(truncated)
+      val expected = reference(message.opcode).decode(truncated)
+      s"$version: $message truncated to ${truncated.size / 8} bytes" |:
+        (decoded.isSuccessful == expected.isSuccessful && (decoded.isFailure || decoded == expected))
+  }
+
+  def agreesOnArbitraryBytes(opcode: Int) = forAll(versionGen, Gen.choose(0, 128).flatMap(Gen.containerOfN[Array, Byte](_, Arbitrary.arbitrary[Byte]))) {
+    (version, bytes) =>
+      implicit val protocolVersion: ProtocolVersion = version
+      val bits = ByteVector(bytes).bits
+      val decoded = Message.codec(opcode).decode(bits)
+      val expected = reference(opcode).decode(bits)
+      s"$version: $bits" |: (decoded.isSuccessful == expected.isSuccessful && (decoded.isFailure || decoded == expected))
+  }
+
+  "Query decoder" must "decode what the reference codec encodes" in {
+    check(agreesWithReference(queryGen))
+  }
+
+  it must "agree with the reference codec on truncated messages" in {
+    check(agreesOnTruncated(queryGen))
+  }
+
+  it must "agree with the reference codec on arbitrary bytes" in {
+    check(agreesOnArbitraryBytes(Query.opcode))
+  }
+
+  "Execute decoder" must "decode what the reference codec encodes" in {
+    check(agreesWithReference(executeGen))
+  }
+
+  it must "agree with the reference codec on truncated messages" in {
+    check(agreesOnTruncated(executeGen))
+  }
+
+  it must "agree with the reference codec on arbitrary bytes" in {
+    check(agreesOnArbitraryBytes(Execute.opcode))
+  }
+
+  "Batch decoder" must "decode what the reference codec encodes" in {
+    check(agreesWithReference(batchGen))
+  }
+
+  it must "agree with the reference codec on truncated messages" in {
+    check(agreesOnTruncated(batchGen))
+  }
+
+  it must "agree with the reference codec on arbitrary bytes" in {
+    check(agreesOnArbitraryBytes(Batch.opcode))
+  }
+
+  "Request decoders" must "leave the bytes following the message" in {
+    implicit val protocolVersion: ProtocolVersion = ProtocolVersionV4
+    val query = Query("select * from people", QueryParameters(pageSize = Some(100)))
+    val bits = Codec[Query].encode(query).require ++ ByteVector(1, 2, 3).bits
+
+    val decoded = Message.codec(Query.opcode).decode(bits).require
+    decoded.value shouldEqual query
+    decoded.remainder shouldEqual ByteVector(1, 2, 3).bits
+  }
+
+  it must "reject a value longer than the message without allocating for it" in {
+    implicit val protocolVersion: ProtocolVersion = ProtocolVersionV4
+    // id 0x0102, consistency ONE, values flag, one value claiming 0x7FFFFFF0 bytes but followed by only 3.
+    val bits = ByteVector(0, 2, 1, 2, 0, 1, 1, 0, 1, 0x7F, 0xFF, 0xFF, 0xF0, 1, 2, 3).bits
+
+    Message.codec(Execute.opcode).decode(bits).isFailure shouldEqual true
+    Codec[Execute].decode(bits).isFailure shouldEqual true
+  }
+
+  it must "use the reference codec to encode" in {
+    implicit val protocolVersion: ProtocolVersion = ProtocolVersionV4
+    val execute = Execute(ByteVector(1, 2), QueryParameters(values = Some(List(QueryValue(None, Bytes(ByteVector(5)))))))
+
+    Message.codec(Execute.opcode).encode(execute) shouldEqual Codec[Execute].encode(execute)
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.codec.compression
+
+import java.nio.charset.StandardCharsets.UTF_8
+
+import org.scalacheck.Prop.{ BooleanOperators, forAll }
+import org.scalacheck.{ Arbitrary, Gen }
+import org.scalatest.prop.Checkers
+import org.scalatest.{ FlatSpec, Matchers }
+
+class CompressionSpec extends FlatSpec with Checkers with Matchers {
+
+  // Mostly runs of a few repeated bytes, so that there's something to compress.
+  implicit val compressible: Arbitrary[Array[Byte]] = Arbitrary(Gen.listOf(
+    Gen.oneOf(Gen.listOf(Gen.choose(Byte.MinValue, Byte.MaxValue)), Gen.choose(1, 300).map(n => List.fill(n)(n.toByte))))
+    .map(_.flatten.toArray))
+
+  val rows: Array[Byte] = (1 to 200).map(i => s"""{"id": $i, "name": "name $i", "country": "uk"}""").mkString.getBytes(UTF_8)
+
+  "Compression" must "be named by the COMPRESSION startup option" in {
+    Compression.named("lz4") shouldEqual Some(Lz4)
+    Compression.named("SNAPPY") shouldEqual Some(Snappy)
+    Compression.named("deflate") shouldEqual None
+  }
+
+  Compression.supported.foreach { compression =>
+    it must s"compress and decompress bodies with ${compression.name}" in {
+      check {
+        forAll { (body: Array[Byte]) =>
+          val decompressed = compression.decompress(compression.compress(body)).get
+          s"${body.toList} != ${decompressed.toList}" |: decompressed.sameElements(body)
+        }
+      }
+    }
+
+    it must s"shrink repetitive bodies with ${compression.name}" in {
+      compression.compress(rows).length should be < rows.length / 2
+    }
+
+    it must s"fail to decompress malformed bodies with ${compression.name}" in {
+      compression.decompress(Array[Byte](0, 0, 1, 0, 0x7F)).isFailure shouldEqual true
+    }
+  }
+
+  "Lz4" must "prefix bodies with their decompressed length" in {
+    Lz4.compress(rows).take(4) shouldEqual Array[Byte](0, 0, (rows.length >> 8).toByte, rows.length.toByte)
+  }
+
+  it must "decompress a block with overlapping matches" in {
+    // 'ab' as literals then a match of 10 bytes at offset 2, followed by 'cdefg' as the last literals.
+    val body = Array[Byte](0, 0, 0, 17, 0x26, 'a', 'b', 2, 0, 0x50, 'c', 'd', 'e', 'f', 'g')
+
+    new String(Lz4.decompress(body).get, UTF_8) shouldEqual "ababababababcdefg"
+  }
+
+  it must "reject decompressed lengths more than the body could decompress to" in {
+    val body = Array[Byte](0x7F, -1, -1, -1, 0x10, 'a')
+
+    Lz4.decompress(body).failed.get shouldBe an[IllegalArgumentException]
+  }
+
+  it must "reject literals running past the end of the block" in {
+    val body = Array[Byte](0, 0, 3, -24, 0xF0.toByte, -1, -1, 10, 'a')
+
+    Lz4.decompress(body).isFailure shouldEqual true
+  }
+
+  it must "reject blocks decompressing to less than their decompressed length" in {
+    val body = Array[Byte](0, 0, 0, 5, 0x30, 'a', 'b', 'c')
+
+    Lz4.decompress(body).isFailure shouldEqual true
+  }
+
+  "Snappy" must "reject decompressed lengths more than the body could decompress to" in {
+    // A varint of Int.MaxValue followed by a single literal.
+    val body = Array[Byte](-1, -1, -1, -1, 0x07, 0, 'a')
+
+    Snappy.decompress(body).failed.get shouldBe an[IllegalArgumentException]
+  }
+}
@@ -16,6 +16,7 @@
 package org.scassandra.codec.messages
 
 import org.scassandra.codec._
+import org.scassandra.codec.datatype.{ CqlInt, Text }
 import scodec.Codec
 import scodec.bits.ByteVector
 
@@ -37,6 +38,39 @@ class ResultSpec extends CodecSpec {
           encodeAndDecode(codec, result)
         }
       }
+
+      val metadata = RowMetadata(keyspace = Some("keyspace"), table = Some("table"), columnSpec = Some(List(
+        ColumnSpec.column("name", Text),
+        ColumnSpec.column("age", CqlInt),
+        ColumnSpec.column("address", Text))))
+
+      val rows = Rows(metadata, List(
+        Row("name" -> "Chris", "age" -> 28, "address" -> "London"),
+        Row("name" -> "Alexandra", "age" -> 24, "address" -> null),
+        Row("name" -> "Dogan", "age" -> 35)))
+
+      val columnar = ColumnarRows(metadata, 3, Map(
+        "name" -> Vector("Chris", "Alexandra", "Dogan"),
+        "age" -> Vector(28, 24, 35),
+        "address" -> Vector("London", null, Unset)))
+
+      "encode and decode rows with many columns" in {
+        encodeAndDecode(codec, rows)
+      }
+
+      "encode columnar rows as rows" in {
+        codec.encode(columnar).require shouldEqual codec.encode(rows).require
+        codec.decodeValue(codec.encode(columnar).require).require shouldEqual rows
+      }
+
+      "convert between rows and columnar rows" in {
+        ColumnarRows.fromRows(rows) shouldEqual columnar
+        columnar.toRows shouldEqual rows
+      }
+
+      "fail to encode columnar rows with a value of the wrong type" in {
+        codec.encode(columnar.copy(columns = columnar.columns.updated("age", Vector(28, "twenty four", 35)))).isFailure shouldEqual true
+      }
     }
   }
 
@@ -14,6 +14,8 @@ object Dependencies {
   val logbackVersion = "1.1.1"
   val mockitoVersion = "1.9.5"
   val scodecVersion = "1.10.3"
+  val snappyVersion = "0.4"
+  val lz4Version = "1.4.1"
   val slf4jVersion = "1.7.10"
   val catsVersion = "1.0.0-MF"
 
@@ -30,6 +32,8 @@ object Dependencies {
   val akkaSlf4j = "com.typesafe.akka" %% "akka-slf4j" % akkaVersion
   val typesafeLogging = "com.typesafe.scala-logging" %% "scala-logging" % "3.7.2"
   val scodec = "org.scodec" %% "scodec-core" % scodecVersion
+  val snappy = "org.iq80.snappy" % "snappy" % snappyVersion
+  val lz4 = "org.lz4" % "lz4-java" % lz4Version
 
   val guava = "com.google.guava" % "guava" % guavaVersion
   val antlrRuntime = "org.antlr" % "antlr4-runtime" % antlrVersion
@@ -61,7 +65,7 @@ object Dependencies {
   val serverDeps = Seq(cats, antlrRuntime, logback, akkaHttpCors, akkaHttp, akkaHttpSpray, akkaActor, akkaRemote, akkaSlf4j, akkaTyped, typesafeLogging, guava)
   val serverTestDeps = Seq(akkaTestkit, akkaHttpTestkit, akkaTypedTestKit, scalaTest, mockito, cassandraDriver, pegdown).map(_ % "test")
 
-  val codecDeps = Seq(scodec, guava)
+  val codecDeps = Seq(scodec, guava, snappy, lz4)
   val codecTestDeps = Seq(scalaTest, scalaCheck).map(_ % "test")
 
   val cqlDeps = Seq(antlr, antlrRuntime, slf4jApi, commonsCodec, guava)
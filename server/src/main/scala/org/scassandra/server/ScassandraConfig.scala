@@ -17,13 +17,39 @@ package org.scassandra.server
 
 import java.util.concurrent.TimeUnit
 
-import com.typesafe.config.ConfigFactory
+import com.typesafe.config.{ ConfigException, ConfigFactory }
+import org.scassandra.server.actors._
+import org.scassandra.server.cluster.{ ClusterSpec, DistinctPorts, LoopbackAliases }
+
+import scala.concurrent.duration._
 
 object ScassandraConfig {
   private val config = ConfigFactory.load()
 
+  // Fails startup on a misspelt option rather than quietly falling back to a default.
+  private def badValue(path: String, value: String, expected: String*): Nothing =
+    throw new ConfigException.BadValue(path, s"'$value' is not one of ${expected.mkString(", ")}")
+
   val binaryPort = config.getInt("scassandra.binary.port")
   val binaryListenAddress = config.getString("scassandra.binary.listen-address")
+  val writeMode: WriteMode = config.getString("scassandra.binary.write-mode") match {
+    case "immediate" => ImmediateWrites
+    case "coalesce" => CoalescedWrites(
+      config.getDuration("scassandra.binary.coalesce.window-ms", TimeUnit.MILLISECONDS).millis,
+      config.getInt("scassandra.binary.coalesce.max-buffered-bytes"))
+    case other => badValue("scassandra.binary.write-mode", other, "immediate", "coalesce")
+  }
+
+  val cluster: Option[ClusterSpec] = ClusterSpec.parse(
+    config.getString("scassandra.cluster.nodes"),
+    config.getString("scassandra.cluster.endpoints") match {
+      case "addresses" => LoopbackAliases
+      case "ports" => DistinctPorts
+      case other => badValue("scassandra.cluster.endpoints", other, "addresses", "ports")
+    },
+    config.getString("scassandra.cluster.name"),
+    config.getString("scassandra.cluster.release-version"))
+
   val adminPort = config.getInt("scassandra.admin.port")
   val adminListenAddress = config.getString("scassandra.admin.listen-address")
 
@@ -32,5 +58,27 @@ object ScassandraConfig {
   val corsAllowCredentials = config.getBoolean("scassandra.cors.allow-credentials")
   val corsAllowHeaders = config.getString("scassandra.cors.allow-headers")
 
+  val activityRetention: ActivityRetention = config.getInt("scassandra.activity.capacity") match {
+    case capacity if capacity <= 0 => KeepAll
+    case capacity => config.getString("scassandra.activity.retention") match {
+      case "sample" => KeepSample(capacity)
+      case "drop-oldest" => KeepLatest(capacity)
+      case other => badValue("scassandra.activity.retention", other, "drop-oldest", "sample")
+    }
+  }
+
+  val activityRecording: RecordingLevel = config.getString("scassandra.activity.recording") match {
+    case "off" => RecordNothing
+    case "metadata" => RecordMetadata
+    case "sampled" => RecordSample(config.getInt("scassandra.activity.sample"))
+    case "full" => RecordEverything
+    case other => badValue("scassandra.activity.recording", other, "off", "metadata", "sampled", "full")
+  }
+
+  val metricsEnabled = config.getBoolean("scassandra.metrics.enabled")
+
+  val preparedStatementsFile: Option[String] =
+    Some(config.getString("scassandra.prepared-statements.snapshot-file")).filter(_.nonEmpty)
+
   val startupTimeout = config.getDuration("scassandra.startup-timeout-ms", TimeUnit.SECONDS)
 }
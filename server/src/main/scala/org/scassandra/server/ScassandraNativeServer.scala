@@ -15,21 +15,28 @@
  */
 package org.scassandra.server
 
+import java.nio.charset.StandardCharsets.UTF_8
+import java.nio.file.{ Files, Paths }
+
 import akka.actor.{ Actor, ActorRef, ActorSystem, PoisonPill, Props }
 import akka.http.scaladsl.Http
 import akka.pattern.{ ask, pipe }
 import akka.stream.ActorMaterializer
 import akka.util.Timeout
 import com.typesafe.scalalogging.LazyLogging
-import org.scassandra.server.actors.priming.{ PreparedPrimesActor, PrimeBatchStoreActor, PrimePreparedStoreActor, PrimeQueryStoreActor }
-import org.scassandra.server.actors.{ ActivityLogActor, TcpServer }
-import org.scassandra.server.priming.AllRoutes
+import org.scassandra.server.actors.priming.{ PrimeBatchStoreActor, PrimePreparedStoreActor, PrimeQueryStoreActor }
+import org.scassandra.server.actors._
+import org.scassandra.server.cluster.{ ClusterSpec, ClusterTopology, DistinctPorts, SystemTables }
+import org.scassandra.server.metrics.RequestMetrics
+import org.scassandra.server.priming.json.PrimingJsonImplicits._
+import org.scassandra.server.priming.{ AllRoutes, PrimeRegistry }
 import org.scassandra.server.priming.prepared._
+import spray.json._
 
 import scala.concurrent.duration._
 import scala.concurrent.{ ExecutionContext, Future }
 import scala.language.postfixOps
-import scala.util.{ Failure, Success }
+import scala.util.{ Failure, Success, Try }
 import scala.reflect.runtime.universe._
 
 /**
@@ -57,7 +64,11 @@ class ScassandraServer(
   val binaryListenAddress: String,
   val binaryPortNumber: Int,
   val adminListenAddress: String,
-  val adminPortNumber: Int) extends Actor with LazyLogging with AllRoutes {
+  val adminPortNumber: Int,
+  val cluster: Option[ClusterSpec]) extends Actor with LazyLogging with AllRoutes {
+
+  def this(binaryListenAddress: String, binaryPortNumber: Int, adminListenAddress: String, adminPortNumber: Int) =
+    this(binaryListenAddress, binaryPortNumber, adminListenAddress, adminPortNumber, ScassandraConfig.cluster)
 
   private val legacyPreparedStore = new PrimePreparedStore
   private val legacyPatternStore = new PrimePreparedPatternStore
@@ -67,18 +78,49 @@ class ScassandraServer(
   val primePreparedStore = context.actorOf(Props(classOf[PrimePreparedStoreActor[PrimePreparedSingle]], legacyPreparedStore, typeTag[PrimePreparedSingle]))
   val primePreparedPatternStore =
     context.actorOf(Props(classOf[PrimePreparedStoreActor[PrimePreparedSingle]], legacyPatternStore, typeTag[PrimePreparedSingle]))
-  private val preparedLookup: ActorRef =
-    context.actorOf(Props(classOf[PreparedPrimesActor], List(primePreparedStore, primePreparedPatternStore, primePreparedMultiStore)))
 
-  val primeBatchStore: ActorRef = context.actorOf(Props[PrimeBatchStoreActor])
-  val activityLog: ActorRef = context.actorOf(Props[ActivityLogActor])
-  val primeQueryStore: ActorRef = context.actorOf(Props[PrimeQueryStoreActor])
+  // Primes are recorded through the store actors and read directly by the handlers.
+  val primes = new PrimeRegistry(List(legacyPreparedStore, legacyPatternStore, legacyMultiPSStore))
+
+  val primeBatchStore: ActorRef = context.actorOf(Props(classOf[PrimeBatchStoreActor], primes))
+  val activityLog: ActorRef = context.actorOf(Props(classOf[ActivityLogActor], ScassandraConfig.activityRetention))
+  val activityRecording: ActivityRecording = new ActivityRecording(ScassandraConfig.activityRecording)
+  val requestMetrics: RequestMetrics = new RequestMetrics(ScassandraConfig.metricsEnabled)
+  val throttling: Throttling = Throttling.unlimited
+  // Shared by every node of a simulated cluster, so that the ids they give statements never clash.
+  val preparedStatements: PreparedStatements = new PreparedStatements
+  ScassandraConfig.preparedStatementsFile.foreach(restorePreparedStatements)
+  val primeQueryStore: ActorRef = context.actorOf(Props(classOf[PrimeQueryStoreActor], primes))
 
   val primingReadyListener: ActorRef = context.actorOf(Props(classOf[ServerReadyListener]), "PrimingReadyListener")
-  val tcpReadyListener: ActorRef = context.actorOf(Props(classOf[ServerReadyListener]), "TcpReadyListener")
-  val tcpServer: ActorRef =
-    context.actorOf(Props(classOf[TcpServer], binaryListenAddress, binaryPortNumber, primeQueryStore,
-      preparedLookup, primeBatchStore, tcpReadyListener, activityLog), "BinaryTcpListener")
+  // One endpoint for each node of a simulated cluster, otherwise just the one.
+  val topology: Option[ClusterTopology] = cluster.map(_.topology(binaryListenAddress, binaryPortNumber))
+  cluster.filter(c => c.endpoints == DistinctPorts && c.datacenters.sum > 1).foreach { _ =>
+    logger.warn("Every node of the simulated cluster has the same address, so drivers that don't read " +
+      "system.peers_v2 will only see one of them.  Use scassandra.cluster.endpoints = addresses to tell them apart.")
+  }
+  private val endpoints: List[(ActorRef, ActorRef)] = topology match {
+    case Some(t) =>
+      t.nodes.zipWithIndex.map {
+        case (node, i) =>
+          bindNative(node.address.getAddress.getHostAddress, node.address.getPort, Some(new SystemTables(t, node)),
+            s"-${i + 1}")
+      }
+    case None => List(bindNative(binaryListenAddress, binaryPortNumber, None, ""))
+  }
+  val tcpReadyListeners: List[ActorRef] = endpoints.map(_._1)
+  val tcpServer: ActorRef = endpoints.map(_._2) match {
+    case List(single) => single
+    case servers => context.actorOf(Props(classOf[TcpServerGroup], servers), "BinaryTcpListeners")
+  }
+
+  private def bindNative(address: String, port: Int, systemTables: Option[SystemTables], suffix: String) = {
+    val readyListener = context.actorOf(Props(classOf[ServerReadyListener]), s"TcpReadyListener$suffix")
+    val server = context.actorOf(Props(classOf[TcpServer], address, port, primes, preparedStatements, readyListener, activityLog,
+      None, ScassandraConfig.writeMode, activityRecording, requestMetrics, systemTables, throttling),
+      s"BinaryTcpListener$suffix")
+    (readyListener, server)
+  }
 
   implicit val ec: ExecutionContext = context.dispatcher
   val actorTimeout: Timeout = Timeout(2 seconds)
@@ -93,12 +135,32 @@ class ScassandraServer(
     case Failure(e) => logger.error("Failed to bind for priming http post: ", e)
   }
 
+  override def postStop(): Unit = ScassandraConfig.preparedStatementsFile.foreach(savePreparedStatements)
+
+  /**
+   * Restores statements prepared before a restart, so that clients can execute them without preparing them again.
+   */
+  private def restorePreparedStatements(file: String): Unit = if (Files.exists(Paths.get(file))) {
+    Try(new String(Files.readAllBytes(Paths.get(file)), UTF_8).parseJson.convertTo[List[SavedStatement]]) match {
+      case Success(saved) =>
+        preparedStatements.restore(saved)
+        logger.info(s"Restored ${saved.size} prepared statements from $file")
+      case Failure(e) => logger.warn(s"Unable to restore prepared statements from $file", e)
+    }
+  }
+
+  private def savePreparedStatements(file: String): Unit =
+    Try(Files.write(Paths.get(file), preparedStatements.snapshot().toJson.prettyPrint.getBytes(UTF_8))) match {
+      case Success(_) => logger.info(s"Saved ${preparedStatements.size} prepared statements to $file")
+      case Failure(e) => logger.warn(s"Unable to save prepared statements to $file", e)
+    }
+
   override def receive: Receive = {
     case AwaitStartup(startupTimeout) =>
       implicit val t: Timeout = startupTimeout
-      // Create a future that completes when both listeners ready.
+      // Create a future that completes when all listeners are ready.
       val f: Future[List[Any]] = Future.sequence(
-        List(ask(tcpReadyListener, OnServerReady)(t), bindingFuture))
+        bindingFuture :: tcpReadyListeners.map(ask(_, OnServerReady)(t)))
       f pipeTo sender
     case ShutdownServer(shutdownTimeout) =>
       implicit val t: Timeout = shutdownTimeout
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.actors
+
+import java.util.concurrent.ThreadLocalRandom
+
+import scala.reflect.ClassTag
+
+/**
+ * How much of each kind of activity the [[ActivityLogActor]] keeps.
+ */
+sealed trait ActivityRetention
+
+/**
+ * All activity is kept until it is cleared.
+ */
+case object KeepAll extends ActivityRetention
+
+/**
+ * Only the most recent activity is kept, the oldest is dropped to make room for new activity.
+ *
+ * @param capacity The number of records kept for each kind of activity.
+ */
+case class KeepLatest(capacity: Int) extends ActivityRetention
+
+/**
+ * A uniformly random sample of all activity recorded since it was cleared is kept.
+ *
+ * @param capacity The number of records kept for each kind of activity.
+ */
+case class KeepSample(capacity: Int) extends ActivityRetention
+
+/**
+ * Records of one kind of activity, kept according to an [[ActivityRetention]].  Not thread safe, it is only meant
+ * to be used from within the [[ActivityLogActor]].
+ *
+ * @tparam T The type of activity.
+ */
+sealed trait ActivityBuffer[T] {
+
+  /**
+   * @param activity The activity to record.
+   */
+  def record(activity: T): Unit
+
+  /**
+   * @return Kept records in the order they were recorded.
+   */
+  def toList: List[T]
+
+  /**
+   * @return The number of records that have been dropped to stay within capacity.
+   */
+  def dropped: Long
+}
+
+object ActivityBuffer {
+  def apply[T: ClassTag](retention: ActivityRetention): ActivityBuffer[T] = retention match {
+    case KeepAll => new Unbounded[T]
+    case KeepLatest(capacity) => new Ring[T](capacity)
+    case KeepSample(capacity) => new Reservoir[T](capacity)
+  }
+
+  private class Unbounded[T] extends ActivityBuffer[T] {
+    private[this] var records: List[T] = List()
+
+    def record(activity: T): Unit = records = activity :: records
+    def toList: List[T] = records.reverse
+    def dropped: Long = 0
+  }
+
+  /**
+   * Overwrites the oldest record once full.
+   */
+  private class Ring[T: ClassTag](capacity: Int) extends ActivityBuffer[T] {
+    private[this] val records = new Array[T](capacity)
+    private[this] var recorded = 0L
+
+    def record(activity: T): Unit = {
+      records((recorded % capacity).toInt) = activity
+      recorded += 1
+    }
+
+    def toList: List[T] = {
+      val kept = math.min(recorded, capacity.toLong).toInt
+      val oldest = ((recorded - kept) % capacity).toInt
+      List.tabulate(kept)(i => records((oldest + i) % capacity))
+    }
+
+    def dropped: Long = math.max(recorded - capacity, 0)
+  }
+
+  /**
+   * Reservoir sampling, once full each new record replaces a random one with a probability of capacity / recorded,
+   * so every record has the same chance of being kept.  Records are kept with the order they were recorded in.
+   */
+  private class Reservoir[T: ClassTag](capacity: Int) extends ActivityBuffer[T] {
+    private[this] val records = new Array[T](capacity)
+    private[this] val order = new Array[Long](capacity)
+    private[this] var recorded = 0L
+
+    def record(activity: T): Unit = {
+      val slot = if (recorded < capacity) recorded else ThreadLocalRandom.current().nextLong(recorded + 1)
+      if (slot < capacity) {
+        records(slot.toInt) = activity
+        order(slot.toInt) = recorded
+      }
+      recorded += 1
+    }
+
+    def toList: List[T] = {
+      val kept = math.min(recorded, capacity.toLong).toInt
+      (0 until kept).sortBy(order(_)).map(records(_)).toList
+    }
+
+    def dropped: Long = math.max(recorded - capacity, 0)
+  }
+}
@@ -23,42 +23,51 @@ import org.scassandra.codec.messages.BatchType.BatchType
 import org.scassandra.server.actors.Activity._
 import org.scassandra.server.actors.ActivityLogActor._
 
-class ActivityLogActor extends Actor {
+/**
+ * Records client activity for verification.
+ *
+ * @param retention How much of each kind of activity to keep.
+ */
+class ActivityLogActor(retention: ActivityRetention) extends Actor {
+
+  def this() = this(KeepAll)
 
   import context._
 
-  def receive: Receive = activity(ActivityLog())
+  def receive: Receive = activity(ActivityLog(retention))
 
   def activity(ac: ActivityLog): Receive = {
-    case GetAllQueries => sender ! Queries(ac.queries.reverse)
-    case GetAllConnections => sender ! Connections(ac.connections.reverse)
-    case GetAllBatches => sender ! Batches(ac.batches.reverse)
-    case GetAllExecutions => sender ! Executions(ac.executions.reverse)
-    case GetAllPrepares => sender ! Prepares(ac.prepares.reverse)
+    case GetAllQueries => sender ! Queries(ac.queries.toList)
+    case GetAllConnections => sender ! Connections(ac.connections.toList)
+    case GetAllBatches => sender ! Batches(ac.batches.toList)
+    case GetAllExecutions => sender ! Executions(ac.executions.toList)
+    case GetAllPrepares => sender ! Prepares(ac.prepares.toList)
+    case GetDroppedActivity => sender ! DroppedActivity(ac.connections.dropped, ac.queries.dropped,
+      ac.prepares.dropped, ac.executions.dropped, ac.batches.dropped)
 
     case RecordConnection() =>
-      become(activity(ac.copy(connections = Connection() :: ac.connections)))
+      ac.connections.record(Connection())
     case RecordQuery(query) =>
-      become(activity(ac.copy(queries = query :: ac.queries)))
+      ac.queries.record(query)
     case RecordPrepare(prepare) =>
-      become(activity(ac.copy(prepares = prepare :: ac.prepares)))
+      ac.prepares.record(prepare)
     case RecordExecution(execution) =>
-      become(activity(ac.copy(executions = execution :: ac.executions)))
+      ac.executions.record(execution)
     case RecordBatch(batch) =>
-      become(activity(ac.copy(batches = batch :: ac.batches)))
+      ac.batches.record(batch)
 
     case ClearConnections =>
-      become(activity(ac.copy(connections = List())))
+      become(activity(ac.copy(connections = ActivityBuffer(retention))))
     case ClearQueries =>
-      become(activity(ac.copy(queries = List())))
+      become(activity(ac.copy(queries = ActivityBuffer(retention))))
     case ClearBatches =>
-      become(activity(ac.copy(batches = List())))
+      become(activity(ac.copy(batches = ActivityBuffer(retention))))
     case ClearPrepares =>
-      become(activity(ac.copy(prepares = List())))
+      become(activity(ac.copy(prepares = ActivityBuffer(retention))))
     case ClearExecutions =>
-      become(activity(ac.copy(executions = List())))
+      become(activity(ac.copy(executions = ActivityBuffer(retention))))
     case ClearAll =>
-      become(activity(ActivityLog()))
+      become(activity(ActivityLog(retention)))
   }
 }
 
@@ -83,12 +92,19 @@ object ActivityLogActor {
   case class RecordExecution(prepare: PreparedStatementExecution)
   case class RecordBatch(batch: BatchExecution)
 
+  case object GetDroppedActivity
+
   private case class ActivityLog(
-    queries: List[Query] = List(),
-    connections: List[Connection] = List(),
-    prepares: List[PreparedStatementPreparation] = List(),
-    executions: List[PreparedStatementExecution] = List(),
-    batches: List[BatchExecution] = List())
+    queries: ActivityBuffer[Query],
+    connections: ActivityBuffer[Connection],
+    prepares: ActivityBuffer[PreparedStatementPreparation],
+    executions: ActivityBuffer[PreparedStatementExecution],
+    batches: ActivityBuffer[BatchExecution])
+
+  private object ActivityLog {
+    def apply(retention: ActivityRetention): ActivityLog = ActivityLog(ActivityBuffer(retention), ActivityBuffer(retention),
+      ActivityBuffer(retention), ActivityBuffer(retention), ActivityBuffer(retention))
+  }
 
   case class Queries(list: List[Query])
   case class Connections(list: List[Connection])
@@ -96,16 +112,21 @@ object ActivityLogActor {
   case class Executions(list: List[PreparedStatementExecution])
   case class Batches(list: List[BatchExecution])
 
+  /**
+   * The number of records of each kind of activity dropped since it was last cleared, to stay within capacity.
+   */
+  case class DroppedActivity(connections: Long, queries: Long, prepares: Long, executions: Long, batches: Long)
+
 }
 
 object Activity {
   case class Query(query: String, consistency: Consistency, serialConsistency: Option[Consistency],
-    variables: List[Any] = List(), variableTypes: List[DataType] = List(), timestamp: Option[Long] = None)
+    variables: Seq[Any] = List(), variableTypes: List[DataType] = List(), timestamp: Option[Long] = None)
   case class Connection(result: String = "success")
   case class PreparedStatementExecution(preparedStatementText: String, consistency: Consistency,
-    serialConsistency: Option[Consistency], variables: List[Any],
+    serialConsistency: Option[Consistency], variables: Seq[Any],
     variableTypes: List[DataType], timestamp: Option[Long])
-  case class BatchQuery(query: String, batchQueryKind: BatchQueryKind, variables: List[Any] = List(), variableTypes: List[DataType] = List())
+  case class BatchQuery(query: String, batchQueryKind: BatchQueryKind, variables: Seq[Any] = List(), variableTypes: List[DataType] = List())
   case class BatchExecution(batchQueries: Seq[BatchQuery], consistency: Consistency,
     serialConsistency: Option[Consistency], batchType: BatchType, timestamp: Option[Long])
   case class PreparedStatementPreparation(preparedStatementText: String)
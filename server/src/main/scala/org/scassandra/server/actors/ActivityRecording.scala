@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.actors
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * How much client activity the handlers send to the [[ActivityLogActor]].
+ */
+sealed trait RecordingLevel
+
+/**
+ * No activity is recorded.
+ */
+case object RecordNothing extends RecordingLevel
+
+/**
+ * Activity is recorded without the values of bound variables, so they don't need to be decoded.
+ */
+case object RecordMetadata extends RecordingLevel
+
+/**
+ * One in every n requests is recorded in full.
+ */
+case class RecordSample(n: Int) extends RecordingLevel {
+  require(n > 0, "Sample must be at least 1")
+}
+
+/**
+ * All activity is recorded, including the values of bound variables.
+ */
+case object RecordEverything extends RecordingLevel
+
+/**
+ * The current [[RecordingLevel]], shared by the handlers of every connection and changed at runtime through the
+ * admin api.  It's checked for every request so reading it is just a volatile read.
+ *
+ * @param initial The level to start with.
+ */
+class ActivityRecording(initial: RecordingLevel) {
+
+  @volatile var level: RecordingLevel = initial
+
+  private[this] val requests = new AtomicLong()
+
+  /**
+   * Decides how much of the next request to record.
+   *
+   * @return [[RecordNothing]], [[RecordMetadata]] or [[RecordEverything]], a sample is resolved to one of these.
+   */
+  def next(): RecordingLevel = level match {
+    case RecordSample(n) => if (requests.getAndIncrement() % n == 0) RecordEverything else RecordNothing
+    case l => l
+  }
+}
+
+object ActivityRecording {
+  /**
+   * @return A new [[ActivityRecording]] that records everything.
+   */
+  def everything: ActivityRecording = new ActivityRecording(RecordEverything)
+}
@@ -16,88 +16,52 @@
 package org.scassandra.server.actors
 
 import akka.actor.ActorRef
-import akka.pattern.{ ask, pipe }
-import akka.util.Timeout
 import org.scassandra.codec._
 import org.scassandra.codec.messages.{ BatchQueryKind, PreparedBatchQuery, SimpleBatchQuery }
 import org.scassandra.server.actors.Activity._
 import org.scassandra.server.actors.ActivityLogActor.RecordBatch
-import org.scassandra.server.actors.BatchHandler.BatchToFinish
-import org.scassandra.server.actors.PrepareHandler.{ PreparedStatementQuery, PreparedStatementResponse }
 import org.scassandra.server.actors.ProtocolActor._
-import org.scassandra.server.actors.priming.PrimeBatchStoreActor.{ MatchBatch, MatchResult }
 import org.scassandra.server.actors.priming.PrimeQueryStoreActor.Reply
-
-import scala.concurrent.duration._
-import scala.language.postfixOps
-import scala.util.{ Failure, Success }
+import org.scassandra.server.priming.BatchPrimeLookup
 
 class BatchHandler(
   activityLog: ActorRef,
-  prepareHandler: ActorRef,
-  batchPrimeStore: ActorRef) extends ProtocolActor {
-
-  import context.dispatcher
-  private implicit val timeout: Timeout = 1 second
+  preparedStatements: PreparedStatements,
+  primes: BatchPrimeLookup,
+  activityRecording: ActivityRecording = ActivityRecording.everything) extends ProtocolActor {
 
   def receive: Receive = {
     case ProtocolMessage(Frame(header, batch: Batch)) =>
-      val preparedIds = batch.queries.collect {
-        case PreparedBatchQuery(id, _) => id.toInt()
-      }
-      log.debug("Prepared statement ids {}", preparedIds)
-
-      if (preparedIds.isEmpty) {
-        // No prepared statements, process batch as is.
-        val simpleQueries = batch.queries.collect {
-          // TODO: The values aren't actually read, but we don't know the type anyways so not much we can do there.
-          case SimpleBatchQuery(query, _) => BatchQuery(query, BatchQueryKind.Simple)
-        }
-        processBatch(header, batch, simpleQueries, sender)
-      } else {
-        // We have prepared statements in the batch, fetch their associated metadata and send another message
-        // to self.
-        val connection = sender()
-        val toFinish = (prepareHandler ? PreparedStatementQuery(preparedIds)).mapTo[PreparedStatementResponse]
-          .map(result => BatchToFinish(header, batch, result, connection))
-        log.error("Piping batch to finish to self")
-        toFinish pipeTo self
-      }
-
-    case BatchToFinish(header, batch, preparedResponse, connection) =>
-      log.error("Received batch to finish")
+      implicit val protocolVersion: ProtocolVersion = header.version.version
+      val recordingLevel = activityRecording.next()
       val batchQueries = batch.queries.map {
+        // TODO: The values aren't actually read, but we don't know the type anyways so not much we can do there.
         case SimpleBatchQuery(query, _) => BatchQuery(query, BatchQueryKind.Simple)
-        case PreparedBatchQuery(i, byteValues) =>
-          val id = i.toInt()
-          implicit val protocolVersion: ProtocolVersion = header.version.version
-          preparedResponse.prepared.get(id) match {
+        case PreparedBatchQuery(id, byteValues) =>
+          preparedStatements(id) match {
             case Some((queryText, prepared)) =>
-              // Decode query parameters using the prepared statement metadata.
-              val dataTypes = prepared.preparedMetadata.columnSpec.map(_.dataType)
-              val values = extractQueryVariables(queryText, Some(byteValues), dataTypes).getOrElse(Nil)
-              BatchQuery(queryText, BatchQueryKind.Prepared, values, dataTypes)
+              // Query parameters are decoded using the prepared statement metadata when read, and only kept if they are to be recorded.
+              if (recordingLevel == RecordEverything) {
+                val dataTypes = prepared.preparedMetadata.columnSpec.map(_.dataType)
+                val values = extractQueryVariables(queryText, Some(byteValues), dataTypes).getOrElse(Nil)
+                BatchQuery(queryText, BatchQueryKind.Prepared, values, dataTypes)
+              } else {
+                BatchQuery(queryText, BatchQueryKind.Prepared)
+              }
             case None => BatchQuery(
               "A prepared statement was in the batch but couldn't be found - did you prepare against a different  session?",
               BatchQueryKind.Prepared)
           }
       }
-      processBatch(header, batch, batchQueries, connection)
+      processBatch(header, batch, batchQueries, recordingLevel, sender())
   }
 
-  def processBatch(header: FrameHeader, batch: Batch, batchQueries: Seq[BatchQuery], recipient: ActorRef): Unit = {
+  def processBatch(header: FrameHeader, batch: Batch, batchQueries: Seq[BatchQuery], recordingLevel: RecordingLevel,
+    recipient: ActorRef): Unit = {
     val execution = BatchExecution(batchQueries, batch.consistency, batch.serialConsistency, batch.batchType, batch.timestamp)
-    activityLog ! RecordBatch(execution)
-    log.error("Getting prime for batch")
-    (batchPrimeStore ? MatchBatch(execution)).mapTo[MatchResult].onComplete {
-      case Failure(e) =>
-        log.error("Failed to get response from batch prime store", e)
-      case Success(MatchResult(prime)) =>
-        writePrime(batch, prime, header, recipient, alternative = Some(Reply(VoidResult)), consistency = Some(batch.consistency))(context.system)
+    if (recordingLevel != RecordNothing) {
+      activityLog ! RecordBatch(execution)
     }
+    writePrime(batch, primes(execution), header, recipient, alternative = Some(Reply(VoidResult)), consistency = Some(batch.consistency))(context.system)
   }
 }
-
-object BatchHandler {
-  private case class BatchToFinish(header: FrameHeader, batch: Batch, prepared: PreparedStatementResponse, connection: ActorRef)
-}
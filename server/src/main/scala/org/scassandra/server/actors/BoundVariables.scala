@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.actors
+
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+import com.typesafe.scalalogging.LazyLogging
+import org.scassandra.codec.datatype.DataType
+import org.scassandra.codec.{ Bytes, ProtocolVersion, Value }
+
+/**
+ * The values of a request's bound variables, each decoded using its data type only when it is first read.
+ *
+ * Requests are recorded as activity with their variables before anything reads them (and most never are, e.g.
+ * when writing in bulk), so keeping the raw bytes spares decoding large blobs and collections that nobody looks at.
+ * Decoded values are kept so each is decoded at most once, possibly from another thread than the one recording it.
+ * The raw values are kept as they are, as decoding a request already copies each value out of the buffer the
+ * request was read into.  A value that can't be decoded reads as
+ * its raw bytes, as a blob would.
+ *
+ * @param values The raw values of the variables.
+ * @param variableTypes The data types to decode each value with.
+ */
+class BoundVariables(values: IndexedSeq[Value], variableTypes: IndexedSeq[DataType])(implicit protocolVersion: ProtocolVersion)
+  extends scala.collection.immutable.IndexedSeq[Any] with LazyLogging {
+  require(values.length == variableTypes.length, s"${values.length} values for ${variableTypes.length} variable types")
+
+  private[this] val decoded = new AtomicReferenceArray[AnyRef](values.length)
+
+  override def length: Int = values.length
+
+  override def apply(index: Int): Any = values(index) match {
+    case Bytes(bytes) =>
+      val value = decoded.get(index)
+      if (value != null) {
+        value
+      } else {
+        val dataType = variableTypes(index)
+        val value = dataType.codec.decodeValue(bytes.toBitVector).fold({ err =>
+          logger.warn(s"Unable to decode variable $index as ${dataType.stringRep}: ${err.message}")
+          bytes
+        }, identity).asInstanceOf[AnyRef]
+        decoded.lazySet(index, value)
+        value
+      }
+    case _ => null // TODO: Handle Null and Unset case.
+  }
+
+  override def stringPrefix: String = "BoundVariables"
+}
@@ -17,14 +17,18 @@ package org.scassandra.server.actors
 
 import akka.actor.{ Actor, ActorLogging, ActorRef, ActorRefFactory, ActorSystem, Props }
 import akka.io.Tcp
-import akka.io.Tcp.{ ConnectionClosed, Received, ResumeReading, Write }
+import akka.io.Tcp.{ CommandFailed, ConnectionClosed, Received, ResumeReading, ResumeWriting, Write, WritingResumed }
 import akka.pattern.{ ask, pipe }
-import akka.util.ByteString.ByteString1C
+import akka.util.ByteString.{ ByteString1C, ByteStrings }
 import akka.util.{ ByteString, Timeout }
 import org.scassandra.codec._
+import org.scassandra.codec.compression.Compression
+import org.scassandra.server.metrics.{ RequestMetrics, Stage }
 import scodec.bits.ByteVector
 
 import scala.annotation.tailrec
+import scala.collection.mutable
+import scala.collection.mutable.ArrayBuffer
 import scala.concurrent.duration._
 import scala.language.postfixOps
 import scala.util.{ Failure, Success, Try }
@@ -36,7 +40,10 @@ class ConnectionHandler(
   registerHandlerFactory: (ActorRefFactory) => ActorRef,
   optionsHandlerFactory: (ActorRefFactory) => ActorRef,
   prepareHandler: ActorRef,
-  executeHandler: ActorRef) extends Actor with ActorLogging {
+  executeHandlerFactory: (ActorRefFactory) => ActorRef,
+  writeMode: WriteMode = ImmediateWrites,
+  metrics: RequestMetrics = RequestMetrics.disabled,
+  serverThrottle: ServerThrottle = ServerThrottle.unlimited) extends Actor with ActorLogging {
 
   import AkkaScodecInterop._
 
@@ -48,6 +55,36 @@ class ConnectionHandler(
   // Used to prevent repeated attempts at sending same error message.
   var errorMessage: Option[Message] = None
 
+  // How frame bodies are compressed, as chosen by the client on startup.
+  private[this] var compression: Option[Compression] = None
+
+  // When coalescing writes, responses waiting to be written.
+  private[this] var pendingWrites: ByteString = ByteString()
+  // When coalescing writes, whether a write has been sent to the connection and not yet acknowledged.
+  private[this] var writeInFlight = false
+  private[this] var flushScheduled = false
+  // When coalescing writes, whether reading has been paused until pending writes have been written.
+  private[this] var readingSuspended = false
+  // When coalescing writes, commands (i.e. close) to send to the connection once pending writes have been written.
+  private[this] var heldCommands: Vector[(Tcp.Command, ActorRef)] = Vector()
+  // Whether the connection failed a write because its buffer was full, after which it fails every write until told to
+  // resume writing.  Failed writes are retried in order once it has, followed by those held while waiting for it.
+  private[this] var writingSuspended = false
+  private[this] var failedWrites: Vector[Write] = Vector()
+  private[this] var heldWrites: Vector[Write] = Vector()
+  // When coalescing writes and timing requests, the opcode of each pending write and when it was ready.
+  private[this] val pendingOpcodes = ArrayBuffer[Int]()
+  private[this] val pendingSince = ArrayBuffer[Long]()
+
+  private[this] val throttle = new ConnectionThrottle(serverThrottle)
+  // Requests waiting to be within the throttle's limits.  Reading is paused while any are.
+  private[this] val throttledRequests = mutable.Queue[Frame]()
+  private[this] var throttledRetryScheduled = false
+  // Streams of requests admitted while throttling, to be released once they're responded to.
+  private[this] val admittedStreams = mutable.Set[Int]()
+  // Responses delayed to stay within the throttle's bandwidth.
+  private[this] val delayedWrites = mutable.Queue[(ByteString, Int)]()
+
   // Extracted to handle full messages
   val cqlMessageHandler: ActorRef = context.actorOf(Props(
     classOf[NativeProtocolMessageHandler],
@@ -56,16 +93,18 @@ class ConnectionHandler(
     registerHandlerFactory,
     optionsHandlerFactory,
     prepareHandler,
-    executeHandler))
+    executeHandlerFactory))
 
   override def preStart(): Unit = tcpConnection ! ResumeReading
 
+  override def postStop(): Unit = throttle.releaseAll()
+
   override def receive: Receive = buffering(Buffer(ByteString(), Start))
 
   def buffering(buffer: Buffer): Receive = {
     case Received(data) =>
       val newBuffer = handle(buffer.copy(data = buffer.data ++ data))
-      tcpConnection ! ResumeReading
+      resumeReading()
       context become buffering(newBuffer)
 
     case c: ConnectionClosed =>
@@ -73,9 +112,21 @@ class ConnectionHandler(
       context stop self
 
     // Message generated from another actor to be sent back to the tcp connection.
-    case ProtocolResponse(requestHeader, message) =>
-      message.toBytes(requestHeader.stream)(requestHeader.version.version) match {
-        case Success(bytes) => tcpConnection ! Write(bytes.toByteString)
+    case response @ ProtocolResponse(requestHeader, message) =>
+      if (admittedStreams.nonEmpty && admittedStreams.remove(requestHeader.stream)) {
+        throttle.release()
+        if (throttledRequests.nonEmpty) admitThrottled()
+      }
+      val started = metrics.start()
+      val encoded = compression match {
+        // The response to startup is never compressed, as the client can't know whether its choice was accepted.
+        case Some(c) if requestHeader.opcode != Startup.opcode => response.toByteString(c)
+        case _ => response.toByteString
+      }
+      encoded match {
+        case Success(bytes) =>
+          metrics.record(Stage.Encode, requestHeader.opcode, started)
+          write(bytes, requestHeader.opcode)
         case Failure(t) =>
           // In the failure case, send a protocol error back to the client, however
           // if the message we tried to serialize was the error itself, log an error
@@ -93,18 +144,190 @@ class ConnectionHandler(
           }
       }
 
+    case FlushWrites =>
+      flushScheduled = false
+      flush()
+
+    case RetryThrottled =>
+      throttledRetryScheduled = false
+      admitThrottled()
+
+    case DelayedWriteDue =>
+      val (bytes, opcode) = delayedWrites.dequeue()
+      writeNow(bytes, opcode)
+      if (delayedWrites.isEmpty && heldCommands.nonEmpty) flush()
+
+    case WriteAck =>
+      writeInFlight = false
+      flush()
+
+    case CommandFailed(w: Write) =>
+      log.debug(s"Failed to write ${w.data.length} bytes to client, retrying once its buffer has room")
+      failedWrites :+= w
+      if (!writingSuspended) {
+        writingSuspended = true
+        tcpConnection ! ResumeWriting
+      }
+
+    case WritingResumed =>
+      writingSuspended = false
+      (failedWrites ++ heldWrites).foreach(tcpConnection ! _)
+      failedWrites = Vector()
+      heldWrites = Vector()
+      flush()
+
     // Forward any TCP commands to the underlying connection.
     // This allows those with a reference to this actor to perform
     // commands such as Close (immediate close), ConfirmedClose (half close),
     // and Abort (RST) the connection.
     case command: Tcp.Command =>
-      (tcpConnection ? command).pipeTo(sender())
+      if (writeInFlight || writingSuspended || pendingWrites.nonEmpty || delayedWrites.nonEmpty) {
+        // Hold on to the command so that responses sent before it are written first.
+        heldCommands :+= ((command, sender()))
+        flush()
+      } else {
+        (tcpConnection ? command).pipeTo(sender())
+      }
+  }
+
+  /**
+   * Handles a request, unless it's beyond the throttle's limits in which case it waits or is rejected.  Requests
+   * that aren't throttled, i.e. startup and options, are always handled straight away.
+   */
+  private[this] def dispatch(frame: Frame): Unit = {
+    if (!Throttling.ThrottledOpcodes.contains(frame.header.opcode)) {
+      frame.message match {
+        case Startup(options) => startup(frame, options)
+        case _ => cqlMessageHandler ! ProtocolMessage(frame)
+      }
+    } else if (throttledRequests.nonEmpty || !admit(frame)) {
+      throttledRequests.enqueue(frame)
+    }
+  }
+
+  /**
+   * Takes up the compression the client asks for, if any, before handling startup.
+   */
+  private[this] def startup(frame: Frame, options: Map[String, String]): Unit = options.get("COMPRESSION") match {
+    case Some(name) =>
+      Compression.named(name) match {
+        case Some(c) =>
+          log.debug(s"Compressing frames with $name")
+          compression = Some(c)
+          cqlMessageHandler ! ProtocolMessage(frame)
+        case None =>
+          self ! ProtocolResponse(frame.header, ProtocolError(s"Unsupported compression algorithm $name"))
+      }
+    case None =>
+      cqlMessageHandler ! ProtocolMessage(frame)
+  }
+
+  /**
+   * @return Whether the request was handled, either admitted or rejected, rather than having to wait.
+   */
+  private[this] def admit(frame: Frame): Boolean = if (!throttle.active) {
+    cqlMessageHandler ! ProtocolMessage(frame)
+    true
+  } else {
+    throttle.admit() match {
+      case Admitted =>
+        admittedStreams += frame.header.stream
+        cqlMessageHandler ! ProtocolMessage(frame)
+        true
+      case Rejected =>
+        self ! ProtocolResponse(frame.header, Overloaded("Request rejected by throttling"))
+        true
+      case WaitFor(nanos) =>
+        if (!throttledRetryScheduled) {
+          throttledRetryScheduled = true
+          ResponseTimer(system).schedule(nanos nanoseconds, self, RetryThrottled)
+        }
+        false
+    }
+  }
+
+  private[this] def admitThrottled(): Unit = {
+    while (throttledRequests.nonEmpty && admit(throttledRequests.head)) throttledRequests.dequeue()
+    if (throttledRequests.isEmpty && readingSuspended) resumeReading()
+  }
+
+  private[this] def write(bytes: ByteString, opcode: Int): Unit = {
+    val delay = throttle.writeDelay(bytes.length)
+    if (delay > 0 || delayedWrites.nonEmpty) {
+      delayedWrites.enqueue((bytes, opcode))
+      ResponseTimer(system).schedule(delay nanoseconds, self, DelayedWriteDue)
+    } else {
+      writeNow(bytes, opcode)
+    }
+  }
+
+  private[this] def writeNow(bytes: ByteString, opcode: Int): Unit = writeMode match {
+    case ImmediateWrites =>
+      val started = metrics.start()
+      if (writingSuspended) heldWrites :+= Write(bytes) else tcpConnection ! Write(bytes)
+      metrics.record(Stage.Write, opcode, started)
+    case CoalescedWrites(window, _) =>
+      pendingWrites ++= bytes
+      val ready = metrics.start()
+      if (ready != 0) {
+        pendingOpcodes += opcode
+        pendingSince += ready
+      }
+      // Wait for other responses to be ready before writing.  If a write is in flight, pending writes will be
+      // written as soon as it is acknowledged.
+      if (!writeInFlight && !flushScheduled) {
+        flushScheduled = true
+        if (window <= Duration.Zero) {
+          self ! FlushWrites
+        } else {
+          system.scheduler.scheduleOnce(window, self, FlushWrites)
+        }
+      }
+  }
+
+  private[this] def flush(): Unit = if (!writeInFlight && !writingSuspended) {
+    if (pendingWrites.nonEmpty) {
+      tcpConnection ! Write(pendingWrites, WriteAck)
+      pendingWrites = ByteString()
+      pendingOpcodes.indices.foreach(i => metrics.record(Stage.Write, pendingOpcodes(i), pendingSince(i)))
+      pendingOpcodes.clear()
+      pendingSince.clear()
+      writeInFlight = true
+    } else if (delayedWrites.isEmpty) {
+      heldCommands.foreach {
+        case (command, commandSender) => (tcpConnection ? command).pipeTo(commandSender)
+      }
+      heldCommands = Vector()
+    }
+    if (readingSuspended) resumeReading()
+  }
+
+  /**
+   * Asks the connection for more data, unless more responses than allowed are waiting to be written, in which case
+   * reading is resumed once they have been written.  This stops a client that doesn't read its responses from
+   * making us buffer responses without bound.  Likewise reading is paused while requests are held up by throttling
+   * or while the connection's buffer is too full to write to.
+   */
+  private[this] def resumeReading(): Unit = writeMode match {
+    case _ if throttledRequests.nonEmpty || writingSuspended =>
+      readingSuspended = true
+    case CoalescedWrites(_, maxBufferedBytes) if pendingWrites.length > maxBufferedBytes =>
+      readingSuspended = true
+    case _ =>
+      readingSuspended = false
+      tcpConnection ! ResumeReading
   }
 
   @tailrec
-  private[this] def handle(buffer: Buffer): Buffer = advanceState(buffer) match {
-    // Continue if the state changed, otherwise terminate
-    case Success(b) => if (buffer == b) b else handle(b)
+  private[this] def handle(buffer: Buffer): Buffer = (buffer.state match {
+    // At a frame boundary first decode every frame that has been fully received, then let the state machine
+    // take over for what remains.
+    case Start => decodeFrames(buffer.data).flatMap(advanceState)
+    case _ => advanceState(buffer)
+  }) match {
+    // Continue if the state changed, otherwise terminate.  Each step either consumes data or changes state so
+    // there is no need to compare buffered data.
+    case Success(b) => if (b.state == buffer.state && b.data.length == buffer.data.length) b else handle(b)
     case Failure(UnsupportedProtocolException(v)) =>
       // we can't really send the correct stream back as it hasn't been parsed because we don't know how to parse
       // this protocol, so instead we assume stream 0.
@@ -131,6 +354,61 @@ class ConnectionHandler(
     }
   }
 
+  /**
+   * Decodes all complete frames at the front of the given data straight from its underlying bytes, skipping
+   * the Start, AwaitHeader and AwaitBody states for each of them.  Only data received across several reads is
+   * compacted, and then only once, rather than every frame being decoded through a view of a rope of ByteStrings.
+   *
+   * @param data Buffered data, starting at a frame boundary.
+   * @return The data following the last complete frame, in the Start state.
+   */
+  private[this] def decodeFrames(data: ByteString): Try[Buffer] = {
+    val contiguous = data match {
+      case _: ByteStrings => data.compact
+      case _ => data
+    }
+    val bytes = contiguous.toByteVector
+
+    @tailrec
+    def decodeFrom(offset: Long): Try[Long] = {
+      val remaining = bytes.drop(offset)
+      if (remaining.isEmpty) {
+        Success(offset)
+      } else {
+        inspectProtocolVersion(remaining) match {
+          case Success((flags, afterFlags)) =>
+            val headerLength = flags.version.headerLength
+            if (remaining.size < headerLength) {
+              Success(offset)
+            } else {
+              val bodyLength = remaining.slice(headerLength - 4, headerLength).toLong(signed = false)
+              if (remaining.size < headerLength + bodyLength) {
+                Success(offset)
+              } else {
+                val frame = for {
+                  (header, _) <- next(flags.headerCodec, afterFlags.take(headerLength - 1))
+                  body = remaining.slice(headerLength, headerLength + bodyLength)
+                  message <- decodeMessage(header, body)
+                } yield Frame(header, message)
+                frame match {
+                  case Success(f) =>
+                    dispatch(f)
+                    decodeFrom(offset + headerLength + bodyLength)
+                  case Failure(t) => Failure(t)
+                }
+              }
+            }
+          case Failure(t) => Failure(t)
+        }
+      }
+    }
+
+    decodeFrom(0).map {
+      case 0 => Buffer(data, Start)
+      case consumed => Buffer(contiguous.drop(consumed.toInt), Start)
+    }
+  }
+
   private[this] def advanceState(buffer: Buffer): Try[Buffer] = buffer.state match {
     case Start =>
       // At the beginning of a frame parse the first byte into protocol flags, which will indicate
@@ -141,15 +419,32 @@ class ConnectionHandler(
       updateState(buffer, flags.version.headerLength - 1, next(flags.headerCodec, _), AwaitBody)
     case AwaitBody(header) =>
       // Header has been parsed, attempt to parse the message body and move back to the Start state.
-      updateState(buffer, header.length, next(Message.codec(header.opcode)(header.version.version), _), (m: Message) => {
+      updateState(buffer, header.length, (data: ByteVector) => decodeMessage(header, data).map((_, data)), (m: Message) => {
         // When the frame has been parsed, forward it on to the protocol handler.
         // We use forward so the sender appears as the tcp connection actor instead of this actor.
         val frame = Frame(header, m)
-        cqlMessageHandler ! ProtocolMessage(frame)
+        dispatch(frame)
         Start
       })
   }
 
+  private[this] def decodeMessage(header: FrameHeader, body: ByteVector): Try[Message] = {
+    val started = metrics.start()
+    val message = decompress(header, body).flatMap(next(Message.codec(header.opcode)(header.version.version), _)).map(_._1)
+    metrics.record(Stage.Decode, header.opcode, started)
+    message
+  }
+
+  private[this] def decompress(header: FrameHeader, body: ByteVector): Try[ByteVector] =
+    if (!header.flags.compression || body.isEmpty) {
+      Success(body)
+    } else {
+      compression match {
+        case Some(c) => c.decompress(body.toArray).map(ByteVector.view)
+        case None => Failure(new IllegalStateException("Received a compressed frame without agreeing on compression"))
+      }
+    }
+
   private[this] def updateState[T](buffer: Buffer, requiredLength: Long, f: ByteVector => Try[(T, ByteVector)], g: T => ParsingState): Try[Buffer] = {
     if (buffer.data.length >= requiredLength) {
       f(buffer.data.toByteVector).map { d =>
@@ -166,6 +461,32 @@ class ConnectionHandler(
 
 case class Buffer(data: ByteString, state: ParsingState)
 
+/**
+ * How responses are written to the connection.
+ */
+sealed trait WriteMode
+
+/**
+ * Each response is written as soon as it is ready.
+ */
+case object ImmediateWrites extends WriteMode
+
+/**
+ * Responses ready at the same time, or within the given window of each other, are written together.  Only one write
+ * is in flight at a time, responses ready while it is are written together once it's acknowledged.
+ *
+ * @param window How long to wait for more responses before writing.  If zero, only responses already waiting to be
+ *               handled are written together.
+ * @param maxBufferedBytes Reading from the client is paused while more than this many bytes of responses are
+ *                         waiting to be written.
+ */
+case class CoalescedWrites(window: FiniteDuration, maxBufferedBytes: Int) extends WriteMode
+
+private case object FlushWrites
+private case object RetryThrottled
+private case object DelayedWriteDue
+private case object WriteAck extends Tcp.Event
+
 sealed trait ParsingState
 case object Start extends ParsingState
 case class AwaitHeader(protocolFlags: ProtocolFlags) extends ParsingState
@@ -208,10 +529,17 @@ object AkkaScodecInterop {
   }
 
   implicit class EnrichedByteString(val value: ByteString) extends AnyVal {
-    def toByteVector: ByteVector = ByteVector.viewAt((idx: Long) => value(idx.toInt), value.size.toLong)
+    // Views the ByteString's backing array through a read-only ByteBuffer rather than indexing into the ByteString
+    // for every byte.  Only a ByteString made up of several others is copied, when it's compacted.
+    def toByteVector: ByteVector = ByteVector.view(value.asByteBuffer)
   }
 
   implicit class EnrichedByteVector(val value: ByteVector) extends AnyVal {
-    def toByteString: ByteString = byte1Ctor.newInstance(value.toArray)
+    def toByteString: ByteString = value.toArray.toByteString
+  }
+
+  implicit class EnrichedByteArray(val value: Array[Byte]) extends AnyVal {
+    // Wraps the array without copying it, so it must not be modified afterwards.
+    def toByteString: ByteString = byte1Ctor.newInstance(value)
   }
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.actors
+
+import java.util.concurrent.ConcurrentHashMap
+
+import akka.util.ByteString
+import org.scassandra.codec.compression.Compression
+import org.scassandra.codec.{ Message, ProtocolVersion }
+import scodec.Attempt
+
+import scala.util.{ Failure, Success, Try }
+
+/**
+ * A [[Message]] that is sent in response to many requests, i.e. the reply of a prime.  Its body is encoded once for
+ * each protocol version, on first use, and shared by every response.  Only the frame header, which carries the
+ * stream id of the request, is encoded for each response.  Likewise the body is compressed once for each algorithm.
+ *
+ * @param message The message to encode.
+ */
+class EncodedMessage(val message: Message) {
+
+  import AkkaScodecInterop._
+
+  private[this] val bodies = new ConcurrentHashMap[ProtocolVersion, ByteString]()
+  private[this] val compressedBodies = new ConcurrentHashMap[(ProtocolVersion, Compression), ByteString]()
+
+  /**
+   * @param stream stream id
+   * @param protocolVersion protocol version to use to encode.
+   * @return encoded bytes of the message with the frame header.
+   */
+  def toByteString(stream: Int)(implicit protocolVersion: ProtocolVersion): Try[ByteString] =
+    body.map(b => message.headerToArray(stream, b.length).toByteString ++ b)
+
+  /**
+   * @param stream stream id
+   * @param compression algorithm to compress the body with.
+   * @param protocolVersion protocol version to use to encode.
+   * @return encoded bytes of the message with the frame header and its body compressed.
+   */
+  def toByteString(stream: Int, compression: Compression)(implicit protocolVersion: ProtocolVersion): Try[ByteString] = {
+    val compressed = compressedBodies.get((protocolVersion, compression)) match {
+      case null =>
+        body.map { b =>
+          val c = compression.compress(b.toArray).toByteString
+          compressedBodies.put((protocolVersion, compression), c)
+          c
+        }
+      case c => Success(c)
+    }
+    compressed.map(c => message.headerToArray(stream, c.length, compressed = true).toByteString ++ c)
+  }
+
+  private[this] def body(implicit protocolVersion: ProtocolVersion): Try[ByteString] = bodies.get(protocolVersion) match {
+    case null =>
+      Message.codec(message.opcode).encode(message) match {
+        case Attempt.Successful(bits) =>
+          val b = bits.bytes.toByteString
+          bodies.put(protocolVersion, b)
+          Success(b)
+        case Attempt.Failure(x) => Failure(new Exception(x.toString))
+      }
+    case b => Success(b)
+  }
+}
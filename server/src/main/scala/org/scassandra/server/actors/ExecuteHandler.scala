@@ -16,89 +16,74 @@
 package org.scassandra.server.actors
 
 import akka.actor.ActorRef
-import akka.pattern.{ ask, pipe }
-import akka.util.Timeout
 import org.scassandra.codec._
 import org.scassandra.codec.datatype.DataType
 import org.scassandra.server.actors.Activity.PreparedStatementExecution
 import org.scassandra.server.actors.ActivityLogActor.RecordExecution
-import org.scassandra.server.actors.ExecuteHandler.HandleExecute
-import org.scassandra.server.actors.PrepareHandler.{ PreparedStatementQuery, PreparedStatementResponse }
 import org.scassandra.server.actors.ProtocolActor._
-import org.scassandra.server.actors.priming.PrimePreparedStoreActor.{ LookupByExecute, PrimeMatch }
 import org.scassandra.server.actors.priming.PrimeQueryStoreActor.{ Prime, Reply }
+import org.scassandra.server.metrics.{ RequestMetrics, Stage }
+import org.scassandra.server.priming.prepared.PreparedStoreLookup
 
-import scala.concurrent.Future
-import scala.concurrent.duration._
-import scala.language.postfixOps
-import scala.util.{ Failure, Success }
-
-class ExecuteHandler(primePreparedStore: ActorRef, activityLog: ActorRef, prepareHandler: ActorRef) extends ProtocolActor {
-
-  import context.dispatcher
+/**
+ * Handles the execute requests of a single connection, looking up what was prepared in the server's
+ * [[PreparedStatements]] through a cache of the statements the connection recently executed.
+ */
+class ExecuteHandler(primes: PreparedStoreLookup, activityLog: ActorRef, preparedStatements: PreparedStatements,
+  activityRecording: ActivityRecording = ActivityRecording.everything,
+  metrics: RequestMetrics = RequestMetrics.disabled) extends ProtocolActor {
 
-  implicit val timeout: Timeout = 1 second
+  private[this] val recentlyExecuted = preparedStatements.cache()
 
   def receive: Receive = {
     case ProtocolMessage(Frame(header, e: Execute)) =>
-      val id = e.id.toInt()
-      val recipient = sender
-      val executeRequest = (prepareHandler ? PreparedStatementQuery(List(id)))
-        .mapTo[PreparedStatementResponse]
-        .map(res => HandleExecute(res.prepared.get(id), header, e, recipient))
-
-      executeRequest.pipeTo(self)
-
-    case HandleExecute(query, header, execute, connection) =>
-      handleExecute(query, header, execute, connection)
+      handleExecute(recentlyExecuted(e.id), header, e, sender())
   }
 
   def handleExecute(preparedStatement: Option[(String, Prepared)], header: FrameHeader, execute: Execute, connection: ActorRef): Unit = {
     implicit val protocolVersion: ProtocolVersion = header.version.version
     preparedStatement match {
       case Some((queryText, prepared)) =>
-        val prime2: Future[Option[Prime]] =
-          (primePreparedStore ? LookupByExecute(queryText, execute, protocolVersion)).mapTo[PrimeMatch]
-            .map(_.prime)
-
-        // Decode query parameters using the prepared statement metadata.
+        val lookupStarted = metrics.start()
+        val matchedPrime = primes.matching(queryText, execute)
+        val prime: Option[Prime] = matchedPrime.map(_.prime)
+        val matched = RequestMetrics.matched(matchedPrime)
+        metrics.record(Stage.PrimeLookup, Execute.opcode, lookupStarted, matched)
+
+        val recordingStarted = metrics.start()
+        val recordingLevel = activityRecording.next()
+        // Query parameters are decoded using the prepared statement metadata when read, and only kept if they are to be recorded.
         val dataTypes: List[DataType] = prepared.preparedMetadata.columnSpec.map(_.dataType)
-        val values: Option[List[Any]] = extractQueryVariables(queryText, execute.parameters.values.map(_.map(_.value)), dataTypes)
-
-        prime2.onComplete {
-          case Success(None) =>
-            recordExecution(queryText, execute, dataTypes, values)
-            writePrime(execute, None, header, connection, alternative = Some(Reply(VoidResult)), consistency = Some(execute.parameters.consistency))(context.system)
-
-          case Success(somePrime) =>
-            recordExecution(queryText, execute, dataTypes, values)
-            writePrime(execute, somePrime, header, connection, alternative = Some(Reply(VoidResult)), consistency = Some(execute.parameters.consistency))(context.system)
-
-          case Failure(e) =>
-            log.warning(s"Unable to get prime for statement $queryText. Your client will get a timeout as no response will be sent", e)
+        val values: Option[Seq[Any]] = recordingLevel match {
+          case RecordEverything => extractQueryVariables(queryText, execute.parameters.values.map(_.map(_.value)), dataTypes)
+          case _ => None
         }
 
+        recordExecution(recordingLevel, queryText, execute, dataTypes, values)
+        metrics.record(Stage.ActivityRecording, Execute.opcode, recordingStarted, matched)
+        writePrime(execute, prime, header, connection, alternative = Some(Reply(VoidResult)), consistency = Some(execute.parameters.consistency))(context.system)
+
       case None =>
         val errMsg = s"Could not find prepared statement with id: 0x${execute.id.toHex}"
-        activityLog ! RecordExecution(PreparedStatementExecution(errMsg, execute.parameters.consistency,
-          execute.parameters.serialConsistency, Nil, Nil, execute.parameters.timestamp))
+        if (activityRecording.next() != RecordNothing) {
+          activityLog ! RecordExecution(PreparedStatementExecution(errMsg, execute.parameters.consistency,
+            execute.parameters.serialConsistency, Nil, Nil, execute.parameters.timestamp))
+        }
         val unprepared = Unprepared(errMsg, execute.id)
         write(unprepared, header, connection)
     }
   }
 
-  private def recordExecution(queryText: String, execute: Execute, dataTypes: List[DataType], values: Option[List[Any]]): Unit = {
-    values match {
-      case Some(v) =>
+  private def recordExecution(recordingLevel: RecordingLevel, queryText: String, execute: Execute, dataTypes: List[DataType],
+    values: Option[Seq[Any]]): Unit = {
+    (recordingLevel, values) match {
+      case (RecordNothing, _) =>
+      case (_, Some(v)) =>
         activityLog ! RecordExecution(PreparedStatementExecution(queryText, execute.parameters.consistency,
           execute.parameters.serialConsistency, v, dataTypes, execute.parameters.timestamp))
-      case None =>
+      case (_, None) =>
         activityLog ! RecordExecution(PreparedStatementExecution(queryText, execute.parameters.consistency,
           execute.parameters.serialConsistency, Nil, Nil, execute.parameters.timestamp))
     }
   }
 }
-
-object ExecuteHandler {
-  case class HandleExecute(query: Option[(String, Prepared)], header: FrameHeader, execute: Execute, connection: ActorRef)
-}
@@ -27,7 +27,7 @@ class NativeProtocolMessageHandler(
   registerHandlerFactory: (ActorRefFactory) => ActorRef,
   optionsHandlerFactory: (ActorRefFactory) => ActorRef,
   prepareHandler: ActorRef,
-  executeHandler: ActorRef) extends ProtocolActor {
+  executeHandlerFactory: (ActorRefFactory) => ActorRef) extends ProtocolActor {
 
   private val optionsHandler = optionsHandlerFactory(context)
 
@@ -41,15 +41,17 @@ class NativeProtocolMessageHandler(
           val queryHandler = queryHandlerFactory(context)
           val batchHandler = batchHandlerFactory(context, prepareHandler)
           val registerHandler = registerHandlerFactory(context)
+          val executeHandler = executeHandlerFactory(context)
           write(Ready, frame.header, sender())
-          context become initialized(queryHandler, batchHandler, registerHandler)
+          context become initialized(queryHandler, batchHandler, registerHandler, executeHandler)
         case _ =>
           log.error(s"Received message $frame before Startup.  Sending error.")
           write(ProtocolError("Query sent before Startup message"), frame.header, sender())
       }
   }
 
-  def initialized(queryHandler: ActorRef, batchHandler: ActorRef, registerHandler: ActorRef): Receive = {
+  def initialized(queryHandler: ActorRef, batchHandler: ActorRef, registerHandler: ActorRef,
+    executeHandler: ActorRef): Receive = {
     case message @ ProtocolMessage(frame) =>
       frame.message match {
         case query: Query =>
@@ -15,6 +15,7 @@
  */
 package org.scassandra.server.actors
 
+import org.scassandra.codec.compression.Compression
 import org.scassandra.codec.{ Frame, Options, Supported }
 
 class OptionsHandler extends ProtocolActor {
@@ -22,6 +23,8 @@ class OptionsHandler extends ProtocolActor {
   override def receive: Receive = {
     case ProtocolMessage(Frame(header, Options)) =>
       log.debug(s"Received OPTIONS message")
-      write(Supported(Map[String, List[String]]("CQL_VERSION" -> ("3.0.0" :: Nil))), header, sender())
+      write(Supported(Map[String, List[String]](
+        "CQL_VERSION" -> ("3.0.0" :: Nil),
+        "COMPRESSION" -> Compression.supported.map(_.name))), header, sender())
   }
 }
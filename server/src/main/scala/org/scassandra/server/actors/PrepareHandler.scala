@@ -16,77 +16,62 @@
 package org.scassandra.server.actors
 
 import akka.actor.{ Actor, ActorLogging, ActorRef }
-import akka.pattern.ask
-import akka.util.Timeout
 import org.scassandra.codec._
 import org.scassandra.server.actors.Activity.PreparedStatementPreparation
 import org.scassandra.server.actors.ActivityLogActor.RecordPrepare
 import org.scassandra.server.actors.PrepareHandler.{ PreparedStatementQuery, PreparedStatementResponse }
 import org.scassandra.server.actors.ProtocolActor._
-import org.scassandra.server.actors.priming.PrimePreparedStoreActor.{ LookupByPrepare, PrimeMatch }
-import org.scassandra.server.actors.priming.PrimeQueryStoreActor.{ Fatal, Prime, Reply }
+import org.scassandra.server.actors.priming.PrimeQueryStoreActor.{ Prime, Reply }
 import org.scassandra.server.priming.prepared.PreparedStoreLookup
+import scodec.bits.ByteVector
 
-import scala.concurrent.Future
-import scala.concurrent.duration._
-import scala.language.postfixOps
-import scala.util.{ Failure, Success }
-
-// todo switch to using become
-class PrepareHandler(primePreparedStore: ActorRef, activityLog: ActorRef) extends ProtocolActor with ActorLogging {
-
-  import context.dispatcher
-
-  private var nextId: Int = 1
-  private var idToStatement: Map[Int, (String, Prepared)] = Map()
-  implicit private val timeout: Timeout = Timeout(250 millis)
+class PrepareHandler(primes: PreparedStoreLookup, activityLog: ActorRef, preparedStatements: PreparedStatements,
+  activityRecording: ActivityRecording = ActivityRecording.everything) extends ProtocolActor with ActorLogging {
 
   def receive: Actor.Receive = {
     case ProtocolMessage(Frame(header, p: Prepare)) =>
-      activityLog ! RecordPrepare(PreparedStatementPreparation(p.query))
+      if (activityRecording.next() != RecordNothing) {
+        activityLog ! RecordPrepare(PreparedStatementPreparation(p.query))
+      }
       handlePrepare(header, p)
     case PreparedStatementQuery(ids) =>
-      sender() ! PreparedStatementResponse(ids.flatMap(id => idToStatement.get(id) match {
-        case Some(p) => Seq(id -> p)
-        case None => Seq()
-      }) toMap)
+      sender() ! PreparedStatementResponse(preparedStatements(ids))
   }
 
-  private def handlePrepare(header: FrameHeader, prepare: Prepare) = {
+  private def handlePrepare(header: FrameHeader, prepare: Prepare): Unit = {
     val toReply = sender()
-    val nextId = genNext()
-
-    val awaitingPrime: Future[Prime] =
-      (primePreparedStore ? LookupByPrepare(prepare, nextId))
-        .mapTo[PrimeMatch]
-        .map(_.prime.getOrElse(PreparedStoreLookup.defaultPrepared(prepare, nextId)))
+    val primesGeneration = primes.generation
 
-    awaitingPrime.onComplete {
-      case Success(prime: Prime) =>
-        prime match {
-          case Reply(p: Prepared, _, _) =>
-            idToStatement += (p.id.toInt() -> (prepare.query, p))
-            log.info(s"Prepared Statement has been prepared: |$prepare.query|. Prepared result is: $p")
-          case Reply(m: Message, _, _) =>
-            log.info(s"Got non-prepared response for query: |$prepare.query|. Result was: $m")
-          case f: Fatal =>
-            log.info(s"Got non-prepared response for query: |$prepare.query|. Result was: $f")
-        }
-        writePrime(prepare, Some(prime), header, toReply)(context.system)
-
-      case Failure(e) =>
-      //        log.warning("Error getting prime for prepare msg", e)
+    // Statements are prepared again whenever clients reconnect, so unless primes have changed since, reply with
+    // what the statement was prepared as before.
+    preparedStatements.prepared(prepare.query, primesGeneration) match {
+      case Some(p) =>
+        log.debug(s"Prepared Statement has already been prepared: |${prepare.query}|")
+        write(p, header, toReply)
+      case None =>
+        prepareWithPrime(header, prepare, primesGeneration, toReply)
     }
   }
 
-  private def genNext(): Int = {
-    val next = nextId
-    nextId += 1
-    next
+  private def prepareWithPrime(header: FrameHeader, prepare: Prepare, primesGeneration: Long, toReply: ActorRef): Unit = {
+    val id = PreparedStatements.id(prepare.query)
+
+    val prime: Prime = primes(prepare, id).getOrElse(PreparedStoreLookup.defaultPrepared(prepare, id))
+
+    prime match {
+      case Reply(p: Prepared, _, _, _) =>
+        preparedStatements.register(p.id, prepare.query, p, primesGeneration)
+        log.info(s"Prepared Statement has been prepared: |$prepare.query|. Prepared result is: $p")
+      case Reply(m: Message, _, _, _) =>
+        log.info(s"Got non-prepared response for query: |$prepare.query|. Result was: $m")
+      case other =>
+        log.info(s"Got non-prepared response for query: |$prepare.query|. Result was: $other")
+    }
+    writePrime(prepare, Some(prime), header, toReply)(context.system)
   }
 }
 
 object PrepareHandler {
-  case class PreparedStatementQuery(id: List[Int])
-  case class PreparedStatementResponse(prepared: Map[Int, (String, Prepared)])
+  case class PreparedStatementQuery(id: List[ByteVector])
+  case class PreparedStatementResponse(prepared: Map[ByteVector, (String, Prepared)])
 }
\ No newline at end of file
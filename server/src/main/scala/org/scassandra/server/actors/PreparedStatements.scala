@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.actors
+
+import java.nio.charset.StandardCharsets.UTF_8
+import java.security.MessageDigest
+import java.util
+import java.util.Map.Entry
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+import org.scassandra.codec.Prepared
+import org.scassandra.codec.datatype.DataType
+import org.scassandra.codec.messages.{ ColumnSpec, ColumnSpecWithoutTable, NoRowMetadata, PreparedMetadata }
+import org.scassandra.server.actors.PreparedStatements.{ Cache, Statement, UnknownPrimes }
+import scodec.bits.ByteVector
+
+import scala.collection.JavaConverters._
+
+/**
+ * Statements prepared on a server, by id, along with their query text.
+ *
+ * Connections look statements up here directly rather than asking the [[PrepareHandler]], so that executing prepared
+ * statements on many connections at once doesn't queue up behind a single actor.
+ *
+ * As with Cassandra, a statement's id is the MD5 of its query text, so preparing the same text always gives the same
+ * id, on any node and across restarts.
+ */
+class PreparedStatements {
+
+  private[this] val statements = new ConcurrentHashMap[ByteVector, Statement]()
+
+  // Incremented whenever a statement is replaced or removed, so that caches know to drop what they've kept.
+  private[this] val generations = new AtomicLong()
+
+  def apply(id: ByteVector): Option[(String, Prepared)] = Option(statements.get(id)).map(s => (s.query, s.prepared))
+
+  /**
+   * @return The statements of the given ids that are prepared.
+   */
+  def apply(ids: Seq[ByteVector]): Map[ByteVector, (String, Prepared)] =
+    ids.flatMap(id => apply(id).map(id -> _)).toMap
+
+  /**
+   * @param primesGeneration The generation of the prepared statement primes.
+   * @return What the query was prepared as, if it was prepared while the primes were at the given generation and so
+   *         preparing it again would give the same result.
+   */
+  def prepared(query: String, primesGeneration: Long): Option[Prepared] =
+    Option(statements.get(PreparedStatements.id(query)))
+      .filter(s => s.query == query && s.primesGeneration == primesGeneration && primesGeneration != UnknownPrimes)
+      .map(_.prepared)
+
+  /**
+   * @param primesGeneration The generation of the prepared statement primes the statement was prepared with.
+   */
+  def register(id: ByteVector, query: String, prepared: Prepared, primesGeneration: Long = UnknownPrimes): Unit = {
+    val previous = statements.put(id, Statement(query, prepared, primesGeneration))
+    if (previous != null && (previous.query != query || previous.prepared != prepared)) generations.incrementAndGet()
+  }
+
+  def clear(): Unit = {
+    statements.clear()
+    generations.incrementAndGet()
+  }
+
+  def size: Int = statements.size
+
+  def generation: Long = generations.get()
+
+  /**
+   * @return A cache of recently looked up statements for a single connection.
+   */
+  def cache(capacity: Int = PreparedStatements.DefaultCacheSize): Cache = new Cache(this, capacity)
+
+  /**
+   * @return Every prepared statement, in a form that can be saved and later restored.
+   */
+  def snapshot(): List[SavedStatement] = statements.asScala.toList.map {
+    case (id, Statement(query, prepared, _)) =>
+      SavedStatement(id.toHex, query, prepared.preparedMetadata.keyspace, prepared.preparedMetadata.table,
+        prepared.preparedMetadata.columnSpec.map(_.dataType))
+  }.sortBy(_.query)
+
+  /**
+   * Prepares saved statements again, so that clients can execute them without preparing them first.  As the primes
+   * they were prepared with aren't known, preparing any of them again looks up its prime as usual.
+   */
+  def restore(saved: List[SavedStatement]): Unit = saved.foreach { s =>
+    val columnSpec = s.variableTypes.zipWithIndex.map {
+      case (dataType, i) => ColumnSpecWithoutTable(i.toString, dataType).asInstanceOf[ColumnSpec]
+    }
+    val id = PreparedStatements.id(s.query)
+    register(id, s.query, Prepared(id, PreparedMetadata(keyspace = s.keyspace, table = s.table, columnSpec = columnSpec),
+      NoRowMetadata))
+  }
+}
+
+/**
+ * A prepared statement as saved in snapshots.
+ *
+ * @param id The statement's id in hex, which must be the id of its query text.
+ */
+case class SavedStatement(id: String, query: String, keyspace: Option[String], table: Option[String],
+  variableTypes: List[DataType]) {
+  require(ByteVector.fromHex(id).contains(PreparedStatements.id(query)),
+    s"Prepared statement id $id is not the id of query $query")
+}
+
+object PreparedStatements {
+  val DefaultCacheSize = 256
+
+  // The generation of statements prepared without knowing the primes they were prepared with, i.e. restored ones.
+  private val UnknownPrimes = -1L
+
+  private case class Statement(query: String, prepared: Prepared, primesGeneration: Long)
+
+  /**
+   * @return The id of the statement with the given query text.
+   */
+  def id(query: String): ByteVector = ByteVector(MessageDigest.getInstance("MD5").digest(query.getBytes(UTF_8)))
+
+  /**
+   * Keeps the statements a connection most recently looked up, which are usually the few it executes over and over.
+   * Not thread safe, it's meant to be used from within a single actor.
+   */
+  class Cache(statements: PreparedStatements, capacity: Int) {
+    private[this] val recent = new util.LinkedHashMap[ByteVector, (String, Prepared)](16, 0.75f, true) {
+      override def removeEldestEntry(eldest: Entry[ByteVector, (String, Prepared)]): Boolean = size > capacity
+    }
+    private[this] var generation = statements.generation
+
+    def apply(id: ByteVector): Option[(String, Prepared)] = {
+      if (generation != statements.generation) {
+        recent.clear()
+        generation = statements.generation
+      }
+      Option(recent.get(id)).orElse {
+        val found = statements(id)
+        found.foreach(recent.put(id, _))
+        found
+      }
+    }
+  }
+}
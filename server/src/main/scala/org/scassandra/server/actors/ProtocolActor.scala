@@ -16,10 +16,15 @@
 package org.scassandra.server.actors
 
 import akka.actor.{ Actor, ActorLogging, ActorRef, ActorSystem }
+import akka.util.ByteString
 import org.scassandra.codec.Consistency.Consistency
 import org.scassandra.codec._
+import org.scassandra.codec.compression.Compression
 import org.scassandra.codec.datatype.DataType
-import org.scassandra.server.actors.priming.PrimeQueryStoreActor.{ Fatal, Prime, Reply }
+import org.scassandra.server.actors.priming.PrimeQueryStoreActor.{ Fatal, GeneratedReply, Prime, Reply }
+
+import scala.concurrent.duration.FiniteDuration
+import scala.util.Try
 
 trait ProtocolActor extends Actor with ActorLogging {
 
@@ -30,13 +35,11 @@ trait ProtocolActor extends Actor with ActorLogging {
   def extractQueryVariables(
     queryText: String,
     queryValues: Option[List[Value]],
-    variableTypes: List[DataType])(implicit protocolVersion: ProtocolVersion): Option[List[Any]] = {
+    variableTypes: List[DataType])(implicit protocolVersion: ProtocolVersion): Option[Seq[Any]] = {
     queryValues.flatMap { (values: List[Value]) =>
       if (values.length == variableTypes.length) {
-        Some(values.zip(variableTypes).map {
-          case (Bytes(bytes), dataType) => dataType.codec.decodeValue(bytes.toBitVector).require // TODO: handle decode failure
-          case (_, dataType) => null // TODO: Handle Null and Unset case.
-        })
+        // values are decoded as they are read.
+        Some(new BoundVariables(values.toIndexedSeq, variableTypes.toIndexedSeq))
       } else {
         log.warning(s"Mismatch of variables between query $queryText with variable count ${values.length}, but expected ${variableTypes.length} ($variableTypes).")
         None
@@ -53,18 +56,21 @@ object ProtocolActor {
     primeOption match {
       case Some(prime) =>
         prime match {
-          case Reply(message, _, _) =>
-            val msg = ProtocolResponse(requestHeader, messageWithConsistency(message, consistency.getOrElse(Consistency.ONE)))
-            prime.fixedDelay match {
-              case None => target ! msg
-              case Some(duration) => system.scheduler.scheduleOnce(duration, target, msg)(system.dispatcher)
+          case reply @ Reply(message, _, _, _) =>
+            val msg = RowPaging.page(message, input) match {
+              case Some(page) => ProtocolResponse(requestHeader, page)
+              case None =>
+                val response = messageWithConsistency(message, consistency.getOrElse(Consistency.ONE))
+                // Unless the message had to be updated, reuse the encoded reply.
+                if (response eq message) EncodedResponse(requestHeader, reply.encoded) else ProtocolResponse(requestHeader, response)
             }
+            send(msg, prime.nextDelay(), target)
+          case generated: GeneratedReply =>
+            send(ProtocolResponse(requestHeader, RowPaging.page(generated, input)), prime.nextDelay(), target)
           case f: Fatal =>
-            prime.fixedDelay match {
+            prime.nextDelay() match {
               case None => f.produceFatalError(target)
-              case Some(duration) => system.scheduler.scheduleOnce(duration) {
-                f.produceFatalError(target)
-              }(system.dispatcher)
+              case Some(duration) => ResponseTimer(system).schedule(duration, () => f.produceFatalError(target))
             }
         }
       case None =>
@@ -72,6 +78,12 @@ object ProtocolActor {
     }
   }
 
+  private[this] def send(msg: ProtocolResponse, delay: Option[FiniteDuration], target: ActorRef)(implicit system: ActorSystem): Unit =
+    delay match {
+      case None => target ! msg
+      case Some(duration) => ResponseTimer(system).schedule(duration, target, msg)
+    }
+
   /**
    * Update the message with the given consistency if the message is an error containing consistency and the consistency
    * wasn't provided by the prime.
@@ -92,4 +104,53 @@ object ProtocolActor {
 
 case class ProtocolMessage(frame: Frame)
 
-case class ProtocolResponse(requestHeader: FrameHeader, response: Message)
\ No newline at end of file
+/**
+ * A response to be written back to the connection a request was received on.
+ */
+sealed trait ProtocolResponse {
+  def requestHeader: FrameHeader
+
+  def response: Message
+
+  /**
+   * @return encoded bytes of the response with the frame header.
+   */
+  def toByteString: Try[ByteString]
+
+  /**
+   * @return encoded bytes of the response with the frame header and its body compressed.
+   */
+  def toByteString(compression: Compression): Try[ByteString]
+}
+
+object ProtocolResponse {
+  def apply(requestHeader: FrameHeader, response: Message): ProtocolResponse = MessageResponse(requestHeader, response)
+
+  def unapply(response: ProtocolResponse): Option[(FrameHeader, Message)] =
+    Some((response.requestHeader, response.response))
+}
+
+/**
+ * A [[ProtocolResponse]] whose message is encoded along with its frame header.
+ */
+case class MessageResponse(requestHeader: FrameHeader, response: Message) extends ProtocolResponse {
+  import AkkaScodecInterop._
+
+  def toByteString: Try[ByteString] =
+    response.toArray(requestHeader.stream)(requestHeader.version.version).map(_.toByteString)
+
+  def toByteString(compression: Compression): Try[ByteString] =
+    response.toCompressedArray(requestHeader.stream, compression)(requestHeader.version.version).map(_.toByteString)
+}
+
+/**
+ * A [[ProtocolResponse]] with a message that has already been encoded, so only its frame header is encoded.
+ */
+case class EncodedResponse(requestHeader: FrameHeader, encoded: EncodedMessage) extends ProtocolResponse {
+  def response: Message = encoded.message
+
+  def toByteString: Try[ByteString] = encoded.toByteString(requestHeader.stream)(requestHeader.version.version)
+
+  def toByteString(compression: Compression): Try[ByteString] =
+    encoded.toByteString(requestHeader.stream, compression)(requestHeader.version.version)
+}
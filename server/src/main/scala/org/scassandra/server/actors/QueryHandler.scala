@@ -16,36 +16,37 @@
 package org.scassandra.server.actors
 
 import akka.actor.ActorRef
-import akka.pattern.ask
-import akka.util.Timeout
 import org.scassandra.codec.datatype.DataType
 import org.scassandra.codec.{ Frame, NoRows, ProtocolVersion, Query }
 import org.scassandra.server.actors.ActivityLogActor.RecordQuery
 import org.scassandra.server.actors.ProtocolActor._
-import org.scassandra.server.actors.priming.PrimeQueryStoreActor.{ MatchPrime, MatchResult, Reply }
+import org.scassandra.server.actors.priming.PrimeQueryStoreActor.{ Prime, Reply }
+import org.scassandra.server.metrics.{ RequestMetrics, Stage }
+import org.scassandra.server.priming.QueryPrimeLookup
 
-import scala.concurrent.duration._
-
-class QueryHandler(primeQueryStore: ActorRef, activityLog: ActorRef) extends ProtocolActor {
-
-  import context.dispatcher
+class QueryHandler(primes: QueryPrimeLookup, activityLog: ActorRef,
+  activityRecording: ActivityRecording = ActivityRecording.everything,
+  metrics: RequestMetrics = RequestMetrics.disabled) extends ProtocolActor {
 
   val noRows = Some(Reply(NoRows))
 
   def receive: Receive = {
     case ProtocolMessage(Frame(header, query: Query)) =>
       implicit val protocolVersion: ProtocolVersion = header.version.version
-      implicit val timeout: Timeout = Timeout(1 second)
 
       log.info(s"Incoming query: $query")
-      val toReply = sender()
-
-      (primeQueryStore ? MatchPrime(query))
-        .mapTo[MatchResult].map { mr =>
+      val lookupStarted = metrics.start()
+      val matchedPrime = primes.matching(query)
+      val prime: Option[Prime] = matchedPrime.map(_.prime)
+      val matched = RequestMetrics.matched(matchedPrime)
+      metrics.record(Stage.PrimeLookup, Query.opcode, lookupStarted, matched)
 
-          val typesAndValues: Option[(List[DataType], List[Any])] = (for {
-            prime <- mr.prime
-            vt <- prime.variableTypes
+      val recordingStarted = metrics.start()
+      activityRecording.next() match {
+        case RecordEverything =>
+          val typesAndValues: Option[(List[DataType], Seq[Any])] = (for {
+            p <- prime
+            vt <- p.variableTypes
           } yield Some(vt).zip(extractQueryVariables(query.query, query.parameters.values.map(_.map(_.value)), vt)).headOption).flatten
 
           typesAndValues match {
@@ -56,7 +57,12 @@ class QueryHandler(primeQueryStore: ActorRef, activityLog: ActorRef) extends Pro
               activityLog ! RecordQuery(Activity.Query(query.query, query.parameters.consistency, query.parameters.serialConsistency,
                 timestamp = query.parameters.timestamp))
           }
-          writePrime(query, mr.prime, header, alternative = noRows, consistency = Some(query.parameters.consistency), target = toReply)(context.system)
-        }
+        case RecordMetadata =>
+          activityLog ! RecordQuery(Activity.Query(query.query, query.parameters.consistency, query.parameters.serialConsistency,
+            timestamp = query.parameters.timestamp))
+        case _ =>
+      }
+      metrics.record(Stage.ActivityRecording, Query.opcode, recordingStarted, matched)
+      writePrime(query, prime, header, alternative = noRows, consistency = Some(query.parameters.consistency), target = sender())(context.system)
   }
 }
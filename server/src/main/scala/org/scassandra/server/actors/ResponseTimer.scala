@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.actors
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.locks.LockSupport
+
+import akka.actor.{ ActorRef, ExtendedActorSystem, Extension, ExtensionId, ExtensionIdProvider }
+import com.typesafe.scalalogging.LazyLogging
+import org.scassandra.server.actors.ResponseTimer.Timeout
+
+import scala.concurrent.duration._
+import scala.util.control.NonFatal
+
+/**
+ * Sends delayed responses once their delay is up, from a hashed timing wheel run by a single thread.
+ *
+ * Scheduling a response only adds it to a queue, so that hundreds of thousands of responses can be waiting without
+ * each costing more than the small node holding it.  Every tick the timer thread moves newly scheduled responses into
+ * the bucket of the wheel for the tick they are due in, then sends those due in the current tick.  Responses due more
+ * than a turn of the wheel away wait in their bucket for as many turns as they need.  When nothing is waiting the
+ * thread parks until something is scheduled rather than ticking.
+ *
+ * Responses are sent on the tick after they are due, so are up to one tick late.
+ *
+ * @param tick How long each tick of the wheel is.
+ * @param wheelSize How many buckets the wheel has, a power of two.
+ */
+class ResponseTimer(tick: FiniteDuration, wheelSize: Int) extends Extension with LazyLogging {
+  require(Integer.bitCount(wheelSize) == 1, "wheel size must be a power of two")
+
+  private[this] val tickNanos = tick.toNanos
+  private[this] val mask = wheelSize - 1
+  private[this] val startTime = System.nanoTime()
+
+  private[this] val incoming = new ConcurrentLinkedQueue[Timeout]()
+  @volatile private[this] var idle = false
+  @volatile private[this] var stopped = false
+
+  // Only used by the timer thread.
+  private[this] val wheel = new Array[Timeout](wheelSize)
+  private[this] var waiting = 0
+
+  private[this] val thread = new Thread(() => run(), "scassandra-response-timer")
+  thread.setDaemon(true)
+  thread.start()
+
+  /**
+   * @param delay How long to wait before sending.
+   * @param target Who to send the message to.
+   * @param message The message to send.
+   */
+  def schedule(delay: FiniteDuration, target: ActorRef, message: Any): Unit =
+    schedule(delay, () => target ! message)
+
+  /**
+   * @param delay How long to wait before running the task.
+   * @param task A task to run once the delay is up, on the timer thread, so it must be quick, i.e. sending a message.
+   */
+  def schedule(delay: FiniteDuration, task: Runnable): Unit = {
+    incoming.add(new Timeout(System.nanoTime() + delay.toNanos, task))
+    if (idle) LockSupport.unpark(thread)
+  }
+
+  /**
+   * Stops the timer thread, any responses waiting are never sent.
+   */
+  def stop(): Unit = {
+    stopped = true
+    LockSupport.unpark(thread)
+  }
+
+  private[this] def currentTick: Long = (System.nanoTime() - startTime) / tickNanos
+
+  private[this] def run(): Unit = {
+    var current = currentTick
+    while (!stopped) {
+      val tickTime = startTime + current * tickNanos
+      var now = System.nanoTime()
+      while (now < tickTime && !stopped) {
+        LockSupport.parkNanos(tickTime - now)
+        now = System.nanoTime()
+      }
+      transfer(current)
+      expire(current)
+      current += 1
+
+      if (waiting == 0) {
+        idle = true
+        while (incoming.isEmpty && !stopped) LockSupport.park(this)
+        idle = false
+        current = math.max(current, currentTick)
+      }
+    }
+  }
+
+  /**
+   * Moves newly scheduled responses into the bucket for the tick they are due in, or the current tick if they are
+   * already due.
+   */
+  private[this] def transfer(current: Long): Unit = {
+    var timeout = incoming.poll()
+    while (timeout != null) {
+      val due = math.max(current, (timeout.deadline - startTime + tickNanos - 1) / tickNanos)
+      timeout.rounds = (due - current) / wheelSize
+      val bucket = (due & mask).toInt
+      timeout.next = wheel(bucket)
+      wheel(bucket) = timeout
+      waiting += 1
+      timeout = incoming.poll()
+    }
+  }
+
+  /**
+   * Runs the tasks in the current tick's bucket that are due this turn of the wheel.
+   */
+  private[this] def expire(current: Long): Unit = {
+    val bucket = (current & mask).toInt
+    var timeout = wheel(bucket)
+    var remaining: Timeout = null
+    while (timeout != null) {
+      val next = timeout.next
+      if (timeout.rounds <= 0) {
+        waiting -= 1
+        try timeout.task.run() catch {
+          case NonFatal(e) => logger.warn("Failed to send delayed response", e)
+        }
+      } else {
+        timeout.rounds -= 1
+        timeout.next = remaining
+        remaining = timeout
+      }
+      timeout = next
+    }
+    wheel(bucket) = remaining
+  }
+}
+
+/**
+ * The [[ResponseTimer]] of an actor system, stopped when the actor system terminates.
+ */
+object ResponseTimer extends ExtensionId[ResponseTimer] with ExtensionIdProvider {
+
+  private final class Timeout(val deadline: Long, val task: Runnable) {
+    var rounds: Long = 0
+    var next: Timeout = _
+  }
+
+  override def lookup(): ResponseTimer.type = ResponseTimer
+
+  override def createExtension(system: ExtendedActorSystem): ResponseTimer = {
+    val timer = new ResponseTimer(1.millisecond, 1024)
+    system.registerOnTermination(timer.stop())
+    timer
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.actors
+
+import org.scassandra.codec.messages.{ QueryParameters, RowMetadata }
+import org.scassandra.codec._
+import org.scassandra.server.actors.priming.PrimeQueryStoreActor.GeneratedReply
+import scodec.bits.ByteVector
+
+/**
+ * Pages primed rows by the page size of the query or execute they are returned for.
+ *
+ * The paging state handed to the client is the offset of the first row of the next page, which the client sends back
+ * with its next request to resume from there.  As the rows are those of a prime rather than of a table, the state
+ * isn't tied to the query, so it resumes at the same offset in whatever rows the next request is primed with.
+ */
+object RowPaging {
+
+  val invalidPagingState = ProtocolError("Invalid value for the paging state")
+
+  /**
+   * Page size of generated rows for requests that don't ask for one, the default fetch size of the drivers, so that
+   * a prime of millions of rows is never generated in a single response.
+   */
+  val generatedPageSize = 5000
+
+  /**
+   * @param message The message primed for the request.
+   * @param request The query or execute the message is in response to.
+   * @return The page of rows for the request, or an error if its paging state is invalid.  None if the message
+   *         isn't to be paged, i.e. it is not rows, no page size was requested, or all rows fit on the first page.
+   */
+  def page(message: Message, request: Message): Option[Message] = message match {
+    case rows: Rows =>
+      val requested = parameters(request)
+      page(rows.metadata, rows.rows.lengthCompare(_) > 0, (metadata, from, until) =>
+        Rows(metadata, rows.rows.slice(from, until)), requested.flatMap(_.pageSize), requested.flatMap(_.pagingState))
+    case _ => None
+  }
+
+  /**
+   * @param generated The generated rows primed for the request.
+   * @param request The request the rows are in response to.
+   * @return The page of rows for the request, generating only the rows on that page.  Requests that don't ask for a
+   *         page size get pages of [[generatedPageSize]] rows.  Rows are generated by column, as [[ColumnarRows]].
+   */
+  def page(generated: GeneratedReply, request: Message): Message = {
+    val rows = generated.rows
+    val requested = parameters(request)
+    val pageSize = requested.flatMap(_.pageSize).filter(_ > 0).getOrElse(generatedPageSize)
+    page(generated.metadata, rows.count > _, rows.columnar, Some(pageSize), requested.flatMap(_.pagingState))
+      .getOrElse(rows.columnar(generated.metadata, 0, rows.count)) // all rows fit on a page.
+  }
+
+  private def parameters(request: Message): Option[QueryParameters] = request match {
+    case q: Query => Some(q.parameters)
+    case e: Execute => Some(e.parameters)
+    case _ => None
+  }
+
+  /**
+   * @param moreThan Whether there are more rows than the given number.
+   * @param rows The rows, with the given metadata, from the first index until, but not including, the second.
+   */
+  private def page(metadata: RowMetadata, moreThan: Int => Boolean, rows: (RowMetadata, Int, Int) => Message,
+    pageSize: Option[Int], pagingState: Option[ByteVector]): Option[Message] = pageSize match {
+    case Some(pageSize) if pageSize > 0 =>
+      pagingState match {
+        case None =>
+          if (moreThan(pageSize)) Some(slice(metadata, moreThan, rows, 0, pageSize)) else None
+        case Some(state) =>
+          offset(state) match {
+            case Some(start) => Some(slice(metadata, moreThan, rows, start, pageSize))
+            case None => Some(invalidPagingState)
+          }
+      }
+    case _ => None
+  }
+
+  private def slice(metadata: RowMetadata, moreThan: Int => Boolean, rows: (RowMetadata, Int, Int) => Message,
+    start: Int, pageSize: Int): Message = {
+    val end = if (pageSize > Int.MaxValue - start) Int.MaxValue else start + pageSize
+    val pagingState = if (moreThan(end)) Some(ByteVector.fromInt(end)) else None
+    rows(metadata.copy(pagingState = pagingState), start, end)
+  }
+
+  private def offset(state: ByteVector): Option[Int] =
+    if (state.size == 4) Some(state.toInt()).filter(_ >= 0) else None
+}
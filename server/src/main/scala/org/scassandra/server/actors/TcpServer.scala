@@ -22,6 +22,9 @@ import akka.io.{ IO, Tcp }
 import akka.pattern.{ ask, pipe }
 import akka.util.Timeout
 import org.scassandra.server.actors.ActivityLogActor.RecordConnection
+import org.scassandra.server.cluster.SystemTables
+import org.scassandra.server.metrics.RequestMetrics
+import org.scassandra.server.priming.{ PrimeRegistry, QueryPrimeLookup }
 import org.scassandra.server.{ ServerReady, Shutdown }
 
 import scala.concurrent.Future
@@ -29,21 +32,16 @@ import scala.concurrent.duration._
 import scala.language.postfixOps
 
 class TcpServer(listenAddress: String, port: Int,
-  primedResults: ActorRef,
-  primePrepareStore: ActorRef,
-  primeBatchStore: ActorRef,
+  primes: PrimeRegistry,
+  preparedStatements: PreparedStatements,
   serverReadyListener: ActorRef,
   activityLog: ActorRef,
-  manager: Option[ActorRef]) extends Actor with ActorLogging {
-
-  def this(listenAddress: String, port: Int,
-    primeQueryStore: ActorRef,
-    primePrepareStore: ActorRef,
-    primeBatchStore: ActorRef,
-    serverReadyListener: ActorRef,
-    activityLog: ActorRef) {
-    this(listenAddress, port, primeQueryStore, primePrepareStore, primeBatchStore, serverReadyListener, activityLog, None)
-  }
+  manager: Option[ActorRef] = None,
+  writeMode: WriteMode = ImmediateWrites,
+  activityRecording: ActivityRecording = ActivityRecording.everything,
+  metrics: RequestMetrics = RequestMetrics.disabled,
+  systemTables: Option[SystemTables] = None,
+  throttling: Throttling = Throttling.unlimited) extends Actor with ActorLogging {
 
   import akka.io.Tcp._
   import context.{ dispatcher, system }
@@ -56,8 +54,12 @@ class TcpServer(listenAddress: String, port: Int,
   implicit val timeout: Timeout = 10 seconds
 
   private val AddressRE = "(.*):(\\d+)$".r
-  private val preparedHandler = context.actorOf(Props(classOf[PrepareHandler], primePrepareStore, activityLog))
-  private val executeHandler = context.actorOf(Props(classOf[ExecuteHandler], primePrepareStore, activityLog, preparedHandler))
+  // Queries are answered with this node's system tables when they're not primed.
+  private val queryPrimes: QueryPrimeLookup = systemTables.fold[QueryPrimeLookup](primes)(_.orElse(primes))
+  // Limits shared by every connection to this server.
+  private val serverThrottle = new ServerThrottle(throttling)
+  private val preparedHandler =
+    context.actorOf(Props(classOf[PrepareHandler], primes, activityLog, preparedStatements, activityRecording))
 
   override def preStart(): Unit = {
     manager.getOrElse(IO(Tcp)) ! Bind(self, new InetSocketAddress(listenAddress, port), pullMode = true)
@@ -78,15 +80,22 @@ class TcpServer(listenAddress: String, port: Int,
 
   def listening(listener: ActorRef): Receive = {
     case c @ Connected(remote, _) =>
-      activityLog ! RecordConnection()
+      if (activityRecording.next() != RecordNothing) {
+        activityLog ! RecordConnection()
+      }
       val handler = context.actorOf(
         Props(classOf[ConnectionHandler], sender(),
-          (af: ActorRefFactory) => af.actorOf(Props(classOf[QueryHandler], primedResults, activityLog)),
-          (af: ActorRefFactory, prepareHandler: ActorRef) => af.actorOf(Props(classOf[BatchHandler], activityLog, prepareHandler, primeBatchStore)),
+          (af: ActorRefFactory) => af.actorOf(Props(classOf[QueryHandler], queryPrimes, activityLog, activityRecording, metrics)),
+          (af: ActorRefFactory, _: ActorRef) =>
+            af.actorOf(Props(classOf[BatchHandler], activityLog, preparedStatements, primes, activityRecording)),
           (af: ActorRefFactory) => af.actorOf(Props(classOf[RegisterHandler])),
           (af: ActorRefFactory) => af.actorOf(Props(classOf[OptionsHandler])),
           preparedHandler,
-          executeHandler),
+          (af: ActorRefFactory) =>
+            af.actorOf(Props(classOf[ExecuteHandler], primes, activityLog, preparedStatements, activityRecording, metrics)),
+          writeMode,
+          metrics,
+          serverThrottle),
         name = s"${remote.getAddress.getHostAddress}:${remote.getPort}")
       log.debug(s"Sending register with connection handler $handler")
       sender ! Register(handler)
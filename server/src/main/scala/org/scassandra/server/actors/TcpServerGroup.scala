@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.actors
+
+import akka.actor.{ Actor, ActorLogging, ActorRef, PoisonPill, Status }
+import akka.io.Tcp.Unbound
+import akka.pattern.{ ask, pipe }
+import akka.util.Timeout
+import org.scassandra.server.Shutdown
+
+import scala.concurrent.Future
+import scala.concurrent.duration._
+import scala.language.postfixOps
+import scala.reflect.ClassTag
+
+/**
+ * Stands in for the [[TcpServer]] of each node of a simulated cluster, so that managing connections through
+ * /current applies to every node.  Each request is sent to every node and their responses combined.
+ *
+ * @param servers The [[TcpServer]] of each node.
+ */
+class TcpServerGroup(servers: List[ActorRef]) extends Actor with ActorLogging {
+
+  import context.dispatcher
+
+  implicit val timeout: Timeout = 10 seconds
+
+  def receive: Receive = {
+    case request: GetClientConnections =>
+      all[ClientConnections](request).map(cs => ClientConnections(cs.flatMap(_.connections))).pipeTo(sender())
+
+    case request: SendCommandToClient =>
+      all[ClosedConnections](request).map(cs => ClosedConnections(cs.flatMap(_.connections), request.description))
+        .pipeTo(sender())
+
+    case AcceptNewConnections =>
+      all[AcceptNewConnectionsEnabled](AcceptNewConnections).map(cs => AcceptNewConnectionsEnabled(cs.exists(_.changed)))
+        .pipeTo(sender())
+
+    case request: RejectNewConnections =>
+      all[RejectNewConnectionsEnabled](request).map(cs => RejectNewConnectionsEnabled(cs.exists(_.changed)))
+        .pipeTo(sender())
+
+    case Shutdown =>
+      val requester = sender()
+      all[Any](Shutdown).onComplete { result =>
+        requester ! result.fold(Status.Failure, _ => Unbound)
+        self ! PoisonPill
+      }
+  }
+
+  private def all[T: ClassTag](request: Any): Future[List[T]] =
+    Future.sequence(servers.map(server => (server ? request).mapTo[T]))
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.actors
+
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.scassandra.codec.{ Batch, Execute, Prepare, Query }
+
+/**
+ * Limits on how fast requests are handled, either by one connection or by all connections to a server.
+ *
+ * @param requestsPerSecond How many requests to handle each second.  Up to a second's worth can be handled at once.
+ * @param maxInFlight How many requests to handle at a time, i.e. that haven't been responded to yet.
+ * @param bytesPerSecond How many bytes of responses to write each second.  Responses beyond this are delayed.
+ */
+case class ThrottleLimits(requestsPerSecond: Option[Double] = None, maxInFlight: Option[Int] = None,
+  bytesPerSecond: Option[Long] = None) {
+
+  require(requestsPerSecond.forall(_ > 0), "Requests per second must be more than 0")
+  require(maxInFlight.forall(_ > 0), "Max in flight must be at least 1")
+  require(bytesPerSecond.forall(_ > 0), "Bytes per second must be more than 0")
+
+  def isEmpty: Boolean = requestsPerSecond.isEmpty && maxInFlight.isEmpty && bytesPerSecond.isEmpty
+}
+
+/**
+ * What happens to requests beyond the rate or in flight limits.
+ */
+sealed trait OverloadAction
+
+/**
+ * Requests wait, in order, until they're within the limits.  Reading from the connection is paused while any are
+ * waiting, so clients see back pressure.
+ */
+case object QueueWhenOverloaded extends OverloadAction
+
+/**
+ * Requests are responded to with an Overloaded error straight away.
+ */
+case object RejectWhenOverloaded extends OverloadAction
+
+/**
+ * @param connection Limits of each connection.
+ * @param server Limits shared by all connections to a server, i.e. to one node of a cluster.
+ * @param whenOverloaded What happens to requests beyond the limits.
+ */
+case class ThrottleSettings(connection: ThrottleLimits = ThrottleLimits(), server: ThrottleLimits = ThrottleLimits(),
+  whenOverloaded: OverloadAction = QueueWhenOverloaded) {
+
+  def isEmpty: Boolean = connection.isEmpty && server.isEmpty
+}
+
+/**
+ * The current [[ThrottleSettings]], shared by every server and changed at runtime through the admin api.  Only
+ * queries, prepares, executes and batches are throttled, so that clients can still connect to an overloaded server.
+ *
+ * @param initial The settings to start with.
+ */
+class Throttling(initial: ThrottleSettings) {
+  @volatile var settings: ThrottleSettings = initial
+}
+
+object Throttling {
+  /**
+   * @return A new [[Throttling]] with no limits.
+   */
+  def unlimited: Throttling = new Throttling(ThrottleSettings())
+
+  private[actors] val ThrottledOpcodes: Set[Int] = Set(Query.opcode, Prepare.opcode, Execute.opcode, Batch.opcode)
+}
+
+/**
+ * Hands out tokens at a fixed rate, holding up to a second's worth of them.
+ */
+private[actors] class TokenBucket(perSecond: Double) {
+  private[this] val capacity = math.max(perSecond, 1.0)
+  private[this] val nanosPerToken = TimeUnit.SECONDS.toNanos(1) / perSecond
+  private[this] var tokens = capacity
+  private[this] var refilled = System.nanoTime()
+
+  /**
+   * @return 0 if the tokens were taken, otherwise how many nanoseconds until they're available.
+   */
+  def tryTake(n: Double, now: Long = System.nanoTime()): Long = synchronized {
+    refill(now)
+    if (tokens >= n) {
+      tokens -= n
+      0
+    } else {
+      math.ceil((n - tokens) * nanosPerToken).toLong
+    }
+  }
+
+  /**
+   * Takes the tokens whether or not they're available.
+   *
+   * @return How many nanoseconds until the tokens would have been available, i.e. how long to wait to use them.
+   */
+  def take(n: Double, now: Long = System.nanoTime()): Long = synchronized {
+    refill(now)
+    tokens -= n
+    if (tokens >= 0) 0 else math.ceil(-tokens * nanosPerToken).toLong
+  }
+
+  def giveBack(n: Double): Unit = synchronized {
+    tokens = math.min(capacity, tokens + n)
+  }
+
+  // Times are taken before the lock is, so they can be a little behind the last refill.
+  private[this] def refill(now: Long): Unit = if (now > refilled) {
+    tokens = math.min(capacity, tokens + (now - refilled) / nanosPerToken)
+    refilled = now
+  }
+}
+
+/**
+ * The buckets for one set of [[ThrottleLimits]].
+ */
+private[actors] class Limiter(val limits: ThrottleLimits) {
+  val requests: Option[TokenBucket] = limits.requestsPerSecond.map(new TokenBucket(_))
+  val bytes: Option[TokenBucket] = limits.bytesPerSecond.map(b => new TokenBucket(b.toDouble))
+}
+
+/**
+ * Throttles all connections to one server.  The buckets are replaced whenever the settings change, the number of
+ * requests in flight is kept.
+ */
+class ServerThrottle(val throttling: Throttling) {
+  private[actors] val inFlight = new AtomicInteger()
+  @volatile private[this] var current = new Limiter(throttling.settings.server)
+
+  private[actors] def limiter(limits: ThrottleLimits): Limiter = {
+    val c = current
+    if (c.limits eq limits) c else synchronized {
+      if (current.limits ne limits) current = new Limiter(limits)
+      current
+    }
+  }
+}
+
+object ServerThrottle {
+  /**
+   * @return A new [[ServerThrottle]] with no limits.
+   */
+  def unlimited: ServerThrottle = new ServerThrottle(Throttling.unlimited)
+}
+
+/**
+ * Whether a request can be handled now.
+ */
+private[actors] sealed trait Admission
+private[actors] case object Admitted extends Admission
+private[actors] case object Rejected extends Admission
+private[actors] case class WaitFor(nanos: Long) extends Admission
+
+/**
+ * Throttles one connection.  Only to be used by its [[ConnectionHandler]].
+ */
+private[actors] class ConnectionThrottle(server: ServerThrottle) {
+  import ConnectionThrottle._
+
+  private[this] var inFlight = 0
+  private[this] var limiter = new Limiter(ThrottleLimits())
+
+  private[this] def connectionLimiter(limits: ThrottleLimits): Limiter = {
+    if (limiter.limits ne limits) limiter = new Limiter(limits)
+    limiter
+  }
+
+  /**
+   * @return Whether any limits are set.
+   */
+  def active: Boolean = !server.throttling.settings.isEmpty
+
+  /**
+   * Decides whether to handle a request now.  If it's admitted it's in flight until it's released.
+   */
+  def admit(): Admission = {
+    val settings = server.throttling.settings
+    tryAdmit(settings) match {
+      case 0L => Admitted
+      case _ if settings.whenOverloaded == RejectWhenOverloaded => Rejected
+      case nanos => WaitFor(nanos)
+    }
+  }
+
+  /**
+   * @return 0 if the request was admitted, otherwise how many nanoseconds to wait before trying again.
+   */
+  private[this] def tryAdmit(settings: ThrottleSettings): Long = {
+    if (settings.connection.maxInFlight.exists(inFlight >= _)) {
+      RetryNanos
+    } else {
+      val serverInFlight = server.inFlight.incrementAndGet()
+      if (settings.server.maxInFlight.exists(serverInFlight > _)) {
+        server.inFlight.decrementAndGet()
+        RetryNanos
+      } else {
+        val now = System.nanoTime()
+        val connection = connectionLimiter(settings.connection).requests
+        val shared = server.limiter(settings.server).requests
+        val connectionWait = connection.map(_.tryTake(1, now)).getOrElse(0L)
+        val sharedWait = if (connectionWait > 0) 0L else shared.map(_.tryTake(1, now)).getOrElse(0L)
+        if (connectionWait == 0 && sharedWait == 0) {
+          inFlight += 1
+          0
+        } else {
+          if (sharedWait > 0) connection.foreach(_.giveBack(1))
+          server.inFlight.decrementAndGet()
+          math.max(connectionWait, sharedWait)
+        }
+      }
+    }
+  }
+
+  /**
+   * Releases a request that was admitted, once it's been responded to.
+   */
+  def release(): Unit = {
+    inFlight -= 1
+    server.inFlight.decrementAndGet()
+  }
+
+  /**
+   * Releases every request still in flight, i.e. when the connection is closed.
+   */
+  def releaseAll(): Unit = {
+    server.inFlight.addAndGet(-inFlight)
+    inFlight = 0
+  }
+
+  /**
+   * @return How many nanoseconds to delay writing a response of the given size by.
+   */
+  def writeDelay(bytes: Int): Long = {
+    val settings = server.throttling.settings
+    if (settings.connection.bytesPerSecond.isEmpty && settings.server.bytesPerSecond.isEmpty) {
+      0
+    } else {
+      val now = System.nanoTime()
+      val connectionWait = connectionLimiter(settings.connection).bytes.map(_.take(bytes, now)).getOrElse(0L)
+      val sharedWait = server.limiter(settings.server).bytes.map(_.take(bytes, now)).getOrElse(0L)
+      math.max(connectionWait, sharedWait)
+    }
+  }
+}
+
+private[actors] object ConnectionThrottle {
+  // How long to wait before trying again to admit a request held up by the number of requests in flight.
+  val RetryNanos: Long = TimeUnit.MILLISECONDS.toNanos(1)
+}
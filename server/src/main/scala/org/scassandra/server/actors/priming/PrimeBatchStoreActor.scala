@@ -9,34 +9,29 @@ import org.scassandra.codec.messages.BatchType.BatchType
 import org.scassandra.server.actors.Activity.BatchExecution
 import org.scassandra.server.actors.priming.PrimeBatchStoreActor._
 import org.scassandra.server.actors.priming.PrimeQueryStoreActor.{ Prime, Then }
-import org.scassandra.server.priming.Defaulter
+import org.scassandra.server.priming.{ Defaulter, PrimeRegistry }
 import org.scassandra.server.priming.routes.PrimingJsonHelper.extractPrime
 
-class PrimeBatchStoreActor extends Actor {
+/**
+ * The one place through which batch primes are recorded.  Primes are published to the [[PrimeRegistry]], from which
+ * the batch handlers read them directly.
+ */
+class PrimeBatchStoreActor(primes: PrimeRegistry) extends Actor {
 
-  import context._
+  def this() = this(new PrimeRegistry)
 
-  def receive: Receive = currentPrimes(Map())
-
-  def currentPrimes(primes: Map[BatchCriteria, BatchPrimeSingle]): Receive = {
+  def receive: Receive = {
     case MatchBatch(primeMatch) =>
-      val prime = primes.find {
-        case (batchCriteria, _) =>
-          batchCriteria.queries == primeMatch.batchQueries.map(bq => BatchQueryPrime(bq.query, bq.batchQueryKind)) &&
-            batchCriteria.consistency.contains(primeMatch.consistency) &&
-            batchCriteria.batchType == primeMatch.batchType
-      } map (_._2.prime)
-
-      sender() ! MatchResult(prime)
+      sender() ! MatchResult(primes(primeMatch))
 
     case RecordBatchPrime(prime) =>
       val p: BatchPrimeSingle = prime.withDefaults
       val criteria = BatchCriteria(p.when.queries, p.when.consistency.get, p.when.batchType.get)
-      become(currentPrimes(primes + (criteria -> p)))
+      primes.batchPrimes += (criteria -> p)
 
     case ClearPrimes =>
+      primes.batchPrimes = Map()
       sender ! Done
-      become(currentPrimes(Map()))
   }
 }
 
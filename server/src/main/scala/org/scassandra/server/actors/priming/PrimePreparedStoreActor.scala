@@ -6,6 +6,7 @@ import org.scassandra.codec.{ Execute, Prepare, ProtocolVersion }
 import org.scassandra.server.actors.priming.PrimePreparedStoreActor._
 import org.scassandra.server.actors.priming.PrimeQueryStoreActor.{ ClearQueryPrimes, Prime }
 import org.scassandra.server.priming.prepared.{ PreparedPrimeIncoming, PreparedStore }
+import scodec.bits.ByteVector
 
 import scala.reflect.runtime.universe._
 
@@ -32,7 +33,7 @@ class PrimePreparedStoreActor[T <: PreparedPrimeIncoming: TypeTag](store: Prepar
 object PrimePreparedStoreActor {
   case class RecordPSPrime[T](prime: T)
 
-  case class LookupByPrepare(prepare: Prepare, idToUse: Int)
+  case class LookupByPrepare(prepare: Prepare, idToUse: ByteVector)
   case class LookupByExecute(queryText: String, execute: Execute, version: ProtocolVersion)
   case class PrimeMatch(prime: Option[Prime])
 
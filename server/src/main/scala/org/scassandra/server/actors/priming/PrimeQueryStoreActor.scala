@@ -1,43 +1,51 @@
 package org.scassandra.server.actors.priming
 
-import java.util.regex.Pattern
-
 import akka.Done
 import akka.actor.{ Actor, ActorLogging, ActorRef }
 import akka.io.Tcp
 import org.scassandra.codec.Consistency.Consistency
 import org.scassandra.codec.datatype.DataType
-import org.scassandra.codec.{ Message, Query, SetKeyspace }
+import org.scassandra.codec.messages.RowMetadata
+import org.scassandra.codec.{ Message, Query }
+import org.scassandra.server.actors.EncodedMessage
 import org.scassandra.server.actors.priming.PrimeQueryStoreActor._
 import org.scassandra.server.priming.Defaulter._
-import org.scassandra.server.priming.PrimeValidator
+import org.scassandra.server.priming.{ DelayProfile, GeneratedRows, PrimeRegistry, PrimeValidator, QueryPrimes }
 import org.scassandra.server.priming.json.ResultJsonRepresentation
 import org.scassandra.server.priming.routes.PrimingJsonHelper
 import org.scassandra.server.priming.routes.PrimingJsonHelper.extractPrime
 
-import scala.concurrent.duration.FiniteDuration
-import scala.util.{ Failure, Success }
-
-class PrimeQueryStoreActor extends Actor with ActorLogging {
+import scala.concurrent.duration.{ Duration, FiniteDuration }
+import scala.util.{ Failure, Success, Try }
 
-  import context._
+/**
+ * The one place through which query primes are recorded.  Primes are published to the [[PrimeRegistry]], from which
+ * the query handlers read them directly.
+ */
+class PrimeQueryStoreActor(primes: PrimeRegistry) extends Actor with ActorLogging {
 
-  def receive = currentPrimes(Map(), Map())
-  private val useKeyspace: Pattern = Pattern.compile("\\s*use\\s+(.*)$", Pattern.CASE_INSENSITIVE)
+  def this() = this(new PrimeRegistry)
 
-  def currentPrimes(queryPrimes: Map[PrimeCriteria, PrimeQuerySingle], queryPatternPrimes: Map[PrimeCriteria, PrimeQuerySingle]): Receive = {
+  def receive: Receive = {
     case RecordQueryPrime(pqs) =>
       val p: PrimeQuerySingle = pqs.withDefaults
+      val queryPrimes = primes.queryPrimes
       PrimingJsonHelper.extractPrimeCriteria(p) match {
         case Success(criteria) =>
-          PrimeValidator.validate(criteria, p.prime, queryPrimes.keys.toList) match {
+          PrimeValidator.validate(criteria, p.prime, queryPrimes.all.keys.toList) match {
             case PrimeAddSuccess =>
               if (criteria.patternMatch) {
-                sender() ! PrimeAddSuccess
-                become(currentPrimes(queryPrimes, queryPatternPrimes + (criteria -> p)))
+                Try(queryPrimes.withPattern(criteria, p)) match {
+                  case Success(updated) =>
+                    primes.queryPrimes = updated
+                    sender() ! PrimeAddSuccess
+                  case Failure(x) =>
+                    log.warning(s"Received invalid query pattern ${criteria.query}", x)
+                    sender() ! BadCriteria(x.getMessage)
+                }
               } else {
+                primes.queryPrimes = queryPrimes.withExact(criteria, p)
                 sender() ! PrimeAddSuccess
-                become(currentPrimes(queryPrimes + (criteria -> p), queryPatternPrimes))
               }
             case notSuccess: PrimeAddResult =>
               sender() ! notSuccess
@@ -47,34 +55,12 @@ class PrimeQueryStoreActor extends Actor with ActorLogging {
           sender() ! BadCriteria(x.getMessage)
       }
     case MatchPrime(q) =>
-      def findPrime: ((PrimeCriteria, PrimeQuerySingle)) => Boolean = {
-        entry =>
-          entry._1.query == q.query &&
-            entry._1.consistency.contains(q.parameters.consistency)
-      }
-      def findPrimePattern: ((PrimeCriteria, PrimeQuerySingle)) => Boolean = {
-        entry =>
-          {
-            entry._1.query.r.findFirstIn(q.query) match {
-              case Some(_) => entry._1.consistency.contains(q.parameters.consistency)
-              case None => false
-            }
-          }
-      }
-
-      val keyspaceMatcher = useKeyspace.matcher(q.query)
-      val prime = if (keyspaceMatcher.matches()) {
-        val keyspaceName = keyspaceMatcher.group(1)
-        Some(Reply(SetKeyspace(keyspaceName)))
-      } else {
-        queryPrimes.find(findPrime).orElse(queryPatternPrimes.find(findPrimePattern)).map(_._2.prime)
-      }
-      sender() ! MatchResult(prime)
+      sender() ! MatchResult(primes(q))
     case ClearQueryPrimes =>
+      primes.queryPrimes = QueryPrimes.empty
       sender() ! Done
-      become(currentPrimes(Map(), Map()))
     case GetAllPrimes =>
-      sender() ! AllPrimes(queryPrimes.values.toList)
+      sender() ! AllPrimes(primes.queryPrimes.all.values.toList)
 
   }
 
@@ -101,7 +87,9 @@ object PrimeQueryStoreActor {
     val result: Option[ResultJsonRepresentation]
     val column_types: Option[Map[String, DataType]]
     val fixedDelay: Option[Long]
+    val delay: Option[DelayProfile]
     val config: Option[Map[String, String]]
+    val generated_rows: Option[GeneratedRows]
   }
 
   case class Then(
@@ -110,7 +98,9 @@ object PrimeQueryStoreActor {
     column_types: Option[Map[String, DataType]] = None,
     fixedDelay: Option[Long] = None,
     config: Option[Map[String, String]] = None,
-    variable_types: Option[List[DataType]] = None) extends ThenProvider {
+    variable_types: Option[List[DataType]] = None,
+    generated_rows: Option[GeneratedRows] = None,
+    delay: Option[DelayProfile] = None) extends ThenProvider {
 
     def withDefaults(query: Option[String]): Then =
       copy(
@@ -144,15 +134,38 @@ object PrimeQueryStoreActor {
   sealed trait Prime {
     val fixedDelay: Option[FiniteDuration]
     val variableTypes: Option[List[DataType]]
+    val delay: Option[DelayProfile]
+
+    /**
+     * @return How long to delay the next response, the fixed delay plus one drawn from the delay profile, if any.
+     */
+    def nextDelay(): Option[FiniteDuration] = (fixedDelay, delay) match {
+      case (fixed, None) => fixed
+      case (fixed, Some(profile)) => Some(fixed.getOrElse(Duration.Zero) + profile.next())
+    }
+  }
+
+  case class Reply(message: Message, fixedDelay: Option[FiniteDuration] = None, variableTypes: Option[List[DataType]] = None,
+    delay: Option[DelayProfile] = None) extends Prime {
+    // Encoded on first use, so that a prime's reply is only encoded once per protocol version.
+    @transient lazy val encoded: EncodedMessage = new EncodedMessage(message)
   }
 
-  case class Reply(message: Message, fixedDelay: Option[FiniteDuration] = None, variableTypes: Option[List[DataType]] = None) extends Prime
+  /**
+   * Replies with rows that are generated as they are written, a page at a time if the request asks for pages.
+   *
+   * @param metadata Metadata of the rows.
+   * @param rows Describes how to generate the rows.
+   */
+  case class GeneratedReply(metadata: RowMetadata, rows: GeneratedRows, fixedDelay: Option[FiniteDuration] = None,
+    variableTypes: Option[List[DataType]] = None, delay: Option[DelayProfile] = None) extends Prime
 
   sealed trait Fatal extends Prime {
     def produceFatalError(tcpConnection: ActorRef)
   }
 
-  case class ClosedConnectionReport(command: String, fixedDelay: Option[FiniteDuration] = None, variableTypes: Option[List[DataType]] = None) extends Fatal {
+  case class ClosedConnectionReport(command: String, fixedDelay: Option[FiniteDuration] = None, variableTypes: Option[List[DataType]] = None,
+    delay: Option[DelayProfile] = None) extends Fatal {
 
     private lazy val closeCommand: Tcp.CloseCommand = command match {
       case "reset" => Tcp.Abort
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.cluster
+
+import java.net.{ InetAddress, InetSocketAddress }
+import java.nio.charset.StandardCharsets
+import java.util.UUID
+
+import com.google.common.net.InetAddresses
+
+/**
+ * How the nodes of a simulated cluster are told apart by clients.
+ */
+sealed trait NodeEndpoints
+
+/**
+ * Every node listens on the same address, each on the next port from the first node's.  Nodes can then only be told
+ * apart by drivers that read their ports from `system.peers_v2`; others see a single node.
+ */
+case object DistinctPorts extends NodeEndpoints
+
+/**
+ * Every node listens on the same port, each on the next address from the first node's, i.e. 127.0.0.1, 127.0.0.2 and
+ * so on.  The addresses must be local to the machine, i.e. loopback aliases.
+ */
+case object LoopbackAliases extends NodeEndpoints
+
+/**
+ * Describes a cluster to simulate, with one native endpoint for each of its nodes.
+ *
+ * @param datacenters The number of nodes in each data center, named dc1, dc2 and so on.
+ * @param endpoints How the nodes listen for connections.
+ * @param name The name of the cluster.
+ * @param releaseVersion The version of Cassandra that each node claims to be.
+ */
+case class ClusterSpec(datacenters: List[Int], endpoints: NodeEndpoints = LoopbackAliases, name: String = "scassandra",
+  releaseVersion: String = "3.11.2") {
+
+  require(datacenters.nonEmpty && datacenters.forall(_ > 0), s"Each data center needs at least one node: $datacenters")
+
+  /**
+   * @param listenAddress Address that the first node listens on.
+   * @param port Port that the first node listens on.
+   * @return The cluster's nodes.
+   */
+  def topology(listenAddress: String, port: Int): ClusterTopology = {
+    val first = InetAddress.getByName(listenAddress)
+    var address = first
+    var index = 0
+    val nodes = datacenters.zipWithIndex.flatMap {
+      case (size, dc) =>
+        (0 until size).map { i =>
+          val (endpoint, storagePort) = endpoints match {
+            case DistinctPorts => (new InetSocketAddress(first, port + index), ClusterSpec.StoragePort + index)
+            case LoopbackAliases => (new InetSocketAddress(address, port), ClusterSpec.StoragePort)
+          }
+          address = InetAddresses.increment(address)
+          index += 1
+          ClusterNode(endpoint, storagePort, s"dc${dc + 1}", "rack1", ClusterSpec.hostId(dc, i),
+            List(ClusterSpec.token(i, size, dc)))
+        }
+    }
+    ClusterTopology(name, releaseVersion, nodes)
+  }
+}
+
+object ClusterSpec {
+  private val TokenRange = BigInt(2).pow(64)
+  // Cassandra's default port for communication between nodes, which no node actually listens on.
+  private[cluster] val StoragePort = 7000
+
+  /**
+   * @param nodes The number of nodes in each data center separated by ':', e.g. '3:2' for 3 nodes in dc1 and 2 in dc2.
+   * @return The cluster to simulate, or `None` if no nodes are given.
+   */
+  def parse(nodes: String, endpoints: NodeEndpoints, name: String, releaseVersion: String): Option[ClusterSpec] =
+    nodes.trim match {
+      case "" => None
+      case spec => Some(ClusterSpec(spec.split(':').map(_.trim.toInt).toList, endpoints, name, releaseVersion))
+    }
+
+  /**
+   * Splits the Murmur3 token range evenly between the nodes of a data center, offsetting each data center by a little
+   * so that no two nodes share a token.
+   */
+  private[cluster] def token(index: Int, nodes: Int, dc: Int): String =
+    (BigInt(Long.MinValue) + TokenRange / nodes * index + dc * 100).toString
+
+  private def hostId(dc: Int, index: Int): UUID =
+    UUID.nameUUIDFromBytes(s"dc${dc + 1}/$index".getBytes(StandardCharsets.UTF_8))
+}
+
+/**
+ * The identity of one node of a simulated cluster.
+ *
+ * @param address Address that the node listens on for native protocol connections.
+ * @param storagePort Port that the node claims to listen on for other nodes, which is distinct between nodes that
+ *                    share an address.
+ * @param tokens Tokens owned by the node.
+ */
+case class ClusterNode(address: InetSocketAddress, storagePort: Int, datacenter: String, rack: String, hostId: UUID, tokens: List[String])
+
+case class ClusterTopology(name: String, releaseVersion: String, nodes: List[ClusterNode]) {
+
+  /**
+   * @return The nodes other than the given one.
+   */
+  def peers(node: ClusterNode): List[ClusterNode] = nodes.filterNot(_ == node)
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.cluster
+
+import java.util.UUID
+import java.util.regex.Pattern
+
+import org.scassandra.codec.Query
+import org.scassandra.codec.datatype._
+import org.scassandra.server.actors.priming.PrimeQueryStoreActor.{ Prime, Then }
+import org.scassandra.server.priming.{ MatchedPrime, QueryPrimeLookup }
+import org.scassandra.server.priming.routes.PrimingJsonHelper.extractPrime
+
+/**
+ * Answers the queries that drivers make of `system.local`, `system.peers` and `system.peers_v2` to discover a
+ * cluster with the identity of one of its nodes.  The rows are built once, so answering them costs no more than
+ * answering any other prime.
+ *
+ * @param topology The cluster the node belongs to.
+ * @param node The node whose view of the cluster to answer with.
+ */
+class SystemTables(topology: ClusterTopology, node: ClusterNode) {
+  import SystemTables._
+
+  private val peers = topology.peers(node)
+
+  val local: Prime = rows("local", LocalColumns, List(Map(
+    "key" -> "local",
+    "bootstrapped" -> "COMPLETED",
+    "broadcast_address" -> node.address.getAddress,
+    "cluster_name" -> topology.name,
+    "cql_version" -> CqlVersion,
+    "data_center" -> node.datacenter,
+    "host_id" -> node.hostId,
+    "listen_address" -> node.address.getAddress,
+    "native_protocol_version" -> NativeProtocolVersion,
+    "partitioner" -> Partitioner,
+    "rack" -> node.rack,
+    "release_version" -> topology.releaseVersion,
+    "rpc_address" -> node.address.getAddress,
+    "schema_version" -> SchemaVersion,
+    "tokens" -> node.tokens)))
+
+  val allPeers: Prime = rows("peers", PeerColumns, peers.map(peerRow))
+
+  val allPeersV2: Prime = rows("peers_v2", PeerV2Columns, peers.map(peerV2Row))
+
+  private val peersByAddress: Map[String, (Prime, Prime)] = peers.groupBy(_.address.getAddress.getHostAddress).map {
+    case (address, ps) => address -> ((rows("peers", PeerColumns, ps.map(peerRow)), rows("peers_v2", PeerV2Columns, ps.map(peerV2Row))))
+  }
+
+  private val noPeers = (rows("peers", PeerColumns, Nil), rows("peers_v2", PeerV2Columns, Nil))
+
+  /**
+   * @param query A query of any table.
+   * @return The node's rows if the query is of one of the system tables describing the cluster.
+   */
+  def apply(query: Query): Option[Prime] = matching(query).map(_.prime)
+
+  /**
+   * @param query A query of any table.
+   * @return The node's rows if the query is of one of the system tables, along with the name of the table.
+   */
+  def matching(query: Query): Option[MatchedPrime] = {
+    val matcher = SystemTableQuery.matcher(query.query)
+    if (matcher.find()) {
+      val table = matcher.group(1).toLowerCase
+      val prime = if (table == "local") {
+        local
+      } else {
+        val peerMatcher = PeerCriteria.matcher(query.query)
+        val (v1, v2) =
+          if (peerMatcher.find()) peersByAddress.getOrElse(peerMatcher.group(1), noPeers) else (allPeers, allPeersV2)
+        if (table == "peers") v1 else v2
+      }
+      Some(MatchedPrime(prime, s"system.$table"))
+    } else {
+      None
+    }
+  }
+
+  /**
+   * @param primes Primes to look up first.
+   * @return A lookup of the given primes that falls back to this node's system tables, so that the system tables
+   *         can still be primed to simulate a different topology.
+   */
+  def orElse(primes: QueryPrimeLookup): QueryPrimeLookup = new QueryPrimeLookup {
+    def apply(query: Query): Option[Prime] = primes(query).orElse(SystemTables.this(query))
+
+    override def matching(query: Query): Option[MatchedPrime] = primes.matching(query).orElse(SystemTables.this.matching(query))
+  }
+
+  private def peerRow(peer: ClusterNode): Map[String, Any] = Map(
+    "peer" -> peer.address.getAddress,
+    "data_center" -> peer.datacenter,
+    "host_id" -> peer.hostId,
+    "rack" -> peer.rack,
+    "release_version" -> topology.releaseVersion,
+    "rpc_address" -> peer.address.getAddress,
+    "schema_version" -> SchemaVersion,
+    "tokens" -> peer.tokens)
+
+  private def peerV2Row(peer: ClusterNode): Map[String, Any] = Map(
+    "peer" -> peer.address.getAddress,
+    "peer_port" -> peer.storagePort,
+    "data_center" -> peer.datacenter,
+    "host_id" -> peer.hostId,
+    "native_address" -> peer.address.getAddress,
+    "native_port" -> peer.address.getPort,
+    "rack" -> peer.rack,
+    "release_version" -> topology.releaseVersion,
+    "schema_version" -> SchemaVersion,
+    "tokens" -> peer.tokens)
+
+  private def rows(table: String, columns: Map[String, DataType], rows: List[Map[String, Any]]): Prime =
+    extractPrime(Then(rows = Some(rows), column_types = Some(columns)), Some("system"), Some(table))
+}
+
+object SystemTables {
+  private val SystemTableQuery = Pattern.compile("^\\s*select\\s.+?\\sfrom\\s+system\\.(local|peers_v2|peers)\\b",
+    Pattern.CASE_INSENSITIVE | Pattern.DOTALL)
+  private val PeerCriteria = Pattern.compile("\\swhere\\s+peer\\s*=\\s*'([^']+)'", Pattern.CASE_INSENSITIVE)
+
+  private val CqlVersion = "3.4.4"
+  private val NativeProtocolVersion = "4"
+  private val Partitioner = "org.apache.cassandra.dht.Murmur3Partitioner"
+  // Every node agrees on the schema, so that drivers don't wait for agreement.
+  private val SchemaVersion = UUID.fromString("59adb24e-f3cd-3e02-97f0-5b395827453f")
+
+  private val LocalColumns: Map[String, DataType] = Map(
+    "key" -> Varchar,
+    "bootstrapped" -> Varchar,
+    "broadcast_address" -> CqlInet,
+    "cluster_name" -> Varchar,
+    "cql_version" -> Varchar,
+    "data_center" -> Varchar,
+    "host_id" -> Uuid,
+    "listen_address" -> CqlInet,
+    "native_protocol_version" -> Varchar,
+    "partitioner" -> Varchar,
+    "rack" -> Varchar,
+    "release_version" -> Varchar,
+    "rpc_address" -> CqlInet,
+    "schema_version" -> Uuid,
+    "tokens" -> CqlSet(Varchar))
+
+  private val PeerColumns: Map[String, DataType] = Map(
+    "peer" -> CqlInet,
+    "data_center" -> Varchar,
+    "host_id" -> Uuid,
+    "rack" -> Varchar,
+    "release_version" -> Varchar,
+    "rpc_address" -> CqlInet,
+    "schema_version" -> Uuid,
+    "tokens" -> CqlSet(Varchar))
+
+  private val PeerV2Columns: Map[String, DataType] = Map(
+    "peer" -> CqlInet,
+    "peer_port" -> CqlInt,
+    "data_center" -> Varchar,
+    "host_id" -> Uuid,
+    "native_address" -> CqlInet,
+    "native_port" -> CqlInt,
+    "rack" -> Varchar,
+    "release_version" -> Varchar,
+    "schema_version" -> Uuid,
+    "tokens" -> CqlSet(Varchar))
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.metrics
+
+import java.util.concurrent.atomic.{ AtomicLongArray, LongAccumulator, LongAdder }
+
+import org.scassandra.server.metrics.LatencyHistogram._
+
+/**
+ * A log-linear histogram of latencies, in the manner of HdrHistogram, that can be recorded into from many threads
+ * at once without locking.
+ *
+ * Values are counted in buckets that double in width for each power of two, with [[SubBuckets]] buckets per power
+ * of two, so any value is reported to within 1/64th (less than 2%) of what was recorded however large it is, while
+ * the whole range of a `Long` takes a fixed few thousand counters.  Recording is a couple of shifts and an atomic
+ * increment.
+ *
+ * Values are unit-less; callers record nanoseconds and convert when reporting.
+ */
+class LatencyHistogram {
+  private[this] val counts = new AtomicLongArray(BucketCount)
+  private[this] val sum = new LongAdder
+  private[this] val max = new LongAccumulator(Math.max(_, _), 0)
+
+  /**
+   * @param value The value to record, negative values are recorded as 0.
+   */
+  def record(value: Long): Unit = {
+    val recorded = Math.max(value, 0)
+    counts.incrementAndGet(indexOf(recorded))
+    sum.add(recorded)
+    max.accumulate(recorded)
+  }
+
+  /**
+   * Clears every recorded value.  Values recorded while resetting may or may not be kept.
+   */
+  def reset(): Unit = {
+    (0 until BucketCount).foreach(counts.set(_, 0))
+    sum.reset()
+    max.reset()
+  }
+
+  /**
+   * @return The values recorded so far, which can be queried while recording carries on.
+   */
+  def snapshot(): Snapshot = {
+    val copy = new Array[Long](BucketCount)
+    (0 until BucketCount).foreach(i => copy(i) = counts.get(i))
+    Snapshot(copy, sum.sum(), max.get())
+  }
+}
+
+object LatencyHistogram {
+
+  private val SubBucketBits = 7
+  private[metrics] val SubBuckets = 1 << SubBucketBits
+  private val HalfSubBuckets = SubBuckets / 2
+  private val BucketCount = (64 - SubBucketBits + 1) * HalfSubBuckets
+
+  /**
+   * Values below [[SubBuckets]] are counted exactly.  Above that, each power of two is split into half as many
+   * buckets, keeping the top [[SubBucketBits]] bits of the value.
+   */
+  private[metrics] def indexOf(value: Long): Int = {
+    val shift = Math.max(0, 64 - java.lang.Long.numberOfLeadingZeros(value) - SubBucketBits)
+    shift * HalfSubBuckets + (value >>> shift).toInt
+  }
+
+  /**
+   * @return The largest value counted in the bucket at the given index.
+   */
+  private[metrics] def highestValueAt(index: Int): Long = {
+    val shift = Math.max(0, index / HalfSubBuckets - 1)
+    val subBucket = index - shift * HalfSubBuckets
+    ((subBucket.toLong + 1) << shift) - 1
+  }
+
+  /**
+   * The values recorded by a [[LatencyHistogram]] at a point in time.
+   *
+   * @param counts The count of values in each bucket.
+   * @param sum The sum of every recorded value.
+   * @param max The largest recorded value.
+   */
+  case class Snapshot(counts: Array[Long], sum: Long, max: Long) {
+
+    lazy val count: Long = counts.sum
+
+    def mean: Double = if (count == 0) 0 else sum.toDouble / count
+
+    /**
+     * @param percentile The percentile, from 0 to 100, e.g. 99.9
+     * @return The value that the given percentage of recorded values are at or below, to within the precision of
+     *         the histogram, or 0 if nothing was recorded.
+     */
+    def valueAtPercentile(percentile: Double): Long = {
+      val target = Math.max(1, Math.ceil(percentile / 100 * count).toLong)
+      var seen = 0L
+      var i = 0
+      while (i < counts.length) {
+        seen += counts(i)
+        if (seen >= target) return Math.min(highestValueAt(i), max)
+        i += 1
+      }
+      0
+    }
+
+    /**
+     * @param other Another snapshot, e.g. of a histogram recorded into by a different connection.
+     * @return A snapshot of the values recorded by both.
+     */
+    def merge(other: Snapshot): Snapshot =
+      Snapshot(counts.zip(other.counts).map { case (a, b) => a + b }, sum + other.sum, Math.max(max, other.max))
+
+    override def toString: String =
+      s"Snapshot(count=$count, mean=$mean, max=$max)"
+  }
+}
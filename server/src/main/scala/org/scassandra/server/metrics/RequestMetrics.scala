@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.metrics
+
+import java.util.concurrent.ConcurrentHashMap
+
+import org.scassandra.codec._
+import org.scassandra.server.metrics.RequestMetrics._
+import org.scassandra.server.priming.MatchedPrime
+
+import scala.collection.JavaConverters._
+
+/**
+ * A stage of handling a request that is timed by [[RequestMetrics]].
+ */
+sealed abstract class Stage(val name: String, private[metrics] val order: Int)
+
+object Stage {
+  /**
+   * Decoding the message of a frame once all of it has been received.
+   */
+  case object Decode extends Stage("decode", 0)
+
+  /**
+   * Looking up the prime for a query or execution.
+   */
+  case object PrimeLookup extends Stage("prime_lookup", 1)
+
+  /**
+   * Recording the request as activity.  The values of bound variables are only decoded once they are read.
+   */
+  case object ActivityRecording extends Stage("activity_recording", 2)
+
+  /**
+   * Encoding the response into a frame.
+   */
+  case object Encode extends Stage("encode", 3)
+
+  /**
+   * Waiting for an encoded response to be handed to the connection, i.e. while it's coalesced with others.  When
+   * writes aren't coalesced this is only the time taken to hand it over, not to write it to the socket.
+   */
+  case object Write extends Stage("write", 4)
+}
+
+/**
+ * The latencies of one stage of handling requests with the same opcode, and the same prime if known at that stage.
+ * Latencies are in microseconds.
+ */
+case class StageLatency(stage: String, opcode: String, prime: Option[String], count: Long, mean: Double, p50: Double,
+  p99: Double, p999: Double, max: Double)
+
+/**
+ * Latency histograms for each [[Stage]] of handling requests, shared by the handlers of every connection so they
+ * can be read through the admin api.  Each stage is broken down by the opcode of the request and, for the prime
+ * lookup and activity recording, by the query text or pattern the matched prime was recorded with.  Encoding and
+ * writing are only broken down by opcode.  Requests that matched no prime are counted as [[Unprimed]], and once
+ * [[MaxSeries]] histograms are being kept any further primes are counted together as [[OtherPrimes]], so that
+ * priming many different queries can't grow the histograms without bound.
+ *
+ * Timing is done as a start, followed by a record once the stage is complete:
+ * {{{
+ *   val started = metrics.start()
+ *   val prime = primes.matching(query)
+ *   metrics.record(Stage.PrimeLookup, Query.opcode, started, RequestMetrics.matched(prime))
+ * }}}
+ *
+ * @param enabled Whether to time requests at all.  When not, starting and recording only read this flag.
+ */
+class RequestMetrics(@volatile var enabled: Boolean) {
+
+  private[this] val histograms = new ConcurrentHashMap[Key, LatencyHistogram]()
+
+  /**
+   * @return When the stage started, or 0 if metrics are disabled.
+   */
+  def start(): Long = if (enabled) System.nanoTime() else 0
+
+  /**
+   * @param stage The stage that is complete.
+   * @param opcode The opcode of the request.
+   * @param started When the stage started, from [[start]].
+   * @param prime The prime the request matched, if known.
+   */
+  def record(stage: Stage, opcode: Int, started: Long, prime: Option[String] = None): Unit =
+    if (started != 0) histogram(Key(stage, opcode, prime)).record(System.nanoTime() - started)
+
+  private[this] def histogram(key: Key): LatencyHistogram = histograms.get(key) match {
+    case null =>
+      val tracked = if (key.prime.isDefined && histograms.size >= MaxSeries) key.copy(prime = Some(OtherPrimes)) else key
+      histograms.computeIfAbsent(tracked, _ => new LatencyHistogram)
+    case histogram => histogram
+  }
+
+  /**
+   * @return The latencies recorded so far for each stage, opcode and prime, ordered by stage.
+   */
+  def latencies: List[StageLatency] = {
+    def micros(nanos: Double) = nanos / 1000
+    histograms.asScala.toList.sortBy { case (key, _) => (key.stage.order, key.opcode, key.prime) }.map {
+      case (key, histogram) =>
+        val s = histogram.snapshot()
+        StageLatency(key.stage.name, opcodeName(key.opcode), key.prime, s.count, micros(s.mean),
+          micros(s.valueAtPercentile(50)), micros(s.valueAtPercentile(99)), micros(s.valueAtPercentile(99.9)),
+          micros(s.max))
+    }
+  }
+
+  /**
+   * @return The latencies recorded so far as a Prometheus summary, in seconds.
+   */
+  def prometheus: String = {
+    val text = new StringBuilder
+    text.append("# HELP scassandra_request_stage_seconds Time spent in each stage of handling requests.\n")
+    text.append("# TYPE scassandra_request_stage_seconds summary\n")
+    latencies.foreach { l =>
+      val labels = s"""stage="${l.stage}",opcode="${l.opcode}"""" + l.prime.map(p => s""",prime="${escape(p)}"""").getOrElse("")
+      List("0.5" -> l.p50, "0.99" -> l.p99, "0.999" -> l.p999).foreach {
+        case (quantile, value) =>
+          text.append(s"""scassandra_request_stage_seconds{$labels,quantile="$quantile"} ${value / 1e6}\n""")
+      }
+      text.append(s"scassandra_request_stage_seconds_sum{$labels} ${l.mean * l.count / 1e6}\n")
+      text.append(s"scassandra_request_stage_seconds_count{$labels} ${l.count}\n")
+    }
+    text.toString
+  }
+
+  /**
+   * Forgets every recorded latency.
+   */
+  def reset(): Unit = histograms.clear()
+}
+
+object RequestMetrics {
+
+  val Unprimed = "unprimed"
+  val OtherPrimes = "other"
+
+  /**
+   * The most histograms to keep across every stage, opcode and prime.  Once reached, primes without histograms of
+   * their own are counted as [[OtherPrimes]].
+   */
+  val MaxSeries = 1000
+
+  /**
+   * Used where no metrics are wanted, i.e. by handlers created without any.
+   */
+  val disabled = new RequestMetrics(false)
+
+  /**
+   * @param prime The prime looked up for a request.
+   * @return How the prime is reported: by what it was recorded with if one matched, otherwise as [[Unprimed]].
+   */
+  def matched(prime: Option[MatchedPrime]): Option[String] = Some(prime.fold(Unprimed)(_.criteria))
+
+  private case class Key(stage: Stage, opcode: Int, prime: Option[String])
+
+  private[metrics] def opcodeName(opcode: Int): String = opcode match {
+    case Startup.opcode => "STARTUP"
+    case Options.opcode => "OPTIONS"
+    case Query.opcode => "QUERY"
+    case Prepare.opcode => "PREPARE"
+    case Execute.opcode => "EXECUTE"
+    case Register.opcode => "REGISTER"
+    case Batch.opcode => "BATCH"
+    case other => f"0x$other%02X"
+  }
+
+  private def escape(label: String): String =
+    label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")
+}
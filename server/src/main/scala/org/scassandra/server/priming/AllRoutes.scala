@@ -29,11 +29,12 @@ trait AllRoutes extends PrimingPreparedRoute
   with VersionRoute
   with PrimingBatchRoute
   with CurrentRoute
+  with MetricsRoute
   with PrimingMultiRoute with LazyLogging {
 
   val allRoutes: Route = routeForPreparedPriming ~
     queryRoute ~ activityVerificationRoute ~
-    versionRoute ~ batchRoute ~ currentRoute ~ routeForMulti
+    versionRoute ~ batchRoute ~ currentRoute ~ metricsRoute ~ routeForMulti
 
 }
 
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.priming
+
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.AtomicLong
+
+import scala.concurrent.duration._
+
+/**
+ * Describes how long to delay each response of a prime, so that a stub's latency can vary the way a real cluster's
+ * does rather than being the same every time.  Delays are in milliseconds.
+ *
+ * With a seed, the n-th response of the prime is always delayed by the same amount.  Without one, each delay is
+ * random.
+ *
+ * @param distribution The distribution that delays are drawn from.
+ * @param jitter Up to how much to add to or take away from each delay, uniformly.
+ * @param seed Seed of the delays, so that they are the same each time the prime is used.
+ */
+case class DelayProfile(distribution: DelayDistribution, jitter: Double = 0, seed: Option[Long] = None) {
+  require(jitter >= 0, "jitter of delays must not be negative")
+
+  private[this] val responses = new AtomicLong()
+
+  /**
+   * @return The delay of the next response.
+   */
+  def next(): FiniteDuration = {
+    val (u1, u2, u3) = seed match {
+      case Some(s) =>
+        val n = s + responses.getAndIncrement() * 3
+        (DelayProfile.uniform(n), DelayProfile.uniform(n + 1), DelayProfile.uniform(n + 2))
+      case None =>
+        val random = ThreadLocalRandom.current()
+        (random.nextDouble(), random.nextDouble(), random.nextDouble())
+    }
+    val millis = distribution.sample(u1, u2) + jitter * (2 * u3 - 1)
+    math.max(0, (millis * 1000000).toLong).nanoseconds
+  }
+}
+
+object DelayProfile {
+  /**
+   * @return A uniformly distributed value from 0 until 1 derived from the given value alone.
+   */
+  private def uniform(value: Long): Double = (ColumnGenerator.mix(value) >>> 11) * (1.0 / (1L << 53))
+}
+
+/**
+ * A distribution of delays, in milliseconds.
+ */
+sealed trait DelayDistribution {
+  /**
+   * @param u1 A uniformly distributed value from 0 until 1.
+   * @param u2 Another, independent, uniformly distributed value from 0 until 1.
+   * @return A delay drawn from the distribution.
+   */
+  def sample(u1: Double, u2: Double): Double
+}
+
+/**
+ * Delays with the given percentiles, e.g. 50 -> 2, 99 -> 40, 99.9 -> 150, interpolating linearly between them.
+ * Delays start from 0 unless the 0th percentile is given, and are never above the highest percentile given.
+ *
+ * @param percentiles The delay at each percentile, from 0 to 100.
+ */
+case class PercentileDistribution(percentiles: Map[Double, Double]) extends DelayDistribution {
+  require(percentiles.nonEmpty, "percentiles of delays must not be empty")
+  require(percentiles.keys.forall(p => p >= 0 && p <= 100), "percentiles of delays must be from 0 to 100")
+  require(percentiles.values.forall(_ >= 0), "delays at percentiles must not be negative")
+
+  private[this] val points: Array[(Double, Double)] = {
+    val sorted = percentiles.toArray.sortBy(_._1)
+    if (sorted.head._1 == 0) sorted else (0.0, 0.0) +: sorted
+  }
+  require(points.sliding(2).forall {
+    case Array((_, lower), (_, upper)) => lower <= upper
+    case _ => true
+  }, "delays must not decrease as percentiles increase")
+
+  def sample(u1: Double, u2: Double): Double = {
+    val p = u1 * 100
+    val upper = points.indexWhere(_._1 >= p)
+    if (upper == -1) {
+      points.last._2
+    } else if (upper == 0) {
+      points.head._2
+    } else {
+      val (p0, d0) = points(upper - 1)
+      val (p1, d1) = points(upper)
+      d0 + (d1 - d0) * (p - p0) / (p1 - p0)
+    }
+  }
+}
+
+/**
+ * Delays whose logarithm is normally distributed, the long tailed shape that latencies usually have.
+ *
+ * @param median Half of delays are below this.
+ * @param sigma Standard deviation of the logarithm of delays, the larger it is the longer the tail.
+ */
+case class LogNormalDistribution(median: Double, sigma: Double) extends DelayDistribution {
+  require(median > 0, "median of log-normal delays must be positive")
+  require(sigma >= 0, "sigma of log-normal delays must not be negative")
+
+  def sample(u1: Double, u2: Double): Double = {
+    // Box-Muller transform of the two uniform values to a normally distributed one.
+    val normal = math.sqrt(-2 * math.log(1 - u1)) * math.cos(2 * math.Pi * u2)
+    median * math.exp(sigma * normal)
+  }
+}
+
+/**
+ * Exponentially distributed delays, as between events that happen at a constant rate.
+ *
+ * @param mean The mean delay.
+ */
+case class ExponentialDistribution(mean: Double) extends DelayDistribution {
+  require(mean > 0, "mean of exponential delays must be positive")
+
+  def sample(u1: Double, u2: Double): Double = -mean * math.log(1 - u1)
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.priming
+
+import org.scassandra.codec.ColumnarRows
+import org.scassandra.codec.messages.{ Row, RowMetadata }
+
+/**
+ * Describes rows to be generated when they are written rather than recorded with the prime, so that a prime can
+ * return far more rows than would fit in memory.  Each row is generated from its index alone, so any page of rows
+ * can be generated without generating the rows before it, and the same row is generated each time.
+ *
+ * @param count The number of rows.
+ * @param columns Generator of each column's values by column name.
+ * @param seed Seed of the random values, so that they are the same each time the prime is used.
+ */
+case class GeneratedRows(count: Int, columns: Map[String, ColumnGenerator], seed: Option[Long] = None) {
+  require(count >= 0, "count of generated rows must not be negative")
+  columns.foreach {
+    case (name, sequence: SequenceGenerator) =>
+      require(!sequence.overflows(count), s"sequence of column $name overflows a bigint within $count rows")
+    case _ =>
+  }
+
+  // Each column gets its own seed so that random columns don't generate the same values.
+  private[this] val generators: List[(String, ColumnGenerator, Long)] = columns.toList.map {
+    case (name, generator) => (name, generator, ColumnGenerator.mix(seed.getOrElse(0L) ^ name.hashCode))
+  }
+
+  /**
+   * @param index Index of the row, from 0 until count.
+   * @return The row at the index.
+   */
+  def row(index: Int): Row = Row(generators.map {
+    case (name, generator, columnSeed) => name -> generator(columnSeed, index)
+  }.toMap)
+
+  /**
+   * @return The rows from the first index until, but not including, the second.
+   */
+  def rows(from: Int, until: Int): List[Row] = (math.max(from, 0) until math.min(until, count)).map(row).toList
+
+  /**
+   * Rows made of the extremes of each column's values (e.g. the first and last of a sequence, the bounds of random
+   * numbers), which between them cover the range of values generated for every row.
+   *
+   * @return The sample rows, none if there are no rows.
+   */
+  def samples: List[Row] = if (count == 0) Nil else {
+    val columnSamples = generators.map {
+      case (name, generator, columnSeed) => (name, generator.samples(columnSeed, count))
+    }
+    val size = columnSamples.map(_._2.size).foldLeft(1)(math.max)
+    (0 until size).map { i =>
+      Row(columnSamples.map { case (name, values) => name -> values(math.min(i, values.size - 1)) }.toMap)
+    }.toList
+  }
+
+  /**
+   * Generates rows a column at a time, without building a [[Row]] for each of them.
+   *
+   * @return The rows from the first index until, but not including, the second.
+   */
+  def columnar(metadata: RowMetadata, from: Int, until: Int): ColumnarRows = {
+    val start = math.max(from, 0)
+    val size = math.max(math.min(until, count) - start, 0)
+    ColumnarRows(metadata, size, generators.map {
+      case (name, generator, columnSeed) =>
+        val values = new Array[Any](size)
+        var i = 0
+        while (i < size) {
+          values(i) = generator(columnSeed, start + i)
+          i += 1
+        }
+        name -> (values: IndexedSeq[Any])
+    }.toMap)
+  }
+}
+
+/**
+ * Generates the value of a column for a row.
+ */
+sealed trait ColumnGenerator {
+  /**
+   * @param seed Seed for the column, for generators of random values.
+   * @param index Index of the row.
+   * @return The column's value for the row.
+   */
+  def apply(seed: Long, index: Long): Any
+
+  /**
+   * @param seed Seed for the column.
+   * @param count The number of rows, at least 1.
+   * @return Values covering the range of those generated for the rows, by default the first and last.
+   */
+  def samples(seed: Long, count: Int): List[Any] = List(apply(seed, 0), apply(seed, count - 1L))
+}
+
+/**
+ * Generates start, start + step, start + 2 * step, ...
+ */
+case class SequenceGenerator(start: Long = 0, step: Long = 1) extends ColumnGenerator {
+  def apply(seed: Long, index: Long): Any = start + index * step
+
+  /**
+   * @return Whether the values of the given number of rows go past the range of a long, which they would wrap around.
+   */
+  def overflows(count: Int): Boolean =
+    count > 0 && !(BigInt(start) + BigInt(count - 1) * step).isValidLong
+}
+
+/**
+ * Generates random numbers from min until, but not including, max.
+ */
+case class RandomGenerator(min: Long = 0, max: Long = Int.MaxValue) extends ColumnGenerator {
+  require(min < max, "min of random values must be less than max")
+
+  def apply(seed: Long, index: Long): Any = min + java.lang.Long.remainderUnsigned(ColumnGenerator.mix(seed + index), max - min)
+
+  override def samples(seed: Long, count: Int): List[Any] = List(min, max - 1)
+}
+
+/**
+ * Generates text from a template, replacing `{n}` with the index of the row and `{random}` with a random number.
+ */
+case class TemplateGenerator(template: String) extends ColumnGenerator {
+  def apply(seed: Long, index: Long): Any = fill(index, java.lang.Long.toUnsignedString(ColumnGenerator.mix(seed + index)))
+
+  /**
+   * The first and last rows, with `{random}` as the smallest and largest random numbers, 0 and 2^64 - 1.
+   */
+  override def samples(seed: Long, count: Int): List[Any] =
+    if (template.contains("{random}")) List(fill(0, "0"), fill(count - 1L, java.lang.Long.toUnsignedString(-1L)))
+    else super.samples(seed, count)
+
+  private def fill(index: Long, random: String): String = template.replace("{n}", index.toString).replace("{random}", random)
+}
+
+/**
+ * Generates the same value for every row.
+ */
+case class ConstantGenerator(value: Any) extends ColumnGenerator {
+  def apply(seed: Long, index: Long): Any = value
+
+  override def samples(seed: Long, count: Int): List[Any] = List(value)
+}
+
+object ColumnGenerator {
+  /**
+   * Scrambles the bits of a value (the finalizer of SplitMix64), used so that consecutive rows get unrelated random
+   * values without any state being kept between them.
+   */
+  def mix(value: Long): Long = {
+    var z = value + 0x9E3779B97F4A7C15L
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL
+    z ^ (z >>> 31)
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.priming
+
+import org.scassandra.codec.{ Execute, Prepare, ProtocolVersion, Query }
+import org.scassandra.server.actors.Activity.BatchExecution
+import org.scassandra.server.actors.priming.PrimeBatchStoreActor.{ BatchCriteria, BatchPrimeSingle, BatchQueryPrime }
+import org.scassandra.server.actors.priming.PrimeQueryStoreActor.Prime
+import org.scassandra.server.priming.prepared.PreparedStoreLookup
+import scodec.bits.ByteVector
+
+/**
+ * A prime along with the query text or pattern it was recorded with, which tells primes apart where many different
+ * queries can match the same prime, i.e. by pattern.
+ */
+case class MatchedPrime(prime: Prime, criteria: String)
+
+trait QueryPrimeLookup {
+  def apply(query: Query): Option[Prime]
+
+  /**
+   * @return The prime for the query and what it was recorded with, by default the query's own text.
+   */
+  def matching(query: Query): Option[MatchedPrime] = apply(query).map(MatchedPrime(_, query.query))
+}
+
+trait BatchPrimeLookup {
+  def apply(batch: BatchExecution): Option[Prime]
+}
+
+/**
+ * All primes, shared between the actors that record them and the handlers that look them up for every request.
+ *
+ * Query and batch primes are held as immutable snapshots which their store actor replaces whole whenever a prime is
+ * recorded or cleared, so handlers look primes up synchronously, without locking and without asking an actor.
+ * Prepared statement primes live in the [[org.scassandra.server.priming.prepared.PreparedStore]]s, which publish
+ * their primes the same way.  Each kind of prime is only ever written by its store actor, so the admin routes still
+ * change primes through one place.
+ *
+ * @param preparedStores Stores of prepared statement primes, in order of priority.
+ */
+class PrimeRegistry(preparedStores: List[PreparedStoreLookup]) extends QueryPrimeLookup with BatchPrimeLookup
+  with PreparedStoreLookup {
+
+  def this() = this(Nil)
+
+  @volatile private var queries: QueryPrimes = QueryPrimes.empty
+  @volatile private var batches: Map[BatchCriteria, BatchPrimeSingle] = Map()
+
+  def queryPrimes: QueryPrimes = queries
+
+  /**
+   * Only to be called by the [[org.scassandra.server.actors.priming.PrimeQueryStoreActor]].
+   */
+  def queryPrimes_=(primes: QueryPrimes): Unit = queries = primes
+
+  def batchPrimes: Map[BatchCriteria, BatchPrimeSingle] = batches
+
+  /**
+   * Only to be called by the [[org.scassandra.server.actors.priming.PrimeBatchStoreActor]].
+   */
+  def batchPrimes_=(primes: Map[BatchCriteria, BatchPrimeSingle]): Unit = batches = primes
+
+  def apply(query: Query): Option[Prime] = queries(query)
+
+  override def matching(query: Query): Option[MatchedPrime] = queries.matching(query)
+
+  def apply(batch: BatchExecution): Option[Prime] = {
+    val queries = batch.batchQueries.map(bq => BatchQueryPrime(bq.query, bq.batchQueryKind))
+    batches.collectFirst {
+      case (criteria, prime) if criteria.queries == queries && criteria.consistency.contains(batch.consistency) &&
+        criteria.batchType == batch.batchType => prime.prime
+    }
+  }
+
+  def apply(prepare: Prepare, id: ByteVector): Option[Prime] = firstPrepared(_(prepare, id))
+
+  def apply(queryText: String, execute: Execute)(implicit protocolVersion: ProtocolVersion): Option[Prime] =
+    firstPrepared(_(queryText, execute))
+
+  override def matching(queryText: String, execute: Execute)(implicit protocolVersion: ProtocolVersion): Option[MatchedPrime] =
+    preparedStores.iterator.map(_.matching(queryText, execute)).collectFirst { case Some(matched) => matched }
+
+  // Each store's generation only ever increases, so their sum changes whenever any of them does.
+  def generation: Long = preparedStores.map(_.generation).sum
+
+  private def firstPrepared(lookup: PreparedStoreLookup => Option[Prime]): Option[Prime] =
+    preparedStores.iterator.map(lookup).collectFirst { case Some(prime) => prime }
+}
@@ -17,6 +17,7 @@ package org.scassandra.server.priming
 
 import com.typesafe.scalalogging.LazyLogging
 import org.scassandra.codec.datatype.{ DataType, Varchar }
+import org.scassandra.codec.messages.{ Row, RowMetadata }
 import org.scassandra.codec.{ ProtocolVersion, Rows }
 import org.scassandra.server.actors.priming.PrimeQueryStoreActor._
 import scodec.Attempt
@@ -51,26 +52,32 @@ object PrimeValidator extends LazyLogging {
   }
 
   def validateColumnTypes(prime: Prime): PrimeAddResult = prime match {
-    case Reply(message, _, _) =>
-      val typeMismatches = message match {
-        case Rows(metadata, rows) =>
-          val columnSpec = metadata.columnSpec.getOrElse(Nil).map(spec => (spec.name, spec.dataType)).toMap
-          for {
-            row <- rows
-            (column, value) <- row.columns
-            columnType = columnSpec.getOrElse(column, Varchar)
-            if isTypeMismatch(value, columnType)
-          } yield TypeMismatch(value, column, columnType.stringRep)
-        case _ => Nil
-      }
-
-      typeMismatches match {
-        case Nil => PrimeAddSuccess
-        case _: List[TypeMismatch] => TypeMismatches(typeMismatches)
+    case Reply(message, _, _, _) =>
+      message match {
+        case Rows(metadata, rows) => validateRows(metadata, rows)
+        case _ => PrimeAddSuccess
       }
+    case GeneratedReply(metadata, rows, _, _, _) =>
+      // Only samples are checked: the extremes of each column's values, which every generator's values lie between.
+      validateRows(metadata, rows.samples)
     case _ => PrimeAddSuccess
   }
 
+  private def validateRows(metadata: RowMetadata, rows: List[Row]): PrimeAddResult = {
+    val columnSpec = metadata.columnSpec.getOrElse(Nil).map(spec => (spec.name, spec.dataType)).toMap
+    val typeMismatches = for {
+      row <- rows
+      (column, value) <- row.columns
+      columnType = columnSpec.getOrElse(column, Varchar)
+      if isTypeMismatch(value, columnType)
+    } yield TypeMismatch(value, column, columnType.stringRep)
+
+    typeMismatches match {
+      case Nil => PrimeAddSuccess
+      case _: List[TypeMismatch] => TypeMismatches(typeMismatches)
+    }
+  }
+
   private def isTypeMismatch(value: Any, dataType: DataType): Boolean = {
     convertValue(value, dataType) match {
       case Successful(_) => false
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.priming
+
+import java.util.regex.Pattern
+
+import org.scassandra.server.actors.priming.PrimeQueryStoreActor.PrimeCriteria
+import org.scassandra.server.priming.QueryPatternMatcher.Entry
+
+import scala.util.Try
+
+/**
+ * Matches query text against the query patterns of recorded primes.
+ *
+ * Each pattern is compiled once, when it is recorded.  On lookup every pattern is first tried in a single pass using
+ * an alternation of all of them, so that text matching none of the patterns (the common case) is rejected without
+ * trying each pattern in turn.  When the alternation does match, a second alternation, with every alternative
+ * anchored to the start of the text, finds the first pattern in recording order that is found anywhere in the text,
+ * and the capturing group wrapping each pattern tells us which one that is.  Unanchored, the alternation would pick
+ * whichever pattern matches earliest in the text instead.  Only if that prime's criteria is not accepted are the
+ * patterns tried one by one, again in recording order.
+ *
+ * The alternation is built lazily on the first lookup after a change, so recording many patterns in a row does
+ * not recompile it for each of them.  Patterns it can't safely be built from (i.e. those using back references or
+ * clashing named groups) disable it and every lookup falls back to trying each pattern.
+ *
+ * @param entries Recorded patterns in the order they were recorded.
+ * @tparam T The type of prime associated with each pattern.
+ */
+class QueryPatternMatcher[T] private (entries: Vector[Entry[T]]) {
+
+  /**
+   * @param criteria The criteria, whose query is a pattern, to record.
+   * @param value The prime to return when the pattern matches.
+   * @throws java.util.regex.PatternSyntaxException if the criteria's query is not a valid pattern.
+   * @return A copy of this matcher with the pattern added, or replaced if the criteria was already recorded.
+   */
+  def updated(criteria: PrimeCriteria, value: T): QueryPatternMatcher[T] = {
+    val entry = Entry(criteria, Pattern.compile(criteria.query), value)
+    entries.indexWhere(_.criteria == criteria) match {
+      case -1 => new QueryPatternMatcher(entries :+ entry)
+      case i => new QueryPatternMatcher(entries.updated(i, entry))
+    }
+  }
+
+  /**
+   * @param text The query text to match.
+   * @param accept Further criteria that a matching prime must meet, i.e. consistency.
+   * @return The first accepted prime whose pattern is found in the text.
+   */
+  def find(text: String)(accept: PrimeCriteria => Boolean): Option[T] = combined match {
+    case Some((any, ordered, groups)) =>
+      if (any.matcher(text).find()) {
+        val matcher = ordered.matcher(text)
+        matcher.lookingAt()
+        val matched = entries(groups.indexWhere(matcher.start(_) != -1))
+        if (accept(matched.criteria)) Some(matched.value) else findEach(text, accept)
+      } else {
+        None
+      }
+    case None => findEach(text, accept)
+  }
+
+  private[this] def findEach(text: String, accept: PrimeCriteria => Boolean): Option[T] =
+    entries.find(e => accept(e.criteria) && e.pattern.matcher(text).find()).map(_.value)
+
+  /**
+   * The alternation of every pattern, the same alternation with each alternative anchored to the start of the text,
+   * and the number of the capturing group wrapping each pattern in both.
+   */
+  private[this] lazy val combined: Option[(Pattern, Pattern, Array[Int])] = {
+    if (entries.isEmpty || entries.exists(e => QueryPatternMatcher.backReference.matcher(e.criteria.query).find())) {
+      None
+    } else {
+      val groups = new Array[Int](entries.size)
+      val any = new StringBuilder
+      val ordered = new StringBuilder
+      var group = 1
+      entries.zipWithIndex.foreach {
+        case (entry, i) =>
+          if (i > 0) {
+            any.append('|')
+            ordered.append('|')
+          }
+          any.append('(').append(entry.criteria.query).append(')')
+          ordered.append("\\A(?s:.*?)(").append(entry.criteria.query).append(')')
+          groups(i) = group
+          group += 1 + entry.pattern.matcher("").groupCount()
+      }
+      Try((Pattern.compile(any.toString), Pattern.compile(ordered.toString), groups)).toOption
+    }
+  }
+}
+
+object QueryPatternMatcher {
+  private val backReference: Pattern = Pattern.compile("\\\\([1-9]|k<)")
+
+  private case class Entry[T](criteria: PrimeCriteria, pattern: Pattern, value: T)
+
+  def empty[T]: QueryPatternMatcher[T] = new QueryPatternMatcher[T](Vector())
+}
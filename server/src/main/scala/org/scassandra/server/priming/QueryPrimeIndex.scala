@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.priming
+
+import org.scassandra.codec.Consistency.Consistency
+import org.scassandra.server.actors.priming.PrimeQueryStoreActor.PrimeCriteria
+
+/**
+ * Index of exact match primes keyed by query text, and then by consistency, so that finding the prime for an
+ * incoming query or prepared statement is a pair of hash lookups rather than a scan over every recorded prime.
+ *
+ * [[PrimeValidator]] guarantees that no two query primes for the same query text share a consistency, so each
+ * (query, consistency) pair resolves to at most one prime.  Where primes aren't validated, the one recorded last wins.
+ *
+ * @param primes Primes by query text and consistency.
+ * @tparam T The type of prime indexed.
+ */
+case class QueryPrimeIndex[+T](primes: Map[String, Map[Consistency, T]] = Map()) {
+
+  /**
+   * @param criteria Criteria the prime was recorded with.
+   * @param prime The prime to index.
+   * @return A copy of this index with the prime registered for each of the criteria's consistencies.
+   */
+  def updated[U >: T](criteria: PrimeCriteria, prime: U): QueryPrimeIndex[U] = {
+    val byConsistency: Map[Consistency, U] = primes.getOrElse(criteria.query, Map())
+    copy(primes = primes.updated(criteria.query, byConsistency ++ criteria.consistency.map(_ -> prime)))
+  }
+
+  /**
+   * @param query The query text.
+   * @param consistency The consistency of the query.
+   * @return The prime registered for the exact query text and consistency if there is one.
+   */
+  def apply(query: String, consistency: Consistency): Option[T] =
+    primes.get(query).flatMap(_.get(consistency))
+
+  /**
+   * @param query The query text.
+   * @return A prime registered for the exact query text, whatever its consistency, if there is one.
+   */
+  def apply(query: String): Option[T] =
+    primes.get(query).flatMap(_.values.headOption)
+}
+
+object QueryPrimeIndex {
+  val empty: QueryPrimeIndex[Nothing] = QueryPrimeIndex(Map.empty[String, Map[Consistency, Nothing]])
+}
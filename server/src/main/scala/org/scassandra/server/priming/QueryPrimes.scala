@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.priming
+
+import java.util.regex.Pattern
+
+import org.scassandra.codec.{ Query, SetKeyspace }
+import org.scassandra.server.actors.priming.PrimeQueryStoreActor.{ Prime, PrimeCriteria, PrimeQuerySingle, Reply }
+
+/**
+ * Immutable snapshot of all query primes.
+ *
+ * @param all All exact match primes, used for validation and for listing primes.
+ * @param patterns All pattern primes, compiled as they are recorded.
+ * @param index The exact match primes indexed by query text and consistency, used for matching.
+ */
+case class QueryPrimes(
+  all: Map[PrimeCriteria, PrimeQuerySingle] = Map(),
+  patterns: QueryPatternMatcher[PrimeQuerySingle] = QueryPatternMatcher.empty[PrimeQuerySingle],
+  index: QueryPrimeIndex[PrimeQuerySingle] = QueryPrimeIndex.empty) extends QueryPrimeLookup {
+
+  /**
+   * @param criteria Criteria of an exact match prime.
+   * @param prime The prime to record.
+   * @return A copy of these primes with the prime added.
+   */
+  def withExact(criteria: PrimeCriteria, prime: PrimeQuerySingle): QueryPrimes =
+    copy(all = all + (criteria -> prime), index = index.updated(criteria, prime))
+
+  /**
+   * @param criteria Criteria whose query is a pattern.
+   * @param prime The prime to record.
+   * @throws java.util.regex.PatternSyntaxException if the criteria's query is not a valid pattern.
+   * @return A copy of these primes with the pattern prime added.
+   */
+  def withPattern(criteria: PrimeCriteria, prime: PrimeQuerySingle): QueryPrimes =
+    copy(patterns = patterns.updated(criteria, prime))
+
+  def apply(query: Query): Option[Prime] = matching(query).map(_.prime)
+
+  override def matching(query: Query): Option[MatchedPrime] = {
+    val keyspaceMatcher = QueryPrimes.useKeyspace.matcher(query.query)
+    if (keyspaceMatcher.matches()) {
+      Some(MatchedPrime(Reply(SetKeyspace(keyspaceMatcher.group(1))), "use"))
+    } else {
+      index(query.query, query.parameters.consistency).map(p => MatchedPrime(p.prime, query.query))
+        .orElse(patterns.find(query.query)(_.consistency.contains(query.parameters.consistency))
+          .map(p => MatchedPrime(p.prime, p.when.queryPattern.getOrElse(query.query))))
+    }
+  }
+}
+
+object QueryPrimes {
+  private val useKeyspace: Pattern = Pattern.compile("\\s*use\\s+(.*)$", Pattern.CASE_INSENSITIVE)
+
+  val empty = QueryPrimes()
+}
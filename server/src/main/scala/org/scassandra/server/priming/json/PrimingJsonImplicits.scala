@@ -32,6 +32,8 @@ import org.scassandra.server.actors.Activity._
 import org.scassandra.server.actors._
 import org.scassandra.server.actors.priming.PrimeBatchStoreActor.{ BatchPrimeSingle, BatchQueryPrime, BatchWhen }
 import org.scassandra.server.actors.priming.PrimeQueryStoreActor._
+import org.scassandra.server.metrics.StageLatency
+import org.scassandra.server.priming._
 import org.scassandra.server.priming.prepared._
 import org.scassandra.server.priming.routes.Version
 import scodec.bits.ByteVector
@@ -116,6 +118,126 @@ object PrimingJsonImplicits extends DefaultJsonProtocol with SprayJsonSupport wi
     }
   }
 
+  implicit object RecordingLevelFormat extends RootJsonFormat[RecordingLevel] {
+    def write(level: RecordingLevel) = level match {
+      case RecordNothing => JsObject("level" -> JsString("off"))
+      case RecordMetadata => JsObject("level" -> JsString("metadata"))
+      case RecordSample(n) => JsObject("level" -> JsString("sampled"), "sample" -> JsNumber(n))
+      case RecordEverything => JsObject("level" -> JsString("full"))
+    }
+
+    def read(json: JsValue) = {
+      val fields = json.asJsObject.fields
+      fields.get("level") match {
+        case Some(JsString("off")) => RecordNothing
+        case Some(JsString("metadata")) => RecordMetadata
+        case Some(JsString("sampled")) => fields.get("sample") match {
+          case Some(JsNumber(n)) if n.isValidInt && n > 0 => RecordSample(n.toInt)
+          case _ => deserializationError(s"Expected a sample of at least 1 for level sampled but got $json")
+        }
+        case Some(JsString("full")) => RecordEverything
+        case _ => deserializationError(s"Expected level of off, metadata, sampled (with a sample of at least 1) or full but got $json")
+      }
+    }
+  }
+
+  implicit val impThrottleLimits = jsonFormat(ThrottleLimits, "requests_per_second", "max_in_flight", "bytes_per_second")
+
+  implicit object ThrottleSettingsFormat extends RootJsonFormat[ThrottleSettings] {
+    def write(settings: ThrottleSettings) = JsObject(
+      "connection" -> settings.connection.toJson,
+      "server" -> settings.server.toJson,
+      "when_overloaded" -> JsString(settings.whenOverloaded match {
+        case QueueWhenOverloaded => "queue"
+        case RejectWhenOverloaded => "reject"
+      }))
+
+    def read(json: JsValue) = {
+      val fields = json.asJsObject.fields
+      def limits(name: String) = fields.get(name).map(_.convertTo[ThrottleLimits]).getOrElse(ThrottleLimits())
+      val whenOverloaded = fields.get("when_overloaded") match {
+        case None | Some(JsString("queue")) => QueueWhenOverloaded
+        case Some(JsString("reject")) => RejectWhenOverloaded
+        case Some(x) => deserializationError(s"Expected when_overloaded of queue or reject but got $x")
+      }
+      ThrottleSettings(limits("connection"), limits("server"), whenOverloaded)
+    }
+  }
+
+  implicit object ColumnGeneratorFormat extends RootJsonFormat[ColumnGenerator] {
+    def write(generator: ColumnGenerator) = generator match {
+      case SequenceGenerator(start, step) => JsObject("type" -> JsString("sequence"), "start" -> JsNumber(start), "step" -> JsNumber(step))
+      case RandomGenerator(min, max) => JsObject("type" -> JsString("random"), "min" -> JsNumber(min), "max" -> JsNumber(max))
+      case TemplateGenerator(template) => JsObject("type" -> JsString("template"), "template" -> JsString(template))
+      case ConstantGenerator(value) => JsObject("type" -> JsString("constant"), "value" -> AnyJsonFormat.write(value))
+    }
+
+    def read(json: JsValue) = {
+      val fields = json.asJsObject.fields
+      def long(name: String, default: Long): Long = fields.get(name) match {
+        case Some(JsNumber(n)) => n.toLong
+        case None => default
+        case Some(x) => deserializationError(s"Expected $name of generator to be a number but got $x")
+      }
+      Try(fields.get("type") match {
+        case Some(JsString("sequence")) => SequenceGenerator(long("start", 0), long("step", 1))
+        case Some(JsString("random")) => RandomGenerator(long("min", 0), long("max", Int.MaxValue))
+        case Some(JsString("template")) => fields.get("template") match {
+          case Some(JsString(template)) => TemplateGenerator(template)
+          case _ => deserializationError(s"Expected template generator to have a template but got $json")
+        }
+        case Some(JsString("constant")) => ConstantGenerator(fields.get("value").map(AnyJsonFormat.read).orNull)
+        case _ => deserializationError(s"Expected generator type of sequence, random, template or constant but got $json")
+      }) match {
+        case TSuccess(generator) => generator
+        case Failure(e: DeserializationException) => throw e
+        case Failure(e) => deserializationError(e.getMessage, e)
+      }
+    }
+  }
+
+  implicit object DelayProfileFormat extends RootJsonFormat[DelayProfile] {
+    def write(profile: DelayProfile) = {
+      val distribution = profile.distribution match {
+        case PercentileDistribution(percentiles) => Map("type" -> JsString("percentiles"),
+          "percentiles" -> JsObject(percentiles.map { case (p, delay) => BigDecimal(p).toString -> JsNumber(delay) }))
+        case LogNormalDistribution(median, sigma) => Map("type" -> JsString("lognormal"), "median" -> JsNumber(median), "sigma" -> JsNumber(sigma))
+        case ExponentialDistribution(mean) => Map("type" -> JsString("exponential"), "mean" -> JsNumber(mean))
+      }
+      JsObject(distribution ++ Map("jitter" -> JsNumber(profile.jitter)) ++ profile.seed.map(seed => "seed" -> JsNumber(seed)))
+    }
+
+    def read(json: JsValue) = {
+      val fields = json.asJsObject.fields
+      def number(name: String): Option[BigDecimal] = fields.get(name) match {
+        case Some(JsNumber(n)) => Some(n)
+        case None => None
+        case Some(x) => deserializationError(s"Expected $name of delay to be a number but got $x")
+      }
+      def required(name: String): Double = number(name).map(_.toDouble)
+        .getOrElse(deserializationError(s"Expected delay to have a $name but got $json"))
+      Try {
+        val distribution = fields.get("type") match {
+          case Some(JsString("percentiles")) => fields.get("percentiles") match {
+            case Some(JsObject(percentiles)) => PercentileDistribution(percentiles.map {
+              case (p, JsNumber(delay)) if Try(p.toDouble).isSuccess => p.toDouble -> delay.toDouble
+              case (p, delay) => deserializationError(s"Expected a percentile and a delay but got $p: $delay")
+            })
+            case _ => deserializationError(s"Expected percentiles delay to have percentiles but got $json")
+          }
+          case Some(JsString("lognormal")) => LogNormalDistribution(required("median"), required("sigma"))
+          case Some(JsString("exponential")) => ExponentialDistribution(required("mean"))
+          case _ => deserializationError(s"Expected delay type of percentiles, lognormal or exponential but got $json")
+        }
+        DelayProfile(distribution, number("jitter").map(_.toDouble).getOrElse(0), number("seed").map(_.toLong))
+      } match {
+        case TSuccess(profile) => profile
+        case Failure(e: DeserializationException) => throw e
+        case Failure(e) => deserializationError(e.getMessage, e)
+      }
+    }
+  }
+
   implicit object ConsistencyJsonFormat extends RootJsonFormat[Consistency] {
     def write(c: Consistency) = JsString(c.toString)
 
@@ -193,7 +315,8 @@ object PrimingJsonImplicits extends DefaultJsonProtocol with SprayJsonSupport wi
     }
   }
 
-  implicit val impThen = jsonFormat6(Then)
+  implicit val impGeneratedRows = jsonFormat(GeneratedRows, "count", "columns", "seed")
+  implicit val impThen = jsonFormat8(Then)
   implicit val impWhen = jsonFormat5(When)
   implicit val impPrimeQueryResult = jsonFormat(PrimeQuerySingle, "when", "then")
   implicit val impConnection = jsonFormat1(Connection)
@@ -204,13 +327,14 @@ object PrimingJsonImplicits extends DefaultJsonProtocol with SprayJsonSupport wi
   implicit val impTypeMismatch = jsonFormat3(TypeMismatch)
   implicit val impTypeMismatches = jsonFormat1(TypeMismatches)
   implicit val impWhenPreparedSingle = jsonFormat3(WhenPrepared)
-  implicit val impThenPreparedSingle = jsonFormat6(ThenPreparedSingle)
+  implicit val impThenPreparedSingle = jsonFormat8(ThenPreparedSingle)
   implicit val impPrimePreparedSingle = jsonFormat(PrimePreparedSingle, "when", "then")
   implicit val impPreparedStatementExecution = jsonFormat6(PreparedStatementExecution)
   implicit val impPreparedStatementPreparation = jsonFormat1(PreparedStatementPreparation)
   implicit val impVersion = jsonFormat1(Version)
   implicit val impBatchQuery = jsonFormat4(BatchQuery)
   implicit val impBatchExecution = jsonFormat5(BatchExecution)
+  implicit val impDroppedActivity = jsonFormat5(ActivityLogActor.DroppedActivity)
   implicit val impBatchQueryPrime = jsonFormat2(BatchQueryPrime)
   implicit val impBatchWhen = jsonFormat3(BatchWhen)
   implicit val impBatchPrimeSingle = jsonFormat(BatchPrimeSingle, "when", "then")
@@ -219,9 +343,11 @@ object PrimingJsonImplicits extends DefaultJsonProtocol with SprayJsonSupport wi
   implicit val impClosedConnections = jsonFormat(ClosedConnections, "closed_connections", "operation")
   implicit val impAcceptNewConnectionsEnabled = jsonFormat1(AcceptNewConnectionsEnabled)
   implicit val impRejectNewConnectionsEnabled = jsonFormat1(RejectNewConnectionsEnabled)
+  implicit val impStageLatency = jsonFormat9(StageLatency)
+  implicit val impSavedStatement = jsonFormat(SavedStatement, "id", "query", "keyspace", "table", "variable_types")
 
   implicit val impCriterna = jsonFormat1(Criteria)
-  implicit val impAction = jsonFormat5(Action)
+  implicit val impAction = jsonFormat7(Action)
   implicit val impOutcoe = jsonFormat2(Outcome)
   implicit val impPrimePreparedMultiThen = jsonFormat2(ThenPreparedMulti)
   implicit val impPrimePreparedMulti = jsonFormat(PrimePreparedMulti, "when", "then")
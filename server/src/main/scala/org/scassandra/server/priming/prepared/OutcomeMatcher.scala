@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.priming.prepared
+
+import java.util
+
+import com.typesafe.scalalogging.LazyLogging
+import org.scassandra.codec._
+import org.scassandra.codec.datatype.DataType
+import org.scassandra.server.priming.prepared.OutcomeMatcher.Node
+
+/**
+ * Finds the first outcome of a multi prime whose criteria match the values of an execute.
+ *
+ * The outcomes' variable matchers are compiled into a decision tree with one level per variable.  Each node branches
+ * on the values of the [[ExactMatch]]es at its position (keyed by the data type's native value), on [[AnyMatch]] and
+ * on matching a value that couldn't be decoded.  Every node remembers the earliest outcome below it, so the tree is
+ * searched in outcome order and branches that can't beat an outcome already found are skipped.  Matching therefore
+ * costs a hash lookup per variable rather than a comparison per outcome, and a variable is only decoded if some
+ * outcome compares it against a value.
+ *
+ * Outcomes are matched as by [[VariableMatch.test]]: they need a matcher for every value, and an [[ExactMatch]]
+ * whose value can't be converted to the variable's data type never matches.
+ *
+ * @param dataTypes The variable types of the prime.
+ * @param outcomes The outcomes of the prime in the order they are tried.
+ * @param roots The root of the tree for each number of variables.
+ */
+class OutcomeMatcher private (dataTypes: Array[DataType], outcomes: Array[Outcome], roots: Map[Int, Node]) {
+
+  def apply(queryValues: List[QueryValue])(implicit protocolVersion: ProtocolVersion): Option[Outcome] = {
+    // values beyond the variable types are ignored.
+    val values = queryValues.iterator.take(dataTypes.length).toArray
+    roots.get(values.length).flatMap { root =>
+      // TODO: handle named and unset values
+      val decoded = new Array[Option[Any]](values.length)
+
+      def decode(position: Int): Option[Any] = {
+        if (decoded(position) == null) {
+          decoded(position) = values(position).value match {
+            case Null => Some(null)
+            case Unset => Some(null)
+            case Bytes(bytes) => dataTypes(position).codec.decode(bytes.toBitVector).toOption.map(_.value)
+          }
+        }
+        decoded(position)
+      }
+
+      def search(node: Node, position: Int, best: Int): Int = {
+        if (position == values.length) {
+          math.min(node.first, best)
+        } else {
+          val matched = if (node.compares) {
+            decode(position) match {
+              case Some(value) => node.exact.get(value)
+              case None => node.undecodable
+            }
+          } else {
+            null
+          }
+          // try the branch leading to the earliest outcome first, the other one only if it could lead to an earlier one.
+          val (earlier, later) = if (matched != null && (node.any == null || matched.first < node.any.first)) {
+            (matched, node.any)
+          } else {
+            (node.any, matched)
+          }
+          val found = if (earlier != null && earlier.first < best) search(earlier, position + 1, best) else best
+          if (later != null && later.first < found) search(later, position + 1, found) else found
+        }
+      }
+
+      val first = search(root, 0, Int.MaxValue)
+      if (first == Int.MaxValue) None else Some(outcomes(first))
+    }
+  }
+}
+
+object OutcomeMatcher extends LazyLogging {
+
+  private class Node {
+    val exact = new util.HashMap[Any, Node]()
+    var undecodable: Node = _
+    var any: Node = _
+    // index of the earliest outcome below this node.
+    var first: Int = Int.MaxValue
+
+    def compares: Boolean = undecodable != null || !exact.isEmpty
+  }
+
+  def apply(dataTypes: List[DataType], outcomes: List[Outcome]): OutcomeMatcher = {
+    val roots = scala.collection.mutable.Map[Int, Node]()
+
+    outcomes.zipWithIndex.foreach {
+      case (outcome, index) =>
+        val matchers = outcome.criteria.variable_matcher
+        // convert values up front, the outcome can't match if one of them can't be converted or has no variable.
+        val keys: List[Option[VariableMatch]] = matchers.zip(dataTypes).map {
+          case (ExactMatch(Some(x)), dataType) if dataType.native.isDefinedAt(x) => Some(ExactMatch(Some(dataType.native(x))))
+          case (ExactMatch(Some(x)), dataType) =>
+            logger.warn(s"Unsure how to convert matcher value of $x to data type $dataType, outcome $index will never match")
+            None
+          case (matcher, _) => Some(matcher)
+        }
+
+        if (matchers.size <= dataTypes.size && keys.forall(_.isDefined)) {
+          val leaf = keys.flatten.foldLeft(roots.getOrElseUpdate(matchers.size, new Node)) { (node, matcher) =>
+            node.first = math.min(node.first, index)
+            matcher match {
+              case ExactMatch(Some(value)) =>
+                node.exact.computeIfAbsent(value, _ => new Node)
+              case ExactMatch(None) =>
+                if (node.undecodable == null) node.undecodable = new Node
+                node.undecodable
+              case AnyMatch =>
+                if (node.any == null) node.any = new Node
+                node.any
+            }
+          }
+          leaf.first = math.min(leaf.first, index)
+        }
+    }
+
+    new OutcomeMatcher(dataTypes.toArray, outcomes.toArray, roots.toMap)
+  }
+}
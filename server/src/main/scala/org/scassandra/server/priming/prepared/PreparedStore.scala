@@ -19,16 +19,28 @@ import org.scassandra.codec.datatype.Varchar
 import org.scassandra.codec.messages._
 import org.scassandra.codec.{ Execute, Prepare, Prepared, ProtocolVersion }
 import org.scassandra.server.actors.priming.PrimeQueryStoreActor._
-import org.scassandra.server.priming.Defaulter
+import org.scassandra.server.priming.{ Defaulter, MatchedPrime, QueryPrimeIndex }
 import scodec.bits.ByteVector
 
 trait PreparedStoreLookup {
-  def apply(prepare: Prepare, id: Int): Option[Prime]
+  def apply(prepare: Prepare, id: ByteVector): Option[Prime]
   def apply(queryText: String, execute: Execute)(implicit protocolVersion: ProtocolVersion): Option[Prime]
+
+  /**
+   * @return The prime for the execution and what it was recorded with, by default the prepared query's own text.
+   */
+  def matching(queryText: String, execute: Execute)(implicit protocolVersion: ProtocolVersion): Option[MatchedPrime] =
+    apply(queryText, execute).map(MatchedPrime(_, queryText))
+
+  /**
+   * @return A number that changes whenever primes are recorded or cleared, so that what was looked up for a prepare
+   *         is known to still hold for as long as it stays the same.
+   */
+  def generation: Long
 }
 
 object PreparedStoreLookup {
-  def defaultPrepared(prepare: Prepare, id: Int): Prime = {
+  def defaultPrepared(prepare: Prepare, id: ByteVector): Prime = {
     val numberOfParameters = prepare.query.toCharArray.count(_ == '?')
     val variableTypes = (0 until numberOfParameters)
       .map(num => ColumnSpecWithoutTable(num.toString, Varchar).asInstanceOf[ColumnSpec]).toList
@@ -38,35 +50,49 @@ object PreparedStoreLookup {
       table = Some("table"),
       columnSpec = variableTypes)
 
-    Reply(Prepared(ByteVector(id), metadata, NoRowMetadata))
+    Reply(Prepared(id, metadata, NoRowMetadata))
   }
 }
 
 trait PreparedStore[I <: PreparedPrimeIncoming] extends PreparedStoreLookup {
-  protected var primes: Map[PrimeCriteria, I] = Map()
+  // Primes are recorded by a single actor but looked up by handlers on other threads, so the map is only ever
+  // replaced whole and is volatile so that lookups see the latest one.
+  @volatile protected var primes: Map[PrimeCriteria, I] = Map()
+  // The same primes by exact query text and consistency.
+  @volatile protected var index: QueryPrimeIndex[I] = QueryPrimeIndex.empty
+  @volatile private var changes: Long = 0
 
   def primeCriteria(prime: I): PrimeCriteria
 
   def record(prime: I): PrimeAddResult = {
     val p: I = prime.withDefaults.asInstanceOf[I]
-    primes += primeCriteria(p) -> p
+    add(primeCriteria(p), p)
     PrimeAddSuccess
   }
 
+  protected def add(criteria: PrimeCriteria, prime: I): Unit = {
+    primes += criteria -> prime
+    index = index.updated(criteria, prime)
+    changed()
+  }
+
+  protected def changed(): Unit = changes += 1
+
+  def generation: Long = changes
+
   def retrievePrimes(): List[I] = primes.values.toList
-  def clear(): Unit = primes = Map()
+  def clear(): Unit = {
+    primes = Map()
+    index = QueryPrimeIndex.empty
+    changed()
+  }
 
-  def apply(prepare: Prepare, idToUse: Int): Option[Prime] = {
+  def apply(prepare: Prepare, idToUse: ByteVector): Option[Prime] = {
     // Find prime by text.
-    val prime = primes.find {
-      case (criteria, _) =>
-        criteria.query.equals(prepare.query)
-    }.map(_._2)
-
-    prepared(prepare, prime, idToUse)
+    prepared(prepare, index(prepare.query), idToUse)
   }
 
-  def prepared(prepare: Prepare, prime: Option[I], id: Int): Option[Prime] = {
+  def prepared(prepare: Prepare, prime: Option[I], id: ByteVector): Option[Prime] = {
     prime.map { p =>
       // Prefill variable types with the rows column spec data types + varchars for any extra variables in the query.
       val dataTypes = Defaulter.defaultVariableTypesToVarChar(Some(prepare.query), p.thenDo.variable_types).getOrElse(Nil)
@@ -80,7 +106,7 @@ trait PreparedStore[I <: PreparedPrimeIncoming] extends PreparedStoreLookup {
         keyspace = Some("keyspace"), // todo remove these
         table = Some("table"),
         columnSpec = variableSpec)
-      Reply(Prepared(ByteVector(id), preparedMetadata, NoRowMetadata))
+      Reply(Prepared(id, preparedMetadata, NoRowMetadata))
     }
   }
 }
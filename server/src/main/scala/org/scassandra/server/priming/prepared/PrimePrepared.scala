@@ -21,6 +21,7 @@ import org.scassandra.codec.datatype.DataType
 import org.scassandra.codec.{ Execute, Prepare }
 import org.scassandra.server.actors.priming.PrimeQueryStoreActor.ThenProvider
 import org.scassandra.server.priming.Defaulter._
+import org.scassandra.server.priming.{ DelayProfile, GeneratedRows }
 import org.scassandra.server.priming.json._
 import org.scassandra.server.priming.routes.PrimingJsonHelper.extractPrime
 
@@ -68,7 +69,9 @@ case class ThenPreparedSingle(
   column_types: Option[Map[String, DataType]] = None,
   result: Option[ResultJsonRepresentation] = Some(Success),
   fixedDelay: Option[Long] = None,
-  config: Option[Map[String, String]] = None) extends ThenProvider with ThenPrepared {
+  config: Option[Map[String, String]] = None,
+  generated_rows: Option[GeneratedRows] = None,
+  delay: Option[DelayProfile] = None) extends ThenProvider with ThenPrepared {
   @transient lazy val prime = {
     extractPrime(this)
   }
@@ -79,6 +82,10 @@ case class ThenPreparedSingle(
 case class ThenPreparedMulti(
   variable_types: Option[List[DataType]] = None,
   outcomes: List[Outcome]) extends ThenPrepared {
+  @transient lazy val outcomeMatcher = {
+    OutcomeMatcher(variable_types.getOrElse(Nil), outcomes)
+  }
+
   def withDefaults(when: WhenPrepared): ThenPreparedMulti = {
     this.copy(variable_types = defaultVariableTypesToVarChar(when.query, variable_types), outcomes = outcomes.map(_.withDefaults))
   }
@@ -95,7 +102,9 @@ case class Action(
   column_types: Option[Map[String, DataType]] = None,
   result: Option[ResultJsonRepresentation] = Some(Success),
   fixedDelay: Option[Long] = None,
-  config: Option[Map[String, String]] = None) extends ThenProvider {
+  config: Option[Map[String, String]] = None,
+  generated_rows: Option[GeneratedRows] = None,
+  delay: Option[DelayProfile] = None) extends ThenProvider {
   @transient lazy val prime = {
     extractPrime(this)
   }
@@ -15,54 +15,18 @@
  */
 package org.scassandra.server.priming.prepared
 
-import com.typesafe.scalalogging.LazyLogging
 import org.scassandra.codec._
-import org.scassandra.codec.datatype.DataType
 import org.scassandra.server.actors.priming.PrimeQueryStoreActor.{ Prime, PrimeCriteria }
-import org.scassandra.server.priming.Defaulter
 
-class PrimePreparedMultiStore extends PreparedStore[PrimePreparedMulti] with LazyLogging {
+class PrimePreparedMultiStore extends PreparedStore[PrimePreparedMulti] {
 
   def apply(queryText: String, execute: Execute)(implicit protocolVersion: ProtocolVersion): Option[Prime] = {
     // Find prime matching queryText and execute's consistency.
-    val prime = primes.find {
-      case (criteria, _) =>
-        // if no consistency specified in the prime, allow all
-        criteria.query.equals(queryText) && criteria.consistency.contains(execute.parameters.consistency)
-    }.map(_._2)
+    val prime = index(queryText, execute.parameters.consistency)
 
-    // Find the outcome action matching the execute parameters.
+    // Find the outcome action matching the execute parameters, variable types were defaulted when it was recorded.
     val action = prime.flatMap { p =>
-      // decode query parameters using the variable types of the prime.
-      val dataTypes = Defaulter.defaultVariableTypesToVarChar(Some(queryText), p.thenDo.variable_types).getOrElse(Nil)
-      val queryValues = execute.parameters.values.getOrElse(Nil)
-      // TODO: handle named and unset values
-      val values: List[Option[Any]] = dataTypes.zip(queryValues).map {
-        case (dataType: DataType, queryValue: QueryValue) =>
-          queryValue.value match {
-            case Null => Some(null)
-            case Unset => Some(null)
-            case Bytes(bytes) => dataType.codec.decode(bytes.toBitVector).toOption.map(_.value)
-          }
-      }
-
-      // Try to find an outcome whose criteria maps to the query parameters.
-      p.thenDo.outcomes.find { outcome =>
-        val matchers = outcome.criteria.variable_matcher
-        // ensure lists are of the same length.
-        logger.info(s"Outcome: $outcome matchers $matchers dataTypes $dataTypes")
-        if (values.size == matchers.size) {
-          // Iterate through each value and check that it matches against the value.
-          (values, dataTypes, matchers).zipped.forall {
-            case (value, dataType, matcher) =>
-              val m = matcher.test(value, dataType)
-              logger.info(s"$value $dataType $matcher $m")
-              m
-          }
-        } else {
-          false
-        }
-      }.map(_.action)
+      p.thenDo.outcomeMatcher(execute.parameters.values.getOrElse(Nil)).map(_.action)
     }
 
     action.map(_.prime)
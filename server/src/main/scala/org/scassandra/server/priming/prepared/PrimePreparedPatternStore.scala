@@ -17,25 +17,51 @@ package org.scassandra.server.priming.prepared
 
 import com.typesafe.scalalogging.LazyLogging
 import org.scassandra.codec._
-import org.scassandra.server.actors.priming.PrimeQueryStoreActor.{ Prime, PrimeCriteria }
+import org.scassandra.server.actors.priming.PrimeQueryStoreActor._
+import org.scassandra.server.priming.{ MatchedPrime, QueryPatternMatcher }
+import scodec.bits.ByteVector
+
+import scala.util.{ Failure, Success, Try }
 
 class PrimePreparedPatternStore extends PreparedStore[PrimePreparedSingle] with LazyLogging {
 
-  override def apply(prepare: Prepare, id: Int): Option[Prime] = {
+  // The patterns of all primes, compiled as they are recorded.
+  @volatile private var patterns: QueryPatternMatcher[PrimePreparedSingle] = QueryPatternMatcher.empty
+
+  override def record(prime: PrimePreparedSingle): PrimeAddResult = {
+    val p = prime.withDefaults
+    val criteria = primeCriteria(p)
+    Try(patterns.updated(criteria, p)) match {
+      case Success(updated) =>
+        patterns = updated
+        primes += (criteria -> p)
+        changed()
+        PrimeAddSuccess
+      case Failure(x) =>
+        logger.warn(s"Received invalid query pattern ${criteria.query}", x)
+        BadCriteria(x.getMessage)
+    }
+  }
+
+  override def clear(): Unit = {
+    super.clear()
+    patterns = QueryPatternMatcher.empty
+  }
+
+  override def apply(prepare: Prepare, id: ByteVector): Option[Prime] = {
     // Find prime by pattern.
-    val prime = primes.find(_._1.query.r.findFirstIn(prepare.query).isDefined).map(_._2)
+    val prime = patterns.find(prepare.query)(_ => true)
     prepared(prepare, prime, id)
   }
 
-  override def apply(queryText: String, execute: Execute)(implicit protocolVersion: ProtocolVersion): Option[Prime] = {
+  override def apply(queryText: String, execute: Execute)(implicit protocolVersion: ProtocolVersion): Option[Prime] =
+    matching(queryText, execute).map(_.prime)
+
+  override def matching(queryText: String, execute: Execute)(implicit protocolVersion: ProtocolVersion): Option[MatchedPrime] = {
     // Find prime with query pattern matching queryText and execute's consistency.
-    val prime = primes.find {
-      case (criteria, _) =>
-        // if no consistency specified in the prime, allow all
-        criteria.query.r.findFirstIn(queryText).isDefined && criteria.consistency.contains(execute.parameters.consistency)
-    }.map(_._2)
+    val prime = patterns.find(queryText)(_.consistency.contains(execute.parameters.consistency))
 
-    prime.map(_.thenDo.prime)
+    prime.map(p => MatchedPrime(p.thenDo.prime, p.when.queryPattern.get))
   }
 
   override def primeCriteria(prime: PrimePreparedSingle): PrimeCriteria =
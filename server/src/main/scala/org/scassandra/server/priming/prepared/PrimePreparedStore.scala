@@ -28,7 +28,7 @@ class PrimePreparedStore extends PreparedStore[PrimePreparedSingle] with LazyLog
     PrimeValidator.validate(criteria, p.thenDo.prime, primes.keys.toList) match {
       case PrimeAddSuccess =>
         logger.info(s"Storing prime for prepared statement $p with prime criteria $criteria")
-        primes += (criteria -> p)
+        add(criteria, p)
         PrimeAddSuccess
       case notSuccess: PrimeAddResult =>
         logger.info(s"Storing prime for prepared statement $p failed due to $notSuccess")
@@ -38,13 +38,7 @@ class PrimePreparedStore extends PreparedStore[PrimePreparedSingle] with LazyLog
 
   def apply(queryText: String, execute: Execute)(implicit protocolVersion: ProtocolVersion): Option[Prime] = {
     // Find prime matching queryText and execute's consistency.
-    val prime = primes.find {
-      case (criteria, _) =>
-        // if no consistency specified in the prime, allow all
-        criteria.query.equals(queryText) && criteria.consistency.contains(execute.parameters.consistency)
-    }.map(_._2)
-
-    prime.map(_.thenDo.prime)
+    index(queryText, execute.parameters.consistency).map(_.thenDo.prime)
   }
 
   override def primeCriteria(prime: PrimePreparedSingle): PrimeCriteria =
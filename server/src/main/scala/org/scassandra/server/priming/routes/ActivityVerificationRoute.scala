@@ -25,6 +25,7 @@ import akka.util.Timeout
 import ch.megard.akka.http.cors.scaladsl.CorsDirectives._
 import com.typesafe.scalalogging.LazyLogging
 import org.scassandra.server.actors.ActivityLogActor._
+import org.scassandra.server.actors.{ ActivityRecording, RecordingLevel }
 import org.scassandra.server.priming.json.PrimingJsonImplicits
 
 import scala.concurrent.ExecutionContext
@@ -36,6 +37,7 @@ trait ActivityVerificationRoute extends LazyLogging with SprayJsonSupport {
   import PrimingJsonImplicits._
 
   implicit val activityLog: ActorRef
+  val activityRecording: ActivityRecording
   implicit val ec: ExecutionContext
   private implicit val timoeut = Timeout(250 milliseconds)
 
@@ -114,6 +116,30 @@ trait ActivityVerificationRoute extends LazyLogging with SprayJsonSupport {
                 StatusCodes.OK
               }
             }
+        } ~
+        path("activity-recording") {
+          get {
+            complete {
+              activityRecording.level
+            }
+          } ~
+            put {
+              entity(as[RecordingLevel]) { level =>
+                complete {
+                  logger.info(s"Changing activity recording to $level")
+                  activityRecording.level = level
+                  level
+                }
+              }
+            }
+        } ~
+        path("dropped-activity") {
+          get {
+            complete {
+              logger.debug("Request for counts of dropped activity")
+              (activityLog ? GetDroppedActivity).mapTo[DroppedActivity]
+            }
+          }
         }
     }
 }
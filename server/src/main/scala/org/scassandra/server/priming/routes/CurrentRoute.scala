@@ -30,6 +30,8 @@ import scala.concurrent.ExecutionContext
 trait CurrentRoute extends LazyLogging {
 
   val tcpServer: ActorRef
+  val throttling: Throttling
+  val preparedStatements: PreparedStatements
 
   implicit val ec: ExecutionContext
   implicit val actorTimeout: Timeout
@@ -65,6 +67,48 @@ trait CurrentRoute extends LazyLogging {
                 complete((tcpServer ? RejectNewConnections(after)).mapTo[RejectNewConnectionsEnabled])
               }
             }
+        } ~
+        path("throttling") {
+          get {
+            complete(throttling.settings)
+          } ~
+            put {
+              entity(as[ThrottleSettings]) { settings =>
+                complete {
+                  logger.info(s"Changing throttling to $settings")
+                  throttling.settings = settings
+                  settings
+                }
+              }
+            } ~
+            delete {
+              complete {
+                logger.info("Removing throttling")
+                throttling.settings = ThrottleSettings()
+                throttling.settings
+              }
+            }
+        } ~
+        path("prepared-statements") {
+          get {
+            complete(preparedStatements.snapshot())
+          } ~
+            put {
+              entity(as[List[SavedStatement]]) { saved =>
+                complete {
+                  logger.info(s"Restoring ${saved.size} prepared statements")
+                  preparedStatements.restore(saved)
+                  preparedStatements.snapshot()
+                }
+              }
+            } ~
+            delete {
+              complete {
+                logger.info("Removing prepared statements")
+                preparedStatements.clear()
+                preparedStatements.snapshot()
+              }
+            }
         }
     }
   }
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.priming.routes
+
+import akka.http.scaladsl.model._
+import akka.http.scaladsl.server.Directives._
+import akka.http.scaladsl.server.Route
+import ch.megard.akka.http.cors.scaladsl.CorsDirectives._
+import com.typesafe.scalalogging.LazyLogging
+import org.scassandra.server.metrics.RequestMetrics
+import org.scassandra.server.priming.json.PrimingJsonImplicits
+
+trait MetricsRoute extends LazyLogging {
+
+  import PrimingJsonImplicits._
+
+  val requestMetrics: RequestMetrics
+
+  private val prometheusContentType =
+    (MediaTypes.`text/plain` withParams Map("version" -> "0.0.4")) withCharset HttpCharsets.`UTF-8`
+
+  val metricsRoute: Route =
+    cors() {
+      path("metrics") {
+        get {
+          parameters('format.as[String] ? "json") {
+            case "prometheus" =>
+              complete(HttpEntity(prometheusContentType, requestMetrics.prometheus))
+            case _ =>
+              complete(requestMetrics.latencies)
+          }
+        } ~
+          delete {
+            complete {
+              logger.debug("Deleting all recorded latencies")
+              requestMetrics.reset()
+              StatusCodes.OK
+            }
+          }
+      }
+    }
+}
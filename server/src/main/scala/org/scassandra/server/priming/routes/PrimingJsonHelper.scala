@@ -48,15 +48,23 @@ object PrimingJsonHelper extends LazyLogging {
   def extractPrime(thenDo: ThenProvider, keyspace: Option[String] = Some(""), table: Option[String] = Some("")): Prime = {
     val fixedDelay = thenDo.fixedDelay.map(FiniteDuration(_, TimeUnit.MILLISECONDS))
     val config = thenDo.config.getOrElse(Map.empty)
+    // In the case of a Then implementation, provide the variable types.
+    val variableTypes = thenDo match {
+      case t: Then => t.variable_types
+      case _ => None
+    }
 
     // For errors expecting a consistency level, only provide one if one is present in the prime, otherwise
     // set it explicitly to null.  This is a bit fragile, but it allows us to detect whether or not we are allowed
     // to override the error message with the statement used in the query.  Could have used [Option] but in this
     // case we want to make it required on the Error messages.
-    thenDo.result.getOrElse(Success) match {
+    (thenDo.result.getOrElse(Success), thenDo.generated_rows) match {
       // Special case ClosedConnectionReport as it produces a fatal error.
-      case ClosedConnection => ClosedConnectionReport(config.getOrElse(ErrorConstants.CloseType, "close"), fixedDelay)
-      case report =>
+      case (ClosedConnection, _) => ClosedConnectionReport(config.getOrElse(ErrorConstants.CloseType, "close"), fixedDelay, delay = thenDo.delay)
+      // Generated rows are only generated when written.
+      case (Success, Some(generated)) => GeneratedReply(extractRowMetadata(thenDo, generated.columns.keys, keyspace, table),
+        generated, fixedDelay, variableTypes, thenDo.delay)
+      case (report, _) =>
         val message = report match {
           case Success => extractRows(thenDo, keyspace, table)
           case ServerError => c.ServerError(config.getOrElse(ErrorConstants.Message, "Server Error"))
@@ -114,13 +122,7 @@ object PrimingJsonHelper extends LazyLogging {
             ByteVector.fromValidHex(config.getOrElse(ErrorConstants.PrepareId, "0x").toLowerCase))
         }
 
-        // In the case of a Then implementation, provide the variable types.
-        thenDo match {
-          case t: Then =>
-            Reply(message, fixedDelay, variableTypes = t.variable_types)
-          case _ =>
-            Reply(message, fixedDelay)
-        }
+        Reply(message, fixedDelay, variableTypes, thenDo.delay)
     }
   }
 
@@ -128,12 +130,15 @@ object PrimingJsonHelper extends LazyLogging {
     // Convert Map[String,Any] -> Row
     val cRows: List[Row] = thenDo.rows.getOrElse(Nil).map(columns => Row(columns))
 
+    Rows(extractRowMetadata(thenDo, cRows.flatMap(row => row.columns.keys), keyspace, table), cRows)
+  }
+
+  private def extractRowMetadata(thenDo: ThenProvider, columnNames: Iterable[String], keyspace: Option[String],
+    table: Option[String]): RowMetadata = {
     // column types from prime.
     val colTypes = thenDo.column_types.getOrElse(Map())
     // extract all column names not in column types
-    val nonPresentColumns: Map[String, DataType] = cRows
-      .flatMap(row => row.columns)
-      .map(_._1) // extract column names from columnName/dataType pairing.
+    val nonPresentColumns: Map[String, DataType] = columnNames
       .filter(name => !colTypes.contains(name)) // remove all elements not in columnTypes.
       .toSet // remove duplicates.
       .map((name: String) => (name, Varchar)) // create the default Varchar mapping.
@@ -144,11 +149,9 @@ object PrimingJsonHelper extends LazyLogging {
       case ((name, dataType)) => ColumnSpecWithoutTable(name, dataType)
     }.toList
 
-    val metadata = RowMetadata(
+    RowMetadata(
       keyspace = keyspace.orElse(Some("")),
       table = table.orElse(Some("")),
       columnSpec = Some(columnSpec))
-
-    Rows(metadata, cRows)
   }
 }
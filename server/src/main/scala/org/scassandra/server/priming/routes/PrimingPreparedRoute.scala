@@ -66,6 +66,8 @@ trait PrimingPreparedRoute extends LazyLogging {
                 complete(StatusCodes.BadRequest, cp)
               case Success(Some(tm: TypeMismatches)) =>
                 complete(StatusCodes.BadRequest, tm)
+              case Success(Some(b: BadCriteria)) =>
+                complete(StatusCodes.BadRequest, b)
               case Success(None) =>
                 complete(StatusCodes.BadRequest, "Must specify either query or queryPattern")
               case Failure(e) =>
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.actors
+
+import org.scalatest.{ FunSuite, Matchers }
+
+class ActivityBufferTest extends FunSuite with Matchers {
+
+  test("Should keep all records") {
+    val underTest = ActivityBuffer[String](KeepAll)
+    (1 to 100).foreach(i => underTest.record(i.toString))
+
+    underTest.toList should equal((1 to 100).map(_.toString).toList)
+    underTest.dropped should equal(0)
+  }
+
+  test("Should keep latest records") {
+    val underTest = ActivityBuffer[String](KeepLatest(3))
+    underTest.record("1")
+    underTest.record("2")
+    underTest.toList should equal(List("1", "2"))
+
+    (3 to 7).foreach(i => underTest.record(i.toString))
+    underTest.toList should equal(List("5", "6", "7"))
+    underTest.dropped should equal(4)
+  }
+
+  test("Should keep a sample of records in the order they were recorded") {
+    val underTest = ActivityBuffer[Integer](KeepSample(10))
+    (1 to 1000).foreach(i => underTest.record(i))
+
+    val kept = underTest.toList
+    kept should have size 10
+    kept.map(_.intValue) shouldBe sorted
+    kept.distinct should have size 10
+    underTest.dropped should equal(990)
+  }
+
+  test("Should keep every record while a sample has not reached capacity") {
+    val underTest = ActivityBuffer[String](KeepSample(10))
+    (1 to 5).foreach(i => underTest.record(i.toString))
+
+    underTest.toList should equal(List("1", "2", "3", "4", "5"))
+    underTest.dropped should equal(0)
+  }
+}
@@ -128,4 +128,26 @@ class ActivityLogActorTest extends WordSpec with TestKitWithShutdown with Matche
       expectMsg(Batches(List()))
     }
   }
+
+  "activity log keeping the latest activity" must {
+    val activityLog = system.actorOf(Props(classOf[ActivityLogActor], KeepLatest(2)))
+    val queries = (1 to 5).map(i => Query(s"select $i", Consistency.ONE, None))
+
+    "keep only the latest queries" in {
+      queries.foreach(activityLog ! RecordQuery(_))
+      activityLog ! GetAllQueries
+      expectMsg(Queries(queries.takeRight(2).toList))
+    }
+
+    "count dropped queries" in {
+      activityLog ! GetDroppedActivity
+      expectMsg(DroppedActivity(connections = 0, queries = 3, prepares = 0, executions = 0, batches = 0))
+    }
+
+    "reset dropped count when cleared" in {
+      activityLog ! ClearQueries
+      activityLog ! GetDroppedActivity
+      expectMsg(DroppedActivity(0, 0, 0, 0, 0))
+    }
+  }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.actors
+
+import org.scalatest.{ FunSuite, Matchers }
+
+class ActivityRecordingTest extends FunSuite with Matchers {
+
+  test("Should record every request at full and metadata levels") {
+    new ActivityRecording(RecordEverything).next() should equal(RecordEverything)
+    new ActivityRecording(RecordMetadata).next() should equal(RecordMetadata)
+  }
+
+  test("Should record nothing when off") {
+    new ActivityRecording(RecordNothing).next() should equal(RecordNothing)
+  }
+
+  test("Should fully record one in every n requests when sampling") {
+    val underTest = new ActivityRecording(RecordSample(3))
+
+    val levels = List.fill(9)(underTest.next())
+
+    levels.count(_ == RecordEverything) should equal(3)
+    levels.count(_ == RecordNothing) should equal(6)
+  }
+
+  test("Should pick up level changes for following requests") {
+    val underTest = new ActivityRecording(RecordEverything)
+
+    underTest.level = RecordNothing
+
+    underTest.next() should equal(RecordNothing)
+  }
+
+  test("Should reject sample rates below one") {
+    intercept[IllegalArgumentException] {
+      RecordSample(0)
+    }
+  }
+}
@@ -16,43 +16,31 @@
 package org.scassandra.server.actors
 
 import akka.actor.{ ActorRef, Props }
-import akka.testkit.TestActor.KeepRunning
 import akka.testkit.{ ImplicitSender, TestProbe }
-import com.typesafe.scalalogging.LazyLogging
 import org.scalatest.{ BeforeAndAfter, Matchers, WordSpec }
 import org.scassandra.codec._
 import org.scassandra.codec.datatype._
 import org.scassandra.codec.messages._
 import org.scassandra.server.actors.Activity.BatchExecution
 import org.scassandra.server.actors.ActivityLogActor.RecordBatch
-import org.scassandra.server.actors.PrepareHandler.{ PreparedStatementQuery, PreparedStatementResponse }
-import org.scassandra.server.actors.priming.PrimeBatchStoreActor.MatchResult
 import scodec.bits.ByteVector
 
 import scala.concurrent.duration._
 import scala.language.postfixOps
 
 class BatchHandlerTest extends WordSpec with ProtocolActorTest with TestKitWithShutdown with ImplicitSender
-  with Matchers with BeforeAndAfter with LazyLogging {
+  with Matchers with BeforeAndAfter {
 
   var underTest: ActorRef = _
-  var prepareHandlerProbe: TestProbe = _
+  var preparedStatements: PreparedStatements = _
   val activityLogProbe = TestProbe()
   val activityLog = activityLogProbe.ref
   val primeBatchStoreProbe = TestProbe()
-  val primeBatchStore = primeBatchStoreProbe.ref
-
-  primeBatchStoreProbe.setAutoPilot((sender: ActorRef, msg: Any) => {
-    logger.error("Got msg: " + msg)
-    msg match {
-      case _ => sender ! MatchResult(None)
-    }
-    KeepRunning
-  })
+  val primes = new StubPrimes(primeBatchStoreProbe)
 
   before {
-    prepareHandlerProbe = TestProbe()
-    underTest = system.actorOf(Props(classOf[BatchHandler], activityLog, prepareHandlerProbe.ref, primeBatchStore))
+    preparedStatements = new PreparedStatements
+    underTest = system.actorOf(Props(new BatchHandler(activityLog, preparedStatements, primes)))
     activityLogProbe.receiveWhile(10 milliseconds) {
       case _ =>
     }
@@ -96,15 +84,13 @@ class BatchHandlerTest extends WordSpec with ProtocolActorTest with TestKitWithS
       val batch = Batch(BatchType.LOGGED, List(
         PreparedBatchQuery(idBytes, List(QueryValue(1, CqlInt).value))))
 
-      underTest ! protocolMessage(batch)
-
-      prepareHandlerProbe.expectMsg(PreparedStatementQuery(List(id)))
-
       val prepared = Prepared(
         idBytes,
         PreparedMetadata(Nil, Some("keyspace"), Some("table"), List(ColumnSpecWithoutTable("0", CqlInt))))
 
-      prepareHandlerProbe.reply(PreparedStatementResponse(Map(id -> ("insert into something", prepared))))
+      preparedStatements.register(idBytes, "insert into something", prepared)
+
+      underTest ! protocolMessage(batch)
 
       expectMsgPF() {
         case ProtocolResponse(_, VoidResult) => true
@@ -124,9 +110,6 @@ class BatchHandlerTest extends WordSpec with ProtocolActorTest with TestKitWithS
 
       underTest ! protocolMessage(batch)
 
-      prepareHandlerProbe.expectMsg(PreparedStatementQuery(List(1)))
-      prepareHandlerProbe.reply(PreparedStatementResponse(Map()))
-
       expectMsgPF() {
         case ProtocolResponse(_, VoidResult) => true
       }
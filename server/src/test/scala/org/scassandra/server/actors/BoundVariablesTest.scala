@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.actors
+
+import org.scalatest.{ FunSuite, Matchers }
+import org.scassandra.codec.datatype.{ CqlInt, CqlList, DataType, Text }
+import org.scassandra.codec.{ Bytes, Null, ProtocolVersion, Unset }
+import scodec.bits.ByteVector
+
+class BoundVariablesTest extends FunSuite with Matchers {
+  implicit val protocolVersion: ProtocolVersion = ProtocolVersion.latest
+
+  def bytes(value: Any, dataType: DataType) = Bytes(dataType.codec.encode(value).require.bytes)
+
+  test("Should decode values using their data types") {
+    val underTest = new BoundVariables(Vector(bytes("Chris", Text), bytes(30, CqlInt)), Vector(Text, CqlInt))
+
+    underTest(0) should equal("Chris")
+    underTest(1) should equal(30)
+    underTest should equal(List("Chris", 30))
+  }
+
+  test("Should read null and unset values as null") {
+    val underTest = new BoundVariables(Vector(Null, Unset), Vector(Text, CqlInt))
+
+    underTest should equal(List(null, null))
+  }
+
+  test("Should read values that can't be decoded as their raw bytes") {
+    val underTest = new BoundVariables(Vector(bytes("Chris", Text), Bytes(ByteVector(1, 2))), Vector(Text, CqlInt))
+
+    underTest should equal(List("Chris", ByteVector(1, 2)))
+  }
+
+  test("Should decode each value once") {
+    val underTest = new BoundVariables(Vector(bytes(List(1, 2), CqlList(CqlInt))), Vector(CqlList(CqlInt)))
+
+    underTest(0).asInstanceOf[AnyRef] should be theSameInstanceAs underTest(0).asInstanceOf[AnyRef]
+  }
+
+  test("Should require a data type for every value") {
+    intercept[IllegalArgumentException] {
+      new BoundVariables(Vector(Null), Vector(Text, CqlInt))
+    }
+  }
+}
@@ -15,11 +15,16 @@
  */
 package org.scassandra.server.actors
 
-import akka.io.Tcp.{ Received, ResumeReading, Write }
+import akka.actor.{ ActorRef, Props }
+import akka.io.Tcp
+import akka.io.Tcp.{ CommandFailed, Received, ResumeReading, ResumeWriting, Write, WritingResumed }
 import akka.testkit._
+import akka.util.ByteString
 import org.scalatest._
 import org.scassandra.codec._
-import scodec.Codec
+import org.scassandra.codec.compression.Lz4
+import org.scassandra.server.metrics.RequestMetrics
+import scodec.{ Codec, DecodeResult }
 import scodec.bits.ByteVector
 import AkkaScodecInterop._
 
@@ -54,7 +59,7 @@ class ConnectionHandlerTest extends FunSuite with TestKitWithShutdown with Proto
       (_) => registerHandlerTestProbe.ref,
       (_) => optionsHandlerTestProbe.ref,
       prepareHandlerTestProbe.ref,
-      executeHandlerTestProbe.ref))
+      (_) => executeHandlerTestProbe.ref))
 
     // Ignore all 'ResumeReading' messages.
     ignoreMsg {
@@ -114,6 +119,251 @@ class ConnectionHandlerTest extends FunSuite with TestKitWithShutdown with Proto
     }
   }
 
+  test("Should handle complete cql messages followed by a partial one in the same data message") {
+    implicit val protocolVersion = ProtocolVersionV3
+    val firstQuery = Query("select * from people")
+    val secondQuery = Query("select * from cars")
+    val thirdQuery = Query("select * from planes")
+
+    val thirdMessage = thirdQuery.toBytes(3, Request).get
+    val (thirdMessageFirstPart, thirdMessageSecondPart) = thirdMessage.splitAt(5)
+    val data = Startup().toBytes(0, Request).get ++ firstQuery.toBytes(1, Request).get ++ secondQuery.toBytes(2, Request).get ++ thirdMessageFirstPart
+
+    testActorRef ! Received(data.toByteString)
+
+    queryHandlerTestProbe.expectMsgPF() {
+      case ProtocolMessage(Frame(header, `firstQuery`)) => header.stream shouldEqual 1
+    }
+    queryHandlerTestProbe.expectMsgPF() {
+      case ProtocolMessage(Frame(header, `secondQuery`)) => header.stream shouldEqual 2
+    }
+    queryHandlerTestProbe.expectNoMsg()
+
+    testActorRef ! Received(thirdMessageSecondPart.toByteString ++ firstQuery.toBytes(4, Request).get.toByteString)
+
+    queryHandlerTestProbe.expectMsgPF() {
+      case ProtocolMessage(Frame(header, `thirdQuery`)) => header.stream shouldEqual 3
+    }
+    queryHandlerTestProbe.expectMsgPF() {
+      case ProtocolMessage(Frame(header, `firstQuery`)) => header.stream shouldEqual 4
+    }
+  }
+
+  test("Should write responses ready while a write is in flight together when coalescing writes") {
+    val connection = TestProbe()
+    val underTest = coalescingConnectionHandler(connection.ref, maxBufferedBytes = 1024)
+    val header = FrameHeader(ProtocolFlags(Request, ProtocolVersionV4))
+    val responses = (1 to 3).map(stream => ProtocolResponse(header.copy(stream = stream), VoidResult))
+    connection.expectMsg(ResumeReading)
+
+    underTest ! responses(0)
+    connection.expectMsg(Write(responses(0).toByteString.get, WriteAck))
+
+    underTest ! responses(1)
+    underTest ! responses(2)
+    connection.expectNoMsg(100 milliseconds)
+
+    underTest ! WriteAck
+    connection.expectMsg(Write(responses(1).toByteString.get ++ responses(2).toByteString.get, WriteAck))
+  }
+
+  test("Should stop reading while too many responses are waiting to be written when coalescing writes") {
+    val connection = TestProbe()
+    val underTest = coalescingConnectionHandler(connection.ref, maxBufferedBytes = 1)
+    val header = FrameHeader(ProtocolFlags(Request, ProtocolVersionV4))
+    connection.expectMsg(ResumeReading)
+
+    underTest ! ProtocolResponse(header.copy(stream = 1), VoidResult)
+    connection.expectMsgType[Write]
+    underTest ! ProtocolResponse(header.copy(stream = 2), VoidResult)
+
+    underTest ! Received(ByteString(ProtocolVersionV4.version))
+    connection.expectNoMsg(100 milliseconds)
+
+    underTest ! WriteAck
+    connection.expectMsgType[Write]
+    connection.expectMsg(ResumeReading)
+  }
+
+  test("Should retry failed writes in order once the connection resumes writing") {
+    val connection = TestProbe()
+    val underTest = immediateConnectionHandler(connection.ref)
+    val header = FrameHeader(ProtocolFlags(Request, ProtocolVersionV4))
+    val responses = (1 to 3).map(stream => ProtocolResponse(header.copy(stream = stream), VoidResult))
+    val writes = responses.map(response => Write(response.toByteString.get))
+    connection.expectMsg(ResumeReading)
+
+    underTest ! responses(0)
+    underTest ! responses(1)
+    connection.expectMsg(writes(0))
+    connection.expectMsg(writes(1))
+    connection.reply(CommandFailed(writes(0)))
+    connection.expectMsg(ResumeWriting)
+    connection.reply(CommandFailed(writes(1)))
+
+    // Held back until the failed writes have been retried.
+    underTest ! responses(2)
+    // Sent from a probe of its own, which the ask of the connection answers once it times out.
+    underTest.tell(Tcp.Close, TestProbe().ref)
+    connection.expectNoMsg(100 milliseconds)
+
+    underTest ! WritingResumed
+    connection.expectMsg(writes(0))
+    connection.expectMsg(writes(1))
+    connection.expectMsg(writes(2))
+    connection.expectMsg(Tcp.Close)
+  }
+
+  test("Should retry a failed write once the connection resumes writing when coalescing writes") {
+    val connection = TestProbe()
+    val underTest = coalescingConnectionHandler(connection.ref, maxBufferedBytes = 1024)
+    val header = FrameHeader(ProtocolFlags(Request, ProtocolVersionV4))
+    connection.expectMsg(ResumeReading)
+
+    underTest ! ProtocolResponse(header, VoidResult)
+    val write = connection.expectMsgType[Write]
+    connection.reply(CommandFailed(write))
+    connection.expectMsg(ResumeWriting)
+
+    underTest ! WritingResumed
+    connection.expectMsg(write)
+  }
+
+  test("Should send commands once responses before them are written when coalescing writes") {
+    val connection = TestProbe()
+    val underTest = coalescingConnectionHandler(connection.ref, maxBufferedBytes = 1024)
+    val header = FrameHeader(ProtocolFlags(Request, ProtocolVersionV4))
+    connection.expectMsg(ResumeReading)
+
+    underTest ! ProtocolResponse(header, VoidResult)
+    // Sent from a probe of its own, which the ask of the connection answers once it times out.
+    underTest.tell(Tcp.Close, TestProbe().ref)
+    connection.expectMsgType[Write]
+    connection.expectNoMsg(100 milliseconds)
+
+    underTest ! WriteAck
+    connection.expectMsg(Tcp.Close)
+  }
+
+  test("Should time decoding requests and encoding and writing responses when timing requests") {
+    implicit val protocolVersion = ProtocolVersionV4
+    val metrics = new RequestMetrics(enabled = true)
+    val connection = TestProbe()
+    val underTest = system.actorOf(Props(new ConnectionHandler(
+      connection.ref,
+      (_) => queryHandlerTestProbe.ref,
+      (_, _) => batchHandlerTestProbe.ref,
+      (_) => registerHandlerTestProbe.ref,
+      (_) => optionsHandlerTestProbe.ref,
+      prepareHandlerTestProbe.ref,
+      (_) => executeHandlerTestProbe.ref,
+      ImmediateWrites,
+      metrics)))
+    connection.expectMsg(ResumeReading)
+
+    underTest ! Received((Startup().toBytes(0, Request).get ++ Query("select * from people").toBytes(1, Request).get).toByteString)
+    val header = queryHandlerTestProbe.expectMsgPF() {
+      case ProtocolMessage(Frame(h, _)) => h
+    }
+    underTest ! ProtocolResponse(header, VoidResult)
+
+    awaitAssert {
+      metrics.latencies.filter(_.opcode == "QUERY").map(l => (l.stage, l.opcode, l.prime, l.count)) should equal(List(
+        ("decode", "QUERY", None, 1),
+        ("encode", "QUERY", None, 1),
+        ("write", "QUERY", None, 1)))
+    }
+  }
+
+  test("Should reject requests beyond the throttle's limits as overloaded") {
+    implicit val protocolVersion = ProtocolVersionV4
+    val connection = TestProbe()
+    val underTest = throttledConnectionHandler(connection.ref,
+      ThrottleSettings(connection = ThrottleLimits(maxInFlight = Some(1)), whenOverloaded = RejectWhenOverloaded))
+    connection.expectMsg(ResumeReading)
+
+    underTest ! Received((Startup().toBytes(0, Request).get ++ Query("select * from people").toBytes(1, Request).get ++
+      Query("select * from cars").toBytes(2, Request).get).toByteString)
+
+    queryHandlerTestProbe.expectMsgPF() {
+      case ProtocolMessage(Frame(_, Query("select * from people", _))) => true
+    }
+    queryHandlerTestProbe.expectNoMsg(100 milliseconds)
+    connection.fishForMessage() {
+      case Write(bytes, _) => Codec[Frame].decodeValue(bytes.toByteVector.bits).require match {
+        case Frame(FrameHeader(_, _, 2, _, _), Overloaded(_)) => true
+        case _ => false
+      }
+      case ResumeReading => false
+    }
+  }
+
+  test("Should hold requests beyond the throttle's limits and pause reading until they're within them") {
+    implicit val protocolVersion = ProtocolVersionV4
+    val connection = TestProbe()
+    val underTest = throttledConnectionHandler(connection.ref,
+      ThrottleSettings(connection = ThrottleLimits(maxInFlight = Some(1))))
+    connection.expectMsg(ResumeReading)
+
+    underTest ! Received((Startup().toBytes(0, Request).get ++ Query("select * from people").toBytes(1, Request).get ++
+      Query("select * from cars").toBytes(2, Request).get).toByteString)
+
+    val header = queryHandlerTestProbe.expectMsgPF() {
+      case ProtocolMessage(Frame(h, Query("select * from people", _))) => h
+    }
+    queryHandlerTestProbe.expectNoMsg(100 milliseconds)
+    connection.expectMsgType[Write]
+    connection.expectNoMsg(100 milliseconds)
+
+    underTest ! ProtocolResponse(header, VoidResult)
+
+    queryHandlerTestProbe.expectMsgPF() {
+      case ProtocolMessage(Frame(_, Query("select * from cars", _))) => true
+    }
+    connection.expectMsg(ResumeReading)
+  }
+
+  test("Should compress frames after startup once the client asks for a supported compression") {
+    implicit val protocolVersion = ProtocolVersionV4
+
+    testActorRef ! Received(Startup(Map("CQL_VERSION" -> "3.0.0", "COMPRESSION" -> "lz4")).toBytes(0, Request).get.toByteString)
+
+    // The response to startup is not compressed.
+    expectMsgPF() {
+      case Write(bytes, _) => Codec[Frame].decodeValue(bytes.toByteVector.bits).require.message shouldEqual Ready
+    }
+
+    val query = Query("select * from people")
+    testActorRef ! Received(ByteString(query.toCompressedArray(1, Lz4, Request).get))
+
+    val header = queryHandlerTestProbe.expectMsgPF() {
+      case ProtocolMessage(Frame(h, `query`)) => h
+    }
+
+    testActorRef ! ProtocolResponse(header, VoidResult)
+
+    expectMsgPF() {
+      case Write(bytes, _) =>
+        val (responseHeader, body) = Codec[FrameHeader].decode(bytes.toByteVector.bits).require match {
+          case DecodeResult(h, remainder) => (h, remainder.toByteArray)
+        }
+        responseHeader.flags.compression shouldEqual true
+        responseHeader.stream shouldEqual 1
+        Lz4.decompress(body).get shouldEqual VoidResult.toBytes(1, Response).get.drop(protocolVersion.headerLength.toInt).toArray
+    }
+  }
+
+  test("Should send protocol error if the client asks for an unsupported compression") {
+    implicit val protocolVersion = ProtocolVersionV4
+
+    testActorRef ! Received(Startup(Map("CQL_VERSION" -> "3.0.0", "COMPRESSION" -> "deflate")).toBytes(0, Request).get.toByteString)
+
+    expectMsgPF() {
+      case Write(bytes, _) => Codec[Frame].decodeValue(bytes.toByteVector.bits).require.message shouldEqual
+        ProtocolError("Unsupported compression algorithm deflate")
+    }
+  }
+
   test("Should send unsupported version if unknown protocol version") {
     implicit val protocolVersion = UnsupportedProtocolVersion(5)
     val startupMessage = Startup()
@@ -131,4 +381,39 @@ class ConnectionHandlerTest extends FunSuite with TestKitWithShutdown with Proto
       case x => fail(s"Received $x instead of a Write")
     }
   }
+
+  private def immediateConnectionHandler(connection: ActorRef): ActorRef =
+    system.actorOf(Props(new ConnectionHandler(
+      connection,
+      (_) => queryHandlerTestProbe.ref,
+      (_, _) => batchHandlerTestProbe.ref,
+      (_) => registerHandlerTestProbe.ref,
+      (_) => optionsHandlerTestProbe.ref,
+      prepareHandlerTestProbe.ref,
+      (_) => executeHandlerTestProbe.ref,
+      ImmediateWrites)))
+
+  private def coalescingConnectionHandler(connection: ActorRef, maxBufferedBytes: Int): ActorRef =
+    system.actorOf(Props(new ConnectionHandler(
+      connection,
+      (_) => queryHandlerTestProbe.ref,
+      (_, _) => batchHandlerTestProbe.ref,
+      (_) => registerHandlerTestProbe.ref,
+      (_) => optionsHandlerTestProbe.ref,
+      prepareHandlerTestProbe.ref,
+      (_) => executeHandlerTestProbe.ref,
+      CoalescedWrites(Duration.Zero, maxBufferedBytes))))
+
+  private def throttledConnectionHandler(connection: ActorRef, settings: ThrottleSettings): ActorRef =
+    system.actorOf(Props(new ConnectionHandler(
+      connection,
+      (_) => queryHandlerTestProbe.ref,
+      (_, _) => batchHandlerTestProbe.ref,
+      (_) => registerHandlerTestProbe.ref,
+      (_) => optionsHandlerTestProbe.ref,
+      prepareHandlerTestProbe.ref,
+      (_) => executeHandlerTestProbe.ref,
+      ImmediateWrites,
+      RequestMetrics.disabled,
+      new ServerThrottle(new Throttling(settings)))))
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.actors
+
+import akka.util.ByteString
+import org.scalatest.{ FunSuite, Matchers }
+import org.scassandra.codec._
+import org.scassandra.codec.datatype.{ CqlInt, Varchar }
+import org.scassandra.codec.messages.{ ColumnSpec, Row, RowMetadata }
+
+class EncodedMessageTest extends FunSuite with Matchers {
+
+  val rows = Rows(RowMetadata(keyspace = Some("ks"), table = Some("people"),
+    columnSpec = Some(List(ColumnSpec.column("name", Varchar)))), List(Row("name" -> "Chris"), Row("name" -> "Dogan")))
+
+  test("Should encode the same as the message for every stream and protocol version") {
+    val underTest = new EncodedMessage(rows)
+
+    for (protocolVersion <- ProtocolVersion.versions; stream <- List(0, 1, 100)) {
+      val expected = ByteString(rows.toArray(stream)(protocolVersion).get)
+      underTest.toByteString(stream)(protocolVersion).get shouldEqual expected
+    }
+  }
+
+  test("Should fail if the message can't be encoded") {
+    val metadata = RowMetadata(columnSpec = Some(List(ColumnSpec.column("age", CqlInt))))
+    val underTest = new EncodedMessage(Rows(metadata, List(Row("age" -> "not a number"))))
+
+    underTest.toByteString(0)(ProtocolVersionV4).isFailure shouldEqual true
+  }
+}
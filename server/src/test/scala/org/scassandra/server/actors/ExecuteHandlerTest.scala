@@ -25,8 +25,7 @@ import org.scassandra.codec.datatype._
 import org.scassandra.codec.messages.{ ColumnSpecWithoutTable, PreparedMetadata, QueryParameters, Row }
 import org.scassandra.server.actors.Activity.PreparedStatementExecution
 import org.scassandra.server.actors.ActivityLogActor.RecordExecution
-import org.scassandra.server.actors.PrepareHandler.{ PreparedStatementQuery, PreparedStatementResponse }
-import org.scassandra.server.actors.priming.PrimePreparedStoreActor.{ LookupByExecute, PrimeMatch }
+import org.scassandra.server.actors.priming.PrimePreparedStoreActor.LookupByExecute
 import org.scassandra.server.actors.priming.PrimeQueryStoreActor.Reply
 import scodec.bits.ByteVector
 
@@ -38,12 +37,12 @@ class ExecuteHandlerTest extends WordSpec with ProtocolActorTest with Matchers w
   implicit val protocolVersion = ProtocolVersion.latest
 
   var underTest: ActorRef = _
-  var prepareHandlerTestProbe: TestProbe = _
+  var preparedStatements: PreparedStatements = _
   val activityLogProbe = TestProbe()
   val activityLog: ActorRef = activityLogProbe.ref
 
   val primePreparedStoreProbe = TestProbe()
-  val primePreparedStore = primePreparedStoreProbe.ref
+  val primes = new StubPrimes(primePreparedStoreProbe)
   val stream: Byte = 0x3
 
   implicit val atMost: Duration = 1 seconds
@@ -53,8 +52,9 @@ class ExecuteHandlerTest extends WordSpec with ProtocolActorTest with Matchers w
   val preparedIdBytes = ByteVector(preparedId)
 
   before {
-    prepareHandlerTestProbe = TestProbe()
-    underTest = TestActorRef(new ExecuteHandler(primePreparedStore, activityLog, prepareHandlerTestProbe.ref))
+    preparedStatements = new PreparedStatements
+    primes.prime = None
+    underTest = TestActorRef(new ExecuteHandler(primes, activityLog, preparedStatements))
     receiveWhile(10 milliseconds) {
       case _ =>
     }
@@ -66,12 +66,12 @@ class ExecuteHandlerTest extends WordSpec with ProtocolActorTest with Matchers w
   "execute handler" must {
     "return empty result message for execute if not primed - no params" in {
       val execute = Execute(preparedIdBytes)
-      respondWith(primePreparedStoreProbe, PrimeMatch(None))
+      primes.prime = None
+
+      preparedStatements.register(preparedIdBytes, "Some query", Prepared(preparedIdBytes))
 
       underTest ! protocolMessage(execute)
 
-      prepareHandlerTestProbe.expectMsg(PreparedStatementQuery(List(preparedId)))
-      prepareHandlerTestProbe.reply(PreparedStatementResponse(Map(preparedId -> ("Some query", Prepared(preparedIdBytes)))))
       primePreparedStoreProbe.expectMsg(LookupByExecute("Some query", execute, protocolVersion))
       expectMsgPF() {
         case ProtocolResponse(_, VoidResult) => true
@@ -83,12 +83,12 @@ class ExecuteHandlerTest extends WordSpec with ProtocolActorTest with Matchers w
       val query = "select * from something where name = ?"
       val prepared = Prepared(preparedIdBytes)
       val execute = Execute(preparedIdBytes, QueryParameters(consistency = consistency))
-      respondWith(primePreparedStoreProbe, PrimeMatch(None))
+      primes.prime = None
+
+      preparedStatements.register(preparedIdBytes, query, prepared)
 
       underTest ! protocolMessage(execute)
 
-      prepareHandlerTestProbe.expectMsg(PreparedStatementQuery(List(preparedId)))
-      prepareHandlerTestProbe.reply(PreparedStatementResponse(Map(preparedId -> (query, prepared))))
       primePreparedStoreProbe.expectMsg(LookupByExecute(query, execute, protocolVersion))
     }
 
@@ -97,13 +97,13 @@ class ExecuteHandlerTest extends WordSpec with ProtocolActorTest with Matchers w
       val id = 1
       val rows = Rows(rows = Row("a" -> 1, "b" -> 2) :: Nil)
       val primeMatch = Some(Reply(rows))
-      respondWith(primePreparedStoreProbe, PrimeMatch(primeMatch))
+      primes.prime = primeMatch
       val execute = Execute(preparedIdBytes)
 
+      preparedStatements.register(preparedIdBytes, query, Prepared(preparedIdBytes))
+
       underTest ! protocolMessage(execute)
 
-      prepareHandlerTestProbe.expectMsg(PreparedStatementQuery(List(preparedId)))
-      prepareHandlerTestProbe.reply(PreparedStatementResponse(Map(preparedId -> (query, Prepared(preparedIdBytes)))))
       primePreparedStoreProbe.expectMsg(LookupByExecute(query, execute, protocolVersion))
       expectMsgPF() {
         case ProtocolResponse(_, `rows`) => true
@@ -116,28 +116,63 @@ class ExecuteHandlerTest extends WordSpec with ProtocolActorTest with Matchers w
       val rows = Rows(rows = Row("a" -> 1, "b" -> 2) :: Nil)
       val primeMatch = Some(Reply(rows))
       val consistency = Consistency.TWO
-      respondWith(primePreparedStoreProbe, PrimeMatch(primeMatch))
+      primes.prime = primeMatch
       val values = List(10)
       val variableTypes = List(Bigint)
       val execute = Execute(preparedIdBytes, parameters = QueryParameters(
         consistency,
         values = Some(values.map(v => QueryValue(None, Bytes(Bigint.codec.encode(v).require.bytes))))))
 
-      underTest ! protocolMessage(execute)
-
-      prepareHandlerTestProbe.expectMsg(PreparedStatementQuery(List(preparedId)))
-      prepareHandlerTestProbe.reply(PreparedStatementResponse(Map(preparedId -> (query, Prepared(
+      preparedStatements.register(preparedIdBytes, query, Prepared(
         preparedIdBytes,
         preparedMetadata = PreparedMetadata(keyspace = Some("keyspace"), table = Some("table"),
-          columnSpec = List(ColumnSpecWithoutTable("0", Bigint))))))))
+          columnSpec = List(ColumnSpecWithoutTable("0", Bigint)))))
+
+      underTest ! protocolMessage(execute)
+
       activityLogProbe.expectMsg(RecordExecution(PreparedStatementExecution(query, consistency, None, values, variableTypes, None)))
     }
 
+    "record execution in activity log without variables when only recording metadata" in {
+      val query = "select * from something where name = ?"
+      val consistency = Consistency.TWO
+      primes.prime = Some(Reply(NoRows))
+      val execute = Execute(preparedIdBytes, parameters = QueryParameters(
+        consistency,
+        values = Some(List(QueryValue(None, Bytes(Bigint.codec.encode(10).require.bytes))))))
+      val metadataOnly = TestActorRef(new ExecuteHandler(primes, activityLog, preparedStatements,
+        new ActivityRecording(RecordMetadata)))
+
+      preparedStatements.register(preparedIdBytes, query, Prepared(
+        preparedIdBytes,
+        preparedMetadata = PreparedMetadata(columnSpec = List(ColumnSpecWithoutTable("0", Bigint)))))
+
+      metadataOnly ! protocolMessage(execute)
+
+      activityLogProbe.expectMsg(RecordExecution(PreparedStatementExecution(query, consistency, None, List(), List(), None)))
+    }
+
+    "not record execution in activity log when recording is off" in {
+      val query = "select * from something where name = ?"
+      primes.prime = Some(Reply(NoRows))
+      val off = TestActorRef(new ExecuteHandler(primes, activityLog, preparedStatements,
+        new ActivityRecording(RecordNothing)))
+
+      preparedStatements.register(preparedIdBytes, query, Prepared(preparedIdBytes))
+
+      off ! protocolMessage(Execute(preparedIdBytes))
+
+      expectMsgPF() {
+        case ProtocolResponse(_, NoRows) => true
+      }
+      activityLogProbe.expectNoMsg(100 milliseconds)
+    }
+
     "record execution in activity log without variables when variables don't match prime" in {
       val query = "select * from something where name = ? and something = ?"
       val consistency = Consistency.TWO
       val primeMatch = Some(Reply(NoRows))
-      respondWith(primePreparedStoreProbe, PrimeMatch(primeMatch))
+      primes.prime = primeMatch
 
       // Execute statement with two BigInt variables.
       val variables = List(10, 20)
@@ -147,14 +182,13 @@ class ExecuteHandlerTest extends WordSpec with ProtocolActorTest with Matchers w
         values = Some(variables.map(v => QueryValue(None, Bytes(Bigint.codec.encode(v).require.bytes)))),
         timestamp = Some(1000)))
 
-      underTest ! protocolMessage(execute)
-
       // The Prepared Prime expects 1 column with Varchar.
-      prepareHandlerTestProbe.expectMsg(PreparedStatementQuery(List(preparedId)))
-      prepareHandlerTestProbe.reply(PreparedStatementResponse(Map(preparedId -> (query, Prepared(
+      preparedStatements.register(preparedIdBytes, query, Prepared(
         preparedIdBytes,
         preparedMetadata = PreparedMetadata(keyspace = Some("keyspace"), table = Some("table"),
-          columnSpec = ColumnSpecWithoutTable("0", Varchar) :: Nil))))))
+          columnSpec = ColumnSpecWithoutTable("0", Varchar) :: Nil)))
+
+      underTest ! protocolMessage(execute)
 
       // The execution should still be recorded, but the variables not included.
       activityLogProbe.expectMsg(RecordExecution(PreparedStatementExecution(query, consistency,
@@ -164,13 +198,13 @@ class ExecuteHandlerTest extends WordSpec with ProtocolActorTest with Matchers w
     "record execution in activity log event if not primed" in {
       val query = "Some query"
       val consistency = Consistency.TWO
-      respondWith(primePreparedStoreProbe, PrimeMatch(None))
+      primes.prime = None
       val execute = Execute(preparedIdBytes, QueryParameters(consistency))
 
+      preparedStatements.register(preparedIdBytes, query, Prepared(preparedIdBytes))
+
       underTest ! protocolMessage(execute)
 
-      prepareHandlerTestProbe.expectMsg(PreparedStatementQuery(List(preparedId)))
-      prepareHandlerTestProbe.reply(PreparedStatementResponse(Map(preparedId -> (query, Prepared(preparedIdBytes)))))
       activityLogProbe.expectMsg(RecordExecution(PreparedStatementExecution(query, consistency, None, List(), List(), None)))
     }
 
@@ -181,8 +215,6 @@ class ExecuteHandlerTest extends WordSpec with ProtocolActorTest with Matchers w
 
       underTest ! protocolMessage(execute)
 
-      prepareHandlerTestProbe.expectMsg(PreparedStatementQuery(List(preparedId)))
-      prepareHandlerTestProbe.reply(PreparedStatementResponse(Map()))
       activityLogProbe.expectMsg(RecordExecution(PreparedStatementExecution(errMsg, consistency, None, List(), List(), None)))
       expectMsgPF() {
         case ProtocolResponse(_, Unprepared(`errMsg`, `preparedIdBytes`)) => true
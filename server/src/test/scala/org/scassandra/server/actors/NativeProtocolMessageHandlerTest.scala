@@ -50,7 +50,7 @@ class NativeProtocolMessageHandlerTest extends FunSpec with TestKitWithShutdown
       (_) => registerHandlerTestProbe.ref,
       (_) => optionsHandlerTestProbe.ref,
       prepareHandlerTestProbe.ref,
-      executeHandlerTestProbe.ref))
+      (_) => executeHandlerTestProbe.ref))
   }
 
   val protocolVersions = Table("Protocol Version", ProtocolVersion.versions: _*)
@@ -33,4 +33,14 @@ class OptionsHandlerTest extends FunSuite with TestKitWithShutdown with Protocol
     }
   }
 
+  test("Should advertise supported compression algorithms") {
+    val underTest = TestActorRef(new OptionsHandler)
+
+    underTest ! protocolMessage(Options)
+
+    expectMsgPF() {
+      case ProtocolResponse(_, Supported(options)) => options("COMPRESSION") shouldEqual List("lz4", "snappy")
+    }
+  }
+
 }
@@ -27,7 +27,7 @@ import org.scassandra.codec.{ Prepare, Prepared }
 import org.scassandra.server.actors.Activity.PreparedStatementPreparation
 import org.scassandra.server.actors.ActivityLogActor.RecordPrepare
 import org.scassandra.server.actors.PrepareHandler.{ PreparedStatementQuery, PreparedStatementResponse }
-import org.scassandra.server.actors.priming.PrimePreparedStoreActor.{ LookupByPrepare, PrimeMatch }
+import org.scassandra.server.actors.priming.PrimePreparedStoreActor.LookupByPrepare
 import org.scassandra.server.actors.priming.PrimeQueryStoreActor.Reply
 import scodec.bits.ByteVector
 
@@ -41,14 +41,16 @@ class PrepareHandlerTest extends WordSpec with ProtocolActorTest with ImplicitSe
   private val activityLogProbe = TestProbe()
   private val activityLog: ActorRef = activityLogProbe.ref
   private val primePreparedStoreProbe = TestProbe()
-  private val primePreparedStore = primePreparedStoreProbe.ref
+  private val primes = new StubPrimes(primePreparedStoreProbe)
 
   val id = ByteVector(1)
 
   implicit val timeout: Timeout = 1 seconds
 
   before {
-    underTest = TestActorRef(new PrepareHandler(primePreparedStore, activityLog))
+    primes.prime = None
+    primes.generation = 0
+    underTest = TestActorRef(new PrepareHandler(primes, activityLog, new PreparedStatements))
     receiveWhile(10 milliseconds) {
       case _ =>
     }
@@ -60,11 +62,11 @@ class PrepareHandlerTest extends WordSpec with ProtocolActorTest with ImplicitSe
   "a prepare handler" must {
     "return prepared message on prepare - no params" in {
       val prepare = Prepare("select * from something")
-      respondWith(primePreparedStoreProbe, PrimeMatch(None))
+      primes.prime = None
 
       underTest ! protocolMessage(prepare)
 
-      primePreparedStoreProbe.expectMsg(LookupByPrepare(prepare, 1))
+      primePreparedStoreProbe.expectMsg(LookupByPrepare(prepare, PreparedStatements.id(prepare.query)))
       expectMsgPF() {
         case ProtocolResponse(_, Prepared(_, PreparedMetadata(Nil, Some("keyspace"), Some("table"), Nil), NoRowMetadata)) => true
       }
@@ -72,11 +74,11 @@ class PrepareHandlerTest extends WordSpec with ProtocolActorTest with ImplicitSe
 
     "return prepared message on prepare - with params" in {
       val prepare = Prepare("select * from something where name = ?")
-      respondWith(primePreparedStoreProbe, PrimeMatch(None))
+      primes.prime = None
 
       underTest ! protocolMessage(prepare)
 
-      primePreparedStoreProbe.expectMsg(LookupByPrepare(prepare, 1))
+      primePreparedStoreProbe.expectMsg(LookupByPrepare(prepare, PreparedStatements.id(prepare.query)))
       expectMsgPF() {
         case ProtocolResponse(_, Prepared(_, PreparedMetadata(Nil, Some("keyspace"), Some("table"),
           List(ColumnSpecWithoutTable("0", Varchar))), NoRowMetadata)) => true
@@ -88,22 +90,46 @@ class PrepareHandlerTest extends WordSpec with ProtocolActorTest with ImplicitSe
       val prepared = Prepared(id, PreparedMetadata(Nil, Some("keyspace"), Some("table"),
         List(ColumnSpecWithoutTable("0", CqlInt))))
       val prime = Some(Reply(prepared))
-      respondWith(primePreparedStoreProbe, PrimeMatch(prime))
+      primes.prime = prime
 
       underTest ! protocolMessage(Prepare("select * from something where name = ?"))
 
-      primePreparedStoreProbe.expectMsg(LookupByPrepare(prepare, 1))
+      primePreparedStoreProbe.expectMsg(LookupByPrepare(prepare, PreparedStatements.id(prepare.query)))
     }
 
-    "use incrementing ids" in {
+    "use the MD5 of the query as id" in {
       val prepare1 = Prepare("select * from cats")
       val prepare2 = Prepare("select * from dogs")
 
       underTest ! protocolMessage(prepare1)
       underTest ! protocolMessage(prepare2)
 
-      primePreparedStoreProbe.expectMsg(LookupByPrepare(prepare1, 1))
-      primePreparedStoreProbe.expectMsg(LookupByPrepare(prepare2, 2))
+      primePreparedStoreProbe.expectMsg(LookupByPrepare(prepare1, ByteVector.fromValidHex("70fdc3ce03ff767c520b06f739d41eb6")))
+      primePreparedStoreProbe.expectMsg(LookupByPrepare(prepare2, PreparedStatements.id("select * from dogs")))
+    }
+
+    "reply to preparing the same query again without looking up its prime" in {
+      val prepare = Prepare("select * from something where name = ?")
+
+      underTest ! protocolMessage(prepare)
+      underTest ! protocolMessage(prepare)
+
+      primePreparedStoreProbe.expectMsg(LookupByPrepare(prepare, PreparedStatements.id(prepare.query)))
+      primePreparedStoreProbe.expectNoMsg(100 milliseconds)
+      val responses = receiveN(2).collect { case ProtocolResponse(_, p: Prepared) => p }
+      responses should have size 2
+      responses.head should equal(responses(1))
+    }
+
+    "look up prime when preparing the same query again after primes have changed" in {
+      val prepare = Prepare("select * from something where name = ?")
+
+      underTest ! protocolMessage(prepare)
+      primePreparedStoreProbe.expectMsg(LookupByPrepare(prepare, PreparedStatements.id(prepare.query)))
+      primes.generation += 1
+      underTest ! protocolMessage(prepare)
+
+      primePreparedStoreProbe.expectMsg(LookupByPrepare(prepare, PreparedStatements.id(prepare.query)))
     }
   }
 
@@ -114,7 +140,7 @@ class PrepareHandlerTest extends WordSpec with ProtocolActorTest with ImplicitSe
   }
 
   "answer queries for prepared statement - not exist" in {
-    val response = (underTest ? PreparedStatementQuery(List(1))).mapTo[PreparedStatementResponse]
+    val response = (underTest ? PreparedStatementQuery(List(id))).mapTo[PreparedStatementResponse]
 
     response.futureValue should equal(PreparedStatementResponse(Map()))
   }
@@ -123,12 +149,27 @@ class PrepareHandlerTest extends WordSpec with ProtocolActorTest with ImplicitSe
     val query = "select * from something where name = ?"
     val prepared = Prepared(id, PreparedMetadata(Nil, Some("keyspace"), Some("table"),
       List(ColumnSpecWithoutTable("0", CqlInt))))
-    respondWith(primePreparedStoreProbe, PrimeMatch(Some(Reply(prepared))))
+    primes.prime = Some(Reply(prepared))
 
     underTest ! protocolMessage(Prepare(query))
 
-    val response = (underTest ? PreparedStatementQuery(List(id.toInt()))).mapTo[PreparedStatementResponse]
+    val response = (underTest ? PreparedStatementQuery(List(id))).mapTo[PreparedStatementResponse]
+
+    response.futureValue should equal(PreparedStatementResponse(Map(id -> (query, prepared))))
+  }
+
+  "register prepared statements where connections can look them up" in {
+    val preparedStatements = new PreparedStatements
+    val query = "select * from something where name = ?"
+    val prepared = Prepared(id)
+    primes.prime = Some(Reply(prepared))
+    val sharing = TestActorRef(new PrepareHandler(primes, activityLog, preparedStatements))
 
-    response.futureValue should equal(PreparedStatementResponse(Map(id.toInt() -> (query, prepared))))
+    sharing ! protocolMessage(Prepare(query))
+
+    expectMsgPF() {
+      case ProtocolResponse(_, `prepared`) => true
+    }
+    preparedStatements(id) should equal(Some((query, prepared)))
   }
 }
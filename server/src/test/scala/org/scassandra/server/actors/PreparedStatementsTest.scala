@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.actors
+
+import org.scalatest.{ FunSuite, Matchers }
+import org.scassandra.codec.Prepared
+import org.scassandra.codec.datatype.{ CqlInt, Varchar }
+import org.scassandra.codec.messages.{ ColumnSpecWithoutTable, PreparedMetadata }
+import scodec.bits.ByteVector
+
+class PreparedStatementsTest extends FunSuite with Matchers {
+
+  val query = "select * from people where name = ?"
+  val id = PreparedStatements.id(query)
+  val prepared = Prepared(id, PreparedMetadata(keyspace = Some("keyspace"), table = Some("table"),
+    columnSpec = List(ColumnSpecWithoutTable("0", Varchar))))
+  val otherPrepared = Prepared(id, PreparedMetadata(keyspace = Some("keyspace"), table = Some("table"),
+    columnSpec = List(ColumnSpecWithoutTable("0", CqlInt))))
+
+  test("Should use the MD5 of the query as id") {
+    PreparedStatements.id("select * from cats") shouldEqual ByteVector.fromValidHex("70fdc3ce03ff767c520b06f739d41eb6")
+  }
+
+  test("Should find registered statements by id") {
+    val underTest = new PreparedStatements
+    underTest.register(id, query, prepared)
+
+    underTest(id) shouldEqual Some((query, prepared))
+    underTest(ByteVector(1)) shouldEqual None
+    underTest(List(id, ByteVector(1))) shouldEqual Map(id -> (query, prepared))
+  }
+
+  test("Should find what a query was prepared as while primes are unchanged") {
+    val underTest = new PreparedStatements
+    underTest.register(id, query, prepared, primesGeneration = 3)
+
+    underTest.prepared(query, 3) shouldEqual Some(prepared)
+    underTest.prepared(query, 4) shouldEqual None
+    underTest.prepared("select * from cars", 3) shouldEqual None
+  }
+
+  test("Cache should find statements registered after it was created") {
+    val underTest = new PreparedStatements
+    val cache = underTest.cache()
+
+    cache(id) shouldEqual None
+    underTest.register(id, query, prepared)
+
+    cache(id) shouldEqual Some((query, prepared))
+  }
+
+  test("Cache should not return statements that have since been replaced or cleared") {
+    val underTest = new PreparedStatements
+    val cache = underTest.cache()
+    underTest.register(id, query, prepared)
+    cache(id)
+
+    underTest.register(id, query, otherPrepared)
+    cache(id) shouldEqual Some((query, otherPrepared))
+
+    underTest.clear()
+    cache(id) shouldEqual None
+  }
+
+  test("Should restore statements from a snapshot") {
+    val underTest = new PreparedStatements
+    underTest.register(id, query, prepared, primesGeneration = 3)
+    val snapshot = underTest.snapshot()
+
+    val restored = new PreparedStatements
+    restored.restore(snapshot)
+
+    snapshot shouldEqual List(SavedStatement(id.toHex, query, Some("keyspace"), Some("table"), List(Varchar)))
+    restored(id) shouldEqual Some((query, prepared))
+    // The primes the statement was prepared with aren't known, so preparing it again has to look its prime up.
+    restored.prepared(query, 3) shouldEqual None
+  }
+
+  test("Should only save statements under the id of their query") {
+    intercept[IllegalArgumentException] {
+      SavedStatement(PreparedStatements.id("select * from dogs").toHex, query, None, None, Nil)
+    }
+  }
+}
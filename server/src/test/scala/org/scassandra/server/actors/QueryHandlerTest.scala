@@ -22,7 +22,8 @@ import org.scassandra.codec._
 import org.scassandra.codec.datatype._
 import org.scassandra.codec.messages.{ QueryParameters, Row }
 import org.scassandra.server.actors.ActivityLogActor.RecordQuery
-import org.scassandra.server.actors.priming.PrimeQueryStoreActor.{ MatchPrime, MatchResult, Reply }
+import org.scassandra.server.actors.priming.PrimeQueryStoreActor.{ MatchPrime, Reply }
+import org.scassandra.server.metrics.RequestMetrics
 
 import scala.concurrent.duration._
 import scala.language.postfixOps
@@ -37,10 +38,11 @@ class QueryHandlerTest extends WordSpec with ImplicitSender with ProtocolActorTe
   val activityLogProbe = TestProbe()
   val activityLog = activityLogProbe.ref
   val primeQueryStoreProbe = TestProbe()
-  val primeQueryStore = primeQueryStoreProbe.ref
+  val primes = new StubPrimes(primeQueryStoreProbe)
 
   before {
-    underTest = TestActorRef(new QueryHandler(primeQueryStore, activityLog))
+    primes.prime = None
+    underTest = TestActorRef(new QueryHandler(primes, activityLog))
 
     receiveWhile(10 milliseconds) {
       case _ =>
@@ -56,7 +58,7 @@ class QueryHandlerTest extends WordSpec with ImplicitSender with ProtocolActorTe
   "query handler" must {
 
     "return empty result when PrimeQueryStore returns None" in {
-      respondWith(primeQueryStoreProbe, MatchResult(None))
+      primes.prime = None
 
       underTest ! protocolMessage(someCqlStatement)
 
@@ -68,7 +70,7 @@ class QueryHandlerTest extends WordSpec with ImplicitSender with ProtocolActorTe
 
     "return Prime message when PrimeQueryStore returns Prime" in {
       val rows = Rows(rows = Row("a" -> 1, "b" -> 2) :: Nil)
-      respondWith(primeQueryStoreProbe, MatchResult(Some(Reply(rows))))
+      primes.prime = Some(Reply(rows))
 
       underTest ! protocolMessage(someCqlStatement)
 
@@ -78,12 +80,23 @@ class QueryHandlerTest extends WordSpec with ImplicitSender with ProtocolActorTe
       }
     }
 
+    "return a page of the primed rows when a page size is requested" in {
+      val rows = Rows(rows = (1 to 3).map(i => Row("a" -> i)).toList)
+      primes.prime = Some(Reply(rows))
+
+      underTest ! protocolMessage(Query("some cql statement", QueryParameters(pageSize = Some(2))))
+
+      expectMsgPF() {
+        case ProtocolResponse(_, Rows(metadata, page)) if page == rows.rows.take(2) && metadata.pagingState.isDefined =>
+      }
+    }
+
     "store query in the ActivityLog even if not primed" in {
       //given
       val queryText = "select * from people"
       val consistency = Consistency.TWO
       val query = Query(queryText, QueryParameters(consistency = consistency))
-      respondWith(primeQueryStoreProbe, MatchResult(None))
+      primes.prime = None
 
       //when
       underTest ! protocolMessage(query)
@@ -92,6 +105,41 @@ class QueryHandlerTest extends WordSpec with ImplicitSender with ProtocolActorTe
       activityLogProbe.expectMsg(RecordQuery(Activity.Query(query.query, consistency, None, List(), List(), None)))
     }
 
+    "not store query in the ActivityLog when recording is off" in {
+      val recording = new ActivityRecording(RecordNothing)
+      val off = TestActorRef(new QueryHandler(primes, activityLog, recording))
+      primes.prime = None
+
+      off ! protocolMessage(someCqlStatement)
+
+      expectMsgPF() {
+        case ProtocolResponse(_, NoRows) =>
+      }
+      activityLogProbe.expectNoMsg(100 milliseconds)
+    }
+
+    "time prime lookup and activity recording by the prime matched when timing requests" in {
+      val metrics = new RequestMetrics(enabled = true)
+      val timed = TestActorRef(new QueryHandler(primes, activityLog, ActivityRecording.everything, metrics))
+      primes.prime = Some(Reply(VoidResult))
+
+      timed ! protocolMessage(someCqlStatement)
+      expectMsgPF() {
+        case ProtocolResponse(_, VoidResult) =>
+      }
+      primes.prime = None
+      timed ! protocolMessage(someCqlStatement)
+      expectMsgPF() {
+        case ProtocolResponse(_, NoRows) =>
+      }
+
+      metrics.latencies.map(l => (l.stage, l.opcode, l.prime, l.count)) should equal(List(
+        ("prime_lookup", "QUERY", Some(someCqlStatement.query), 1),
+        ("prime_lookup", "QUERY", Some(RequestMetrics.Unprimed), 1),
+        ("activity_recording", "QUERY", Some(someCqlStatement.query), 1),
+        ("activity_recording", "QUERY", Some(RequestMetrics.Unprimed), 1)))
+    }
+
     "record query parameter values from request in QueryLog if Prime contains variable types" in {
       // given
       val consistency = Consistency.THREE
@@ -102,7 +150,7 @@ class QueryHandlerTest extends WordSpec with ImplicitSender with ProtocolActorTe
           QueryValue(None, Bytes(dataType.codec.encode(v).require.toByteVector))
       }
       val query = Query("select * from someTable where k = ?", QueryParameters(consistency = consistency, values = Some(rawValues)))
-      respondWith(primeQueryStoreProbe, MatchResult(Some(Reply(NoRows, variableTypes = Some(variableTypes)))))
+      primes.prime = Some(Reply(NoRows, variableTypes = Some(variableTypes)))
 
       underTest ! protocolMessage(query)
 
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.actors
+
+import akka.testkit.TestProbe
+import org.scalatest.{ FunSuite, Matchers }
+
+import scala.concurrent.duration._
+
+class ResponseTimerTest extends FunSuite with TestKitWithShutdown with Matchers {
+
+  test("Should send message once its delay is up") {
+    val timer = new ResponseTimer(1.millisecond, 16)
+    val probe = TestProbe()
+
+    val start = System.nanoTime()
+    timer.schedule(50.milliseconds, probe.ref, "delayed")
+
+    probe.expectMsg("delayed")
+    (System.nanoTime() - start).nanoseconds should be >= 50.milliseconds
+    timer.stop()
+  }
+
+  test("Should send messages in the order they are due") {
+    val timer = new ResponseTimer(1.millisecond, 16)
+    val probe = TestProbe()
+
+    timer.schedule(60.milliseconds, probe.ref, "third")
+    timer.schedule(0.milliseconds, probe.ref, "first")
+    timer.schedule(30.milliseconds, probe.ref, "second")
+
+    probe.expectMsg("first")
+    probe.expectMsg("second")
+    probe.expectMsg("third")
+    timer.stop()
+  }
+
+  test("Should wait for as many turns of the wheel as the delay needs") {
+    val timer = new ResponseTimer(1.millisecond, 4)
+    val probe = TestProbe()
+
+    val start = System.nanoTime()
+    timer.schedule(25.milliseconds, probe.ref, "delayed")
+
+    probe.expectMsg("delayed")
+    (System.nanoTime() - start).nanoseconds should be >= 25.milliseconds
+    timer.stop()
+  }
+
+  test("Should send every message when many are waiting") {
+    val timer = new ResponseTimer(1.millisecond, 16)
+    val probe = TestProbe()
+
+    (1 to 100000).foreach(i => timer.schedule((i % 100).milliseconds, probe.ref, i))
+
+    probe.receiveN(100000).toSet should equal((1 to 100000).toSet)
+    timer.stop()
+  }
+
+  test("Should send messages scheduled after being idle") {
+    val timer = new ResponseTimer(1.millisecond, 16)
+    val probe = TestProbe()
+
+    timer.schedule(1.millisecond, probe.ref, "first")
+    probe.expectMsg("first")
+    Thread.sleep(50)
+    timer.schedule(1.millisecond, probe.ref, "second")
+
+    probe.expectMsg("second")
+    timer.stop()
+  }
+}
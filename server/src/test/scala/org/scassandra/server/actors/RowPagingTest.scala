@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.actors
+
+import org.scalatest.{ FunSuite, Matchers }
+import org.scassandra.codec._
+import org.scassandra.codec.messages.{ QueryParameters, Row, RowMetadata }
+import org.scassandra.server.actors.priming.PrimeQueryStoreActor.GeneratedReply
+import org.scassandra.server.priming.{ GeneratedRows, SequenceGenerator }
+import scodec.bits.ByteVector
+
+class RowPagingTest extends FunSuite with Matchers {
+
+  val rows = Rows(RowMetadata(keyspace = Some("keyspace")), (1 to 5).map(i => Row("id" -> i)).toList)
+
+  def query(pageSize: Option[Int], pagingState: Option[ByteVector] = None) =
+    Query("select * from people", QueryParameters(pageSize = pageSize, pagingState = pagingState))
+
+  test("Should not page when no page size is requested") {
+    RowPaging.page(rows, query(None)) should equal(None)
+    RowPaging.page(rows, query(Some(-1))) should equal(None)
+  }
+
+  test("Should not page when all rows fit on the first page") {
+    RowPaging.page(rows, query(Some(5))) should equal(None)
+  }
+
+  test("Should not page messages other than rows") {
+    RowPaging.page(VoidResult, query(Some(1))) should equal(None)
+    RowPaging.page(rows, Prepare("select * from people")) should equal(None)
+  }
+
+  test("Should return pages of rows until all rows have been returned") {
+    val Some(first: Rows) = RowPaging.page(rows, query(Some(2)))
+    first.rows should equal(rows.rows.take(2))
+    first.metadata.keyspace should equal(Some("keyspace"))
+
+    val Some(second: Rows) = RowPaging.page(rows, query(Some(2), first.metadata.pagingState))
+    second.rows should equal(rows.rows.slice(2, 4))
+
+    val Some(last: Rows) = RowPaging.page(rows, Execute(ByteVector(1), QueryParameters(pageSize = Some(2),
+      pagingState = second.metadata.pagingState)))
+    last.rows should equal(rows.rows.slice(4, 5))
+    last.metadata.pagingState should equal(None)
+  }
+
+  test("Should reject a paging state it didn't hand out") {
+    RowPaging.page(rows, query(Some(2), Some(ByteVector(1, 2)))) should equal(Some(RowPaging.invalidPagingState))
+    RowPaging.page(rows, query(Some(2), Some(ByteVector.fromInt(-1)))) should equal(Some(RowPaging.invalidPagingState))
+  }
+
+  test("Should generate only the rows of the requested page") {
+    val generated = GeneratedReply(RowMetadata(), GeneratedRows(5, Map("id" -> SequenceGenerator())))
+
+    val first = RowPaging.page(generated, query(Some(2))).asInstanceOf[ColumnarRows]
+    first.toRows.rows should equal(List(Row("id" -> 0L), Row("id" -> 1L)))
+
+    val last = RowPaging.page(generated, query(Some(3), first.metadata.pagingState)).asInstanceOf[ColumnarRows]
+    last.toRows.rows should equal(List(Row("id" -> 2L), Row("id" -> 3L), Row("id" -> 4L)))
+    last.metadata.pagingState should equal(None)
+  }
+
+  test("Should generate all rows when no page size is requested and they fit on a page") {
+    val generated = GeneratedReply(RowMetadata(), GeneratedRows(3, Map("id" -> SequenceGenerator())))
+
+    RowPaging.page(generated, query(None)).asInstanceOf[ColumnarRows].toRows should equal(
+      Rows(RowMetadata(), List(Row("id" -> 0L), Row("id" -> 1L), Row("id" -> 2L))))
+  }
+
+  test("Should page generated rows by the default page size when no page size is requested") {
+    val generated = GeneratedReply(RowMetadata(), GeneratedRows(1000000, Map("id" -> SequenceGenerator())))
+
+    val first = RowPaging.page(generated, query(None)).asInstanceOf[ColumnarRows]
+    first.count should equal(RowPaging.generatedPageSize)
+    first.metadata.pagingState should equal(Some(ByteVector.fromInt(RowPaging.generatedPageSize)))
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.actors
+
+import akka.actor.{ Props, Status }
+import akka.io.Tcp.Unbound
+import akka.testkit.{ ImplicitSender, TestProbe }
+import org.scalatest.{ Matchers, WordSpec }
+import org.scassandra.server.Shutdown
+
+class TcpServerGroupTest extends WordSpec with TestKitWithShutdown with Matchers with ImplicitSender {
+
+  trait Group {
+    val first = TestProbe()
+    val second = TestProbe()
+    val underTest = system.actorOf(Props(classOf[TcpServerGroup], List(first.ref, second.ref)))
+  }
+
+  "tcp server group" must {
+    "combine the connections of every server" in new Group {
+      underTest ! GetClientConnections(port = Some(1234))
+
+      first.expectMsg(GetClientConnections(port = Some(1234)))
+      first.reply(ClientConnections(List(ClientConnection("127.0.0.1", 1234))))
+      second.expectMsg(GetClientConnections(port = Some(1234)))
+      second.reply(ClientConnections(List(ClientConnection("127.0.0.2", 1234))))
+
+      expectMsg(ClientConnections(List(ClientConnection("127.0.0.1", 1234), ClientConnection("127.0.0.2", 1234))))
+    }
+
+    "close the connections of every server" in new Group {
+      underTest ! CloseClientConnections()
+
+      first.expectMsg(CloseClientConnections())
+      first.reply(ClosedConnections(List(ClientConnection("127.0.0.1", 1234)), "close"))
+      second.expectMsg(CloseClientConnections())
+      second.reply(ClosedConnections(Nil, "close"))
+
+      expectMsg(ClosedConnections(List(ClientConnection("127.0.0.1", 1234)), "close"))
+    }
+
+    "report a change when any server rejecting new connections changes" in new Group {
+      underTest ! RejectNewConnections(2)
+
+      first.expectMsg(RejectNewConnections(2))
+      first.reply(RejectNewConnectionsEnabled(false))
+      second.expectMsg(RejectNewConnections(2))
+      second.reply(RejectNewConnectionsEnabled(true))
+
+      expectMsg(RejectNewConnectionsEnabled(true))
+    }
+
+    "report no change when no server accepting new connections changes" in new Group {
+      underTest ! AcceptNewConnections
+
+      first.expectMsg(AcceptNewConnections)
+      first.reply(AcceptNewConnectionsEnabled(false))
+      second.expectMsg(AcceptNewConnections)
+      second.reply(AcceptNewConnectionsEnabled(false))
+
+      expectMsg(AcceptNewConnectionsEnabled(false))
+    }
+
+    "unbind once every server has unbound" in new Group {
+      underTest ! Shutdown
+
+      first.expectMsg(Shutdown)
+      first.reply(Unbound)
+      second.expectMsg(Shutdown)
+      expectNoMsg()
+      second.reply(Unbound)
+
+      expectMsg(Unbound)
+    }
+
+    "fail to unbind when any server fails to" in new Group {
+      underTest ! Shutdown
+
+      first.expectMsg(Shutdown)
+      first.reply(Unbound)
+      second.expectMsg(Shutdown)
+      second.reply(Status.Failure(new IllegalStateException("still bound")))
+
+      expectMsgType[Status.Failure].cause.getMessage should equal("still bound")
+    }
+  }
+}
@@ -21,7 +21,7 @@ import akka.io.Tcp.{ Bind, Bound }
 import akka.testkit._
 import org.scalatest.{ Matchers, WordSpec }
 import org.scassandra.server.ServerReady
-import org.scassandra.server.priming.prepared.PrimePreparedStore
+import org.scassandra.server.priming.PrimeRegistry
 
 class TcpServerReadyTest extends WordSpec with TestKitWithShutdown with Matchers {
 
@@ -30,12 +30,9 @@ class TcpServerReadyTest extends WordSpec with TestKitWithShutdown with Matchers
       val tcpReadyListener = TestProbe()
       val manager = TestProbe()
       val activityLog = TestProbe()
-      val primeBatchStore = TestProbe()
-      val preparedStore = TestProbe()
       val remote = new InetSocketAddress("127.0.0.1", 8046)
-      val primeQueryStore = TestProbe()
 
-      val tcpServer = TestActorRef(new TcpServer("localhost", 8046, primeQueryStore.ref, preparedStore.ref, primeBatchStore.ref, tcpReadyListener.ref, activityLog.ref, Some(manager.ref)))
+      val tcpServer = TestActorRef(new TcpServer("localhost", 8046, new PrimeRegistry, new PreparedStatements, tcpReadyListener.ref, activityLog.ref, Some(manager.ref)))
       manager.expectMsgType[Bind]
       manager.send(tcpServer, Bound(remote))
 
@@ -25,7 +25,7 @@ import akka.util.Timeout
 import org.scalatest._
 import org.scassandra.server.ServerReadyListener
 import org.scassandra.server.actors.ActivityLogActor.RecordConnection
-import org.scassandra.server.priming.prepared.PrimePreparedStore
+import org.scassandra.server.priming.PrimeRegistry
 
 import scala.concurrent.Await
 import scala.concurrent.duration.{ Duration, _ }
@@ -48,15 +48,11 @@ class TcpServerTest extends WordSpec with TestKitWithShutdown
   val activityLogProbe = TestProbe()
   val activityLog = activityLogProbe.ref
   val remote = new InetSocketAddress("127.0.0.1", 8047)
-  val primeBatchStoreProbe = TestProbe()
-  val primeBatchStore = primeBatchStoreProbe.ref
-  val primeQueryStore = TestProbe()
-  val primePreparedStore = TestProbe()
 
   before {
     manager = TestProbe()
     tcpConnection = TestProbe()
-    underTest = TestActorRef(new TcpServer("localhost", 8047, primeQueryStore.ref, primePreparedStore.ref, primeBatchStore, system.actorOf(Props(classOf[ServerReadyListener])), activityLog, Some(manager.ref)))
+    underTest = TestActorRef(new TcpServer("localhost", 8047, new PrimeRegistry, new PreparedStatements, system.actorOf(Props(classOf[ServerReadyListener])), activityLog, Some(manager.ref)))
     val remote = new InetSocketAddress("127.0.0.1", 8047)
 
     manager.expectMsgType[Bind]
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.actors
+
+import java.util.concurrent.TimeUnit
+
+import org.scalatest.{ FunSuite, Matchers }
+
+class ThrottlingTest extends FunSuite with Matchers {
+
+  private def throttle(settings: ThrottleSettings): (ServerThrottle, ConnectionThrottle) = {
+    val server = new ServerThrottle(new Throttling(settings))
+    (server, new ConnectionThrottle(server))
+  }
+
+  test("Token bucket should hand out up to a second's worth of tokens at once") {
+    val bucket = new TokenBucket(10)
+    val now = System.nanoTime()
+
+    (1 to 10).map(_ => bucket.tryTake(1, now)) should equal(List.fill(10)(0L))
+    bucket.tryTake(1, now) should equal(TimeUnit.MILLISECONDS.toNanos(100))
+    bucket.tryTake(1, now + TimeUnit.MILLISECONDS.toNanos(100)) should equal(0L)
+  }
+
+  test("Token bucket should go into debt when tokens are taken regardless") {
+    val bucket = new TokenBucket(1000)
+    val now = System.nanoTime()
+
+    bucket.take(1000, now) should equal(0L)
+    bucket.take(500, now) should equal(TimeUnit.MILLISECONDS.toNanos(500))
+    bucket.tryTake(1, now + TimeUnit.MILLISECONDS.toNanos(500)) should be > 0L
+  }
+
+  test("Should admit every request without limits") {
+    val (server, underTest) = throttle(ThrottleSettings())
+
+    underTest.active should equal(false)
+    (1 to 1000).map(_ => underTest.admit()).distinct should equal(List(Admitted))
+    underTest.writeDelay(1000000) should equal(0L)
+  }
+
+  test("Should hold requests beyond the connection's in flight limit until one is released") {
+    val (server, underTest) = throttle(ThrottleSettings(connection = ThrottleLimits(maxInFlight = Some(2))))
+
+    underTest.admit() should equal(Admitted)
+    underTest.admit() should equal(Admitted)
+    underTest.admit() shouldBe a[WaitFor]
+    server.inFlight.get should equal(2)
+
+    underTest.release()
+    underTest.admit() should equal(Admitted)
+  }
+
+  test("Should share the server's in flight limit between connections") {
+    val (shared, first) = throttle(ThrottleSettings(server = ThrottleLimits(maxInFlight = Some(1))))
+    val second = new ConnectionThrottle(shared)
+
+    first.admit() should equal(Admitted)
+    second.admit() shouldBe a[WaitFor]
+
+    first.releaseAll()
+    second.admit() should equal(Admitted)
+    shared.inFlight.get should equal(1)
+  }
+
+  test("Should reject requests beyond the limits when rejecting") {
+    val (_, underTest) = throttle(ThrottleSettings(connection = ThrottleLimits(requestsPerSecond = Some(2)),
+      whenOverloaded = RejectWhenOverloaded))
+
+    List.fill(3)(underTest.admit()) should equal(List(Admitted, Admitted, Rejected))
+  }
+
+  test("Should not use up the connection's tokens when the server's rate is exceeded") {
+    val (shared, underTest) = throttle(ThrottleSettings(connection = ThrottleLimits(requestsPerSecond = Some(2)),
+      server = ThrottleLimits(requestsPerSecond = Some(1))))
+
+    underTest.admit() should equal(Admitted)
+    underTest.admit() shouldBe a[WaitFor]
+    shared.inFlight.get should equal(1)
+
+    shared.throttling.settings = ThrottleSettings(connection = ThrottleLimits(requestsPerSecond = Some(2)))
+    underTest.admit() should equal(Admitted)
+  }
+
+  test("Should delay writes beyond the bandwidth limit") {
+    val (_, underTest) = throttle(ThrottleSettings(server = ThrottleLimits(bytesPerSecond = Some(1000))))
+
+    underTest.writeDelay(1000) should equal(0L)
+    underTest.writeDelay(500) should (be > TimeUnit.MILLISECONDS.toNanos(400) and be <= TimeUnit.MILLISECONDS.toNanos(500))
+  }
+}
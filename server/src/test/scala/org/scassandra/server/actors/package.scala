@@ -2,6 +2,14 @@ package org.scassandra.server
 
 import akka.actor.ActorRef
 import akka.testkit.{ TestActor, TestProbe }
+import org.scassandra.codec.{ Execute, Prepare, ProtocolVersion, Query }
+import org.scassandra.server.actors.Activity.BatchExecution
+import org.scassandra.server.actors.priming.PrimeBatchStoreActor.MatchBatch
+import org.scassandra.server.actors.priming.PrimePreparedStoreActor.{ LookupByExecute, LookupByPrepare }
+import org.scassandra.server.actors.priming.PrimeQueryStoreActor.{ MatchPrime, Prime }
+import org.scassandra.server.priming.{ BatchPrimeLookup, QueryPrimeLookup }
+import org.scassandra.server.priming.prepared.PreparedStoreLookup
+import scodec.bits.ByteVector
 
 package object actors {
   def respondWith(probe: TestProbe, m: Any): Unit = {
@@ -13,4 +21,24 @@ package object actors {
       }
     })
   }
+
+  /**
+   * Primes that answer every lookup with the same prime, telling the probe what was looked up using the messages
+   * the prime store actors understand.
+   */
+  class StubPrimes(probe: TestProbe) extends QueryPrimeLookup with BatchPrimeLookup with PreparedStoreLookup {
+    @volatile var prime: Option[Prime] = None
+    @volatile var generation: Long = 0
+
+    def apply(query: Query): Option[Prime] = lookup(MatchPrime(query))
+    def apply(batch: BatchExecution): Option[Prime] = lookup(MatchBatch(batch))
+    def apply(prepare: Prepare, id: ByteVector): Option[Prime] = lookup(LookupByPrepare(prepare, id))
+    def apply(queryText: String, execute: Execute)(implicit protocolVersion: ProtocolVersion): Option[Prime] =
+      lookup(LookupByExecute(queryText, execute, protocolVersion))
+
+    private def lookup(msg: Any): Option[Prime] = {
+      probe.ref ! msg
+      prime
+    }
+  }
 }
@@ -51,7 +51,7 @@ class PrimeQueryStoreActorTest extends WordSpec with TestKitWithShutdown with Im
     "return the prime if query matches" in {
       underTest ! MatchPrime(matchingQuery)
       expectMsgPF() {
-        case MatchResult(Some(Reply(rows, _, _))) if rows == someRows => true
+        case MatchResult(Some(Reply(rows, _, _, _))) if rows == someRows => true
       }
     }
 
@@ -64,7 +64,7 @@ class PrimeQueryStoreActorTest extends WordSpec with TestKitWithShutdown with Im
       val prefixes = List("use", " USE", "uSE  ")
       prefixes.foreach { prefix =>
         underTest ! MatchPrime(Query(s"$prefix someKeyspace"))
-        expectMsgPF() { case MatchResult(Some(Reply(SetKeyspace(ks), _, _))) if ks == "someKeyspace" => }
+        expectMsgPF() { case MatchResult(Some(Reply(SetKeyspace(ks), _, _, _))) if ks == "someKeyspace" => }
       }
     }
 
@@ -169,6 +169,16 @@ class PrimeQueryStoreActorTest extends WordSpec with TestKitWithShutdown with Im
         underTest ! MatchPrime(Query("hello there"))
         expectMsg(MatchResult(Some(query.prime)))
       }
+
+      "reject invalid patterns" in {
+        val underTest = system.actorOf(Props[PrimeQueryStoreActor])
+        val query = PrimeQuerySingle(When(queryPattern = Some("hello (")), someThen)
+        underTest ! RecordQueryPrime(query)
+        expectMsgPF() { case BadCriteria(_) => }
+
+        underTest ! MatchPrime(Query("hello ("))
+        expectMsg(MatchResult(None))
+      }
     }
   }
 
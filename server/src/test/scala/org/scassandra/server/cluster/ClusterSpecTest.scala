@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.cluster
+
+import java.net.InetSocketAddress
+
+import org.scalatest.{ FunSuite, Matchers }
+
+class ClusterSpecTest extends FunSuite with Matchers {
+
+  test("Should parse the number of nodes in each data center") {
+    ClusterSpec.parse("3:2", DistinctPorts, "test", "3.11.2") should equal(Some(ClusterSpec(List(3, 2), DistinctPorts, "test")))
+    ClusterSpec.parse(" ", DistinctPorts, "test", "3.11.2") should equal(None)
+  }
+
+  test("Should reject data centers without nodes") {
+    intercept[IllegalArgumentException] {
+      ClusterSpec(List(3, 0))
+    }
+  }
+
+  test("Should give each node the next port when listening on distinct ports") {
+    val topology = ClusterSpec(List(2, 1), DistinctPorts).topology("127.0.0.1", 9042)
+
+    topology.nodes.map(_.address) should equal(List(
+      new InetSocketAddress("127.0.0.1", 9042),
+      new InetSocketAddress("127.0.0.1", 9043),
+      new InetSocketAddress("127.0.0.1", 9044)))
+    topology.nodes.map(_.storagePort) should equal(List(7000, 7001, 7002))
+    topology.nodes.map(_.datacenter) should equal(List("dc1", "dc1", "dc2"))
+  }
+
+  test("Should give each node the next address when listening on loopback aliases") {
+    val topology = ClusterSpec(List(3), LoopbackAliases).topology("127.0.0.1", 9042)
+
+    topology.nodes.map(_.address) should equal(List(
+      new InetSocketAddress("127.0.0.1", 9042),
+      new InetSocketAddress("127.0.0.2", 9042),
+      new InetSocketAddress("127.0.0.3", 9042)))
+    topology.nodes.map(_.storagePort) should equal(List(7000, 7000, 7000))
+  }
+
+  test("Should give each node its own address by default") {
+    ClusterSpec(List(3)).endpoints should equal(LoopbackAliases)
+  }
+
+  test("Should split the token range evenly between the nodes of each data center") {
+    val topology = ClusterSpec(List(4, 2)).topology("127.0.0.1", 9042)
+
+    topology.nodes.flatMap(_.tokens) should equal(List(
+      "-9223372036854775808", "-4611686018427387904", "0", "4611686018427387904",
+      "-9223372036854775708", "100"))
+    topology.nodes.map(_.hostId).distinct should have size 6
+  }
+
+  test("Should give every node of a cluster except the given one as its peers") {
+    val topology = ClusterSpec(List(3)).topology("127.0.0.1", 9042)
+
+    topology.peers(topology.nodes.head) should equal(topology.nodes.tail)
+  }
+}
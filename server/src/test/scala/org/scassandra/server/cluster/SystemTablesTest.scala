@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.cluster
+
+import java.net.InetAddress
+
+import org.scalatest.{ FunSuite, Matchers }
+import org.scassandra.codec.messages.Row
+import org.scassandra.codec.{ NoRows, Query, Rows }
+import org.scassandra.server.actors.priming.PrimeQueryStoreActor.{ Prime, Reply }
+import org.scassandra.server.priming.{ MatchedPrime, QueryPrimeLookup }
+
+class SystemTablesTest extends FunSuite with Matchers {
+
+  val topology = ClusterSpec(List(2, 1), LoopbackAliases, "test cluster").topology("127.0.0.1", 9042)
+  val node = topology.nodes.head
+  val underTest = new SystemTables(topology, node)
+
+  private def rows(prime: Option[Prime]): List[Row] = prime match {
+    case Some(Reply(Rows(_, rs), _, _, _)) => rs
+    case other => fail(s"Expected rows but got $other")
+  }
+
+  test("Should answer system.local with the node's identity") {
+    val List(local) = rows(underTest(Query("SELECT * FROM system.local WHERE key='local'")))
+
+    local.columns("cluster_name") should equal("test cluster")
+    local.columns("data_center") should equal("dc1")
+    local.columns("rpc_address") should equal(InetAddress.getByName("127.0.0.1"))
+    local.columns("host_id") should equal(node.hostId)
+    local.columns("tokens") should equal(node.tokens)
+  }
+
+  test("Should answer system.peers with the other nodes") {
+    val peers = rows(underTest(Query("select peer, data_center, rack, tokens from system.peers")))
+
+    peers.map(_.columns("rpc_address")) should equal(List("127.0.0.2", "127.0.0.3").map(InetAddress.getByName))
+    peers.map(_.columns("data_center")) should equal(List("dc1", "dc2"))
+  }
+
+  test("Should answer system.peers_v2 with the native port of the other nodes") {
+    val peers = rows(underTest(Query("SELECT * FROM system.peers_v2")))
+
+    peers.map(_.columns("native_port")) should equal(List(9042, 9042))
+  }
+
+  test("Should answer system.peers_v2 with the storage port of the other nodes") {
+    val sharedAddress = ClusterSpec(List(3), DistinctPorts).topology("127.0.0.1", 9042)
+    val peers = rows(new SystemTables(sharedAddress, sharedAddress.nodes.head)(Query("SELECT * FROM system.peers_v2")))
+
+    peers.map(_.columns("peer_port")) should equal(List(7001, 7002))
+    peers.map(_.columns("native_port")) should equal(List(9043, 9044))
+  }
+
+  test("Should only answer with the peer asked for") {
+    val peers = rows(underTest(Query("SELECT * FROM system.peers WHERE peer='127.0.0.3'")))
+    peers.map(_.columns("data_center")) should equal(List("dc2"))
+
+    rows(underTest(Query("SELECT * FROM system.peers WHERE peer='127.0.0.9'"))) should equal(Nil)
+  }
+
+  test("Should not answer queries of other tables") {
+    underTest(Query("SELECT * FROM system.peers_other")) should equal(None)
+    underTest(Query("SELECT * FROM people")) should equal(None)
+    underTest(Query("INSERT INTO system.local (key) VALUES ('local')")) should equal(None)
+  }
+
+  test("Should prefer primes to the node's system tables") {
+    val primed = Reply(NoRows)
+    val primes = new QueryPrimeLookup {
+      def apply(query: Query): Option[Prime] = if (query.query.contains("local")) Some(primed) else None
+    }
+    val lookup = underTest.orElse(primes)
+
+    lookup(Query("SELECT * FROM system.local")) should equal(Some(primed))
+    lookup(Query("SELECT * FROM system.peers")) should equal(Some(underTest.allPeers))
+  }
+
+  test("Should report the table matched rather than the query") {
+    val lookup = underTest.orElse(new QueryPrimeLookup {
+      def apply(query: Query): Option[Prime] = None
+    })
+
+    lookup.matching(Query("SELECT peer, tokens FROM system.peers")) should equal(Some(MatchedPrime(underTest.allPeers, "system.peers")))
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.metrics
+
+import org.scalatest.{ FunSuite, Matchers }
+
+class LatencyHistogramTest extends FunSuite with Matchers {
+
+  test("Should report nothing when nothing has been recorded") {
+    val snapshot = new LatencyHistogram().snapshot()
+
+    snapshot.count should equal(0)
+    snapshot.mean should equal(0)
+    snapshot.valueAtPercentile(99) should equal(0)
+  }
+
+  test("Should count small values exactly") {
+    val underTest = new LatencyHistogram()
+    (1 to 100).foreach(underTest.record(_))
+
+    val snapshot = underTest.snapshot()
+    snapshot.count should equal(100)
+    snapshot.sum should equal(5050)
+    snapshot.max should equal(100)
+    snapshot.valueAtPercentile(50) should equal(50)
+    snapshot.valueAtPercentile(99) should equal(99)
+    snapshot.valueAtPercentile(100) should equal(100)
+  }
+
+  test("Should report large values to within the precision of the histogram") {
+    val underTest = new LatencyHistogram()
+    (1 to 1000).foreach(i => underTest.record(i * 1000000L))
+
+    val snapshot = underTest.snapshot()
+    snapshot.valueAtPercentile(50).toDouble should equal(500000000.0 +- 500000000.0 / 64)
+    snapshot.valueAtPercentile(99.9).toDouble should equal(999000000.0 +- 999000000.0 / 64)
+    snapshot.valueAtPercentile(100) should equal(1000000000L)
+  }
+
+  test("Should map every value to a bucket that counts it") {
+    val values = (0 until 63).flatMap(bit => List(1L << bit, (1L << bit) + 1, (1L << bit) - 1)) :+ Long.MaxValue
+    values.foreach { value =>
+      val index = LatencyHistogram.indexOf(value)
+      LatencyHistogram.highestValueAt(index) should be >= value
+      if (index > 0) LatencyHistogram.highestValueAt(index - 1) should be < value
+    }
+  }
+
+  test("Should record negative values as zero") {
+    val underTest = new LatencyHistogram()
+    underTest.record(-5)
+
+    underTest.snapshot().valueAtPercentile(100) should equal(0)
+  }
+
+  test("Should merge snapshots") {
+    val first = new LatencyHistogram()
+    val second = new LatencyHistogram()
+    first.record(10)
+    second.record(20)
+    second.record(30)
+
+    val merged = first.snapshot().merge(second.snapshot())
+    merged.count should equal(3)
+    merged.sum should equal(60)
+    merged.max should equal(30)
+    merged.valueAtPercentile(50) should equal(20)
+  }
+
+  test("Should forget recorded values when reset") {
+    val underTest = new LatencyHistogram()
+    underTest.record(10)
+    underTest.reset()
+
+    underTest.snapshot().count should equal(0)
+    underTest.snapshot().max should equal(0)
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.metrics
+
+import org.scalatest.{ FunSuite, Matchers }
+import org.scassandra.codec.{ Execute, Query }
+
+class RequestMetricsTest extends FunSuite with Matchers {
+
+  test("Should record latencies by stage, opcode and prime") {
+    val underTest = new RequestMetrics(enabled = true)
+
+    underTest.record(Stage.Encode, Query.opcode, underTest.start())
+    underTest.record(Stage.PrimeLookup, Query.opcode, underTest.start(), Some("select * from people"))
+    underTest.record(Stage.PrimeLookup, Query.opcode, underTest.start(), Some("select * from people"))
+    underTest.record(Stage.PrimeLookup, Execute.opcode, underTest.start(), Some(RequestMetrics.Unprimed))
+    underTest.record(Stage.Decode, Execute.opcode, underTest.start())
+
+    underTest.latencies.map(l => (l.stage, l.opcode, l.prime, l.count)) should equal(List(
+      ("decode", "EXECUTE", None, 1),
+      ("prime_lookup", "QUERY", Some("select * from people"), 2),
+      ("prime_lookup", "EXECUTE", Some(RequestMetrics.Unprimed), 1),
+      ("encode", "QUERY", None, 1)))
+  }
+
+  test("Should record nothing when disabled") {
+    val underTest = new RequestMetrics(enabled = false)
+
+    underTest.record(Stage.Decode, Query.opcode, underTest.start())
+
+    underTest.latencies should equal(List())
+  }
+
+  test("Should count primes together once too many are tracked") {
+    val underTest = new RequestMetrics(enabled = true)
+
+    (0 to RequestMetrics.MaxSeries).foreach { i =>
+      underTest.record(Stage.PrimeLookup, Query.opcode, underTest.start(), Some(s"select * from table$i"))
+    }
+
+    underTest.latencies should have size RequestMetrics.MaxSeries + 1
+    underTest.latencies.find(_.prime.contains(RequestMetrics.OtherPrimes)).map(_.count) should equal(Some(1))
+  }
+
+  test("Should report latencies as a Prometheus summary") {
+    val underTest = new RequestMetrics(enabled = true)
+
+    underTest.record(Stage.PrimeLookup, Query.opcode, underTest.start(), Some("select \"name\" from people"))
+
+    val lines = underTest.prometheus.split("\n").toList
+    lines should contain("# TYPE scassandra_request_stage_seconds summary")
+    lines.filter(_.startsWith("scassandra_request_stage_seconds{")) should have size 3
+    lines.filter(_.startsWith("scassandra_request_stage_seconds_count")) should equal(List(
+      """scassandra_request_stage_seconds_count{stage="prime_lookup",opcode="QUERY",prime="select \"name\" from people"} 1"""))
+  }
+
+  test("Should forget latencies when reset") {
+    val underTest = new RequestMetrics(enabled = true)
+    underTest.record(Stage.Decode, Query.opcode, underTest.start())
+
+    underTest.reset()
+
+    underTest.latencies should equal(List())
+  }
+}
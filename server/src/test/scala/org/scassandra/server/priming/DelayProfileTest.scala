@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.priming
+
+import org.scalatest.{ FunSuite, Matchers }
+
+import scala.concurrent.duration._
+
+class DelayProfileTest extends FunSuite with Matchers {
+
+  private def millis(profile: DelayProfile, count: Int): Seq[Double] =
+    (1 to count).map(_ => profile.next().toNanos / 1e6).sorted
+
+  test("Should delay responses by the same amounts each time with the same seed") {
+    val distribution = LogNormalDistribution(5, 1)
+
+    (1 to 100).map(_ => DelayProfile(distribution, seed = Some(42)).next()).toSet should have size 1
+    val first = DelayProfile(distribution, seed = Some(42))
+    val second = DelayProfile(distribution, seed = Some(42))
+    (1 to 100).map(_ => first.next()) should equal((1 to 100).map(_ => second.next()))
+  }
+
+  test("Should delay responses with the given percentiles") {
+    val profile = DelayProfile(PercentileDistribution(Map(50.0 -> 2.0, 99.0 -> 40.0, 100.0 -> 100.0)), seed = Some(1))
+
+    val delays = millis(profile, 100000)
+    delays(50000) should equal(2.0 +- 0.1)
+    delays(99000) should equal(40.0 +- 1)
+    delays.last should be <= 100.0
+    delays.head should be >= 0.0
+  }
+
+  test("Should not delay more than the highest percentile given") {
+    val profile = DelayProfile(PercentileDistribution(Map(0.0 -> 5.0, 50.0 -> 10.0)), seed = Some(1))
+
+    val delays = millis(profile, 10000)
+    delays.head should be >= 5.0
+    delays.last should equal(10.0)
+  }
+
+  test("Should delay responses with a log-normal distribution") {
+    val profile = DelayProfile(LogNormalDistribution(median = 5, sigma = 0.5), seed = Some(7))
+
+    val delays = millis(profile, 100000)
+    delays(50000) should equal(5.0 +- 0.1)
+    // The 99th percentile of a log-normal distribution is median * e^(2.326 * sigma).
+    delays(99000) should equal(5 * math.exp(2.326 * 0.5) +- 0.5)
+  }
+
+  test("Should delay responses with an exponential distribution") {
+    val profile = DelayProfile(ExponentialDistribution(mean = 10), seed = Some(3))
+
+    val delays = millis(profile, 100000)
+    (delays.sum / delays.size) should equal(10.0 +- 0.2)
+  }
+
+  test("Should add jitter to each delay") {
+    val profile = DelayProfile(PercentileDistribution(Map(0.0 -> 10.0, 100.0 -> 10.0)), jitter = 2)
+
+    val delays = millis(profile, 10000)
+    delays.head should be >= 8.0
+    delays.last should be <= 12.0
+    delays.head should be < 9.0
+    delays.last should be > 11.0
+  }
+
+  test("Should never delay by a negative amount") {
+    val profile = DelayProfile(PercentileDistribution(Map(100.0 -> 1.0)), jitter = 5)
+
+    (1 to 1000).map(_ => profile.next()).min should equal(Duration.Zero)
+  }
+
+  test("Should reject invalid distributions") {
+    an[IllegalArgumentException] should be thrownBy PercentileDistribution(Map())
+    an[IllegalArgumentException] should be thrownBy PercentileDistribution(Map(101.0 -> 1.0))
+    an[IllegalArgumentException] should be thrownBy PercentileDistribution(Map(50.0 -> 10.0, 99.0 -> 5.0))
+    an[IllegalArgumentException] should be thrownBy LogNormalDistribution(0, 1)
+    an[IllegalArgumentException] should be thrownBy ExponentialDistribution(-1)
+    an[IllegalArgumentException] should be thrownBy DelayProfile(ExponentialDistribution(1), jitter = -1)
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.priming
+
+import org.scalatest.{ FunSuite, Matchers }
+import org.scassandra.codec.messages.{ Row, RowMetadata }
+
+class GeneratedRowsTest extends FunSuite with Matchers {
+
+  test("Should generate sequences and templates from the row index") {
+    val underTest = GeneratedRows(3, Map("id" -> SequenceGenerator(10, 5), "name" -> TemplateGenerator("user-{n}")))
+
+    underTest.rows(0, 3) should equal(List(
+      Row("id" -> 10L, "name" -> "user-0"),
+      Row("id" -> 15L, "name" -> "user-1"),
+      Row("id" -> 20L, "name" -> "user-2")))
+  }
+
+  test("Should generate the same row each time") {
+    val underTest = GeneratedRows(1000, Map("value" -> RandomGenerator(), "text" -> TemplateGenerator("{random}")), Some(42))
+
+    underTest.row(500) should equal(underTest.row(500))
+    underTest.row(500) should equal(GeneratedRows(1000, underTest.columns, Some(42)).row(500))
+    underTest.row(500) should not equal GeneratedRows(1000, underTest.columns, Some(43)).row(500)
+  }
+
+  test("Should generate random values within bounds") {
+    val underTest = GeneratedRows(1000, Map("value" -> RandomGenerator(-5, 5)))
+
+    all(underTest.rows(0, 1000).map(_.columns("value").asInstanceOf[Long])) should (be >= -5L and be < 5L)
+  }
+
+  test("Should only generate rows from zero until count") {
+    val underTest = GeneratedRows(5, Map("id" -> SequenceGenerator()))
+
+    underTest.rows(-2, 2).map(_.columns("id")) should equal(List(0L, 1L))
+    underTest.rows(3, 100).map(_.columns("id")) should equal(List(3L, 4L))
+    underTest.rows(5, 10) should equal(Nil)
+  }
+
+  test("Should generate the same rows by column") {
+    val underTest = GeneratedRows(5, Map("id" -> SequenceGenerator(), "name" -> TemplateGenerator("user-{n}"), "score" -> RandomGenerator()), Some(7))
+
+    val columnar = underTest.columnar(RowMetadata(), 1, 10)
+    columnar.count should equal(4)
+    columnar.toRows.rows should equal(underTest.rows(1, 5))
+    underTest.columnar(RowMetadata(), 5, 10).count should equal(0)
+  }
+
+  test("Should generate the same value for constant columns") {
+    val underTest = GeneratedRows(2, Map("country" -> ConstantGenerator("UK")))
+
+    underTest.rows(0, 2) should equal(List(Row("country" -> "UK"), Row("country" -> "UK")))
+  }
+
+  test("Should sample the extremes of each column") {
+    val underTest = GeneratedRows(10, Map("id" -> SequenceGenerator(5), "score" -> RandomGenerator(-5, 5), "country" -> ConstantGenerator("UK")))
+
+    underTest.samples should equal(List(
+      Row("id" -> 5L, "score" -> -5L, "country" -> "UK"),
+      Row("id" -> 14L, "score" -> 4L, "country" -> "UK")))
+    GeneratedRows(0, underTest.columns).samples should equal(Nil)
+  }
+
+  test("Should sample the whole range of random numbers in templates") {
+    val underTest = GeneratedRows(10, Map("id" -> TemplateGenerator("{n}-{random}")))
+
+    underTest.samples should equal(List(Row("id" -> "0-0"), Row("id" -> "9-18446744073709551615")))
+  }
+
+  test("Should reject invalid descriptions") {
+    intercept[IllegalArgumentException](GeneratedRows(-1, Map()))
+    intercept[IllegalArgumentException](RandomGenerator(5, 5))
+    intercept[IllegalArgumentException](GeneratedRows(3, Map("id" -> SequenceGenerator(Long.MaxValue - 1))))
+    GeneratedRows(2, Map("id" -> SequenceGenerator(Long.MaxValue - 1))).samples should equal(List(
+      Row("id" -> (Long.MaxValue - 1)), Row("id" -> Long.MaxValue)))
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.priming
+
+import org.scalatest.{ FunSuite, Matchers }
+import org.scassandra.codec.Consistency._
+import org.scassandra.codec.messages.BatchQueryKind.Simple
+import org.scassandra.codec.messages.BatchType.LOGGED
+import org.scassandra.codec.messages.QueryParameters
+import org.scassandra.codec.{ Execute, Prepare, ProtocolVersion, Query }
+import org.scassandra.server.actors.Activity.{ BatchExecution, BatchQuery }
+import org.scassandra.server.actors.priming.PrimeBatchStoreActor.{ BatchCriteria, BatchPrimeSingle, BatchQueryPrime, BatchWhen }
+import org.scassandra.server.actors.priming.PrimeQueryStoreActor.{ Prime, PrimeCriteria, PrimeQuerySingle, Then, When }
+import org.scassandra.server.priming.json.{ ReadTimeout, WriteTimeout }
+import org.scassandra.server.priming.prepared._
+import scodec.bits.ByteVector
+
+class PrimeRegistryTest extends FunSuite with Matchers {
+  implicit val protocolVersion: ProtocolVersion = ProtocolVersion.latest
+
+  val query = "select * from people"
+
+  test("Should look up query primes from the latest snapshot") {
+    val underTest = new PrimeRegistry
+    val prime = PrimeQuerySingle(When(Some(query)), Then(result = Some(ReadTimeout)))
+
+    underTest(Query(query)) should equal(None)
+
+    underTest.queryPrimes = underTest.queryPrimes.withExact(PrimeCriteria(query, List(ONE)), prime)
+
+    underTest(Query(query, QueryParameters(consistency = ONE))) should equal(Some(prime.prime))
+  }
+
+  test("Should report the pattern a query prime was recorded with") {
+    val underTest = new PrimeRegistry
+    val exact = PrimeQuerySingle(When(Some(query)), Then(result = Some(ReadTimeout)))
+    val pattern = PrimeQuerySingle(When(queryPattern = Some("select .* from cars")), Then(result = Some(WriteTimeout)))
+    underTest.queryPrimes = underTest.queryPrimes
+      .withExact(PrimeCriteria(query, List(ONE)), exact)
+      .withPattern(PrimeCriteria("select .* from cars", List(ONE), patternMatch = true), pattern)
+
+    underTest.matching(Query(query, QueryParameters(consistency = ONE))) should equal(Some(MatchedPrime(exact.prime, query)))
+    underTest.matching(Query("select make from cars", QueryParameters(consistency = ONE))) should equal(
+      Some(MatchedPrime(pattern.prime, "select .* from cars")))
+  }
+
+  test("Should look up batch primes by queries, consistency and batch type") {
+    val underTest = new PrimeRegistry
+    val prime = BatchPrimeSingle(BatchWhen(List(BatchQueryPrime(query, Simple))), Then(result = Some(WriteTimeout)))
+    underTest.batchPrimes = Map(BatchCriteria(List(BatchQueryPrime(query, Simple)), List(ONE), LOGGED) -> prime)
+    val execution = BatchExecution(List(BatchQuery(query, Simple)), ONE, None, LOGGED, None)
+
+    underTest(execution) should equal(Some(prime.prime))
+    underTest(execution.copy(consistency = TWO)) should equal(None)
+  }
+
+  test("Should use the first prepared store, in priority order, that has a prime") {
+    val exact = new PrimePreparedStore
+    val pattern = new PrimePreparedPatternStore
+    val underTest = new PrimeRegistry(List(exact, pattern))
+    exact.record(PrimePreparedSingle(WhenPrepared(Some(query)), ThenPreparedSingle(None, result = Some(ReadTimeout))))
+    pattern.record(PrimePreparedSingle(WhenPrepared(queryPattern = Some("select .*")), ThenPreparedSingle(None, result = Some(WriteTimeout))))
+
+    underTest(query, Execute(ByteVector(1))) should equal(exact(query, Execute(ByteVector(1))))
+    underTest("select * from cars", Execute(ByteVector(1))) should equal(pattern("select * from cars", Execute(ByteVector(1))))
+    underTest("insert into people", Execute(ByteVector(1))) should equal(None)
+    underTest.matching("select * from cars", Execute(ByteVector(1))).map(_.criteria) should equal(Some("select .*"))
+    underTest.matching(query, Execute(ByteVector(1))).map(_.criteria) should equal(Some(query))
+  }
+
+  test("Should not consult lower priority prepared stores once a prime is found") {
+    val exact = new PrimePreparedStore
+    var consulted = false
+    val other = new PreparedStoreLookup {
+      def apply(prepare: Prepare, id: ByteVector): Option[Prime] = { consulted = true; None }
+      def apply(queryText: String, execute: Execute)(implicit protocolVersion: ProtocolVersion): Option[Prime] = {
+        consulted = true
+        None
+      }
+      def generation: Long = 0
+    }
+    val underTest = new PrimeRegistry(List(exact, other))
+    exact.record(PrimePreparedSingle(WhenPrepared(Some(query)), ThenPreparedSingle(None)))
+
+    underTest(query, Execute(ByteVector(1))) should not equal None
+    underTest(Prepare(query), ByteVector(1)) should not equal None
+    consulted should equal(false)
+
+    underTest("select * from cars", Execute(ByteVector(1))) should equal(None)
+    consulted should equal(true)
+  }
+
+  test("Should change generation whenever prepared statement primes are recorded or cleared") {
+    val exact = new PrimePreparedStore
+    val patterns = new PrimePreparedPatternStore
+    val underTest = new PrimeRegistry(List(exact, patterns))
+    val initial = underTest.generation
+
+    exact.record(PrimePreparedSingle(WhenPrepared(Some(query)), ThenPreparedSingle(None)))
+    val recorded = underTest.generation
+    patterns.record(PrimePreparedSingle(WhenPrepared(queryPattern = Some("select .*")), ThenPreparedSingle(None)))
+    val recordedPattern = underTest.generation
+    patterns.clear()
+
+    Set(initial, recorded, recordedPattern, underTest.generation) should have size 4
+  }
+}
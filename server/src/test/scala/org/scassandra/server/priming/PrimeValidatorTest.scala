@@ -347,5 +347,44 @@ class PrimeValidatorTest extends WordSpec with Matchers {
       val validationResult = PrimeValidator.validateColumnTypes(prime.prime)
       validationResult should equal(TypeMismatches(List(TypeMismatch("NOT A TINYINT!", "hasInvalidValue", Tinyint.stringRep))))
     }
+
+    "validate generated rows" in {
+      val prime = PrimeQuerySingle(
+        When(
+          Some(someQuery)),
+        Then(
+          result = Some(Success),
+          column_types = Some(Map("id" -> CqlInt, "name" -> Varchar)),
+          generated_rows = Some(GeneratedRows(10, Map("id" -> TemplateGenerator("id-{n}"), "name" -> TemplateGenerator("name-{n}"))))))
+
+      val validationResult = PrimeValidator.validateColumnTypes(prime.prime)
+      validationResult should equal(TypeMismatches(List(TypeMismatch("id-0", "id", CqlInt.stringRep), TypeMismatch("id-9", "id", CqlInt.stringRep))))
+    }
+
+    "validate the values generated for every row" in {
+      val prime = PrimeQuerySingle(
+        When(
+          Some(someQuery)),
+        Then(
+          result = Some(Success),
+          column_types = Some(Map("id" -> CqlInt)),
+          generated_rows = Some(GeneratedRows(10, Map("id" -> TemplateGenerator("{n}000000000"))))))
+
+      val validationResult = PrimeValidator.validateColumnTypes(prime.prime)
+      validationResult should equal(TypeMismatches(List(TypeMismatch("9000000000", "id", CqlInt.stringRep))))
+    }
+
+    "validate the whole range of random numbers generated from templates" in {
+      val prime = PrimeQuerySingle(
+        When(
+          Some(someQuery)),
+        Then(
+          result = Some(Success),
+          column_types = Some(Map("id" -> Bigint)),
+          generated_rows = Some(GeneratedRows(10, Map("id" -> TemplateGenerator("{random}"))))))
+
+      val validationResult = PrimeValidator.validateColumnTypes(prime.prime)
+      validationResult should equal(TypeMismatches(List(TypeMismatch("18446744073709551615", "id", Bigint.stringRep))))
+    }
   }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.priming
+
+import java.util.regex.PatternSyntaxException
+
+import org.scalatest.{ FunSuite, Matchers }
+import org.scassandra.codec.Consistency._
+import org.scassandra.server.actors.priming.PrimeQueryStoreActor.PrimeCriteria
+
+class QueryPatternMatcherTest extends FunSuite with Matchers {
+
+  val any: PrimeCriteria => Boolean = _ => true
+
+  test("Should find value whose pattern is found in the text") {
+    val underTest = QueryPatternMatcher.empty[String]
+      .updated(PrimeCriteria("select .* from people", List(ONE), patternMatch = true), "people")
+      .updated(PrimeCriteria("select .* from cars", List(ONE), patternMatch = true), "cars")
+
+    underTest.find("select name from cars")(any) should equal(Some("cars"))
+    underTest.find("select name from people")(any) should equal(Some("people"))
+    underTest.find("select name from planes")(any) should equal(None)
+  }
+
+  test("Should identify the matching pattern when patterns have their own groups") {
+    val underTest = QueryPatternMatcher.empty[String]
+      .updated(PrimeCriteria("select (name|age) from (people|users)", List(ONE), patternMatch = true), "people")
+      .updated(PrimeCriteria("select (.*) from cars", List(ONE), patternMatch = true), "cars")
+      .updated(PrimeCriteria("insert into (\\w+)", List(ONE), patternMatch = true), "insert")
+
+    underTest.find("insert into cars")(any) should equal(Some("insert"))
+    underTest.find("select make from cars")(any) should equal(Some("cars"))
+    underTest.find("select age from users")(any) should equal(Some("people"))
+  }
+
+  test("Should find the first recorded of overlapping patterns rather than the one found earliest in the text") {
+    val underTest = QueryPatternMatcher.empty[String]
+      .updated(PrimeCriteria("from people", List(ONE), patternMatch = true), "people")
+      .updated(PrimeCriteria("select", List(ONE), patternMatch = true), "select")
+
+    underTest.find("select * from people")(any) should equal(Some("people"))
+    underTest.find("select * from cars")(any) should equal(Some("select"))
+    underTest.find("select * from\npeople\nwhere name = 'Chris'")(any) should equal(Some("select"))
+    underTest.find("select * \nfrom people")(any) should equal(Some("people"))
+  }
+
+  test("Should try other patterns when the first matching one is not accepted") {
+    val underTest = QueryPatternMatcher.empty[String]
+      .updated(PrimeCriteria("select .*", List(ONE), patternMatch = true), "one")
+      .updated(PrimeCriteria("select .*", List(TWO), patternMatch = true), "two")
+
+    underTest.find("select * from people")(_.consistency.contains(TWO)) should equal(Some("two"))
+    underTest.find("select * from people")(_.consistency.contains(THREE)) should equal(None)
+  }
+
+  test("Should support patterns that can't be combined") {
+    val underTest = QueryPatternMatcher.empty[String]
+      .updated(PrimeCriteria("select (\\w+), \\1 from people", List(ONE), patternMatch = true), "backreference")
+      .updated(PrimeCriteria("select (?<column>\\w+) from cars", List(ONE), patternMatch = true), "cars")
+      .updated(PrimeCriteria("select (?<column>\\w+) from planes", List(ONE), patternMatch = true), "planes")
+
+    underTest.find("select name, name from people")(any) should equal(Some("backreference"))
+    underTest.find("select name, age from people")(any) should equal(None)
+    underTest.find("select wings from planes")(any) should equal(Some("planes"))
+  }
+
+  test("Should replace value recorded with the same criteria") {
+    val criteria = PrimeCriteria("select .*", List(ONE), patternMatch = true)
+    val underTest = QueryPatternMatcher.empty[String]
+      .updated(criteria, "first")
+      .updated(criteria, "second")
+
+    underTest.find("select * from people")(any) should equal(Some("second"))
+  }
+
+  test("Should reject invalid patterns") {
+    intercept[PatternSyntaxException] {
+      QueryPatternMatcher.empty[String].updated(PrimeCriteria("select (", List(ONE), patternMatch = true), "invalid")
+    }
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.priming
+
+import org.scalatest.{ FunSuite, Matchers }
+import org.scassandra.codec.Consistency._
+import org.scassandra.server.actors.priming.PrimeQueryStoreActor.{ PrimeCriteria, PrimeQuerySingle, Then, When }
+
+class QueryPrimeIndexTest extends FunSuite with Matchers {
+
+  val query = "select * from people"
+  val prime = PrimeQuerySingle(When(Some(query)), Then(rows = Some(List(Map("name" -> "Chris")))))
+  val otherPrime = PrimeQuerySingle(When(Some(query)), Then(rows = Some(List(Map("name" -> "Dogan")))))
+
+  test("Should find prime by query text and consistency") {
+    val underTest = QueryPrimeIndex.empty.updated(PrimeCriteria(query, List(ONE, TWO)), prime)
+
+    underTest(query, ONE) should equal(Some(prime))
+    underTest(query, TWO) should equal(Some(prime))
+  }
+
+  test("Should not find prime for a different consistency or query text") {
+    val underTest = QueryPrimeIndex.empty.updated(PrimeCriteria(query, List(ONE)), prime)
+
+    underTest(query, QUORUM) should equal(None)
+    underTest("select * from cars", ONE) should equal(None)
+  }
+
+  test("Should keep primes for the same query with different consistencies apart") {
+    val underTest = QueryPrimeIndex.empty
+      .updated(PrimeCriteria(query, List(ONE)), prime)
+      .updated(PrimeCriteria(query, List(TWO)), otherPrime)
+
+    underTest(query, ONE) should equal(Some(prime))
+    underTest(query, TWO) should equal(Some(otherPrime))
+  }
+
+  test("Should find prime by query text alone") {
+    val underTest = QueryPrimeIndex.empty.updated(PrimeCriteria(query, List(TWO)), prime)
+
+    underTest(query) should equal(Some(prime))
+    underTest("select * from cars") should equal(None)
+  }
+
+  test("Should replace prime recorded with the same criteria") {
+    val criteria = PrimeCriteria(query, List(ONE, TWO))
+    val underTest = QueryPrimeIndex.empty
+      .updated(criteria, prime)
+      .updated(criteria, otherPrime)
+
+    underTest(query, ONE) should equal(Some(otherPrime))
+    underTest(query, TWO) should equal(Some(otherPrime))
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.priming.prepared
+
+import org.scalatest.{ FunSuite, Matchers }
+import org.scassandra.codec.datatype.{ CqlInt, Text }
+import org.scassandra.codec.{ Bytes, Null, ProtocolVersion, QueryValue }
+import scodec.bits.ByteVector
+
+class OutcomeMatcherTest extends FunSuite with Matchers {
+  implicit val protocolVersion: ProtocolVersion = ProtocolVersion.latest
+
+  val dataTypes = List(Text, CqlInt)
+
+  def outcome(matchers: VariableMatch*): Outcome = Outcome(Criteria(matchers.toList), Action(None))
+
+  def values(name: String, age: Int): List[QueryValue] = List(QueryValue(name, Text), QueryValue(age, CqlInt))
+
+  test("Should find the outcome matching every value") {
+    val chris = outcome(ExactMatch(Some("Chris")), ExactMatch(Some(30)))
+    val daniel = outcome(ExactMatch(Some("Daniel")), ExactMatch(Some(30)))
+    val underTest = OutcomeMatcher(dataTypes, List(chris, daniel))
+
+    underTest(values("Daniel", 30)) should equal(Some(daniel))
+    underTest(values("Chris", 30)) should equal(Some(chris))
+    underTest(values("Chris", 31)) should equal(None)
+  }
+
+  test("Should find the first outcome when several match") {
+    val any = outcome(AnyMatch, ExactMatch(Some(30)))
+    val chris = outcome(ExactMatch(Some("Chris")), AnyMatch)
+    val fallback = outcome(AnyMatch, AnyMatch)
+    val underTest = OutcomeMatcher(dataTypes, List(chris, any, fallback))
+
+    underTest(values("Chris", 30)) should equal(Some(chris))
+    underTest(values("Daniel", 30)) should equal(Some(any))
+    underTest(values("Daniel", 31)) should equal(Some(fallback))
+    OutcomeMatcher(dataTypes, List(any, chris))(values("Chris", 30)) should equal(Some(any))
+  }
+
+  test("Should compare values after converting them to the variable's type") {
+    val underTest = OutcomeMatcher(dataTypes, List(outcome(AnyMatch, ExactMatch(Some(BigDecimal(30))))))
+
+    underTest(values("Chris", 30)) should matchPattern { case Some(_) => }
+  }
+
+  test("Should never match a value that can't be converted to the variable's type") {
+    val underTest = OutcomeMatcher(dataTypes, List(outcome(AnyMatch, ExactMatch(Some(List(30)))), outcome(AnyMatch, AnyMatch)))
+
+    underTest(values("Chris", 30)) should equal(Some(outcome(AnyMatch, AnyMatch)))
+  }
+
+  test("Should only match outcomes with a matcher for every value") {
+    val name = outcome(ExactMatch(Some("Chris")))
+    val underTest = OutcomeMatcher(dataTypes, List(name))
+
+    underTest(values("Chris", 30)) should equal(None)
+    underTest(values("Chris", 30).take(1)) should equal(Some(name))
+    // values without a variable type are ignored.
+    underTest(QueryValue("Chris", Text) :: Nil) should equal(Some(name))
+    OutcomeMatcher(List(Text), List(name))(values("Chris", 30)) should equal(Some(name))
+  }
+
+  test("Should match null values and values that can't be decoded") {
+    val nullName = outcome(ExactMatch(Some(null)), AnyMatch)
+    val undecodable = outcome(AnyMatch, ExactMatch(None))
+    val underTest = OutcomeMatcher(dataTypes, List(nullName, undecodable, outcome(AnyMatch, AnyMatch)))
+
+    underTest(List(QueryValue(None, Null), QueryValue(30, CqlInt))) should equal(Some(outcome(AnyMatch, AnyMatch)))
+    underTest(List(QueryValue("Chris", Text), QueryValue(None, Bytes(ByteVector(1, 2))))) should equal(Some(undecodable))
+  }
+
+  test("Should match without outcomes or variables") {
+    OutcomeMatcher(Nil, List(outcome()))(Nil) should equal(Some(outcome()))
+    OutcomeMatcher(dataTypes, Nil)(values("Chris", 30)) should equal(None)
+  }
+}
@@ -107,7 +107,7 @@ class PrimePreparedMultiStoreTest extends FunSuite with Matchers with BeforeAndA
 
   test("Prepared prime - None when no match") {
     // when
-    val prepared = underTest(Prepare("select * from people where a = ? and b = ? and c = ?"), 1)
+    val prepared = underTest(Prepare("select * from people where a = ? and b = ? and c = ?"), ByteVector(1))
 
     // then
     prepared.isDefined should equal(false)
@@ -119,10 +119,10 @@ class PrimePreparedMultiStoreTest extends FunSuite with Matchers with BeforeAndA
     underTest.record(PrimePreparedMulti(WhenPrepared(Some(queryText)), thenDo))
 
     // when
-    val prepared = underTest(Prepare(queryText), 1)
+    val prepared = underTest(Prepare(queryText), ByteVector(1))
 
     // then - should be a prepared with no column spec
-    prepared should matchPattern { case Some(Reply(Prepared(`id`, PreparedMetadata(_, _, _, `Nil`), _), _, _)) => }
+    prepared should matchPattern { case Some(Reply(Prepared(`id`, PreparedMetadata(_, _, _, `Nil`), _), _, _, _)) => }
   }
 
   test("Prepared prime - with parameters") {
@@ -136,9 +136,9 @@ class PrimePreparedMultiStoreTest extends FunSuite with Matchers with BeforeAndA
     underTest.record(PrimePreparedMulti(WhenPrepared(Some(queryText)), thenDo))
 
     // when
-    val prepared = underTest(Prepare(queryText), 1)
+    val prepared = underTest(Prepare(queryText), ByteVector(1))
 
     // then - should be a prepared with a column spec containing parameters.
-    prepared should matchPattern { case Some(Reply(Prepared(`id`, PreparedMetadata(_, _, _, `columnSpec`), _), _, _)) => }
+    prepared should matchPattern { case Some(Reply(Prepared(`id`, PreparedMetadata(_, _, _, `columnSpec`), _), _, _, _)) => }
   }
 }
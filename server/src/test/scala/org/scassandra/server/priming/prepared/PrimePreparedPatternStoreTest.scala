@@ -21,7 +21,7 @@ import org.scassandra.codec.datatype._
 import org.scassandra.codec.messages.ColumnSpec._
 import org.scassandra.codec.messages.{ PreparedMetadata, QueryParameters }
 import org.scassandra.codec.{ Execute, Prepare, Prepared, ProtocolVersion }
-import org.scassandra.server.actors.priming.PrimeQueryStoreActor.Reply
+import org.scassandra.server.actors.priming.PrimeQueryStoreActor.{ BadCriteria, Reply }
 import scodec.bits.ByteVector
 
 class PrimePreparedPatternStoreTest extends FunSuite with Matchers with BeforeAndAfter {
@@ -100,6 +100,19 @@ class PrimePreparedPatternStoreTest extends FunSuite with Matchers with BeforeAn
     underTest("select name from people where age = '6'", Execute(id, QueryParameters(consistency = QUORUM))).isDefined should equal(true)
   }
 
+  test("Should reject prime with an invalid pattern") {
+    //given
+    val when = WhenPrepared(None, Some("select ( from people"))
+    val thenDo = ThenPreparedSingle(Some(List()))
+
+    //when
+    val result = underTest.record(PrimePreparedSingle(when, thenDo))
+
+    //then
+    result should matchPattern { case BadCriteria(_) => }
+    underTest.retrievePrimes().size should equal(0)
+  }
+
   test("Clearing all the primes") {
     //given
     val when = WhenPrepared(None, Some("select .* from people.*"))
@@ -114,7 +127,7 @@ class PrimePreparedPatternStoreTest extends FunSuite with Matchers with BeforeAn
 
   test("Prepared prime - None when no match") {
     // when
-    val prepared = underTest(Prepare("select * from people where a = ? and b = ? and c = ?"), 1)
+    val prepared = underTest(Prepare("select * from people where a = ? and b = ? and c = ?"), ByteVector(1))
 
     // then
     prepared.isDefined should equal(false)
@@ -129,10 +142,10 @@ class PrimePreparedPatternStoreTest extends FunSuite with Matchers with BeforeAn
     underTest.record(prime)
 
     // when
-    val prepared = underTest(Prepare(query), 1)
+    val prepared = underTest(Prepare(query), ByteVector(1))
 
     // then - should be a prepared with no column spec
-    prepared should matchPattern { case Some(Reply(Prepared(`id`, PreparedMetadata(_, _, _, `Nil`), _), _, _)) => }
+    prepared should matchPattern { case Some(Reply(Prepared(`id`, PreparedMetadata(_, _, _, `Nil`), _), _, _, _)) => }
   }
 
   test("Prepared prime - with parameters") {
@@ -145,9 +158,9 @@ class PrimePreparedPatternStoreTest extends FunSuite with Matchers with BeforeAn
     underTest.record(prime)
 
     // when
-    val prepared = underTest(Prepare(query), 1)
+    val prepared = underTest(Prepare(query), ByteVector(1))
 
     // then - should be a prepared with a column spec containing parameters.
-    prepared should matchPattern { case Some(Reply(Prepared(`id`, PreparedMetadata(_, _, _, `columnSpec`), _), _, _)) => }
+    prepared should matchPattern { case Some(Reply(Prepared(`id`, PreparedMetadata(_, _, _, `columnSpec`), _), _, _, _)) => }
   }
 }
@@ -125,7 +125,7 @@ class PrimePreparedStoreTest extends FunSuite with Matchers {
     val underTest = new PrimePreparedStore
 
     // when
-    val prepared = underTest(Prepare("select * from people where a = ? and b = ? and c = ?"), 1)
+    val prepared = underTest(Prepare("select * from people where a = ? and b = ? and c = ?"), ByteVector(1))
 
     // then
     prepared.isDefined should equal(false)
@@ -140,10 +140,10 @@ class PrimePreparedStoreTest extends FunSuite with Matchers {
     underTest.record(prime)
 
     // when
-    val prepared = underTest(Prepare(query), 1)
+    val prepared = underTest(Prepare(query), ByteVector(1))
 
     // then - should be a prepared with no column spec
-    prepared should matchPattern { case Some(Reply(Prepared(`id`, PreparedMetadata(_, _, _, `Nil`), _), _, _)) => }
+    prepared should matchPattern { case Some(Reply(Prepared(`id`, PreparedMetadata(_, _, _, `Nil`), _), _, _, _)) => }
   }
 
   test("Prepared prime - with parameters") {
@@ -156,9 +156,9 @@ class PrimePreparedStoreTest extends FunSuite with Matchers {
     underTest.record(prime)
 
     // when
-    val prepared = underTest(Prepare(query), 1)
+    val prepared = underTest(Prepare(query), ByteVector(1))
 
     // then - should be a prepared with a column spec containing parameters.
-    prepared should matchPattern { case Some(Reply(Prepared(`id`, PreparedMetadata(_, _, _, `columnSpec`), _), _, _)) => }
+    prepared should matchPattern { case Some(Reply(Prepared(`id`, PreparedMetadata(_, _, _, `columnSpec`), _), _, _, _)) => }
   }
 }
@@ -16,6 +16,8 @@
 package org.scassandra.server.priming.routes
 
 import akka.actor.ActorRef
+import akka.http.scaladsl.model.StatusCodes.{ BadRequest, OK }
+import akka.http.scaladsl.server.Route
 import akka.http.scaladsl.testkit.ScalatestRouteTest
 import akka.testkit.{ TestActor, TestProbe }
 import org.scalatest._
@@ -25,9 +27,10 @@ import org.scassandra.codec.messages.BatchType._
 import org.scassandra.server.actors.ActivityLogActor._
 import org.scassandra.server.priming._
 import org.scassandra.server.priming.json.PrimingJsonImplicits
-import spray.json.JsonParser
+import spray.json.{ JsNumber, JsObject, JsString, JsonParser }
 import akka.testkit.TestActor._
 import org.scassandra.server.actors.Activity._
+import org.scassandra.server.actors.{ ActivityRecording, RecordEverything, RecordMetadata, RecordSample, RecordingLevel }
 
 class ActivityVerificationRouteTest extends FunSpec with BeforeAndAfterEach with Matchers with ScalatestRouteTest with ActivityVerificationRoute {
 
@@ -35,6 +38,7 @@ class ActivityVerificationRouteTest extends FunSpec with BeforeAndAfterEach with
   val ec = scala.concurrent.ExecutionContext.global
   val activityLogProbe = TestProbe()
   implicit val activityLog = activityLogProbe.ref
+  val activityRecording = ActivityRecording.everything
 
   import PrimingJsonImplicits._
 
@@ -78,6 +82,53 @@ class ActivityVerificationRouteTest extends FunSpec with BeforeAndAfterEach with
     }
   }
 
+  describe("Changing activity recording") {
+    it("Should return the current recording level") {
+      Get("/activity-recording") ~> activityVerificationRoute ~> check {
+        JsonParser(responseAs[String]).convertTo[RecordingLevel] should equal(RecordEverything)
+      }
+    }
+
+    it("Should change the recording level") {
+      Put("/activity-recording", RecordSample(10).asInstanceOf[RecordingLevel]) ~> activityVerificationRoute ~> check {
+        status should equal(OK)
+        activityRecording.level should equal(RecordSample(10))
+      }
+      activityRecording.level = RecordEverything
+    }
+
+    it("Should ignore a sample given with a level other than sampled") {
+      Put("/activity-recording", JsObject("level" -> JsString("metadata"), "sample" -> JsNumber(3))) ~> activityVerificationRoute ~> check {
+        status should equal(OK)
+        activityRecording.level should equal(RecordMetadata)
+      }
+      activityRecording.level = RecordEverything
+    }
+
+    it("Should reject a sample too large for an int") {
+      Put("/activity-recording", JsObject("level" -> JsString("sampled"), "sample" -> JsNumber(BigDecimal("1e10")))) ~> Route.seal(activityVerificationRoute) ~> check {
+        status should equal(BadRequest)
+      }
+    }
+
+    it("Should reject an unknown recording level") {
+      Put("/activity-recording", JsObject("level" -> JsString("some"))) ~> Route.seal(activityVerificationRoute) ~> check {
+        status should equal(BadRequest)
+      }
+    }
+  }
+
+  describe("Retrieving dropped activity") {
+    it("Should return counts of dropped activity from ActivityLog") {
+      respondWith(DroppedActivity(connections = 0, queries = 10, prepares = 0, executions = 5, batches = 0))
+      Get("/dropped-activity") ~> activityVerificationRoute ~> check {
+        val response: String = responseAs[String]
+        JsonParser(response).convertTo[DroppedActivity] should equal(DroppedActivity(0, 10, 0, 5, 0))
+        activityLogProbe.expectMsg(GetDroppedActivity)
+      }
+    }
+  }
+
   describe("Retrieving query activity") {
 
     it("Should return queries from ActivityLog - no queries") {
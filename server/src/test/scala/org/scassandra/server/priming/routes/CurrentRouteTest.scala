@@ -16,12 +16,17 @@
 package org.scassandra.server.priming.routes
 
 import akka.actor.ActorRef
+import akka.http.scaladsl.model.StatusCodes.BadRequest
+import akka.http.scaladsl.model.{ ContentTypes, HttpEntity }
+import akka.http.scaladsl.server.Route
 import akka.http.scaladsl.testkit.ScalatestRouteTest
 import akka.testkit.TestActor.{ AutoPilot, KeepRunning }
 import akka.testkit.TestProbe
 import akka.util.Timeout
 import com.typesafe.scalalogging.LazyLogging
 import org.scalatest.{ FunSpec, Matchers }
+import org.scassandra.codec.Prepared
+import org.scassandra.codec.datatype.{ CqlInt, Varchar }
 import org.scassandra.server.actors._
 import org.scassandra.server.priming.json.PrimingJsonImplicits
 
@@ -62,6 +67,8 @@ class CurrentRouteTest extends FunSpec with CurrentRoute with Matchers with Lazy
   })
 
   override implicit val tcpServer: ActorRef = serverActor.ref
+  override val throttling: Throttling = Throttling.unlimited
+  override val preparedStatements: PreparedStatements = new PreparedStatements
   override implicit val actorTimeout = Timeout(5 seconds)
   override implicit val ec = system.dispatcher
 
@@ -139,4 +146,88 @@ class CurrentRouteTest extends FunSpec with CurrentRoute with Matchers with Lazy
       response.changed should equal(true)
     }
   }
+
+  it("Should change throttling") {
+    val settings = ThrottleSettings(
+      connection = ThrottleLimits(requestsPerSecond = Some(100)),
+      server = ThrottleLimits(maxInFlight = Some(10), bytesPerSecond = Some(1000000)),
+      whenOverloaded = RejectWhenOverloaded)
+
+    Put("/current/throttling", settings) ~> currentRoute ~> check {
+      responseAs[ThrottleSettings] should equal(settings)
+      throttling.settings should equal(settings)
+    }
+    Get("/current/throttling") ~> currentRoute ~> check {
+      responseAs[ThrottleSettings] should equal(settings)
+    }
+  }
+
+  it("Should default missing throttling limits to none and queue requests") {
+    val settings = """{"server": {"requests_per_second": 50}}"""
+
+    Put("/current/throttling", HttpEntity(ContentTypes.`application/json`, settings)) ~> currentRoute ~> check {
+      responseAs[ThrottleSettings] should equal(ThrottleSettings(server = ThrottleLimits(requestsPerSecond = Some(50))))
+    }
+  }
+
+  it("Should reject invalid throttling limits") {
+    val settings = """{"connection": {"max_in_flight": 0}}"""
+
+    Put("/current/throttling", HttpEntity(ContentTypes.`application/json`, settings)) ~> Route.seal(currentRoute) ~> check {
+      status should equal(BadRequest)
+    }
+  }
+
+  it("Should remove throttling") {
+    throttling.settings = ThrottleSettings(connection = ThrottleLimits(maxInFlight = Some(1)))
+
+    Delete("/current/throttling") ~> currentRoute ~> check {
+      responseAs[ThrottleSettings] should equal(ThrottleSettings())
+      throttling.settings should equal(ThrottleSettings())
+    }
+  }
+
+  it("Should restore and get prepared statements") {
+    val query = "select * from people where name = ? and age = ?"
+    val saved = List(SavedStatement(PreparedStatements.id(query).toHex, query, Some("keyspace"), Some("people"),
+      List(Varchar, CqlInt)))
+
+    Put("/current/prepared-statements", saved) ~> currentRoute ~> check {
+      responseAs[List[SavedStatement]] should equal(saved)
+    }
+    Get("/current/prepared-statements") ~> currentRoute ~> check {
+      responseAs[List[SavedStatement]] should equal(saved)
+    }
+    preparedStatements(PreparedStatements.id(query)).map(_._1) should equal(Some(query))
+  }
+
+  it("Should reject prepared statements with invalid ids") {
+    val saved = """[{"id": "not hex", "query": "select * from people", "variable_types": []}]"""
+
+    Put("/current/prepared-statements", HttpEntity(ContentTypes.`application/json`, saved)) ~>
+      Route.seal(currentRoute) ~> check {
+        status should equal(BadRequest)
+      }
+  }
+
+  it("Should reject prepared statements whose id isn't that of their query") {
+    val saved = s"""[{"id": "${PreparedStatements.id("select * from dogs").toHex}", "query": "select * from people",
+                   |  "variable_types": []}]""".stripMargin
+
+    Put("/current/prepared-statements", HttpEntity(ContentTypes.`application/json`, saved)) ~>
+      Route.seal(currentRoute) ~> check {
+        status should equal(BadRequest)
+      }
+    preparedStatements(PreparedStatements.id("select * from dogs")) should equal(None)
+  }
+
+  it("Should remove prepared statements") {
+    preparedStatements.register(PreparedStatements.id("select * from people"), "select * from people",
+      Prepared(PreparedStatements.id("select * from people")))
+
+    Delete("/current/prepared-statements") ~> currentRoute ~> check {
+      responseAs[List[SavedStatement]] should equal(Nil)
+      preparedStatements.size should equal(0)
+    }
+  }
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2017 Christopher Batey and Dogan Narinc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scassandra.server.priming.routes
+
+import akka.http.scaladsl.model.{ MediaTypes, StatusCodes }
+import akka.http.scaladsl.testkit.ScalatestRouteTest
+import org.scalatest.{ BeforeAndAfter, FunSpec, Matchers }
+import org.scassandra.codec.Query
+import org.scassandra.server.metrics.{ RequestMetrics, Stage, StageLatency }
+import org.scassandra.server.priming.json.PrimingJsonImplicits
+
+class MetricsRouteTest extends FunSpec with ScalatestRouteTest with MetricsRoute with Matchers with BeforeAndAfter {
+
+  import PrimingJsonImplicits._
+
+  val requestMetrics = new RequestMetrics(enabled = true)
+
+  before {
+    requestMetrics.reset()
+    requestMetrics.record(Stage.PrimeLookup, Query.opcode, requestMetrics.start(), Some("select * from people"))
+  }
+
+  describe("Request metrics") {
+    it("should get latencies as json") {
+      Get("/metrics") ~> metricsRoute ~> check {
+        val latencies = responseAs[List[StageLatency]]
+        latencies.map(l => (l.stage, l.opcode, l.prime, l.count)) should equal(
+          List(("prime_lookup", "QUERY", Some("select * from people"), 1)))
+      }
+    }
+
+    it("should get latencies in the Prometheus text format") {
+      Get("/metrics?format=prometheus") ~> metricsRoute ~> check {
+        mediaType.withParams(Map()) should equal(MediaTypes.`text/plain`)
+        responseAs[String] should include("""scassandra_request_stage_seconds_count{stage="prime_lookup",opcode="QUERY",prime="select * from people"} 1""")
+      }
+    }
+
+    it("should delete latencies") {
+      Delete("/metrics") ~> metricsRoute ~> check {
+        status should equal(StatusCodes.OK)
+        requestMetrics.latencies should equal(List())
+      }
+    }
+  }
+}
@@ -100,7 +100,7 @@ class PrimingJsonHelperTest extends FunSuite with Matchers {
 
     // Should expect an empty rows result.
     primeResult should matchPattern {
-      case Reply(Rows(_, Nil), _, _) =>
+      case Reply(Rows(_, Nil), _, _, _) =>
     }
   }
 
@@ -116,7 +116,7 @@ class PrimingJsonHelperTest extends FunSuite with Matchers {
     val primeResult: Prime = PrimingJsonHelper.extractPrime(primeRequest.thenDo)
 
     primeResult should matchPattern {
-      case Reply(codec.ReadTimeout(_, _, 2, 3, true), _, _) =>
+      case Reply(codec.ReadTimeout(_, _, 2, 3, true), _, _, _) =>
     }
   }
 
@@ -133,7 +133,7 @@ class PrimingJsonHelperTest extends FunSuite with Matchers {
     val primeResult: Prime = PrimingJsonHelper.extractPrime(primeRequest.thenDo)
 
     primeResult should matchPattern {
-      case Reply(codec.ReadFailure(_, _, 2, 3, 4, true), _, _) =>
+      case Reply(codec.ReadFailure(_, _, 2, 3, 4, true), _, _, _) =>
     }
   }
 
@@ -149,7 +149,7 @@ class PrimingJsonHelperTest extends FunSuite with Matchers {
     val primeResult: Prime = PrimingJsonHelper.extractPrime(primeRequest.thenDo)
 
     primeResult should matchPattern {
-      case Reply(codec.WriteTimeout(_, _, 2, 3, "BATCH"), _, _) =>
+      case Reply(codec.WriteTimeout(_, _, 2, 3, "BATCH"), _, _, _) =>
     }
   }
 
@@ -166,7 +166,7 @@ class PrimingJsonHelperTest extends FunSuite with Matchers {
     val primeResult: Prime = PrimingJsonHelper.extractPrime(primeRequest.thenDo)
 
     primeResult should matchPattern {
-      case Reply(codec.WriteFailure(_, _, 2, 3, 5, "BATCH"), _, _) =>
+      case Reply(codec.WriteFailure(_, _, 2, 3, 5, "BATCH"), _, _, _) =>
     }
   }
 
@@ -182,7 +182,7 @@ class PrimingJsonHelperTest extends FunSuite with Matchers {
     val primeResult: Prime = PrimingJsonHelper.extractPrime(primeRequest.thenDo)
 
     primeResult should matchPattern {
-      case Reply(codec.FunctionFailure("Function Failure", "myks", "myfun", "int" :: "float" :: Nil), _, _) =>
+      case Reply(codec.FunctionFailure("Function Failure", "myks", "myfun", "int" :: "float" :: Nil), _, _, _) =>
     }
   }
 
@@ -197,7 +197,7 @@ class PrimingJsonHelperTest extends FunSuite with Matchers {
     val primeResult: Prime = PrimingJsonHelper.extractPrime(primeRequest.thenDo)
 
     primeResult should matchPattern {
-      case Reply(codec.Unavailable(_, _, 3, 2), _, _) =>
+      case Reply(codec.Unavailable(_, _, 3, 2), _, _, _) =>
     }
   }
 
@@ -209,7 +209,7 @@ class PrimingJsonHelperTest extends FunSuite with Matchers {
     val primeResult: Prime = PrimingJsonHelper.extractPrime(primeRequest.thenDo)
 
     primeResult should matchPattern {
-      case Reply(codec.Overloaded("Overloaded"), _, _) =>
+      case Reply(codec.Overloaded("Overloaded"), _, _, _) =>
     }
   }
 
@@ -221,7 +221,7 @@ class PrimingJsonHelperTest extends FunSuite with Matchers {
     val primeResult: Prime = PrimingJsonHelper.extractPrime(primeRequest.thenDo)
 
     primeResult should matchPattern {
-      case Reply(codec.TruncateError("Truncate Error"), _, _) =>
+      case Reply(codec.TruncateError("Truncate Error"), _, _, _) =>
     }
   }
 
@@ -233,7 +233,7 @@ class PrimingJsonHelperTest extends FunSuite with Matchers {
     val primeResult: Prime = PrimingJsonHelper.extractPrime(primeRequest.thenDo)
 
     primeResult should matchPattern {
-      case Reply(codec.SyntaxError("Syntax Error"), _, _) =>
+      case Reply(codec.SyntaxError("Syntax Error"), _, _, _) =>
     }
   }
 
@@ -245,7 +245,7 @@ class PrimingJsonHelperTest extends FunSuite with Matchers {
     val primeResult: Prime = PrimingJsonHelper.extractPrime(primeRequest.thenDo)
 
     primeResult should matchPattern {
-      case Reply(codec.Unauthorized("Unauthorized"), _, _) =>
+      case Reply(codec.Unauthorized("Unauthorized"), _, _, _) =>
     }
   }
 
@@ -257,7 +257,7 @@ class PrimingJsonHelperTest extends FunSuite with Matchers {
     val primeResult: Prime = PrimingJsonHelper.extractPrime(primeRequest.thenDo)
 
     primeResult should matchPattern {
-      case Reply(codec.Invalid("Invalid"), _, _) =>
+      case Reply(codec.Invalid("Invalid"), _, _, _) =>
     }
   }
 
@@ -269,7 +269,7 @@ class PrimingJsonHelperTest extends FunSuite with Matchers {
     val primeResult: Prime = PrimingJsonHelper.extractPrime(primeRequest.thenDo)
 
     primeResult should matchPattern {
-      case Reply(codec.ConfigError("Config Error"), _, _) =>
+      case Reply(codec.ConfigError("Config Error"), _, _, _) =>
     }
   }
 
@@ -284,7 +284,7 @@ class PrimingJsonHelperTest extends FunSuite with Matchers {
     val primeResult: Prime = PrimingJsonHelper.extractPrime(primeRequest.thenDo)
 
     primeResult should matchPattern {
-      case Reply(codec.AlreadyExists("Already Exists", "myks", "mytbl"), _, _) =>
+      case Reply(codec.AlreadyExists("Already Exists", "myks", "mytbl"), _, _, _) =>
     }
   }
 
@@ -299,7 +299,7 @@ class PrimingJsonHelperTest extends FunSuite with Matchers {
 
     val bytes = ByteVector.fromValidHex("0xCAFECAFE")
     primeResult should matchPattern {
-      case Reply(codec.Unprepared("Unprepared", `bytes`), _, _) =>
+      case Reply(codec.Unprepared("Unprepared", `bytes`), _, _, _) =>
     }
   }
 
@@ -19,6 +19,8 @@ package org.scassandra.server.priming.routes
 import akka.Done
 import akka.actor.{ ActorRef, ActorSystem }
 import akka.http.scaladsl.model.StatusCodes.{ BadRequest, OK }
+import akka.http.scaladsl.model.{ ContentTypes, HttpEntity }
+import akka.http.scaladsl.server.Route
 import akka.http.scaladsl.testkit.ScalatestRouteTest
 import akka.testkit.{ TestActor, TestProbe }
 import akka.util.Timeout
@@ -27,6 +29,7 @@ import org.scassandra.codec.Consistency._
 import org.scassandra.codec.datatype._
 import org.scassandra.codec.{ Query => CQuery }
 import org.scassandra.server.actors.priming.PrimeQueryStoreActor._
+import org.scassandra.server.priming._
 import org.scassandra.server.priming.json._
 
 import scala.concurrent.duration._
@@ -133,6 +136,41 @@ class PrimingQueryRouteTest extends WordSpec with BeforeAndAfter with Matchers w
         status should equal(OK)
       }
     }
+
+    "should accept a prime with generated rows" in {
+      val whenQuery = When(query = Some("select * from events"))
+      val generated = GeneratedRows(1000, Map(
+        "id" -> SequenceGenerator(1),
+        "score" -> RandomGenerator(0, 100),
+        "name" -> TemplateGenerator("event-{n}"),
+        "source" -> ConstantGenerator("sensor")), Some(42))
+      val prime = PrimeQuerySingle(whenQuery, Then(generated_rows = Some(generated)))
+      respondWith(primeQueryStoreProbe, PrimeAddSuccess)
+
+      Post(primeQuerySinglePath, prime) ~> queryRoute ~> check {
+        primeQueryStoreProbe.expectMsg(RecordQueryPrime(prime))
+        status should equal(OK)
+      }
+    }
+    "should accept a prime with a delay profile" in {
+      val whenQuery = When(query = Some("select * from events"))
+      val delay = DelayProfile(PercentileDistribution(Map(50.0 -> 2.0, 99.9 -> 150.0)), jitter = 0.5, seed = Some(42))
+      val prime = PrimeQuerySingle(whenQuery, Then(delay = Some(delay)))
+      respondWith(primeQueryStoreProbe, PrimeAddSuccess)
+
+      Post(primeQuerySinglePath, prime) ~> queryRoute ~> check {
+        primeQueryStoreProbe.expectMsg(RecordQueryPrime(prime))
+        status should equal(OK)
+      }
+    }
+
+    "should reject a prime with an invalid delay profile" in {
+      val prime = """{"when": {"query": "select * from events"}, "then": {"delay": {"type": "lognormal", "median": -1, "sigma": 1}}}"""
+
+      Post(primeQuerySinglePath, HttpEntity(ContentTypes.`application/json`, prime)) ~> Route.seal(queryRoute) ~> check {
+        status should equal(BadRequest)
+      }
+    }
   }
 
   "Priming incorrectly" must {